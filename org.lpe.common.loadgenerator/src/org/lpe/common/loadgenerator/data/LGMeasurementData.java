@@ -1,6 +1,8 @@
 package org.lpe.common.loadgenerator.data;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -9,6 +11,8 @@ import java.util.Set;
 import javax.xml.bind.annotation.XmlRootElement;
 
 import org.codehaus.jackson.annotate.JsonIgnore;
+import org.lpe.common.util.Downsampling;
+import org.lpe.common.util.stats.LatencyHistogram;
 
 /**
  * Measurement data of the load generator.
@@ -78,6 +82,100 @@ public class LGMeasurementData {
 		}
 	}
 
+	/**
+	 * Records the response times (stop - start) of the given transaction into
+	 * the passed histogram. Spans ending before they start (e.g. due to clock
+	 * skew or a missing stop timestamp) have no valid response time and are
+	 * skipped.
+	 * 
+	 * @param transactionName
+	 *            name of the transaction
+	 * @param histogram
+	 *            histogram to record into
+	 */
+	@JsonIgnore
+	public void recordResponseTimes(String transactionName, LatencyHistogram histogram) {
+		List<TimeSpan> times = getTimesForTransaction(transactionName);
+		if (times == null) {
+			return;
+		}
+		for (TimeSpan span : times) {
+			long responseTime = span.getStop() - span.getStart();
+			if (responseTime >= 0) {
+				histogram.recordValue(responseTime);
+			}
+		}
+	}
+
+	/**
+	 * Creates a histogram of the response times (stop - start) of the given
+	 * transaction. Spans ending before they start are skipped.
+	 * 
+	 * @param transactionName
+	 *            name of the transaction
+	 * @param significantDigits
+	 *            number of significant decimal digits to preserve
+	 * @return histogram of response times in [ms], or null if there is no
+	 *         data for the transaction
+	 */
+	@JsonIgnore
+	public LatencyHistogram getResponseTimeHistogram(String transactionName, int significantDigits) {
+		List<TimeSpan> times = getTimesForTransaction(transactionName);
+		if (times == null) {
+			return null;
+		}
+		long maxResponseTime = 2;
+		for (TimeSpan span : times) {
+			maxResponseTime = Math.max(maxResponseTime, span.getStop() - span.getStart());
+		}
+		LatencyHistogram histogram = new LatencyHistogram(maxResponseTime, significantDigits);
+		recordResponseTimes(transactionName, histogram);
+		return histogram;
+	}
+
+	/**
+	 * Creates a preview of this data for plotting: the time spans of each
+	 * transaction are sorted by start timestamp and reduced to at most
+	 * <code>maxPoints</code> spans with the Largest-Triangle-Three-Buckets
+	 * algorithm applied to the response times (stop - start). Transactions with
+	 * at most <code>maxPoints</code> spans are kept unchanged.
+	 * 
+	 * @param maxPoints
+	 *            maximum number of time spans per transaction, at least 3
+	 * @return downsampled copy of this data
+	 */
+	@JsonIgnore
+	public LGMeasurementData downsample(int maxPoints) {
+		LGMeasurementData preview = new LGMeasurementData();
+		for (Map.Entry<String, List<TimeSpan>> entry : getTransactionTimes().entrySet()) {
+			if (entry.getValue().size() <= maxPoints) {
+				preview.getTransactionTimes().put(entry.getKey(), new ArrayList<>(entry.getValue()));
+				continue;
+			}
+			List<TimeSpan> times = new ArrayList<>(entry.getValue());
+			Collections.sort(times, new Comparator<TimeSpan>() {
+				@Override
+				public int compare(TimeSpan a, TimeSpan b) {
+					return Long.compare(a.getStart(), b.getStart());
+				}
+			});
+			double[] starts = new double[times.size()];
+			double[] responseTimes = new double[times.size()];
+			for (int i = 0; i < times.size(); i++) {
+				TimeSpan span = times.get(i);
+				starts[i] = span.getStart();
+				responseTimes[i] = span.getStop() - span.getStart();
+			}
+			int[] indices = Downsampling.lttb(starts, responseTimes, maxPoints);
+			List<TimeSpan> sampled = new ArrayList<>(indices.length);
+			for (int index : indices) {
+				sampled.add(times.get(index));
+			}
+			preview.getTransactionTimes().put(entry.getKey(), sampled);
+		}
+		return preview;
+	}
+
 	/**
 	 * 
 	 * @return a set of transaction names
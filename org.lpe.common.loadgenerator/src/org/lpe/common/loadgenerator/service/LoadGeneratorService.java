@@ -19,10 +19,12 @@ import java.io.IOException;
 import java.io.OutputStream;
 
 import javax.ws.rs.Consumes;
+import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
 import javax.ws.rs.POST;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.StreamingOutput;
 
@@ -31,6 +33,7 @@ import org.lpe.common.loadgenerator.LoadGeneratorWorkloadController;
 import org.lpe.common.loadgenerator.config.LGMeasurementConfig;
 import org.lpe.common.loadgenerator.config.LGWorkloadConfig;
 import org.lpe.common.loadgenerator.data.LGMeasurementData;
+import org.lpe.common.util.Downsampling;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -45,6 +48,7 @@ import com.sun.jersey.spi.resource.Singleton;
 @Singleton
 public class LoadGeneratorService {
 	private static final Logger LOGGER = LoggerFactory.getLogger(LoadGeneratorService.class);
+	private static final String DEFAULT_PREVIEW_POINTS = "2000";
 
 	/**
 	 * Starts a load generator experiment.
@@ -122,6 +126,30 @@ public class LoadGeneratorService {
 		return data;
 	}
 
+	/**
+	 * 
+	 * @param lrmConfig
+	 *            data source configuration
+	 * @param maxPoints
+	 *            maximum number of time spans per transaction; values below
+	 *            {@value Downsampling#MIN_LTTB_THRESHOLD} are raised to it
+	 * @return downsampled data collected by the load generator, suitable for
+	 *         plotting
+	 * @throws IOException
+	 *             if data cannot be retrieved
+	 */
+	@POST
+	@Path("getDataPreview")
+	@Consumes(MediaType.APPLICATION_JSON)
+	@Produces(MediaType.APPLICATION_JSON)
+	public LGMeasurementData getDataPreview(LGMeasurementConfig lrmConfig,
+			@QueryParam("maxPoints") @DefaultValue(DEFAULT_PREVIEW_POINTS) int maxPoints) throws IOException {
+		LOGGER.info("Requested measurement data preview with {} points ...", maxPoints);
+		lrmConfig.correctPathSeparators();
+		LGMeasurementData data = LoadGeneratorMeasurementController.getInstance().getMeasurementData(lrmConfig);
+		return data.downsample(Math.max(maxPoints, Downsampling.MIN_LTTB_THRESHOLD));
+	}
+
 	/**
 	 * 
 	 * @param lrmConfig
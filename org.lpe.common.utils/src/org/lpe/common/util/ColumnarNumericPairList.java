@@ -0,0 +1,556 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * List of numeric pairs stored in two parallel primitive columns instead of
+ * one {@link NumericPair} object per entry. Keys and values of floating point
+ * types are kept in a <code>double[]</code>, integral types in a
+ * <code>long[]</code>.
+ * 
+ * The list offers the same API as {@link NumericPairList}. Pairs returned by
+ * {@link #get(int)}, {@link #iterator()} and {@link #getPairs()} are created
+ * on the fly and are detached copies: modifying them does not modify the
+ * list. Use {@link #getKeyColumn()} and {@link #getValueColumn()} for
+ * zero-copy access to the primitive data.
+ * 
+ * @param <T>
+ *            key type
+ * @param <S>
+ *            value type
+ */
+public class ColumnarNumericPairList<T extends Number, S extends Number> extends NumericPairList<T, S> {
+	private final NumericColumn<T> keys;
+	private final NumericColumn<S> values;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param keyType
+	 *            key type
+	 * @param valueType
+	 *            value type
+	 */
+	public ColumnarNumericPairList(Class<T> keyType, Class<S> valueType) {
+		this(keyType, valueType, NumericColumn.DEFAULT_CAPACITY);
+	}
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param keyType
+	 *            key type
+	 * @param valueType
+	 *            value type
+	 * @param initialCapacity
+	 *            initial capacity of the columns
+	 */
+	public ColumnarNumericPairList(Class<T> keyType, Class<S> valueType, int initialCapacity) {
+		this(NumericColumn.create(keyType, initialCapacity), NumericColumn.create(valueType, initialCapacity));
+	}
+
+	/**
+	 * Creates a list on top of the given columns.
+	 * 
+	 * @param keys
+	 *            key column
+	 * @param values
+	 *            value column
+	 */
+	ColumnarNumericPairList(NumericColumn<T> keys, NumericColumn<S> values) {
+		super(null);
+		if (keys.size() != values.size()) {
+			throw new IllegalArgumentException("Key and value columns differ in size!");
+		}
+		this.keys = keys;
+		this.values = values;
+	}
+
+	/**
+	 * Creates a list on top of the given columns without copying them, e.g.
+	 * columns created by {@link NumericColumn#of(Class, long[])} from
+	 * primitive arrays.
+	 * 
+	 * @param keys
+	 *            key column
+	 * @param values
+	 *            value column of the same size
+	 * @param <T>
+	 *            key type
+	 * @param <S>
+	 *            value type
+	 * @return list backed by the columns
+	 */
+	public static <T extends Number, S extends Number> ColumnarNumericPairList<T, S> of(NumericColumn<T> keys,
+			NumericColumn<S> values) {
+		return new ColumnarNumericPairList<>(keys, values);
+	}
+
+	/**
+	 * Creates a columnar copy of the given list.
+	 * 
+	 * @param list
+	 *            list to copy
+	 * @param keyType
+	 *            key type
+	 * @param valueType
+	 *            value type
+	 * @param <T>
+	 *            key type
+	 * @param <S>
+	 *            value type
+	 * @return columnar copy of the list
+	 */
+	public static <T extends Number, S extends Number> ColumnarNumericPairList<T, S> copyOf(
+			NumericPairList<T, S> list, Class<T> keyType, Class<S> valueType) {
+		ColumnarNumericPairList<T, S> result = new ColumnarNumericPairList<>(keyType, valueType, list.size());
+		for (NumericPair<T, S> pair : list) {
+			result.add(pair.getKey(), pair.getValue());
+		}
+		return result;
+	}
+
+	@Override
+	public void add(T key, S value) {
+		keys.add(key);
+		values.add(value);
+	}
+
+	@Override
+	public void add(NumericPair<T, S> pair) {
+		add(pair.getKey(), pair.getValue());
+	}
+
+	/**
+	 * Adds a pair without boxing.
+	 * 
+	 * @param key
+	 *            key
+	 * @param value
+	 *            value
+	 */
+	public void add(double key, double value) {
+		keys.add(key);
+		values.add(value);
+	}
+
+	/**
+	 * Adds a pair without boxing.
+	 * 
+	 * @param key
+	 *            key
+	 * @param value
+	 *            value
+	 */
+	public void add(long key, double value) {
+		keys.add(key);
+		values.add(value);
+	}
+
+	/**
+	 * Adds a pair without boxing.
+	 * 
+	 * @param key
+	 *            key
+	 * @param value
+	 *            value
+	 */
+	public void add(long key, long value) {
+		keys.add(key);
+		values.add(value);
+	}
+
+	/**
+	 * @return the key column
+	 */
+	public NumericColumn<T> getKeyColumn() {
+		return keys;
+	}
+
+	/**
+	 * @return the value column
+	 */
+	public NumericColumn<S> getValueColumn() {
+		return values;
+	}
+
+	@Override
+	public List<T> getKeyList() {
+		List<T> result = new ArrayList<>(size());
+		for (int i = 0; i < size(); i++) {
+			result.add(keys.get(i));
+		}
+		return result;
+	}
+
+	@Override
+	public List<S> getValueList() {
+		List<S> result = new ArrayList<>(size());
+		for (int i = 0; i < size(); i++) {
+			result.add(values.get(i));
+		}
+		return result;
+	}
+
+	@Override
+	public List<Number> getKeyListAsNumbers() {
+		return new ArrayList<Number>(getKeyList());
+	}
+
+	@Override
+	public List<Number> getValueListAsNumbers() {
+		return new ArrayList<Number>(getValueList());
+	}
+
+	@Override
+	public List<Number> getKeyListAsNumbers(double scaleFactor) {
+		return new ArrayList<Number>(getKeyListAsDouble(scaleFactor));
+	}
+
+	@Override
+	public List<Number> getValueListAsNumbers(double scaleFactor) {
+		return new ArrayList<Number>(getValueListAsDouble(scaleFactor));
+	}
+
+	@Override
+	public List<Double> getKeyListAsDouble() {
+		return getKeyListAsDouble(1.0);
+	}
+
+	@Override
+	public List<Double> getValueListAsDouble() {
+		return getValueListAsDouble(1.0);
+	}
+
+	@Override
+	public List<Double> getKeyListAsDouble(double scaleFactor) {
+		List<Double> result = new ArrayList<>(size());
+		for (int i = 0; i < size(); i++) {
+			result.add(keys.getDouble(i) * scaleFactor);
+		}
+		return result;
+	}
+
+	@Override
+	public List<Double> getValueListAsDouble(double scaleFactor) {
+		List<Double> result = new ArrayList<>(size());
+		for (int i = 0; i < size(); i++) {
+			result.add(values.getDouble(i) * scaleFactor);
+		}
+		return result;
+	}
+
+	@Override
+	public double[] getKeyArrayAsDouble() {
+		return keys.toDoubleArray(1.0);
+	}
+
+	@Override
+	public double[] getValueArrayAsDouble() {
+		return values.toDoubleArray(1.0);
+	}
+
+	@Override
+	public long[] getKeyArrayAsLong() {
+		return keys.toLongArray();
+	}
+
+	@Override
+	public long[] getValueArrayAsLong() {
+		return values.toLongArray();
+	}
+
+	@Override
+	public double[] getKeyArrayAsDouble(double scaleFactor) {
+		return keys.toDoubleArray(scaleFactor);
+	}
+
+	@Override
+	public double[] getValueArrayAsDouble(double scaleFactor) {
+		return values.toDoubleArray(scaleFactor);
+	}
+
+	@Override
+	public T getKeyMin() {
+		int ix = keys.indexOfMin();
+		return ix < 0 ? null : keys.get(ix);
+	}
+
+	@Override
+	public T getKeyMax() {
+		int ix = keys.indexOfMax();
+		return ix < 0 ? null : keys.get(ix);
+	}
+
+	@Override
+	public S getValueMin() {
+		int ix = values.indexOfMin();
+		return ix < 0 ? null : values.get(ix);
+	}
+
+	@Override
+	public S getValueMax() {
+		int ix = values.indexOfMax();
+		return ix < 0 ? null : values.get(ix);
+	}
+
+	@Override
+	public Iterator<NumericPair<T, S>> iterator() {
+		return new Iterator<NumericPair<T, S>>() {
+			private int index = 0;
+
+			@Override
+			public boolean hasNext() {
+				return index < size();
+			}
+
+			@Override
+			public NumericPair<T, S> next() {
+				if (!hasNext()) {
+					throw new NoSuchElementException();
+				}
+				return get(index++);
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException("Columnar pair lists do not support removal!");
+			}
+		};
+	}
+
+	@Override
+	public int size() {
+		return keys.size();
+	}
+
+	@Override
+	public NumericPair<T, S> get(int index) {
+		return new NumericPair<T, S>(keys.get(index), values.get(index));
+	}
+
+	@Override
+	public double getKeyAsDouble(int index) {
+		return keys.getDouble(index);
+	}
+
+	@Override
+	public double getValueAsDouble(int index) {
+		return values.getDouble(index);
+	}
+
+	/**
+	 * Copies the columns at the set indices without creating pairs.
+	 * 
+	 * @param mask
+	 *            positional mask aligned with the indices of this list
+	 * @return a new columnar list holding the selected pairs in their order
+	 */
+	@Override
+	public ColumnarNumericPairList<T, S> select(BitSet mask) {
+		return new ColumnarNumericPairList<>(keys.filter(mask, true), values.filter(mask, true));
+	}
+
+	/**
+	 * Copies the columns at the clear indices without creating pairs.
+	 * 
+	 * @param mask
+	 *            positional mask aligned with the indices of this list
+	 * @return a new columnar list holding the remaining pairs in their order
+	 */
+	@Override
+	public ColumnarNumericPairList<T, S> exclude(BitSet mask) {
+		return new ColumnarNumericPairList<>(keys.filter(mask, false), values.filter(mask, false));
+	}
+
+	@Override
+	public List<NumericPair<T, S>> sort() {
+		reorder(false);
+		setSortedByKey(true);
+		return getPairs();
+	}
+
+	@Override
+	public List<NumericPair<T, S>> sortByValue() {
+		reorder(true);
+		setSortedByKey(false);
+		return getPairs();
+	}
+
+	/**
+	 * Merges the columns without creating pairs if the other list is
+	 * columnar, too.
+	 * 
+	 * @param other
+	 *            list to merge with
+	 * @return a new list sorted by key holding the pairs of both lists
+	 */
+	@Override
+	@SuppressWarnings("unchecked")
+	public NumericPairList<T, S> merge(NumericPairList<T, S> other) {
+		if (!(other instanceof ColumnarNumericPairList)) {
+			return super.merge(other);
+		}
+		checkSortedByKey();
+		other.checkSortedByKey();
+		ColumnarNumericPairList<T, S> columnar = (ColumnarNumericPairList<T, S>) other;
+		int n = size();
+		int m = other.size();
+		ColumnarNumericPairList<T, S> result = new ColumnarNumericPairList<>(NumericColumn.create(
+				(Class<T>) keys.getType().getTypeClass(), n + m), NumericColumn.create(
+				(Class<S>) values.getType().getTypeClass(), n + m));
+		boolean integralKeys = keys.isIntegral() && columnar.keys.isIntegral();
+		int i = 0;
+		int j = 0;
+		while (i < n || j < m) {
+			boolean takeThis;
+			if (j >= m) {
+				takeThis = true;
+			} else if (i >= n) {
+				takeThis = false;
+			} else if (integralKeys) {
+				takeThis = keys.getLong(i) <= columnar.keys.getLong(j);
+			} else {
+				takeThis = keys.getDouble(i) <= columnar.keys.getDouble(j);
+			}
+			if (takeThis) {
+				copyEntry(keys, i, result.keys);
+				copyEntry(values, i++, result.values);
+			} else {
+				copyEntry(columnar.keys, j, result.keys);
+				copyEntry(columnar.values, j++, result.values);
+			}
+		}
+		result.setSortedByKey(true);
+		return result;
+	}
+
+	/**
+	 * Creates column views on the range without copying.
+	 * 
+	 * @param from
+	 *            first index of the view (inclusive)
+	 * @param to
+	 *            last index of the view (exclusive)
+	 * @return read-only view on the range
+	 */
+	@Override
+	protected ColumnarNumericPairList<T, S> slice(int from, int to) {
+		return new ColumnarNumericPairList<>(keys.slice(from, to), values.slice(from, to));
+	}
+
+	@Override
+	protected int compareKeys(int i, int j) {
+		return compareEntries(keys, i, j);
+	}
+
+	private static void copyEntry(NumericColumn<?> source, int index, NumericColumn<?> target) {
+		if (source.isIntegral()) {
+			target.add(source.getLong(index));
+		} else {
+			target.add(source.getDouble(index));
+		}
+	}
+
+	/**
+	 * Returns a read-only list view on the pairs. The pairs of the view are
+	 * created on access.
+	 * 
+	 * @return the pairs
+	 */
+	@Override
+	public List<NumericPair<T, S>> getPairs() {
+		return new AbstractList<NumericPair<T, S>>() {
+			@Override
+			public NumericPair<T, S> get(int index) {
+				return ColumnarNumericPairList.this.get(index);
+			}
+
+			@Override
+			public int size() {
+				return ColumnarNumericPairList.this.size();
+			}
+		};
+	}
+
+	/**
+	 * Stable sort of both columns, either by key (ties broken by value) or by
+	 * value only.
+	 * 
+	 * @param byValue
+	 *            whether to sort by value
+	 */
+	private void reorder(boolean byValue) {
+		int n = size();
+		int[] order = new int[n];
+		for (int i = 0; i < n; i++) {
+			order[i] = i;
+		}
+		mergeSort(order, new int[n], 0, n, byValue);
+		keys.permute(order);
+		values.permute(order);
+	}
+
+	private void mergeSort(int[] order, int[] tmp, int from, int to, boolean byValue) {
+		if (to - from < 2) {
+			return;
+		}
+		int mid = (from + to) >>> 1;
+		mergeSort(order, tmp, from, mid, byValue);
+		mergeSort(order, tmp, mid, to, byValue);
+		if (compare(order[mid - 1], order[mid], byValue) <= 0) {
+			return;
+		}
+		System.arraycopy(order, from, tmp, from, to - from);
+		int i = from;
+		int j = mid;
+		for (int k = from; k < to; k++) {
+			if (j >= to || (i < mid && compare(tmp[i], tmp[j], byValue) <= 0)) {
+				order[k] = tmp[i++];
+			} else {
+				order[k] = tmp[j++];
+			}
+		}
+	}
+
+	private int compare(int i, int j, boolean byValue) {
+		if (!byValue) {
+			int c = compareEntries(keys, i, j);
+			if (c != 0) {
+				return c;
+			}
+		}
+		return compareEntries(values, i, j);
+	}
+
+	private static int compareEntries(NumericColumn<?> column, int i, int j) {
+		if (column.isIntegral()) {
+			long a = column.getLong(i);
+			long b = column.getLong(j);
+			return a < b ? -1 : (a > b ? 1 : 0);
+		}
+		double a = column.getDouble(i);
+		double b = column.getDouble(j);
+		return a < b ? -1 : (a > b ? 1 : 0);
+	}
+}
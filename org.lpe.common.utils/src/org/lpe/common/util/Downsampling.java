@@ -0,0 +1,222 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Utility class for reducing series to a small number of representative
+ * points for plotting. Both modes select points of the original series
+ * instead of computing new ones, and run in linear time on primitive
+ * arrays.
+ * 
+ * <ul>
+ * <li><b>LTTB</b> (Largest-Triangle-Three-Buckets, S. Steinarsson): splits
+ * the series into buckets of equal size and picks the point per bucket that
+ * forms the largest triangle with the point picked in the previous bucket
+ * and the average of the next bucket. This preserves the visual shape,
+ * including peaks, with a fixed number of points.</li>
+ * <li><b>Min/max</b>: picks the minimum and the maximum value of each
+ * bucket, which guarantees that no extreme value is lost.</li>
+ * </ul>
+ */
+public final class Downsampling {
+
+	public static final int MIN_LTTB_THRESHOLD = 3;
+
+	/**
+	 * private constructor due to utility class.
+	 */
+	private Downsampling() {
+	}
+
+	/**
+	 * Selects points with the LTTB algorithm.
+	 * 
+	 * @param x
+	 *            x coordinates (e.g. timestamps) in ascending order
+	 * @param y
+	 *            y coordinates
+	 * @param threshold
+	 *            number of points to select, at least
+	 *            {@value #MIN_LTTB_THRESHOLD}
+	 * @return ascending indices of the selected points; all indices if the
+	 *         series has no more points than the threshold
+	 */
+	public static int[] lttb(double[] x, double[] y, int threshold) {
+		checkLengths(x, y);
+		if (threshold < MIN_LTTB_THRESHOLD) {
+			throw new IllegalArgumentException("LTTB requires a threshold of at least " + MIN_LTTB_THRESHOLD + "!");
+		}
+		int n = x.length;
+		if (n <= threshold) {
+			return allIndices(n);
+		}
+
+		int[] selected = new int[threshold];
+		double every = (double) (n - 2) / (threshold - 2);
+		int a = 0;
+		for (int i = 0; i < threshold - 2; i++) {
+			int avgFrom = (int) ((i + 1) * every) + 1;
+			int avgTo = Math.min((int) ((i + 2) * every) + 1, n);
+			double avgX = 0;
+			double avgY = 0;
+			for (int j = avgFrom; j < avgTo; j++) {
+				avgX += x[j];
+				avgY += y[j];
+			}
+			avgX /= avgTo - avgFrom;
+			avgY /= avgTo - avgFrom;
+
+			int from = (int) (i * every) + 1;
+			int to = (int) ((i + 1) * every) + 1;
+			double ax = x[a];
+			double ay = y[a];
+			double maxArea = -1;
+			int next = from;
+			for (int j = from; j < to; j++) {
+				double area = Math.abs((ax - avgX) * (y[j] - ay) - (ax - x[j]) * (avgY - ay));
+				if (area > maxArea) {
+					maxArea = area;
+					next = j;
+				}
+			}
+			selected[i + 1] = next;
+			a = next;
+		}
+		selected[threshold - 1] = n - 1;
+		return selected;
+	}
+
+	/**
+	 * Selects the first and the last point and the points with the minimum
+	 * and the maximum y coordinate of each bucket, where the series is split
+	 * into buckets with an equal number of points.
+	 * 
+	 * @param y
+	 *            y coordinates
+	 * @param buckets
+	 *            number of buckets
+	 * @return ascending indices of the selected points (at most
+	 *         <code>2 * buckets + 2</code>)
+	 */
+	public static int[] minMax(double[] y, int buckets) {
+		if (buckets < 1) {
+			throw new IllegalArgumentException("At least one bucket is required!");
+		}
+		int n = y.length;
+		if (n <= 2 * buckets + 2) {
+			return allIndices(n);
+		}
+
+		int[] selected = new int[2 * buckets + 2];
+		int count = 0;
+		selected[count++] = 0;
+		for (int b = 0; b < buckets; b++) {
+			int from = (int) ((long) b * n / buckets);
+			int to = (int) ((long) (b + 1) * n / buckets);
+			int minIx = from;
+			int maxIx = from;
+			for (int j = from + 1; j < to; j++) {
+				if (y[j] < y[minIx]) {
+					minIx = j;
+				} else if (y[j] > y[maxIx]) {
+					maxIx = j;
+				}
+			}
+			int first = Math.min(minIx, maxIx);
+			int second = Math.max(minIx, maxIx);
+			if (first > selected[count - 1]) {
+				selected[count++] = first;
+			}
+			if (second > selected[count - 1]) {
+				selected[count++] = second;
+			}
+		}
+		if (selected[count - 1] != n - 1) {
+			selected[count++] = n - 1;
+		}
+		return Arrays.copyOf(selected, count);
+	}
+
+	/**
+	 * Downsamples a list with the LTTB algorithm, using the keys as x and
+	 * the values as y coordinates.
+	 * 
+	 * @param list
+	 *            list sorted by key
+	 * @param threshold
+	 *            number of pairs to keep
+	 * @param <T>
+	 *            key type
+	 * @param <S>
+	 *            value type
+	 * @return a new list with the selected pairs
+	 */
+	public static <T extends Number, S extends Number> NumericPairList<T, S> lttb(NumericPairList<T, S> list,
+			int threshold) {
+		return list.select(toMask(lttb(list.getKeyArrayAsDouble(), list.getValueArrayAsDouble(), threshold)));
+	}
+
+	/**
+	 * Downsamples a list by keeping the pairs with the minimum and the
+	 * maximum value of each bucket.
+	 * 
+	 * @param list
+	 *            list sorted by key
+	 * @param buckets
+	 *            number of buckets
+	 * @param <T>
+	 *            key type
+	 * @param <S>
+	 *            value type
+	 * @return a new list with the selected pairs
+	 */
+	public static <T extends Number, S extends Number> NumericPairList<T, S> minMax(NumericPairList<T, S> list,
+			int buckets) {
+		return list.select(toMask(minMax(list.getValueArrayAsDouble(), buckets)));
+	}
+
+	/**
+	 * Converts indices to a positional mask.
+	 * 
+	 * @param indices
+	 *            indices to set
+	 * @return mask with the given indices set
+	 */
+	public static BitSet toMask(int[] indices) {
+		BitSet mask = new BitSet(indices.length == 0 ? 0 : indices[indices.length - 1] + 1);
+		for (int index : indices) {
+			mask.set(index);
+		}
+		return mask;
+	}
+
+	private static int[] allIndices(int n) {
+		int[] indices = new int[n];
+		for (int i = 0; i < n; i++) {
+			indices[i] = i;
+		}
+		return indices;
+	}
+
+	private static void checkLengths(double[] x, double[] y) {
+		if (x.length != y.length) {
+			throw new IllegalArgumentException("Coordinate arrays differ in length!");
+		}
+	}
+}
@@ -0,0 +1,424 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Index over a set of names answering which names have the highest
+ * Jaro-Winkler distance ({@link LpeStringUtils#getDistance(String, String)})
+ * to a query name, e.g. to find the closest known operation for a new
+ * operation name.
+ * 
+ * Names are indexed by their q-grams (substrings of length {@value #Q}). A
+ * lookup counts for each name how many of the rarest q-grams of the query it
+ * contains, drops names whose length or common prefix with the query rules
+ * out the threshold, and calculates the exact distance only for the names
+ * with the most shared q-grams. The number of verified names is limited,
+ * thus, lookups are approximate: names sharing few q-grams with the query
+ * are not found even if their distance reaches the threshold, which mainly
+ * affects short names and low thresholds. All returned distances are exact.
+ * 
+ * Lookups may run concurrently, adding names must not run concurrently with
+ * other operations.
+ */
+public class FuzzyNameIndex {
+
+	/**
+	 * Default maximum number of names verified per lookup.
+	 */
+	public static final int DEFAULT_MAX_CANDIDATES = 64;
+
+	private static final int Q = 3;
+
+	private static final double EPSILON = 1e-9;
+
+	private static final char PADDING = '\uffff';
+
+	private static final int MAX_PROBED_POSTINGS = 2048;
+
+	private static final Comparator<StringMatch> DESCENDING_DISTANCE = new Comparator<StringMatch>() {
+		@Override
+		public int compare(StringMatch m1, StringMatch m2) {
+			int cmp = Double.compare(m2.getDistance(), m1.getDistance());
+			return cmp != 0 ? cmp : Integer.compare(m1.getIndex(), m2.getIndex());
+		}
+	};
+
+	private static final Comparator<Postings> BY_SIZE = new Comparator<Postings>() {
+		@Override
+		public int compare(Postings p1, Postings p2) {
+			return Integer.compare(p1 == null ? 0 : p1.size, p2 == null ? 0 : p2.size);
+		}
+	};
+
+	private final boolean ignoreCase;
+	private final int maxCandidates;
+	private final List<String> names = new ArrayList<>();
+	private final List<String> keys = new ArrayList<>();
+	private final PostingsTable postings = new PostingsTable();
+
+	/**
+	 * Creates an empty index verifying up to
+	 * {@value #DEFAULT_MAX_CANDIDATES} names per lookup.
+	 * 
+	 * @param ignoreCase
+	 *            whether to ignore lower/upper cases, see
+	 *            {@link LpeStringUtils#getDistanceCaseInsensitive(String, String)}
+	 */
+	public FuzzyNameIndex(boolean ignoreCase) {
+		this(ignoreCase, DEFAULT_MAX_CANDIDATES);
+	}
+
+	/**
+	 * Creates an empty index.
+	 * 
+	 * @param ignoreCase
+	 *            whether to ignore lower/upper cases, see
+	 *            {@link LpeStringUtils#getDistanceCaseInsensitive(String, String)}
+	 * @param maxCandidates
+	 *            maximum number of names verified per lookup; higher values
+	 *            find more matches at the expense of lookup time
+	 */
+	public FuzzyNameIndex(boolean ignoreCase, int maxCandidates) {
+		if (maxCandidates < 1) {
+			throw new IllegalArgumentException("Number of candidates must be positive!");
+		}
+		this.ignoreCase = ignoreCase;
+		this.maxCandidates = maxCandidates;
+	}
+
+	/**
+	 * Creates an index over the given names verifying up to
+	 * {@value #DEFAULT_MAX_CANDIDATES} names per lookup.
+	 * 
+	 * @param names
+	 *            names to index
+	 * @param ignoreCase
+	 *            whether to ignore lower/upper cases, see
+	 *            {@link LpeStringUtils#getDistanceCaseInsensitive(String, String)}
+	 */
+	public FuzzyNameIndex(Collection<String> names, boolean ignoreCase) {
+		this(ignoreCase);
+		for (String name : names) {
+			add(name);
+		}
+	}
+
+	/**
+	 * Adds a name to the index.
+	 * 
+	 * @param name
+	 *            name to add
+	 * @return index of the name
+	 */
+	public int add(String name) {
+		int id = names.size();
+		String key = ignoreCase ? name.toLowerCase() : name;
+		names.add(name);
+		keys.add(key);
+		for (long gram : qGrams(key)) {
+			postings.getOrCreate(gram).add(id);
+		}
+		return id;
+	}
+
+	/**
+	 * @return number of indexed names
+	 */
+	public int size() {
+		return names.size();
+	}
+
+	/**
+	 * @param index
+	 *            index of the name
+	 * @return the name as it has been added
+	 */
+	public String get(int index) {
+		return names.get(index);
+	}
+
+	/**
+	 * Finds the name with the highest distance to the query.
+	 * 
+	 * @param query
+	 *            query name
+	 * @param threshold
+	 *            minimum distance of the name
+	 * @return the best match or <code>null</code> if no name reaching the
+	 *         threshold has been found
+	 */
+	public StringMatch findBestMatch(String query, double threshold) {
+		List<StringMatch> matches = findMatches(query, threshold, 1);
+		return matches.isEmpty() ? null : matches.get(0);
+	}
+
+	/**
+	 * Finds the names with the highest distance to the query. The distance
+	 * is calculated with the query as first and the name as second argument.
+	 * 
+	 * @param query
+	 *            query name
+	 * @param threshold
+	 *            minimum distance of the names
+	 * @param k
+	 *            maximum number of matches
+	 * @return the best matches in descending order of their distance; names
+	 *         with equal distance are ordered by their index
+	 */
+	public List<StringMatch> findMatches(String query, double threshold, int k) {
+		if (k < 1) {
+			throw new IllegalArgumentException("Number of matches must be positive!");
+		}
+		String key = ignoreCase ? query.toLowerCase() : query;
+		int queryLength = key.length();
+
+		// probe the rarest q-grams of the query
+		long[] grams = qGrams(key);
+		Postings[] lists = new Postings[grams.length];
+		for (int i = 0; i < grams.length; i++) {
+			lists[i] = postings.get(grams[i]);
+		}
+		Arrays.sort(lists, BY_SIZE);
+		int n = 0;
+		int probed = 0;
+		while (probed < lists.length && (probed == 0 || n + size(lists[probed]) <= MAX_PROBED_POSTINGS)) {
+			n += size(lists[probed++]);
+		}
+		int[] candidates = new int[n];
+		n = 0;
+		for (int i = 0; i < probed; i++) {
+			if (lists[i] != null) {
+				System.arraycopy(lists[i].ids, 0, candidates, n, lists[i].size);
+				n += lists[i].size;
+			}
+		}
+		Arrays.sort(candidates);
+
+		// rank the names that can reach the threshold by their shared q-grams
+		long[] ranked = new long[n];
+		int r = 0;
+		for (int i = 0; i < n;) {
+			int id = candidates[i];
+			int hits = 0;
+			while (i < n && candidates[i] == id) {
+				hits++;
+				i++;
+			}
+			if (upperBound(key, keys.get(id)) + EPSILON >= threshold) {
+				ranked[r++] = (long) hits << Integer.SIZE | (Integer.MAX_VALUE - id);
+			}
+		}
+		Arrays.sort(ranked, 0, r);
+
+		TopMatches matches = new TopMatches(threshold, k);
+		for (int i = r - 1; i >= Math.max(0, r - maxCandidates); i--) {
+			int id = Integer.MAX_VALUE - (int) ranked[i];
+			String candidate = keys.get(id);
+			if (upperBound(key, candidate) + EPSILON >= matches.getThreshold()) {
+				double distance = JaroWinklerDistance.getDistance(key, candidate, false);
+				if (distance >= matches.getThreshold()) {
+					matches.offer(new StringMatch(id, names.get(id), distance));
+				}
+			}
+		}
+		return matches.toList();
+	}
+
+	/**
+	 * Upper bound of the distance derived from the lengths and the common
+	 * prefix of both strings, assuming that all characters of the shorter
+	 * string match without transpositions.
+	 */
+	private static double upperBound(String s1, String s2) {
+		int l1 = s1.length();
+		int l2 = s2.length();
+		int prefix = commonPrefix(s1, s2);
+		if (l1 == 0 || l2 == 0) {
+			return prefix * JaroWinklerDistance.PREFIX_SCALE;
+		}
+		double dm = Math.min(l1, l2);
+		double dj = ((dm / l1) + (dm / l2) + 1.0) / 3.0;
+		return dj + (prefix * JaroWinklerDistance.PREFIX_SCALE * (1.0 - dj));
+	}
+
+	/**
+	 * Same as the common prefix of the Jaro-Winkler distance.
+	 */
+	private static int commonPrefix(String s1, String s2) {
+		for (int i = 1; i <= Math.min(s1.length(), JaroWinklerDistance.MAX_PREFIX_LENGTH); i++) {
+			if (i > s2.length() || s1.charAt(i - 1) != s2.charAt(i - 1)) {
+				return i - 1;
+			}
+		}
+		return JaroWinklerDistance.MAX_PREFIX_LENGTH;
+	}
+
+	/**
+	 * Determines the distinct q-grams of a string padded at the beginning,
+	 * such that each character ends a q-gram. Each q-gram is encoded into a
+	 * long.
+	 */
+	private static long[] qGrams(String s) {
+		long[] grams = new long[s.length()];
+		long gram = 0;
+		for (int i = 1 - Q; i < s.length(); i++) {
+			char c = i < 0 ? PADDING : s.charAt(i);
+			gram = gram << Character.SIZE | c;
+			if (i >= 0) {
+				grams[i] = gram & ((1L << (Q * Character.SIZE)) - 1);
+			}
+		}
+		Arrays.sort(grams);
+		int distinct = 0;
+		for (int i = 0; i < grams.length; i++) {
+			if (distinct == 0 || grams[i] != grams[distinct - 1]) {
+				grams[distinct++] = grams[i];
+			}
+		}
+		return Arrays.copyOf(grams, distinct);
+	}
+
+	private static int size(Postings list) {
+		return list == null ? 0 : list.size;
+	}
+
+	/**
+	 * The best matches found so far.
+	 */
+	private static final class TopMatches {
+		private final PriorityQueue<StringMatch> worstFirst = new PriorityQueue<>(11,
+				Collections.reverseOrder(DESCENDING_DISTANCE));
+		private final double threshold;
+		private final int k;
+
+		private TopMatches(double threshold, int k) {
+			this.threshold = threshold;
+			this.k = k;
+		}
+
+		/**
+		 * @return the minimum distance of further matches
+		 */
+		private double getThreshold() {
+			return worstFirst.size() < k ? threshold : Math.max(threshold, worstFirst.peek().getDistance());
+		}
+
+		private void offer(StringMatch match) {
+			worstFirst.offer(match);
+			if (worstFirst.size() > k) {
+				worstFirst.poll();
+			}
+		}
+
+		private List<StringMatch> toList() {
+			List<StringMatch> result = new ArrayList<>(worstFirst);
+			Collections.sort(result, DESCENDING_DISTANCE);
+			return result;
+		}
+	}
+
+	/**
+	 * Open addressing hash table from q-grams to posting lists.
+	 */
+	private static final class PostingsTable {
+		private static final int INITIAL_CAPACITY = 1024;
+		private static final long EMPTY = -1L;
+
+		private long[] grams = newGrams(INITIAL_CAPACITY);
+		private Postings[] lists = new Postings[INITIAL_CAPACITY];
+		private int size;
+
+		private Postings get(long gram) {
+			int mask = grams.length - 1;
+			for (int i = hash(gram) & mask; grams[i] != EMPTY; i = (i + 1) & mask) {
+				if (grams[i] == gram) {
+					return lists[i];
+				}
+			}
+			return null;
+		}
+
+		private Postings getOrCreate(long gram) {
+			int mask = grams.length - 1;
+			int i = hash(gram) & mask;
+			for (; grams[i] != EMPTY; i = (i + 1) & mask) {
+				if (grams[i] == gram) {
+					return lists[i];
+				}
+			}
+			if (2 * (size + 1) > grams.length) {
+				rehash();
+				return getOrCreate(gram);
+			}
+			grams[i] = gram;
+			lists[i] = new Postings();
+			size++;
+			return lists[i];
+		}
+
+		private void rehash() {
+			long[] oldGrams = grams;
+			Postings[] oldLists = lists;
+			grams = newGrams(2 * oldGrams.length);
+			lists = new Postings[2 * oldLists.length];
+			int mask = grams.length - 1;
+			for (int j = 0; j < oldGrams.length; j++) {
+				if (oldGrams[j] != EMPTY) {
+					int i = hash(oldGrams[j]) & mask;
+					while (grams[i] != EMPTY) {
+						i = (i + 1) & mask;
+					}
+					grams[i] = oldGrams[j];
+					lists[i] = oldLists[j];
+				}
+			}
+		}
+
+		private static long[] newGrams(int capacity) {
+			long[] result = new long[capacity];
+			Arrays.fill(result, EMPTY);
+			return result;
+		}
+
+		private static int hash(long gram) {
+			long h = gram * 0x9E3779B97F4A7C15L;
+			return (int) (h >>> Integer.SIZE);
+		}
+	}
+
+	/**
+	 * Ascending list of name indices.
+	 */
+	private static final class Postings {
+		private int[] ids = new int[4];
+		private int size;
+
+		private void add(int id) {
+			if (size == ids.length) {
+				ids = Arrays.copyOf(ids, 2 * size);
+			}
+			ids[size++] = id;
+		}
+	}
+}
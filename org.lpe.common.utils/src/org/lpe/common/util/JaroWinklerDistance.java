@@ -15,22 +15,44 @@
  */
 package org.lpe.common.util;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+
+import org.lpe.common.util.concurrency.ChunkProcessor;
+import org.lpe.common.util.concurrency.LpeConcurrencyUtils;
 
 /**
  * Utility class for calculating the Jaro-Winkler distance of two strings.
  * 
+ * The computation works on per-thread scratch arrays, thus, apart from
+ * lower-casing non-ASCII strings, calculating a distance does not allocate
+ * any objects.
+ * 
  * @author Henning Schulz
  * 
  */
 public final class JaroWinklerDistance {
 
 	// should not exceed 0.25
-	private static final double PREFIX_SCALE = 0.1;
+	static final double PREFIX_SCALE = 0.1;
 
-	private static final int MAX_PREFIX_LENGTH = 4;
+	static final int MAX_PREFIX_LENGTH = 4;
 
 	private static final double _3 = 3.0;
 
+	private static final int MIN_PAIRS_PER_CHUNK = 4096;
+
+	private static final ThreadLocal<Scratch> SCRATCH = new ThreadLocal<Scratch>() {
+		@Override
+		protected Scratch initialValue() {
+			return new Scratch();
+		}
+	};
+
 	private JaroWinklerDistance() {
 	}
 
@@ -44,15 +66,163 @@ public final class JaroWinklerDistance {
 	 * @return the Jaro-Winkler distance between {@code s1} and {@code s2}
 	 */
 	protected static double getDistance(String s1, String s2) {
-		double dj = jaroDistance(s1, s2);
-		double l = commonPrefix(s1, s2);
+		return getDistance(s1, s2, false);
+	}
+
+	/**
+	 * Calculates the Jaro-Winkler distance between the given strings. Ignoring
+	 * the case yields the distance between <code>s1.toLowerCase()</code> and
+	 * <code>s2.toLowerCase()</code>, but ASCII strings are lower-cased in the
+	 * scratch arrays instead of copying them.
+	 * 
+	 * @param s1
+	 *            first string
+	 * @param s2
+	 *            second string
+	 * @param ignoreCase
+	 *            whether to ignore lower/upper cases
+	 * @return the Jaro-Winkler distance between {@code s1} and {@code s2}
+	 */
+	static double getDistance(String s1, String s2, boolean ignoreCase) {
+		boolean lowerAscii = false;
+		if (ignoreCase) {
+			if (isAscii(s1) && isAscii(s2) && hasAsciiLowerCase(Locale.getDefault())) {
+				lowerAscii = true;
+			} else {
+				s1 = s1.toLowerCase();
+				s2 = s2.toLowerCase();
+			}
+		}
+		Scratch scratch = SCRATCH.get();
+		scratch.ensureCapacity(Math.max(s1.length(), s2.length()));
+		load(s1, scratch.chars1, lowerAscii);
+		load(s2, scratch.chars2, lowerAscii);
+		return distance(scratch.chars1, s1.length(), scratch.chars2, s2.length(), scratch);
+	}
+
+	/**
+	 * Calculates the distances between all rows and all columns in the given
+	 * pool.
+	 * 
+	 * @param rows
+	 *            row strings
+	 * @param columns
+	 *            column strings
+	 * @param ignoreCase
+	 *            whether to ignore lower/upper cases
+	 * @param pool
+	 *            pool to calculate the distances in
+	 * @return matrix with the distance between row <code>i</code> and column
+	 *         <code>j</code> at <code>[i][j]</code>
+	 */
+	static double[][] getDistanceMatrix(List<String> rows, List<String> columns, boolean ignoreCase,
+			ForkJoinPool pool) {
+		final char[][] rowChars = toCharArrays(rows, ignoreCase);
+		final char[][] columnChars = toCharArrays(columns, ignoreCase);
+		final double[][] matrix = new double[rowChars.length][columnChars.length];
+		LpeConcurrencyUtils.forEachChunk(pool, rowChars.length, getChunkSize(rowChars.length, columnChars.length, pool),
+				new ChunkProcessor() {
+					@Override
+					public void process(int chunk, int from, int to) {
+						Scratch scratch = SCRATCH.get();
+						for (int i = from; i < to; i++) {
+							char[] row = rowChars[i];
+							for (int j = 0; j < columnChars.length; j++) {
+								matrix[i][j] = distance(row, row.length, columnChars[j], columnChars[j].length,
+										scratch);
+							}
+						}
+					}
+				});
+		return matrix;
+	}
+
+	/**
+	 * Determines for each query the candidates with the highest distances in
+	 * the given pool.
+	 * 
+	 * @param queries
+	 *            query strings
+	 * @param candidates
+	 *            candidate strings
+	 * @param k
+	 *            maximum number of matches per query
+	 * @param ignoreCase
+	 *            whether to ignore lower/upper cases
+	 * @param pool
+	 *            pool to calculate the distances in
+	 * @return per query, the best matches in descending order of their
+	 *         distance; candidates with equal distance are ordered by index
+	 */
+	static List<List<StringMatch>> getTopMatches(List<String> queries, final List<String> candidates, final int k,
+			boolean ignoreCase, ForkJoinPool pool) {
+		if (k < 1) {
+			throw new IllegalArgumentException("Number of matches must be positive!");
+		}
+		final char[][] queryChars = toCharArrays(queries, ignoreCase);
+		final char[][] candidateChars = toCharArrays(candidates, ignoreCase);
+		final StringMatch[][] result = new StringMatch[queryChars.length][];
+		LpeConcurrencyUtils.forEachChunk(pool, queryChars.length,
+				getChunkSize(queryChars.length, candidateChars.length, pool), new ChunkProcessor() {
+					@Override
+					public void process(int chunk, int from, int to) {
+						Scratch scratch = SCRATCH.get();
+						int capacity = Math.min(k, candidateChars.length);
+						int[] bestIndices = new int[capacity];
+						double[] bestDistances = new double[capacity];
+						for (int i = from; i < to; i++) {
+							char[] query = queryChars[i];
+							int count = 0;
+							for (int j = 0; j < candidateChars.length; j++) {
+								double d = distance(query, query.length, candidateChars[j], candidateChars[j].length,
+										scratch);
+								if (count < capacity || d > bestDistances[count - 1]) {
+									int pos = count < capacity ? count++ : count - 1;
+									while (pos > 0 && d > bestDistances[pos - 1]) {
+										bestIndices[pos] = bestIndices[pos - 1];
+										bestDistances[pos] = bestDistances[pos - 1];
+										pos--;
+									}
+									bestIndices[pos] = j;
+									bestDistances[pos] = d;
+								}
+							}
+							result[i] = new StringMatch[count];
+							for (int r = 0; r < count; r++) {
+								result[i][r] = new StringMatch(bestIndices[r], candidates.get(bestIndices[r]),
+										bestDistances[r]);
+							}
+						}
+					}
+				});
+		List<List<StringMatch>> matches = new ArrayList<>(result.length);
+		for (StringMatch[] queryMatches : result) {
+			matches.add(Collections.unmodifiableList(Arrays.asList(queryMatches)));
+		}
+		return matches;
+	}
+
+	/**
+	 * Calculates the distance between <code>c1[0, l1)</code> and
+	 * <code>c2[0, l2)</code>.
+	 */
+	private static double distance(char[] c1, int l1, char[] c2, int l2, Scratch scratch) {
+		scratch.ensureCapacity(Math.max(l1, l2));
+		double dj = jaroDistance(c1, l1, c2, l2, scratch);
+		double l = commonPrefix(c1, l1, c2, l2);
 
 		return dj + ((l * PREFIX_SCALE * (1.0 - dj)));
 	}
 
-	private static int commonPrefix(String s1, String s2) {
-		for (int i = 1; i <= Math.min(s1.length(), MAX_PREFIX_LENGTH); i++) {
-			if (!s2.startsWith(s1.substring(0, i))) {
+	/**
+	 * Returns {@value #MAX_PREFIX_LENGTH} if the first
+	 * <code>min(l1, MAX_PREFIX_LENGTH)</code> characters of the first string
+	 * are a prefix of the second string, and the length of the common prefix
+	 * otherwise.
+	 */
+	private static int commonPrefix(char[] c1, int l1, char[] c2, int l2) {
+		for (int i = 1; i <= Math.min(l1, MAX_PREFIX_LENGTH); i++) {
+			if (i > l2 || c1[i - 1] != c2[i - 1]) {
 				return i - 1;
 			}
 		}
@@ -60,57 +230,58 @@ public final class JaroWinklerDistance {
 		return MAX_PREFIX_LENGTH;
 	}
 
-	private static double jaroDistance(String s1, String s2) {
-		String matches1 = matchingCharacters(s1, s2);
-		String matches2 = matchingCharacters(s2, s1);
-
-		int m = matches1.length();
-
-		int t = transpositions(matches1, matches2);
+	private static double jaroDistance(char[] c1, int l1, char[] c2, int l2, Scratch scratch) {
+		int scope = scope(l1, l2);
+		int m = matchingCharacters(c1, l1, c2, l2, scope, scratch.work, scratch.matches1);
+		int m2 = matchingCharacters(c2, l2, c1, l1, scope, scratch.work, scratch.matches2);
 
 		if (m == 0) {
 			return 0.0;
 		}
 
-		double l1 = s1.length();
-		double l2 = s2.length();
+		int t = transpositions(scratch.matches1, scratch.matches2, Math.min(m, m2));
+
+		double dl1 = l1;
+		double dl2 = l2;
 		double dm = m;
 		double dt = t;
 
-		return ((dm / l1) + (dm / l2) + ((dm - dt) / dm)) / _3;
+		return ((dm / dl1) + (dm / dl2) + ((dm - dt) / dm)) / _3;
 	}
 
-	private static String matchingCharacters(String s1, String s2) {
-		int l1 = s1.length();
-		int l2 = s2.length();
-		int scope = scope(l1, l2);
-
-		char[] c1 = s1.toCharArray();
-		char[] c2 = s2.toCharArray();
-
-		StringBuilder matches = new StringBuilder();
+	/**
+	 * Greedily matches each character of the first string with the first
+	 * unused equal character of the second string within the scope. Used
+	 * characters are zeroed in a copy of the second string.
+	 * 
+	 * @return number of matched characters, which are stored in order in
+	 *         <code>matches</code>
+	 */
+	private static int matchingCharacters(char[] c1, int l1, char[] c2, int l2, int scope, char[] work,
+			char[] matches) {
+		System.arraycopy(c2, 0, work, 0, l2);
+		int m = 0;
 
-		for (int i = 0; i < c1.length; i++) {
-			for (int j = Math.max(0, i - scope); j < Math.min(c2.length, i + scope + 1); j++) {
-				if (c1[i] == c2[j]) {
-					matches.append(c1[i]);
-					c2[j] = 0;
+		for (int i = 0; i < l1; i++) {
+			char c = c1[i];
+			int end = Math.min(l2, i + scope + 1);
+			for (int j = Math.max(0, i - scope); j < end; j++) {
+				if (c == work[j]) {
+					matches[m++] = c;
+					work[j] = 0;
 					break;
 				}
 			}
 		}
 
-		return matches.toString();
+		return m;
 	}
 
-	private static int transpositions(String m1, String m2) {
-		char[] c1 = m1.toCharArray();
-		char[] c2 = m2.toCharArray();
-
+	private static int transpositions(char[] m1, char[] m2, int m) {
 		int t = 0;
 
-		for (int i = 0; i < c1.length; i++) {
-			if (c1[i] != c2[i]) {
+		for (int i = 0; i < m; i++) {
+			if (m1[i] != m2[i]) {
 				t++;
 			}
 		}
@@ -122,4 +293,69 @@ public final class JaroWinklerDistance {
 		return (Math.min(i, j) / 2) + 1;
 	}
 
+	private static void load(String s, char[] chars, boolean lowerAscii) {
+		s.getChars(0, s.length(), chars, 0);
+		if (lowerAscii) {
+			for (int i = 0; i < s.length(); i++) {
+				char c = chars[i];
+				if (c >= 'A' && c <= 'Z') {
+					chars[i] = (char) (c + ('a' - 'A'));
+				}
+			}
+		}
+	}
+
+	private static boolean isAscii(String s) {
+		for (int i = 0; i < s.length(); i++) {
+			if (s.charAt(i) >= 0x80) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Turkish and Azerbaijani map the ASCII <code>'I'</code> to a dotless
+	 * <code>i</code>.
+	 */
+	private static boolean hasAsciiLowerCase(Locale locale) {
+		String language = locale.getLanguage();
+		return !"tr".equals(language) && !"az".equals(language);
+	}
+
+	private static char[][] toCharArrays(List<String> strings, boolean ignoreCase) {
+		char[][] result = new char[strings.size()][];
+		int i = 0;
+		for (String s : strings) {
+			result[i++] = (ignoreCase ? s.toLowerCase() : s).toCharArray();
+		}
+		return result;
+	}
+
+	private static int getChunkSize(int rows, int columns, ForkJoinPool pool) {
+		return LpeConcurrencyUtils.getChunkSize(rows, Math.max(1, MIN_PAIRS_PER_CHUNK / Math.max(1, columns)), pool);
+	}
+
+	/**
+	 * Reusable per-thread arrays.
+	 */
+	private static final class Scratch {
+		private char[] chars1 = new char[0];
+		private char[] chars2 = new char[0];
+		private char[] matches1 = new char[0];
+		private char[] matches2 = new char[0];
+		private char[] work = new char[0];
+
+		private void ensureCapacity(int length) {
+			if (chars1.length < length) {
+				int capacity = Math.max(length, 2 * chars1.length);
+				chars1 = new char[capacity];
+				chars2 = new char[capacity];
+				matches1 = new char[capacity];
+				matches2 = new char[capacity];
+				work = new char[capacity];
+			}
+		}
+	}
+
 }
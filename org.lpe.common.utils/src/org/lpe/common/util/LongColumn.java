@@ -0,0 +1,132 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Numeric column backed by a growable <code>long[]</code>. Used for all
+ * integral number types.
+ * 
+ * @param <N>
+ *            number type of the column
+ */
+class LongColumn<N extends Number> extends NumericColumn<N> {
+	private long[] data;
+	private int size;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param type
+	 *            number type of the column
+	 * @param initialCapacity
+	 *            initial capacity
+	 */
+	LongColumn(LpeSupportedTypes type, int initialCapacity) {
+		super(type);
+		data = new long[Math.max(initialCapacity, DEFAULT_CAPACITY)];
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isIntegral() {
+		return true;
+	}
+
+	@Override
+	public double getDouble(int index) {
+		checkIndex(index);
+		return data[index];
+	}
+
+	@Override
+	public long getLong(int index) {
+		checkIndex(index);
+		return data[index];
+	}
+
+	@Override
+	public void add(double value) {
+		add((long) value);
+	}
+
+	@Override
+	public void add(long value) {
+		if (size == data.length) {
+			data = Arrays.copyOf(data, grow(data.length, size + 1));
+		}
+		data[size++] = value;
+	}
+
+	@Override
+	public void addAll(long[] values) {
+		if (size + values.length > data.length) {
+			data = Arrays.copyOf(data, grow(data.length, size + values.length));
+		}
+		System.arraycopy(values, 0, data, size, values.length);
+		size += values.length;
+	}
+
+	@Override
+	public void permute(int[] order) {
+		long[] permuted = new long[data.length];
+		for (int i = 0; i < size; i++) {
+			permuted[i] = data[order[i]];
+		}
+		data = permuted;
+	}
+
+	@Override
+	public NumericColumn<N> filter(BitSet mask, boolean keepSet) {
+		LongColumn<N> result = new LongColumn<>(getType(), countSelected(mask, keepSet));
+		for (int i = nextSelected(mask, 0, keepSet); i < size; i = nextSelected(mask, i + 1, keepSet)) {
+			result.data[result.size++] = data[i];
+		}
+		return result;
+	}
+
+	@Override
+	public DoubleBuffer asDoubleBuffer() {
+		throw new UnsupportedOperationException("Column of type " + getType() + " is not backed by a double array!");
+	}
+
+	@Override
+	public LongBuffer asLongBuffer() {
+		return LongBuffer.wrap(data, 0, size).slice().asReadOnlyBuffer();
+	}
+
+	@Override
+	public double[] toDoubleArray(double scaleFactor) {
+		double[] result = new double[size];
+		for (int i = 0; i < size; i++) {
+			result[i] = data[i] * scaleFactor;
+		}
+		return result;
+	}
+
+	@Override
+	public long[] toLongArray() {
+		return Arrays.copyOf(data, size);
+	}
+}
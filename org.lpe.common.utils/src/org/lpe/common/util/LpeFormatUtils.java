@@ -0,0 +1,564 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Calendar;
+import java.util.Locale;
+
+/**
+ * Utility class for formatting numbers and time stamps into caller-supplied
+ * buffers. The methods do not allocate in the common case and are safe for
+ * concurrent use: per-thread scratch state is kept in thread locals.
+ * 
+ * Fixed precision numbers are formatted exactly like a
+ * {@link DecimalFormat} with the pattern <code>"0.00..."</code>, i.e. with
+ * {@link RoundingMode#HALF_EVEN} rounding of the exact decimal value of the
+ * double and without grouping. Values close to a rounding tie are rounded
+ * with {@link BigDecimal}; non-finite values and values with more than 15
+ * digits before the decimal point after scaling are formatted by a cached
+ * {@link DecimalFormat}.
+ * 
+ * Shortest numbers are formatted in the notation of
+ * {@link Double#toString(double)} with the fewest significant digits that
+ * identify the value; on JDKs whose {@link Double#toString(double)} prints
+ * superfluous digits the result may be shorter. Candidates are checked with
+ * exact floating point operations on powers of ten up to 10^22; values
+ * requiring larger powers are left to the caller.
+ */
+public final class LpeFormatUtils {
+
+	/**
+	 * Maximum number of fraction digits supported without falling back to
+	 * {@link DecimalFormat}.
+	 */
+	public static final int MAX_FRACTION_DIGITS = 18;
+
+	/**
+	 * Maximum number of characters of a fixed precision number formatted
+	 * without falling back to {@link DecimalFormat}.
+	 */
+	public static final int MAX_FIXED_LENGTH = 2 * MAX_FRACTION_DIGITS + 3;
+
+	/**
+	 * Maximum number of characters of a number formatted by
+	 * {@link #appendShortest(ByteBuffer, double)}.
+	 */
+	public static final int MAX_SHORTEST_LENGTH = 24;
+
+	private static final int MAX_DOUBLE_DIGITS = 17;
+	private static final int MAX_FLOAT_DIGITS = 9;
+	private static final long MAX_EXACT_LONG = 1L << 53;
+	// 2^27 + 1, splits a double into two halves whose products are exact
+	private static final double SPLITTER = 134217729.0;
+	// a decimal closer to a value than this fraction of the gap to its
+	// neighbour parses to the value despite rounding errors of the check
+	private static final double ROUNDING_MARGIN = 0.5 - 1.0E-6;
+
+	private static final long[] POWERS_OF_TEN = new long[MAX_FRACTION_DIGITS + 1];
+
+	// powers of ten which are exactly representable as double
+	private static final double[] EXACT_POWERS_OF_TEN = new double[23];
+
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+		EXACT_POWERS_OF_TEN[0] = 1.0;
+		for (int i = 1; i < EXACT_POWERS_OF_TEN.length; i++) {
+			EXACT_POWERS_OF_TEN[i] = EXACT_POWERS_OF_TEN[i - 1] * 10.0;
+		}
+	}
+
+	/**
+	 * Scaled values below this bound have an ulp of at most 1/8, so that
+	 * only values very close to a tie need exact rounding, and are printed by
+	 * {@link DecimalFormat} with all their digits.
+	 */
+	private static final double MAX_FAST_SCALED = 1.0E15;
+
+	private static final ThreadLocal<byte[]> SCRATCH = new ThreadLocal<byte[]>() {
+		@Override
+		protected byte[] initialValue() {
+			return new byte[MAX_FIXED_LENGTH];
+		}
+	};
+
+	private static final ThreadLocal<DecimalFormat[]> DECIMAL_FORMATS = new ThreadLocal<DecimalFormat[]>() {
+		@Override
+		protected DecimalFormat[] initialValue() {
+			return new DecimalFormat[MAX_FRACTION_DIGITS + 1];
+		}
+	};
+
+	private static final ThreadLocal<Calendar> CALENDAR = new ThreadLocal<Calendar>() {
+		@Override
+		protected Calendar initialValue() {
+			return Calendar.getInstance();
+		}
+	};
+
+	/**
+	 * private constructor due to utility class.
+	 */
+	private LpeFormatUtils() {
+	}
+
+	/**
+	 * Formats a value with a fixed number of digits after the decimal point.
+	 * 
+	 * @param value
+	 *            value to format
+	 * @param fractionDigits
+	 *            number of digits after the decimal point
+	 * @return the formatted value
+	 */
+	public static String formatFixed(double value, int fractionDigits) {
+		return appendFixed(new StringBuilder(MAX_FIXED_LENGTH), value, fractionDigits).toString();
+	}
+
+	/**
+	 * Appends a value with a fixed number of digits after the decimal point.
+	 * 
+	 * @param target
+	 *            builder to append to
+	 * @param value
+	 *            value to format
+	 * @param fractionDigits
+	 *            number of digits after the decimal point
+	 * @return the builder
+	 */
+	public static StringBuilder appendFixed(StringBuilder target, double value, int fractionDigits) {
+		checkFractionDigits(fractionDigits);
+		byte[] scratch = SCRATCH.get();
+		int length = formatFixed(value, fractionDigits, scratch);
+		if (length < 0) {
+			return target.append(decimalFormat(fractionDigits).format(value));
+		}
+		for (int i = 0; i < length; i++) {
+			target.append((char) scratch[i]);
+		}
+		return target;
+	}
+
+	/**
+	 * Writes a value with a fixed number of digits after the decimal point as
+	 * ASCII into a buffer, if it can be formatted without falling back to
+	 * {@link DecimalFormat}.
+	 * 
+	 * @param target
+	 *            buffer with at least {@value #MAX_FIXED_LENGTH} bytes
+	 *            remaining
+	 * @param value
+	 *            value to format
+	 * @param fractionDigits
+	 *            number of digits after the decimal point, at most
+	 *            {@value #MAX_FRACTION_DIGITS}
+	 * @return true if the value has been written, false if it is not finite
+	 *         or too large and nothing has been written
+	 */
+	public static boolean appendFixed(ByteBuffer target, double value, int fractionDigits) {
+		checkFractionDigits(fractionDigits);
+		if (fractionDigits > MAX_FRACTION_DIGITS) {
+			return false;
+		}
+		byte[] scratch = SCRATCH.get();
+		int length = formatFixed(value, fractionDigits, scratch);
+		if (length < 0) {
+			return false;
+		}
+		target.put(scratch, 0, length);
+		return true;
+	}
+
+	/**
+	 * Writes a value as ASCII into a buffer in the notation of
+	 * {@link Double#toString(double)}, using the fewest significant digits
+	 * which parse back to the value.
+	 * 
+	 * @param target
+	 *            buffer with at least {@value #MAX_SHORTEST_LENGTH} bytes
+	 *            remaining
+	 * @param value
+	 *            value to format
+	 * @return true if the value has been written, false if it is not finite
+	 *         or its magnitude is too large or too small and nothing has
+	 *         been written
+	 */
+	public static boolean appendShortest(ByteBuffer target, double value) {
+		return appendShortest(target, value, false);
+	}
+
+	/**
+	 * Writes a value as ASCII into a buffer in the notation of
+	 * {@link Float#toString(float)}, using the fewest significant digits
+	 * which parse back to the value.
+	 * 
+	 * @param target
+	 *            buffer with at least {@value #MAX_SHORTEST_LENGTH} bytes
+	 *            remaining
+	 * @param value
+	 *            value to format
+	 * @return true if the value has been written, false if it is not finite
+	 *         or its magnitude is too large or too small and nothing has
+	 *         been written
+	 */
+	public static boolean appendShortest(ByteBuffer target, float value) {
+		return appendShortest(target, value, true);
+	}
+
+	/**
+	 * Appends a time stamp of the format "yy.MM.dd - HH:mm" in the default
+	 * time zone.
+	 * 
+	 * @param target
+	 *            builder to append to
+	 * @param timeMillis
+	 *            time in milliseconds since the epoch
+	 * @return the builder
+	 */
+	public static StringBuilder appendTimeStamp(StringBuilder target, long timeMillis) {
+		Calendar calendar = calendar(timeMillis);
+		appendDate(target, calendar);
+		appendTwoDigits(target, calendar.get(Calendar.HOUR_OF_DAY)).append(':');
+		return appendTwoDigits(target, calendar.get(Calendar.MINUTE));
+	}
+
+	/**
+	 * Appends a time stamp of the format "yy.MM.dd - HH:mm:ss:SSS" in the
+	 * default time zone.
+	 * 
+	 * @param target
+	 *            builder to append to
+	 * @param timeMillis
+	 *            time in milliseconds since the epoch
+	 * @return the builder
+	 */
+	public static StringBuilder appendDetailedTimeStamp(StringBuilder target, long timeMillis) {
+		Calendar calendar = calendar(timeMillis);
+		appendDate(target, calendar);
+		appendTwoDigits(target, calendar.get(Calendar.HOUR_OF_DAY)).append(':');
+		appendTwoDigits(target, calendar.get(Calendar.MINUTE)).append(':');
+		appendTwoDigits(target, calendar.get(Calendar.SECOND)).append(':');
+		int millis = calendar.get(Calendar.MILLISECOND);
+		return target.append((char) ('0' + millis / 100)).append((char) ('0' + millis / 10 % 10))
+				.append((char) ('0' + millis % 10));
+	}
+
+	/**
+	 * Formats the value into the scratch array.
+	 * 
+	 * @return number of bytes written, or -1 if the value cannot be formatted
+	 *         without {@link DecimalFormat}
+	 */
+	private static int formatFixed(double value, int fractionDigits, byte[] scratch) {
+		if (fractionDigits > MAX_FRACTION_DIGITS) {
+			return -1;
+		}
+		double magnitude = Math.abs(value);
+		double scaled = magnitude * POWERS_OF_TEN[fractionDigits];
+		long rounded;
+		if (scaled < MAX_FAST_SCALED) {
+			double floor = Math.floor(scaled);
+			double fraction = scaled - floor;
+			if (Math.abs(fraction - 0.5) <= 2 * Math.ulp(scaled)) {
+				rounded = exactRound(magnitude, fractionDigits);
+			} else {
+				rounded = (long) floor + (fraction > 0.5 ? 1 : 0);
+			}
+		} else {
+			// DecimalFormat prints at most 17 significant digits, thus
+			// larger values as well as NaN and infinity are left to it
+			return -1;
+		}
+
+		int pos = 0;
+		if (value < 0 || (value == 0 && Double.doubleToRawLongBits(value) != 0)) {
+			scratch[pos++] = '-';
+		}
+		long integral = rounded / POWERS_OF_TEN[fractionDigits];
+		int digits = 1;
+		while (digits < POWERS_OF_TEN.length && integral >= POWERS_OF_TEN[digits]) {
+			digits++;
+		}
+		for (int d = digits - 1; d >= 0; d--) {
+			scratch[pos++] = (byte) ('0' + (integral / POWERS_OF_TEN[d]) % 10);
+		}
+		if (fractionDigits > 0) {
+			scratch[pos++] = '.';
+			long fraction = rounded % POWERS_OF_TEN[fractionDigits];
+			for (int d = fractionDigits - 1; d >= 0; d--) {
+				scratch[pos++] = (byte) ('0' + (fraction / POWERS_OF_TEN[d]) % 10);
+			}
+		}
+		return pos;
+	}
+
+	private static boolean appendShortest(ByteBuffer target, double value, boolean isFloat) {
+		byte[] scratch = SCRATCH.get();
+		int length = formatShortest(value, isFloat, scratch);
+		if (length < 0) {
+			return false;
+		}
+		target.put(scratch, 0, length);
+		return true;
+	}
+
+	/**
+	 * Formats the value with the fewest significant digits into the scratch
+	 * array.
+	 * 
+	 * @return number of bytes written, or -1 if the value is out of range
+	 */
+	private static int formatShortest(double value, boolean isFloat, byte[] scratch) {
+		if (Double.isNaN(value) || Double.isInfinite(value)) {
+			return -1;
+		}
+		int pos = 0;
+		if (value < 0 || (value == 0 && Double.doubleToRawLongBits(value) != 0)) {
+			scratch[pos++] = '-';
+		}
+		double magnitude = Math.abs(value);
+		if (magnitude == 0) {
+			scratch[pos++] = '0';
+			scratch[pos++] = '.';
+			scratch[pos++] = '0';
+			return pos;
+		}
+		int exponent = (int) Math.floor(Math.log10(magnitude));
+		if (exponent < 1 - EXACT_POWERS_OF_TEN.length || exponent > EXACT_POWERS_OF_TEN.length - 2) {
+			return -1;
+		}
+		// log10 may be off by one next to powers of ten
+		if (isBelowPowerOfTen(magnitude, exponent)) {
+			exponent--;
+		} else if (!isBelowPowerOfTen(magnitude, exponent + 1)) {
+			exponent++;
+		}
+
+		int maxDigits = isFloat ? MAX_FLOAT_DIGITS : MAX_DOUBLE_DIGITS;
+		long digits = 0;
+		int length = 0;
+		// the maximum number of digits always parses to the value, unless
+		// the powers of ten required are not exact
+		for (int n = 1; n <= maxDigits && length == 0; n++) {
+			int scale = n - 1 - exponent;
+			if (Math.abs(scale) >= EXACT_POWERS_OF_TEN.length) {
+				return -1;
+			}
+			long candidate = scale >= 0 ? roundProduct(magnitude, EXACT_POWERS_OF_TEN[scale]) : Math
+					.round(magnitude / EXACT_POWERS_OF_TEN[-scale]);
+			if (parsesTo(candidate, scale, magnitude, isFloat)) {
+				digits = candidate;
+				length = n;
+			}
+		}
+		if (length == 0) {
+			return -1;
+		}
+		if (digits >= POWERS_OF_TEN[length]) {
+			// rounded up to the next power of ten
+			digits /= 10;
+			exponent++;
+		}
+		while (length > 1 && digits % 10 == 0) {
+			digits /= 10;
+			length--;
+		}
+		return formatDigits(digits, length, exponent, scratch, pos);
+	}
+
+	/**
+	 * Checks exactly whether the magnitude is below 10^exponent.
+	 */
+	private static boolean isBelowPowerOfTen(double magnitude, int exponent) {
+		if (exponent >= 0) {
+			return magnitude < EXACT_POWERS_OF_TEN[exponent];
+		}
+		double power = EXACT_POWERS_OF_TEN[-exponent];
+		double product = magnitude * power;
+		if (product != 1.0) {
+			return product < 1.0;
+		}
+		return productError(magnitude, power, product) < 0;
+	}
+
+	/**
+	 * Checks whether the decimal <code>candidate * 10^-scale</code> parses
+	 * to the given double or float.
+	 */
+	private static boolean parsesTo(long candidate, int scale, double magnitude, boolean isFloat) {
+		if (candidate > MAX_EXACT_LONG) {
+			return scale >= 0 && isCloseToProduct(candidate, magnitude, EXACT_POWERS_OF_TEN[scale]);
+		}
+		// a single operation on exact operands rounds like parsing
+		double decimal = scale >= 0 ? candidate / EXACT_POWERS_OF_TEN[scale] : candidate
+				* EXACT_POWERS_OF_TEN[-scale];
+		if (!isFloat) {
+			return decimal == magnitude;
+		}
+		float neighbour = Math.nextAfter((float) magnitude, decimal < magnitude ? 0.0 : Double.POSITIVE_INFINITY);
+		return Math.abs(decimal - magnitude) < ROUNDING_MARGIN * Math.abs(neighbour - magnitude);
+	}
+
+	/**
+	 * Checks whether <code>candidate / power</code> lies within half the gap
+	 * to the neighbouring double of the magnitude, computing the deviation
+	 * from the exact product <code>magnitude * power</code>.
+	 */
+	private static boolean isCloseToProduct(long candidate, double magnitude, double power) {
+		double product = magnitude * power;
+		double floor = Math.floor(product);
+		double deviation = (candidate - (long) floor) - (product - floor) - productError(magnitude, power, product);
+		double neighbour = Math.nextAfter(magnitude, deviation < 0 ? 0.0 : Double.POSITIVE_INFINITY);
+		return Math.abs(deviation) < ROUNDING_MARGIN * Math.abs(neighbour - magnitude) * power;
+	}
+
+	/**
+	 * Rounds <code>magnitude * power</code> exactly to the nearest integer.
+	 */
+	private static long roundProduct(double magnitude, double power) {
+		double product = magnitude * power;
+		double error = productError(magnitude, power, product);
+		double floor = Math.floor(product);
+		return (long) floor + (long) Math.floor(product - floor + error + 0.5);
+	}
+
+	/**
+	 * Computes the rounding error <code>a * b - product</code> of a product
+	 * exactly (Dekker).
+	 */
+	private static double productError(double a, double b, double product) {
+		double aHigh = highHalf(a);
+		double aLow = a - aHigh;
+		double bHigh = highHalf(b);
+		double bLow = b - bHigh;
+		return ((aHigh * bHigh - product) + aHigh * bLow + aLow * bHigh) + aLow * bLow;
+	}
+
+	private static double highHalf(double value) {
+		double scaled = SPLITTER * value;
+		return scaled - (scaled - value);
+	}
+
+	/**
+	 * Writes the significant digits in plain notation for magnitudes from
+	 * 10^-3 to 10^7, in scientific notation otherwise.
+	 * 
+	 * @return position after the formatted number
+	 */
+	private static int formatDigits(long digits, int length, int exponent, byte[] scratch, int start) {
+		int pos = start;
+		if (exponent >= -3 && exponent < 7) {
+			if (exponent < 0) {
+				scratch[pos++] = '0';
+				scratch[pos++] = '.';
+				for (int i = -1; i > exponent; i--) {
+					scratch[pos++] = '0';
+				}
+				for (int i = 0; i < length; i++) {
+					scratch[pos++] = digit(digits, length, i);
+				}
+				return pos;
+			}
+			for (int i = 0; i <= exponent; i++) {
+				scratch[pos++] = i < length ? digit(digits, length, i) : (byte) '0';
+			}
+			scratch[pos++] = '.';
+			if (length <= exponent + 1) {
+				scratch[pos++] = '0';
+			}
+			for (int i = exponent + 1; i < length; i++) {
+				scratch[pos++] = digit(digits, length, i);
+			}
+			return pos;
+		}
+		scratch[pos++] = digit(digits, length, 0);
+		scratch[pos++] = '.';
+		if (length == 1) {
+			scratch[pos++] = '0';
+		}
+		for (int i = 1; i < length; i++) {
+			scratch[pos++] = digit(digits, length, i);
+		}
+		scratch[pos++] = 'E';
+		int e = exponent;
+		if (e < 0) {
+			scratch[pos++] = '-';
+			e = -e;
+		}
+		if (e >= 10) {
+			scratch[pos++] = (byte) ('0' + e / 10);
+		}
+		scratch[pos++] = (byte) ('0' + e % 10);
+		return pos;
+	}
+
+	private static byte digit(long digits, int length, int index) {
+		return (byte) ('0' + (digits / POWERS_OF_TEN[length - 1 - index]) % 10);
+	}
+
+	private static long exactRound(double magnitude, int fractionDigits) {
+		return new BigDecimal(magnitude).setScale(fractionDigits, RoundingMode.HALF_EVEN).unscaledValue()
+				.longValue();
+	}
+
+	private static DecimalFormat decimalFormat(int fractionDigits) {
+		DecimalFormat[] formats = DECIMAL_FORMATS.get();
+		DecimalFormat format = fractionDigits < formats.length ? formats[fractionDigits] : null;
+		if (format == null) {
+			StringBuilder pattern = new StringBuilder("0");
+			if (fractionDigits > 0) {
+				pattern.append('.');
+			}
+			for (int i = 0; i < fractionDigits; i++) {
+				pattern.append('0');
+			}
+			format = new DecimalFormat(pattern.toString(), new DecimalFormatSymbols(Locale.ENGLISH));
+			if (fractionDigits < formats.length) {
+				formats[fractionDigits] = format;
+			}
+		}
+		return format;
+	}
+
+	private static Calendar calendar(long timeMillis) {
+		Calendar calendar = CALENDAR.get();
+		calendar.setTimeInMillis(timeMillis);
+		return calendar;
+	}
+
+	private static void appendDate(StringBuilder target, Calendar calendar) {
+		appendTwoDigits(target, calendar.get(Calendar.YEAR) % 100).append('.');
+		appendTwoDigits(target, calendar.get(Calendar.MONTH) + 1).append('.');
+		appendTwoDigits(target, calendar.get(Calendar.DAY_OF_MONTH)).append(" - ");
+	}
+
+	private static StringBuilder appendTwoDigits(StringBuilder target, int value) {
+		return target.append((char) ('0' + value / 10)).append((char) ('0' + value % 10));
+	}
+
+	private static void checkFractionDigits(int fractionDigits) {
+		if (fractionDigits < 0) {
+			throw new IllegalArgumentException("Number of fraction digits must not be negative!");
+		}
+	}
+}
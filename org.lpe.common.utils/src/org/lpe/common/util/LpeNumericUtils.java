@@ -17,19 +17,24 @@ package org.lpe.common.util;
 
 import java.io.FileWriter;
 import java.io.IOException;
-import java.text.DecimalFormat;
-import java.text.DecimalFormatSymbols;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
-import java.util.Collections;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 
-import org.apache.commons.math3.distribution.TDistribution;
+import org.apache.commons.math3.stat.descriptive.StatisticalSummary;
 import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
 import org.apache.commons.math3.stat.inference.TestUtils;
+import org.lpe.common.util.concurrency.LpeConcurrencyUtils;
+import org.lpe.common.util.stats.BatchTTest;
 import org.lpe.common.util.stats.IQROutlierDetector;
+import org.lpe.common.util.stats.LatencyHistogram;
+import org.lpe.common.util.stats.OnlineStatistics;
+import org.lpe.common.util.stats.OrderStatistics;
+import org.lpe.common.util.stats.TQuantileCache;
+import org.lpe.common.util.stats.TTestResult;
+import org.lpe.common.util.stats.WindowedNoiseMetric;
 
 import au.com.bytecode.opencsv.CSVWriter;
 
@@ -59,23 +64,11 @@ public final class LpeNumericUtils {
 	 * @param v
 	 *            value to format
 	 * @param d
-	 *            number of digits
+	 *            number of digits; negative values are treated as 0
 	 * @return formatted String
 	 */
 	public static String dFormat(double v, int d) {
-		String pattern = "0";
-
-		for (int i = 0; i < d; i++) {
-			if (i == 0) {
-				pattern += ".";
-			}
-
-			pattern += "0";
-		}
-
-		DecimalFormatSymbols otherSymbols = new DecimalFormatSymbols(Locale.ENGLISH);
-		DecimalFormat format = new DecimalFormat(pattern, otherSymbols);
-		return format.format(v);
+		return LpeFormatUtils.formatFixed(v, Math.max(0, d));
 	}
 
 	/**
@@ -195,8 +188,8 @@ public final class LpeNumericUtils {
 		if (values.length == 0) {
 			return 0;
 		} else {
-			for (Number n : values) {
-				result += n.doubleValue();
+			for (double v : values) {
+				result += v;
 			}
 		}
 
@@ -212,25 +205,13 @@ public final class LpeNumericUtils {
 	 * @return the population standard deviation
 	 */
 	public static double stdDev(double[] values) {
-		double result = 0;
-
 		if (values == null) {
 			throw new IllegalArgumentException("Cannot calculate standard deviation on a null object.");
 		}
 
-		if (values.length < 1) {
-			throw new IllegalArgumentException("Cannot calculated standard deviation on an empty set.");
-		}
-
-		final double mean = average(values);
-
-		for (double v : values) {
-			result += (v - mean) * (v - mean);
-		}
-
-		result = Math.sqrt(result / values.length);
-
-		return result;
+		OnlineStatistics statistics = new OnlineStatistics();
+		statistics.addAll(values);
+		return populationStdDev(statistics);
 	}
 
 	/**
@@ -244,11 +225,15 @@ public final class LpeNumericUtils {
 	 * 
 	 */
 	public static <T extends Number> double stdDev(T[] array) {
-		double[] temp = new double[array.length];
-		for (int i = 0; i < array.length; i++) {
-			temp[i] = array[i].doubleValue();
+		if (array == null) {
+			throw new IllegalArgumentException("Cannot calculate standard deviation on a null object.");
 		}
-		return stdDev(temp);
+
+		OnlineStatistics statistics = new OnlineStatistics();
+		for (T value : array) {
+			statistics.add(value.doubleValue());
+		}
+		return populationStdDev(statistics);
 	}
 
 	/**
@@ -261,7 +246,81 @@ public final class LpeNumericUtils {
 	 * @return the population standard deviation
 	 */
 	public static <T extends Number> double stdDev(Collection<T> values) {
-		return stdDev(values.toArray(new Number[] {}));
+		return populationStdDev(getStatistics(values));
+	}
+
+	private static double populationStdDev(OnlineStatistics statistics) {
+		if (statistics.getN() < 1) {
+			throw new IllegalArgumentException("Cannot calculated standard deviation on an empty set.");
+		}
+		return statistics.getPopulationStandardDeviation();
+	}
+
+	/**
+	 * Computes count, mean, variance, minimum and maximum of the given values
+	 * in a single pass.
+	 * 
+	 * @param values
+	 *            input values
+	 * @return the accumulated statistics
+	 * 
+	 * @see OnlineStatistics
+	 */
+	public static OnlineStatistics getStatistics(double[] values) {
+		if (values == null) {
+			throw new IllegalArgumentException("Cannot calculate statistics on a null object.");
+		}
+
+		OnlineStatistics statistics = new OnlineStatistics();
+		statistics.addAll(values);
+		return statistics;
+	}
+
+	/**
+	 * Computes count, mean, variance, minimum and maximum of the given values
+	 * in a single pass.
+	 * 
+	 * @param values
+	 *            input values
+	 * @return the accumulated statistics
+	 * 
+	 * @see OnlineStatistics
+	 */
+	public static OnlineStatistics getStatistics(Collection<? extends Number> values) {
+		if (values == null) {
+			throw new IllegalArgumentException("Cannot calculate statistics on a null object.");
+		}
+
+		OnlineStatistics statistics = new OnlineStatistics();
+		statistics.addAll(values);
+		return statistics;
+	}
+
+	/**
+	 * Records the given values, rounded to the nearest integer, into a new
+	 * latency histogram.
+	 * 
+	 * @param values
+	 *            non-negative values to record
+	 * @param highestTrackableValue
+	 *            highest value that can be recorded
+	 * @param significantDigits
+	 *            number of significant decimal digits to preserve
+	 * @return histogram of the values
+	 * 
+	 * @see LatencyHistogram
+	 */
+	public static LatencyHistogram toLatencyHistogram(Collection<? extends Number> values,
+			long highestTrackableValue, int significantDigits) {
+		if (values == null) {
+			throw new IllegalArgumentException("Cannot create a histogram of a null object.");
+		}
+
+		LatencyHistogram histogram = new LatencyHistogram(highestTrackableValue, significantDigits);
+		for (Number value : values) {
+			histogram.recordValue(Math.round(value.doubleValue()));
+		}
+		return histogram;
 	}
 
 	/**
@@ -294,11 +353,40 @@ public final class LpeNumericUtils {
 	 *         given significance level
 	 */
 	public static double getConfidenceIntervalWidth(long sampleSize, double stdDev, double significance) {
-		TDistribution tDist = new TDistribution(sampleSize - 1);
-		double a = tDist.inverseCumulativeProbability(1.0 - significance / 2);
+		double a = TQuantileCache.getTwoSidedCriticalValue(sampleSize - 1, significance);
 		return a * stdDev / Math.sqrt(sampleSize) * 2;
 	}
 
+	/**
+	 * Calculates the confidence interval widths for many data sets at once.
+	 * The t-distribution quantiles are taken from the {@link TQuantileCache}
+	 * and reused across data sets of equal size.
+	 * 
+	 * @param statistics
+	 *            the data sets
+	 * @param significance
+	 *            desired significance level
+	 * @return the width of the confidence interval around the mean with the
+	 *         given significance level per data set, in the order of the
+	 *         given data sets
+	 */
+	public static double[] getConfidenceIntervalWidths(Collection<? extends StatisticalSummary> statistics,
+			double significance) {
+		double[] widths = new double[statistics.size()];
+		long lastSampleSize = -1;
+		double a = 0;
+		int i = 0;
+		for (StatisticalSummary summary : statistics) {
+			long sampleSize = summary.getN();
+			if (sampleSize != lastSampleSize) {
+				a = TQuantileCache.getTwoSidedCriticalValue(sampleSize - 1, significance);
+				lastSampleSize = sampleSize;
+			}
+			widths[i++] = a * summary.getStandardDeviation() / Math.sqrt(sampleSize) * 2;
+		}
+		return widths;
+	}
+
 	/**
 	 * Filters outliers from the given set of values using the 1.5*IQR method.
 	 * 
@@ -312,6 +400,22 @@ public final class LpeNumericUtils {
 		return getDefaultIQROutlierDetector().filterOutliers(values);
 	}
 
+	/**
+	 * Filters outliers from the given set of values using the 1.5*IQR method.
+	 * The quartiles and the filtering are computed in parallel in the default
+	 * fork/join pool.
+	 * 
+	 * @param values
+	 *            an array of numeric values
+	 * @return a filtered array of the input values without the outliers
+	 * 
+	 * @see IQROutlierDetector#filterOutliersParallel(double[],
+	 *      java.util.concurrent.ForkJoinPool)
+	 */
+	public static double[] filterOutliersUsingIQRParallel(double[] values) {
+		return getDefaultIQROutlierDetector().filterOutliersParallel(values);
+	}
+
 	/**
 	 * Filters outliers from the keys of the given set of values using the
 	 * 1.5*IQR method.
@@ -364,35 +468,30 @@ public final class LpeNumericUtils {
 	 */
 	public static <T extends Number> NumericPairList<Double, T> removeNoiseInKeys(NumericPairList<Double, T> list,
 			double noiseThreshold, int windowSize) {
-		NumericPairList<Double, T> result = new NumericPairList<>();
-
-		double[] noiseMetrics = new double[list.size()];
-		double maxNoise = Double.MIN_VALUE;
-		for (int i = 0; i < list.size(); i++) {
-			double sum = 0;
-			double count = 0;
-			for (int j = i - windowSize / 2; j <= i + windowSize / 2; j++) {
-				if (j < 0 || j >= list.size() || i == j) {
-					continue;
-				}
-				sum += Math.abs(list.get(i).getKey() - list.get(j).getKey());
-				count += 1.0;
-			}
-
-			noiseMetrics[i] = sum / count;
-			if (noiseMetrics[i] > maxNoise) {
-				maxNoise = noiseMetrics[i];
-			}
-		}
-
-		for (int i = 0; i < noiseMetrics.length; i++) {
-			double relativeNoise = noiseMetrics[i] / maxNoise;
-			if (relativeNoise < noiseThreshold) {
-				result.add(new NumericPair<Double, T>(list.get(i).getKey(), list.get(i).getValue()));
-			}
-		}
+		double[] relativeNoise = relativeNoise(WindowedNoiseMetric.compute(list.getKeyArrayAsDouble(), windowSize));
+		return selectBelowThreshold(list, relativeNoise, noiseThreshold);
+	}
 
-		return result;
+	/**
+	 * Parallel variant of
+	 * {@link #removeNoiseInKeys(NumericPairList, double, int)} for large
+	 * series, using the default fork/join pool.
+	 * 
+	 * @param list
+	 *            list of pairs
+	 * @param noiseThreshold
+	 *            noise threshold
+	 * @param windowSize
+	 *            window size to include neigbors for consideration
+	 * @param <T>
+	 *            value type
+	 * @return filtered list of pairs
+	 */
+	public static <T extends Number> NumericPairList<Double, T> removeNoiseInKeysParallel(
+			NumericPairList<Double, T> list, double noiseThreshold, int windowSize) {
+		double[] relativeNoise = relativeNoise(WindowedNoiseMetric.computeParallel(list.getKeyArrayAsDouble(),
+				windowSize, LpeConcurrencyUtils.getDefaultForkJoinPool()));
+		return selectBelowThreshold(list, relativeNoise, noiseThreshold);
 	}
 
 	/**
@@ -416,71 +515,76 @@ public final class LpeNumericUtils {
 	 */
 	public static <T extends Number> NumericPairList<T, Double> removeNoiseInValues(NumericPairList<T, Double> list,
 			double noiseThreshold, double percentile, int windowSize) {
-		NumericPairList<T, Double> result = new NumericPairList<>();
-		if (noiseThreshold > 0) {
-			double[] noiseMetrics = new double[list.size()];
-			double maxNoise = Double.MIN_VALUE;
-			for (int i = 0; i < list.size(); i++) {
-				double sum = 0;
-				double count = 0;
-				for (int j = i - windowSize / 2; j <= i + windowSize / 2; j++) {
-					if (j < 0 || j >= list.size() || i == j) {
-						continue;
-					}
-					sum += Math.abs(list.get(i).getValue() - list.get(j).getValue());
-					count += 1.0;
-				}
-
-				noiseMetrics[i] = sum / count;
-				if (noiseMetrics[i] > maxNoise) {
-					maxNoise = noiseMetrics[i];
-				}
-			}
-
-			for (int i = 0; i < noiseMetrics.length; i++) {
-				double relativeNoise = noiseMetrics[i] / maxNoise;
-				if (relativeNoise < noiseThreshold) {
-					result.add(new NumericPair<T, Double>(list.get(i).getKey(), list.get(i).getValue()));
-				}
-			}
-		} else {
-			double[] noiseMetrics = new double[list.size()];
-			double maxNoise = Double.MIN_VALUE;
-			for (int i = 0; i < list.size(); i++) {
-				double sum = 0;
-				double count = 0;
-				for (int j = i - windowSize / 2; j <= i + windowSize / 2; j++) {
-					if (j < 0 || j >= list.size() || i == j) {
-						continue;
-					}
-					sum += Math.abs(list.get(i).getValue() - list.get(j).getValue());
-					count += 1.0;
-				}
+		double[] relativeNoise = relativeNoise(WindowedNoiseMetric.compute(list.getValueArrayAsDouble(), windowSize));
+		return selectBelowThreshold(list, relativeNoise, noiseThreshold, percentile);
+	}
 
-				noiseMetrics[i] = sum / count;
-				if (noiseMetrics[i] > maxNoise) {
-					maxNoise = noiseMetrics[i];
-				}
-			}
+	/**
+	 * Parallel variant of
+	 * {@link #removeNoiseInValues(NumericPairList, double, double, int)} for
+	 * large series, using the default fork/join pool.
+	 * 
+	 * @param list
+	 *            list of pairs
+	 * @param noiseThreshold
+	 *            noise threshold
+	 * @param percentile
+	 *            if noise threshold is not used, percentile of the noise is
+	 *            used as threshold
+	 * @param windowSize
+	 *            window size to include neighbors for consideration
+	 * 
+	 * @param <T>
+	 *            value type
+	 * @return filtered list of pairs
+	 */
+	public static <T extends Number> NumericPairList<T, Double> removeNoiseInValuesParallel(
+			NumericPairList<T, Double> list, double noiseThreshold, double percentile, int windowSize) {
+		double[] relativeNoise = relativeNoise(WindowedNoiseMetric.computeParallel(list.getValueArrayAsDouble(),
+				windowSize, LpeConcurrencyUtils.getDefaultForkJoinPool()));
+		return selectBelowThreshold(list, relativeNoise, noiseThreshold, percentile);
+	}
 
-			List<Double> noisemetricsList = new ArrayList<>();
-			for (int i = 0; i < noiseMetrics.length; i++) {
-				noiseMetrics[i] = noiseMetrics[i] / maxNoise;
-				noisemetricsList.add(noiseMetrics[i]);
+	/**
+	 * Normalizes the noise metrics in place by the maximum noise.
+	 */
+	private static double[] relativeNoise(double[] noiseMetrics) {
+		double maxNoise = Double.MIN_VALUE;
+		for (double noise : noiseMetrics) {
+			if (noise > maxNoise) {
+				maxNoise = noise;
 			}
+		}
+		for (int i = 0; i < noiseMetrics.length; i++) {
+			noiseMetrics[i] = noiseMetrics[i] / maxNoise;
+		}
+		return noiseMetrics;
+	}
 
-			Collections.sort(noisemetricsList);
-
-			int percentileIx = (int) (((double) noisemetricsList.size()) * percentile);
-			noiseThreshold = noisemetricsList.get(percentileIx);
+	/**
+	 * Selects the pairs whose relative noise is below the noise threshold, or
+	 * below the given percentile of the relative noise if no positive
+	 * threshold is given.
+	 */
+	private static <T extends Number, S extends Number> NumericPairList<T, S> selectBelowThreshold(
+			NumericPairList<T, S> list, double[] relativeNoise, double noiseThreshold, double percentile) {
+		double threshold = noiseThreshold;
+		if (threshold <= 0) {
+			int percentileIx = (int) (((double) relativeNoise.length) * percentile);
+			threshold = OrderStatistics.select(relativeNoise.clone(), percentileIx);
+		}
+		return selectBelowThreshold(list, relativeNoise, threshold);
+	}
 
-			for (int i = 0; i < noiseMetrics.length; i++) {
-				if (noiseMetrics[i] < noiseThreshold) {
-					result.add(new NumericPair<T, Double>(list.get(i).getKey(), list.get(i).getValue()));
-				}
+	private static <T extends Number, S extends Number> NumericPairList<T, S> selectBelowThreshold(
+			NumericPairList<T, S> list, double[] relativeNoise, double threshold) {
+		NumericPairList<T, S> result = new NumericPairList<>();
+		for (int i = 0; i < relativeNoise.length; i++) {
+			if (relativeNoise[i] < threshold) {
+				NumericPair<T, S> pair = list.get(i);
+				result.add(new NumericPair<T, S>(pair.getKey(), pair.getValue()));
 			}
 		}
-
 		return result;
 	}
 
@@ -547,6 +651,20 @@ public final class LpeNumericUtils {
 		return getDefaultIQROutlierDetector().markOutliersUsingIQR(values);
 	}
 
+	/**
+	 * Marks the outliers in the given values by position using the 1.5*IQR
+	 * method.
+	 * 
+	 * @param values
+	 *            an array of numeric values
+	 * @return positional mask with the bits of the outliers set
+	 * 
+	 * @see IQROutlierDetector#markOutliers(double[])
+	 */
+	public static BitSet markOutlierIndicesUsingIQR(double[] values) {
+		return getDefaultIQROutlierDetector().markOutliers(values);
+	}
+
 	/**
 	 * @return the default IQR outlier detector for this class
 	 */
@@ -594,8 +712,27 @@ public final class LpeNumericUtils {
 		return TestUtils.tTest(sample1, sample2);
 	}
 
+	/**
+	 * Performs many two-sample t-tests in parallel: each baseline sample is
+	 * compared with the candidate sample of the same index.
+	 * 
+	 * @param baselineSamples
+	 *            baseline samples
+	 * @param candidateSamples
+	 *            candidate samples
+	 * @return p-value and effect size per sample pair; the p-value is -1 if a
+	 *         sample has less than two values
+	 * 
+	 * @see BatchTTest#tTest(double[][], double[][])
+	 */
+	public static TTestResult[] tTest(double[][] baselineSamples, double[][] candidateSamples) {
+		return BatchTTest.tTest(baselineSamples, candidateSamples);
+	}
+
 	/**
 	 * Converts a list of a specific Number type A to a list of a number type B.
+	 * Elements that already are of type B are taken over as they are, other
+	 * elements are boxed using the <code>valueOf</code> caches.
 	 * 
 	 * @param values
 	 *            list to convert
@@ -610,31 +747,39 @@ public final class LpeNumericUtils {
 	@SuppressWarnings("unchecked")
 	public static <A extends Number, B extends Number> List<B> convertList(List<A> values, Class<B> targetType) {
 		LpeSupportedTypes lpeType = LpeSupportedTypes.get(targetType);
-		List<B> bList = new ArrayList<>();
+		if (lpeType == null) {
+			throw new IllegalArgumentException(targetType + " is not a Number!");
+		}
+		List<B> bList = new ArrayList<>(values.size());
 		switch (lpeType) {
 		case Double:
 			for (A a : values) {
-				bList.add((B) new Double(a.doubleValue()));
+				bList.add((B) (a instanceof Double ? a : Double.valueOf(a.doubleValue())));
 			}
 			break;
 		case Float:
 			for (A a : values) {
-				bList.add((B) new Float(a.floatValue()));
+				bList.add((B) (a instanceof Float ? a : Float.valueOf(a.floatValue())));
 			}
 			break;
 		case Integer:
 			for (A a : values) {
-				bList.add((B) new Integer(a.intValue()));
+				bList.add((B) (a instanceof Integer ? a : Integer.valueOf(a.intValue())));
 			}
 			break;
 		case Long:
 			for (A a : values) {
-				bList.add((B) new Long(a.longValue()));
+				bList.add((B) (a instanceof Long ? a : Long.valueOf(a.longValue())));
 			}
 			break;
 		case Short:
 			for (A a : values) {
-				bList.add((B) new Short(a.shortValue()));
+				bList.add((B) (a instanceof Short ? a : Short.valueOf(a.shortValue())));
+			}
+			break;
+		case Byte:
+			for (A a : values) {
+				bList.add((B) (a instanceof Byte ? a : Byte.valueOf(a.byteValue())));
 			}
 			break;
 
@@ -646,6 +791,116 @@ public final class LpeNumericUtils {
 
 	}
 
+	/**
+	 * Converts the given numbers into a primitive array.
+	 * 
+	 * @param values
+	 *            numbers to convert
+	 * @return array of the values as double
+	 */
+	public static double[] toDoubleArray(Collection<? extends Number> values) {
+		double[] result = new double[values.size()];
+		int i = 0;
+		for (Number value : values) {
+			result[i++] = value.doubleValue();
+		}
+		return result;
+	}
+
+	/**
+	 * Converts the given numbers into a primitive array.
+	 * 
+	 * @param values
+	 *            numbers to convert
+	 * @return array of the values as long
+	 */
+	public static long[] toLongArray(Collection<? extends Number> values) {
+		long[] result = new long[values.size()];
+		int i = 0;
+		for (Number value : values) {
+			result[i++] = value.longValue();
+		}
+		return result;
+	}
+
+	/**
+	 * @param values
+	 *            values to convert
+	 * @return array of the values as double
+	 */
+	public static double[] toDoubleArray(long[] values) {
+		double[] result = new double[values.length];
+		for (int i = 0; i < values.length; i++) {
+			result[i] = values[i];
+		}
+		return result;
+	}
+
+	/**
+	 * @param values
+	 *            values to convert
+	 * @return array of the values as double
+	 */
+	public static double[] toDoubleArray(int[] values) {
+		double[] result = new double[values.length];
+		for (int i = 0; i < values.length; i++) {
+			result[i] = values[i];
+		}
+		return result;
+	}
+
+	/**
+	 * @param values
+	 *            values to convert
+	 * @return array of the values truncated to long
+	 */
+	public static long[] toLongArray(double[] values) {
+		long[] result = new long[values.length];
+		for (int i = 0; i < values.length; i++) {
+			result[i] = (long) values[i];
+		}
+		return result;
+	}
+
+	/**
+	 * @param values
+	 *            values to convert
+	 * @return array of the values as long
+	 */
+	public static long[] toLongArray(int[] values) {
+		long[] result = new long[values.length];
+		for (int i = 0; i < values.length; i++) {
+			result[i] = values[i];
+		}
+		return result;
+	}
+
+	/**
+	 * @param values
+	 *            values to convert
+	 * @return array of the values truncated to int
+	 */
+	public static int[] toIntArray(double[] values) {
+		int[] result = new int[values.length];
+		for (int i = 0; i < values.length; i++) {
+			result[i] = (int) values[i];
+		}
+		return result;
+	}
+
+	/**
+	 * @param values
+	 *            values to convert
+	 * @return array of the values narrowed as by a cast to <code>int</code>
+	 */
+	public static int[] toIntArray(long[] values) {
+		int[] result = new int[values.length];
+		for (int i = 0; i < values.length; i++) {
+			result[i] = (int) values[i];
+		}
+		return result;
+	}
+
 	/**
 	 * Returns a fraction closest to the specified double with a power of the
 	 * given basis as denominator. The fraction is returned as array of integer
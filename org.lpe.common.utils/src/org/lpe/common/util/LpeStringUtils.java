@@ -16,10 +16,13 @@
 package org.lpe.common.util;
 
 import java.io.File;
-import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.List;
 import java.util.Properties;
 import java.util.StringTokenizer;
+import java.util.concurrent.ForkJoinPool;
+
+import org.lpe.common.util.concurrency.LpeConcurrencyUtils;
 
 /**
  * Utility class for string operations.
@@ -205,8 +208,7 @@ public final class LpeStringUtils {
 	 *         given date.
 	 */
 	public static String getTimeStamp(Date date) {
-		SimpleDateFormat formatter = new SimpleDateFormat("yy.MM.dd - HH:mm");
-		return formatter.format(date);
+		return LpeFormatUtils.appendTimeStamp(new StringBuilder(), date.getTime()).toString();
 	}
 
 	/**
@@ -218,8 +220,7 @@ public final class LpeStringUtils {
 	 *         given date.
 	 */
 	public static String getDetailedTimeStamp(Date date) {
-		SimpleDateFormat formatter = new SimpleDateFormat("yy.MM.dd - HH:mm:ss:SSS");
-		return formatter.format(date);
+		return LpeFormatUtils.appendDetailedTimeStamp(new StringBuilder(), date.getTime()).toString();
 	}
 
 	/**
@@ -474,7 +475,87 @@ public final class LpeStringUtils {
 	 *         ignoring lower/upper cases.
 	 */
 	public static double getDistanceCaseInsensitive(String s1, String s2) {
-		return JaroWinklerDistance.getDistance(s1.toLowerCase(), s2.toLowerCase());
+		return JaroWinklerDistance.getDistance(s1, s2, true);
+	}
+
+	/**
+	 * Calculates the Jaro-Winkler distances between all rows and all columns
+	 * in the default fork/join pool.
+	 * 
+	 * @param rows
+	 *            row strings
+	 * @param columns
+	 *            column strings
+	 * @param ignoreCase
+	 *            whether to ignore lower/upper cases
+	 * @return matrix with the distance between row <code>i</code> and column
+	 *         <code>j</code> at <code>[i][j]</code>
+	 */
+	public static double[][] getDistanceMatrix(List<String> rows, List<String> columns, boolean ignoreCase) {
+		return getDistanceMatrix(rows, columns, ignoreCase, LpeConcurrencyUtils.getDefaultForkJoinPool());
+	}
+
+	/**
+	 * Calculates the Jaro-Winkler distances between all rows and all columns
+	 * in the given fork/join pool. Each string is lower-cased at most once.
+	 * 
+	 * @param rows
+	 *            row strings
+	 * @param columns
+	 *            column strings
+	 * @param ignoreCase
+	 *            whether to ignore lower/upper cases
+	 * @param pool
+	 *            pool to calculate the distances in
+	 * @return matrix with the distance between row <code>i</code> and column
+	 *         <code>j</code> at <code>[i][j]</code>
+	 */
+	public static double[][] getDistanceMatrix(List<String> rows, List<String> columns, boolean ignoreCase,
+			ForkJoinPool pool) {
+		return JaroWinklerDistance.getDistanceMatrix(rows, columns, ignoreCase, pool);
+	}
+
+	/**
+	 * Determines for each query the <code>k</code> candidates with the
+	 * highest Jaro-Winkler distance in the default fork/join pool.
+	 * 
+	 * @param queries
+	 *            query strings
+	 * @param candidates
+	 *            candidate strings
+	 * @param k
+	 *            maximum number of matches per query
+	 * @param ignoreCase
+	 *            whether to ignore lower/upper cases
+	 * @return per query, the best matches in descending order of their
+	 *         distance
+	 */
+	public static List<List<StringMatch>> getTopMatches(List<String> queries, List<String> candidates, int k,
+			boolean ignoreCase) {
+		return getTopMatches(queries, candidates, k, ignoreCase, LpeConcurrencyUtils.getDefaultForkJoinPool());
+	}
+
+	/**
+	 * Determines for each query the <code>k</code> candidates with the
+	 * highest Jaro-Winkler distance in the given fork/join pool. Candidates
+	 * with equal distance are ordered by their index.
+	 * 
+	 * @param queries
+	 *            query strings
+	 * @param candidates
+	 *            candidate strings
+	 * @param k
+	 *            maximum number of matches per query
+	 * @param ignoreCase
+	 *            whether to ignore lower/upper cases
+	 * @param pool
+	 *            pool to calculate the distances in
+	 * @return per query, the best matches in descending order of their
+	 *         distance
+	 */
+	public static List<List<StringMatch>> getTopMatches(List<String> queries, List<String> candidates, int k,
+			boolean ignoreCase, ForkJoinPool pool) {
+		return JaroWinklerDistance.getTopMatches(queries, candidates, k, ignoreCase, pool);
 	}
 
 	/**
@@ -490,6 +571,22 @@ public final class LpeStringUtils {
 		return SQLSimilarity.areEqual(sql1, sql2);
 	}
 
+	/**
+	 * Returns the structural fingerprint of the given statement. Statements
+	 * are equal in terms of {@link #areEqualSql(String, String)} if and only
+	 * if their fingerprints are equal, thus, the fingerprint can be used as
+	 * key when grouping statements.
+	 * 
+	 * @param sql
+	 *            SQL statement
+	 * @return the fingerprint of the statement
+	 * @throws IllegalArgumentException
+	 *             if the statement cannot be parsed
+	 */
+	public static long getSqlFingerprint(String sql) {
+		return SQLSimilarity.fingerprint(sql);
+	}
+
 	/**
 	 * Shortens full qualified method names. Thus,
 	 * my.full.package.Class.operation() becomes m.f.p.Class.operation()
@@ -530,7 +627,8 @@ public final class LpeStringUtils {
 
 	/**
 	 * Checks whether the given subject matches the target (possibly containing
-	 * * wildcards).
+	 * * wildcards). Patterns used repeatedly should be compiled into a
+	 * {@link WildcardPattern} or {@link WildcardPatternSet}.
 	 * 
 	 * @param subject
 	 *            string to test
@@ -539,43 +637,7 @@ public final class LpeStringUtils {
 	 * @return true, if subject, matches target
 	 */
 	public static boolean patternMatches(String subject, String targetPattern) {
-		if (targetPattern.contains("*")) {
-			String[] wCards = targetPattern.split("\\*");
-
-			for (int i = 0; i < wCards.length; i++) {
-				if (subject == null) {
-					return false;
-				}
-				String wc = wCards[i];
-				if (wc.isEmpty()) {
-					continue;
-				}
-
-				int index = subject.indexOf(wc);
-
-				// wCard not detected in the text.
-				if (index < 0 || (index > 0 && i == 0)) {
-					return false;
-				} else {
-
-					// Move to the next card
-					try {
-						subject = subject.substring(index + wc.length());
-					} catch (IndexOutOfBoundsException e) {
-						subject = null;
-					}
-					if (subject != null && subject.isEmpty()) {
-						subject = null;
-					}
-
-				}
-
-			}
-			return targetPattern.endsWith("*") ? true : subject == null;
-		} else {
-			return subject.equals(targetPattern);
-		}
-
+		return WildcardPattern.matches(subject, targetPattern);
 	}
 
 	/**
@@ -589,16 +651,7 @@ public final class LpeStringUtils {
 	 * @return true, if subject matches prefix of target
 	 */
 	public static boolean patternPrefixMatches(String subject, String targetPattern) {
-		if (targetPattern.startsWith(subject)) {
-			return true;
-		}
-
-		if (targetPattern.contains("*")) {
-			String prefixPattern = targetPattern.substring(0, targetPattern.indexOf("*"));
-			return subject.startsWith(prefixPattern);
-		}
-
-		return false;
+		return WildcardPattern.prefixMatches(subject, targetPattern);
 	}
 
 }
@@ -18,6 +18,8 @@ package org.lpe.common.util;
 import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Enumerates all types supported.
@@ -28,6 +30,26 @@ import java.util.List;
 public enum LpeSupportedTypes {
 	Byte, Short, Double, Float, Character, Integer, String, Boolean, Long;
 
+	/**
+	 * Resolved types by class. Lookups by class are frequent (e.g. once per
+	 * column or conversion), thus, the name comparisons of
+	 * {@link #get(String)} are done only once per class.
+	 */
+	private static final ConcurrentMap<Class<?>, LpeSupportedTypes> TYPES_BY_CLASS = new ConcurrentHashMap<>();
+
+	static {
+		for (LpeSupportedTypes type : values()) {
+			TYPES_BY_CLASS.put(type.getTypeClass(), type);
+		}
+		TYPES_BY_CLASS.put(java.lang.Byte.TYPE, Byte);
+		TYPES_BY_CLASS.put(java.lang.Short.TYPE, Short);
+		TYPES_BY_CLASS.put(java.lang.Double.TYPE, Double);
+		TYPES_BY_CLASS.put(java.lang.Float.TYPE, Float);
+		TYPES_BY_CLASS.put(java.lang.Character.TYPE, Character);
+		TYPES_BY_CLASS.put(java.lang.Integer.TYPE, Integer);
+		TYPES_BY_CLASS.put(java.lang.Boolean.TYPE, Boolean);
+		TYPES_BY_CLASS.put(java.lang.Long.TYPE, Long);
+	}
 
 	/**
 	 * If the given class is supported, returns the supported type for that
@@ -38,7 +60,14 @@ public enum LpeSupportedTypes {
 	 * @return the enum value for the given class
 	 */
 	public static LpeSupportedTypes get(Class<?> c) {
-		return get(c.getSimpleName());
+		LpeSupportedTypes type = TYPES_BY_CLASS.get(c);
+		if (type == null) {
+			type = get(c.getSimpleName());
+			if (type != null) {
+				TYPES_BY_CLASS.putIfAbsent(c, type);
+			}
+		}
+		return type;
 	}
 
 	/**
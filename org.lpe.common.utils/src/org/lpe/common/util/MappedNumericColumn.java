@@ -0,0 +1,306 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.BitSet;
+
+/**
+ * Read-only numeric column on top of a memory-mapped file region. Large
+ * regions are mapped in segments of 2^{@value #SEGMENT_SHIFT} elements since
+ * a single mapping is limited to 2 GB.
+ * 
+ * @param <N>
+ *            number type of the column
+ */
+abstract class MappedNumericColumn<N extends Number> extends NumericColumn<N> {
+
+	static final int SEGMENT_SHIFT = 27;
+	private static final int SEGMENT_MASK = (1 << SEGMENT_SHIFT) - 1;
+
+	private final int size;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param type
+	 *            number type of the column
+	 * @param size
+	 *            number of elements
+	 */
+	MappedNumericColumn(LpeSupportedTypes type, int size) {
+		super(type);
+		this.size = size;
+	}
+
+	/**
+	 * Maps a block of little-endian doubles.
+	 * 
+	 * @param type
+	 *            number type of the column
+	 * @param channel
+	 *            channel of the file
+	 * @param position
+	 *            file position of the block
+	 * @param size
+	 *            number of elements
+	 * @param <N>
+	 *            number type
+	 * @return the mapped column
+	 * @throws IOException
+	 *             if the file cannot be mapped
+	 */
+	static <N extends Number> MappedNumericColumn<N> mapDoubles(LpeSupportedTypes type, FileChannel channel,
+			long position, int size) throws IOException {
+		DoubleBuffer[] segments = new DoubleBuffer[segmentCount(size)];
+		for (int s = 0; s < segments.length; s++) {
+			segments[s] = map(channel, position, s, size, Double.SIZE / Byte.SIZE).asDoubleBuffer();
+		}
+		return new DoubleData<>(type, size, segments);
+	}
+
+	/**
+	 * Maps a block of little-endian longs.
+	 * 
+	 * @param type
+	 *            number type of the column
+	 * @param channel
+	 *            channel of the file
+	 * @param position
+	 *            file position of the block
+	 * @param size
+	 *            number of elements
+	 * @param <N>
+	 *            number type
+	 * @return the mapped column
+	 * @throws IOException
+	 *             if the file cannot be mapped
+	 */
+	static <N extends Number> MappedNumericColumn<N> mapLongs(LpeSupportedTypes type, FileChannel channel,
+			long position, int size) throws IOException {
+		LongBuffer[] segments = new LongBuffer[segmentCount(size)];
+		for (int s = 0; s < segments.length; s++) {
+			segments[s] = map(channel, position, s, size, Long.SIZE / Byte.SIZE).asLongBuffer();
+		}
+		return new LongData<>(type, size, segments);
+	}
+
+	/**
+	 * Maps an integral column stored as one long base per block of
+	 * 2^<code>blockShift</code> elements followed by one int offset to the
+	 * base of its block per element.
+	 * 
+	 * @param type
+	 *            number type of the column
+	 * @param channel
+	 *            channel of the file
+	 * @param basesPosition
+	 *            file position of the bases
+	 * @param offsetsPosition
+	 *            file position of the offsets
+	 * @param size
+	 *            number of elements
+	 * @param blockShift
+	 *            binary logarithm of the block size
+	 * @param <N>
+	 *            number type
+	 * @return the mapped column
+	 * @throws IOException
+	 *             if the file cannot be mapped
+	 */
+	static <N extends Number> MappedNumericColumn<N> mapOffsetLongs(LpeSupportedTypes type, FileChannel channel,
+			long basesPosition, long offsetsPosition, int size, int blockShift) throws IOException {
+		int blocks = (int) (((long) size + (1 << blockShift) - 1) >> blockShift);
+		LongBuffer bases = channel.map(MapMode.READ_ONLY, basesPosition, (long) blocks * (Long.SIZE / Byte.SIZE))
+				.order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+		IntBuffer[] segments = new IntBuffer[segmentCount(size)];
+		for (int s = 0; s < segments.length; s++) {
+			segments[s] = map(channel, offsetsPosition, s, size, Integer.SIZE / Byte.SIZE).asIntBuffer();
+		}
+		return new OffsetLongData<>(type, size, bases, blockShift, segments);
+	}
+
+	private static int segmentCount(int size) {
+		return (int) (((long) size + SEGMENT_MASK) >> SEGMENT_SHIFT);
+	}
+
+	private static ByteBuffer map(FileChannel channel, long position, int segment, int size,
+			int elementSize) throws IOException {
+		long first = (long) segment << SEGMENT_SHIFT;
+		long length = Math.min(size - first, 1L << SEGMENT_SHIFT);
+		return channel.map(MapMode.READ_ONLY, position + first * elementSize, length * elementSize).order(
+				ByteOrder.LITTLE_ENDIAN);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public void add(double value) {
+		throw new UnsupportedOperationException("Mapped columns are read-only!");
+	}
+
+	@Override
+	public void add(long value) {
+		throw new UnsupportedOperationException("Mapped columns are read-only!");
+	}
+
+	@Override
+	public void permute(int[] order) {
+		throw new UnsupportedOperationException("Mapped columns are read-only!");
+	}
+
+	/**
+	 * Copies the selected elements into a new heap column.
+	 */
+	@Override
+	public NumericColumn<N> filter(BitSet mask, boolean keepSet) {
+		return copySelected(mask, keepSet);
+	}
+
+	@Override
+	public DoubleBuffer asDoubleBuffer() {
+		throw new UnsupportedOperationException("Column of type " + getType() + " is not backed by doubles!");
+	}
+
+	@Override
+	public LongBuffer asLongBuffer() {
+		throw new UnsupportedOperationException("Column of type " + getType() + " is not backed by longs!");
+	}
+
+	/**
+	 * Mapped doubles.
+	 */
+	private static final class DoubleData<N extends Number> extends MappedNumericColumn<N> {
+		private final DoubleBuffer[] segments;
+
+		private DoubleData(LpeSupportedTypes type, int size, DoubleBuffer[] segments) {
+			super(type, size);
+			this.segments = segments;
+		}
+
+		@Override
+		public boolean isIntegral() {
+			return false;
+		}
+
+		@Override
+		public double getDouble(int index) {
+			checkIndex(index);
+			return segments[index >>> SEGMENT_SHIFT].get(index & SEGMENT_MASK);
+		}
+
+		@Override
+		public long getLong(int index) {
+			return (long) getDouble(index);
+		}
+
+		/**
+		 * @throws UnsupportedOperationException
+		 *             if the column spans more than one mapping
+		 */
+		@Override
+		public DoubleBuffer asDoubleBuffer() {
+			if (segments.length > 1) {
+				throw new UnsupportedOperationException("Column spans " + segments.length + " mappings!");
+			}
+			return segments.length == 0 ? DoubleBuffer.allocate(0).asReadOnlyBuffer() : segments[0]
+					.asReadOnlyBuffer();
+		}
+	}
+
+	/**
+	 * Mapped longs.
+	 */
+	private static final class LongData<N extends Number> extends MappedNumericColumn<N> {
+		private final LongBuffer[] segments;
+
+		private LongData(LpeSupportedTypes type, int size, LongBuffer[] segments) {
+			super(type, size);
+			this.segments = segments;
+		}
+
+		@Override
+		public boolean isIntegral() {
+			return true;
+		}
+
+		@Override
+		public double getDouble(int index) {
+			return getLong(index);
+		}
+
+		@Override
+		public long getLong(int index) {
+			checkIndex(index);
+			return segments[index >>> SEGMENT_SHIFT].get(index & SEGMENT_MASK);
+		}
+
+		/**
+		 * @throws UnsupportedOperationException
+		 *             if the column spans more than one mapping
+		 */
+		@Override
+		public LongBuffer asLongBuffer() {
+			if (segments.length > 1) {
+				throw new UnsupportedOperationException("Column spans " + segments.length + " mappings!");
+			}
+			return segments.length == 0 ? LongBuffer.allocate(0).asReadOnlyBuffer() : segments[0].asReadOnlyBuffer();
+		}
+	}
+
+	/**
+	 * Mapped longs stored as offsets to a base per block.
+	 */
+	private static final class OffsetLongData<N extends Number> extends MappedNumericColumn<N> {
+		private final LongBuffer bases;
+		private final int blockShift;
+		private final IntBuffer[] segments;
+
+		private OffsetLongData(LpeSupportedTypes type, int size, LongBuffer bases, int blockShift,
+				IntBuffer[] segments) {
+			super(type, size);
+			this.bases = bases;
+			this.blockShift = blockShift;
+			this.segments = segments;
+		}
+
+		@Override
+		public boolean isIntegral() {
+			return true;
+		}
+
+		@Override
+		public double getDouble(int index) {
+			return getLong(index);
+		}
+
+		@Override
+		public long getLong(int index) {
+			checkIndex(index);
+			return bases.get(index >>> blockShift) + segments[index >>> SEGMENT_SHIFT].get(index & SEGMENT_MASK);
+		}
+	}
+}
@@ -0,0 +1,471 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.util.BitSet;
+
+/**
+ * A growable column of primitive numbers. Floating point types are stored in
+ * a <code>double[]</code>, integral types in a <code>long[]</code>. Boxed
+ * values of the declared number type are only created on request.
+ * 
+ * @param <N>
+ *            number type of the column
+ */
+public abstract class NumericColumn<N extends Number> {
+
+	protected static final int DEFAULT_CAPACITY = 16;
+
+	private final LpeSupportedTypes type;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param type
+	 *            number type of the column
+	 */
+	protected NumericColumn(LpeSupportedTypes type) {
+		this.type = type;
+	}
+
+	/**
+	 * Creates an empty column for the given number type.
+	 * 
+	 * @param numberType
+	 *            number type of the column
+	 * @param initialCapacity
+	 *            initial capacity of the column
+	 * @param <N>
+	 *            number type
+	 * @return an empty column
+	 */
+	public static <N extends Number> NumericColumn<N> create(Class<N> numberType, int initialCapacity) {
+		LpeSupportedTypes type = LpeSupportedTypes.get(numberType);
+		if (type == null) {
+			throw new IllegalArgumentException(numberType + " is not supported as column type!");
+		}
+		switch (type) {
+		case Double:
+		case Float:
+			return new DoubleColumn<>(type, initialCapacity);
+		case Long:
+		case Integer:
+		case Short:
+		case Byte:
+			return new LongColumn<>(type, initialCapacity);
+		default:
+			throw new IllegalArgumentException(numberType + " is not a Number!");
+		}
+	}
+
+	/**
+	 * Creates a column for the given number type holding a copy of the given
+	 * values.
+	 * 
+	 * @param numberType
+	 *            number type of the column
+	 * @param values
+	 *            values to copy
+	 * @param <N>
+	 *            number type
+	 * @return a new column
+	 */
+	public static <N extends Number> NumericColumn<N> of(Class<N> numberType, double[] values) {
+		NumericColumn<N> column = create(numberType, values.length);
+		column.addAll(values);
+		return column;
+	}
+
+	/**
+	 * Creates a column for the given number type holding a copy of the given
+	 * values.
+	 * 
+	 * @param numberType
+	 *            number type of the column
+	 * @param values
+	 *            values to copy
+	 * @param <N>
+	 *            number type
+	 * @return a new column
+	 */
+	public static <N extends Number> NumericColumn<N> of(Class<N> numberType, long[] values) {
+		NumericColumn<N> column = create(numberType, values.length);
+		column.addAll(values);
+		return column;
+	}
+
+	/**
+	 * Creates a column for the given number type holding a copy of the given
+	 * values.
+	 * 
+	 * @param numberType
+	 *            number type of the column
+	 * @param values
+	 *            values to copy
+	 * @param <N>
+	 *            number type
+	 * @return a new column
+	 */
+	public static <N extends Number> NumericColumn<N> of(Class<N> numberType, int[] values) {
+		NumericColumn<N> column = create(numberType, values.length);
+		column.addAll(values);
+		return column;
+	}
+
+	/**
+	 * @return the number type of this column
+	 */
+	public LpeSupportedTypes getType() {
+		return type;
+	}
+
+	/**
+	 * @return number of elements in the column
+	 */
+	public abstract int size();
+
+	/**
+	 * @return <code>true</code> if the column is backed by a
+	 *         <code>long[]</code>, <code>false</code> if it is backed by a
+	 *         <code>double[]</code>
+	 */
+	public abstract boolean isIntegral();
+
+	/**
+	 * @param index
+	 *            element index
+	 * @return the element as double
+	 */
+	public abstract double getDouble(int index);
+
+	/**
+	 * @param index
+	 *            element index
+	 * @return the element as long
+	 */
+	public abstract long getLong(int index);
+
+	/**
+	 * Appends a value.
+	 * 
+	 * @param value
+	 *            value to append
+	 */
+	public abstract void add(double value);
+
+	/**
+	 * Appends a value.
+	 * 
+	 * @param value
+	 *            value to append
+	 */
+	public abstract void add(long value);
+
+	/**
+	 * Appends a boxed value.
+	 * 
+	 * @param value
+	 *            value to append
+	 */
+	public void add(N value) {
+		if (isIntegral()) {
+			add(value.longValue());
+		} else {
+			add(value.doubleValue());
+		}
+	}
+
+	/**
+	 * Appends all given values.
+	 * 
+	 * @param values
+	 *            values to append
+	 */
+	public void addAll(double[] values) {
+		for (double value : values) {
+			add(value);
+		}
+	}
+
+	/**
+	 * Appends all given values.
+	 * 
+	 * @param values
+	 *            values to append
+	 */
+	public void addAll(long[] values) {
+		for (long value : values) {
+			add(value);
+		}
+	}
+
+	/**
+	 * Appends all given values.
+	 * 
+	 * @param values
+	 *            values to append
+	 */
+	public void addAll(int[] values) {
+		for (int value : values) {
+			add((long) value);
+		}
+	}
+
+	/**
+	 * Reorders the column so that element <code>i</code> becomes the element
+	 * previously found at <code>order[i]</code>.
+	 * 
+	 * @param order
+	 *            permutation of the column indices
+	 */
+	public abstract void permute(int[] order);
+
+	/**
+	 * Copies the elements at the indices that are set (or clear) in the given
+	 * mask into a new column of the same type.
+	 * 
+	 * @param mask
+	 *            positional mask aligned with the column indices
+	 * @param keepSet
+	 *            whether to keep the elements at the set indices or at the
+	 *            clear indices
+	 * @return a new column holding the selected elements in their order
+	 */
+	public abstract NumericColumn<N> filter(BitSet mask, boolean keepSet);
+
+	/**
+	 * Returns a read-only view on the elements <code>[from, to)</code> without
+	 * copying them. The view is only valid until the next modification of
+	 * the column.
+	 * 
+	 * @param from
+	 *            first index of the view (inclusive)
+	 * @param to
+	 *            last index of the view (exclusive)
+	 * @return a read-only view on the range
+	 */
+	public NumericColumn<N> slice(int from, int to) {
+		if (from < 0 || to > size() || from > to) {
+			throw new IndexOutOfBoundsException("Range: [" + from + ", " + to + "), Size: " + size());
+		}
+		return new SlicedNumericColumn<>(this, from, to);
+	}
+
+	/**
+	 * Returns a read-only view on the underlying <code>double[]</code> without
+	 * copying it. The view is only valid until the next modification of the
+	 * column.
+	 * 
+	 * @return a read-only double buffer view
+	 * @throws UnsupportedOperationException
+	 *             if the column is integral
+	 */
+	public abstract DoubleBuffer asDoubleBuffer();
+
+	/**
+	 * Returns a read-only view on the underlying <code>long[]</code> without
+	 * copying it. The view is only valid until the next modification of the
+	 * column.
+	 * 
+	 * @return a read-only long buffer view
+	 * @throws UnsupportedOperationException
+	 *             if the column is not integral
+	 */
+	public abstract LongBuffer asLongBuffer();
+
+	/**
+	 * @param index
+	 *            element index
+	 * @return the element boxed into the number type of the column
+	 */
+	@SuppressWarnings("unchecked")
+	public N get(int index) {
+		switch (type) {
+		case Double:
+			return (N) Double.valueOf(getDouble(index));
+		case Float:
+			return (N) Float.valueOf((float) getDouble(index));
+		case Long:
+			return (N) Long.valueOf(getLong(index));
+		case Integer:
+			return (N) Integer.valueOf((int) getLong(index));
+		case Short:
+			return (N) Short.valueOf((short) getLong(index));
+		case Byte:
+			return (N) Byte.valueOf((byte) getLong(index));
+		default:
+			throw new IllegalStateException(type + " is not a Number!");
+		}
+	}
+
+	/**
+	 * @param scaleFactor
+	 *            scale factor
+	 * @return a copy of the column as double array multiplied with the scale
+	 *         factor
+	 */
+	public double[] toDoubleArray(double scaleFactor) {
+		double[] result = new double[size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = getDouble(i) * scaleFactor;
+		}
+		return result;
+	}
+
+	/**
+	 * @return a copy of the column as long array; floating point values are
+	 *         truncated
+	 */
+	public long[] toLongArray() {
+		long[] result = new long[size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = getLong(i);
+		}
+		return result;
+	}
+
+	/**
+	 * @return a copy of the column as int array; values are narrowed as by a
+	 *         cast to <code>int</code>
+	 */
+	public int[] toIntArray() {
+		int[] result = new int[size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = (int) getLong(i);
+		}
+		return result;
+	}
+
+	/**
+	 * @return index of the minimum, or -1 if the column is empty
+	 */
+	public int indexOfMin() {
+		int minIx = -1;
+		double min = 0;
+		for (int i = 0; i < size(); i++) {
+			double v = getDouble(i);
+			if (minIx < 0 || v < min) {
+				min = v;
+				minIx = i;
+			}
+		}
+		return minIx;
+	}
+
+	/**
+	 * @return index of the maximum, or -1 if the column is empty
+	 */
+	public int indexOfMax() {
+		int maxIx = -1;
+		double max = 0;
+		for (int i = 0; i < size(); i++) {
+			double v = getDouble(i);
+			if (maxIx < 0 || v > max) {
+				max = v;
+				maxIx = i;
+			}
+		}
+		return maxIx;
+	}
+
+	/**
+	 * Checks the given index against the size of the column.
+	 * 
+	 * @param index
+	 *            index to check
+	 */
+	protected void checkIndex(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+	}
+
+	/**
+	 * Counts the indices of the column selected by a mask.
+	 * 
+	 * @param mask
+	 *            positional mask
+	 * @param keepSet
+	 *            whether the set or the clear indices are selected
+	 * @return number of selected indices
+	 */
+	protected int countSelected(BitSet mask, boolean keepSet) {
+		int set = mask.get(0, size()).cardinality();
+		return keepSet ? set : size() - set;
+	}
+
+	/**
+	 * Finds the next index of the column selected by a mask.
+	 * 
+	 * @param mask
+	 *            positional mask
+	 * @param fromIndex
+	 *            index to start the search at
+	 * @param keepSet
+	 *            whether the set or the clear indices are selected
+	 * @return the next selected index, or the size of the column if there is
+	 *         none
+	 */
+	protected int nextSelected(BitSet mask, int fromIndex, boolean keepSet) {
+		int next = keepSet ? mask.nextSetBit(fromIndex) : mask.nextClearBit(fromIndex);
+		return next < 0 || next > size() ? size() : next;
+	}
+
+	/**
+	 * Copies the elements selected by a mask into a new heap column.
+	 * 
+	 * @param mask
+	 *            positional mask
+	 * @param keepSet
+	 *            whether the set or the clear indices are selected
+	 * @return a new column holding the selected elements in their order
+	 */
+	@SuppressWarnings("unchecked")
+	protected NumericColumn<N> copySelected(BitSet mask, boolean keepSet) {
+		NumericColumn<N> result = NumericColumn.create((Class<N>) getType().getTypeClass(),
+				countSelected(mask, keepSet));
+		for (int i = nextSelected(mask, 0, keepSet); i < size(); i = nextSelected(mask, i + 1, keepSet)) {
+			if (isIntegral()) {
+				result.add(getLong(i));
+			} else {
+				result.add(getDouble(i));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Computes the new capacity for a growing column.
+	 * 
+	 * @param currentCapacity
+	 *            current capacity
+	 * @param minCapacity
+	 *            required capacity
+	 * @return new capacity
+	 */
+	protected static int grow(int currentCapacity, int minCapacity) {
+		int newCapacity = currentCapacity + (currentCapacity >> 1) + 1;
+		if (newCapacity < minCapacity) {
+			newCapacity = minCapacity;
+		}
+		if (newCapacity < 0) {
+			newCapacity = Integer.MAX_VALUE - 8;
+		}
+		return newCapacity;
+	}
+}
@@ -0,0 +1,425 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streaming CSV writer for numeric pairs. Keys and values are formatted
+ * into a reusable byte buffer; numbers are not quoted. Full buffers are
+ * written (and optionally gzipped) by a background thread while the next
+ * buffer is filled, so formatting, compression and I/O overlap with the
+ * computation producing the pairs.
+ * 
+ * The output uses the separator and the header line of
+ * {@link LpeNumericUtils#exportAsCSV(NumericPairList, String, String, String)}.
+ * Numbers are formatted without creating a string: integral numbers are
+ * written in full, floating point numbers in the notation of
+ * {@link Double#toString(double)} (or {@link Float#toString(float)} for
+ * float values) with the fewest digits identifying the value, or with a
+ * fixed number of fraction digits like
+ * {@link LpeNumericUtils#dFormat(double, int)} (see {@link LpeFormatUtils}).
+ * Only floating point numbers which are not finite or whose magnitude is
+ * out of the supported range are written via a temporary string. Other
+ * number types (e.g. <code>BigDecimal</code>) are written in full using
+ * their <code>toString()</code> representation.
+ * 
+ * Instances are not thread-safe.
+ */
+public class NumericPairCSVWriter implements Closeable {
+
+	public static final char SEPARATOR = ';';
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int MAX_CELL_LENGTH = 64;
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final long[] POWERS_OF_TEN = new long[19];
+
+	static {
+		POWERS_OF_TEN[0] = 1;
+		for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+			POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+		}
+	}
+
+	private final int fractionDigits;
+	private final WritableByteChannel channel;
+	private final OutputStream gzipStream;
+	private final ExecutorService ioExecutor;
+
+	private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+	private ByteBuffer spareBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+	private Future<?> pendingWrite;
+	private boolean closed = false;
+
+	/**
+	 * Creates a writer for an uncompressed file, writing floating point
+	 * numbers like {@link Double#toString(double)}.
+	 * 
+	 * @param file
+	 *            target CSV file
+	 * @param keyColumnName
+	 *            name of the key column
+	 * @param valueColumnName
+	 *            name of the value column
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	public NumericPairCSVWriter(String file, String keyColumnName, String valueColumnName) throws IOException {
+		this(file, keyColumnName, valueColumnName, false, -1);
+	}
+
+	/**
+	 * Creates a writer.
+	 * 
+	 * @param file
+	 *            target CSV file
+	 * @param keyColumnName
+	 *            name of the key column
+	 * @param valueColumnName
+	 *            name of the value column
+	 * @param gzip
+	 *            whether to compress the file with gzip
+	 * @param fractionDigits
+	 *            number of digits after the decimal point for floating point
+	 *            numbers (at most 18), or a negative number to write them
+	 *            like {@link Double#toString(double)}
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	public NumericPairCSVWriter(String file, String keyColumnName, String valueColumnName, boolean gzip,
+			int fractionDigits) throws IOException {
+		if (fractionDigits > LpeFormatUtils.MAX_FRACTION_DIGITS) {
+			throw new IllegalArgumentException("At most " + LpeFormatUtils.MAX_FRACTION_DIGITS
+					+ " fraction digits are supported!");
+		}
+		this.fractionDigits = fractionDigits;
+
+		FileChannel fileChannel = new FileOutputStream(new File(file)).getChannel();
+		if (gzip) {
+			gzipStream = new GZIPOutputStream(Channels.newOutputStream(fileChannel), BUFFER_SIZE);
+			channel = Channels.newChannel(gzipStream);
+		} else {
+			gzipStream = null;
+			channel = fileChannel;
+		}
+		ioExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "CSV writer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+
+		writeText(keyColumnName);
+		buffer.put((byte) SEPARATOR);
+		writeText(valueColumnName);
+		buffer.put((byte) '\n');
+	}
+
+	/**
+	 * Writes a line.
+	 * 
+	 * @param key
+	 *            key
+	 * @param value
+	 *            value
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	public void write(double key, double value) throws IOException {
+		ensureCapacity();
+		putDouble(key, false);
+		buffer.put((byte) SEPARATOR);
+		putDouble(value, false);
+		buffer.put((byte) '\n');
+	}
+
+	/**
+	 * Writes a line.
+	 * 
+	 * @param key
+	 *            key
+	 * @param value
+	 *            value
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	public void write(long key, double value) throws IOException {
+		ensureCapacity();
+		putLong(key);
+		buffer.put((byte) SEPARATOR);
+		putDouble(value, false);
+		buffer.put((byte) '\n');
+	}
+
+	/**
+	 * Writes a line.
+	 * 
+	 * @param key
+	 *            key
+	 * @param value
+	 *            value
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	public void write(long key, long value) throws IOException {
+		ensureCapacity();
+		putLong(key);
+		buffer.put((byte) SEPARATOR);
+		putLong(value);
+		buffer.put((byte) '\n');
+	}
+
+	/**
+	 * Writes a line.
+	 * 
+	 * @param pair
+	 *            pair to write
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	public void write(NumericPair<? extends Number, ? extends Number> pair) throws IOException {
+		ensureCapacity();
+		putNumber(pair.getKey());
+		buffer.put((byte) SEPARATOR);
+		putNumber(pair.getValue());
+		buffer.put((byte) '\n');
+	}
+
+	/**
+	 * Writes all pairs provided by the iterator. The pairs may be produced
+	 * lazily by the iterator.
+	 * 
+	 * @param pairs
+	 *            pairs to write
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	public void writeAll(Iterator<? extends NumericPair<? extends Number, ? extends Number>> pairs)
+			throws IOException {
+		while (pairs.hasNext()) {
+			write(pairs.next());
+		}
+	}
+
+	/**
+	 * Writes all pairs of the list. Columnar lists are written from their
+	 * primitive columns without creating pairs.
+	 * 
+	 * @param list
+	 *            pairs to write
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	public void writeAll(NumericPairList<? extends Number, ? extends Number> list) throws IOException {
+		if (!(list instanceof ColumnarNumericPairList)) {
+			writeAll(list.iterator());
+			return;
+		}
+		ColumnarNumericPairList<? extends Number, ? extends Number> columnar = (ColumnarNumericPairList<?, ?>) list;
+		NumericColumn<?> keys = columnar.getKeyColumn();
+		NumericColumn<?> values = columnar.getValueColumn();
+		boolean floatKeys = keys.getType() == LpeSupportedTypes.Float;
+		boolean floatValues = values.getType() == LpeSupportedTypes.Float;
+		for (int i = 0; i < keys.size(); i++) {
+			ensureCapacity();
+			if (keys.isIntegral()) {
+				putLong(keys.getLong(i));
+			} else {
+				putDouble(keys.getDouble(i), floatKeys);
+			}
+			buffer.put((byte) SEPARATOR);
+			if (values.isIntegral()) {
+				putLong(values.getLong(i));
+			} else {
+				putDouble(values.getDouble(i), floatValues);
+			}
+			buffer.put((byte) '\n');
+		}
+	}
+
+	/**
+	 * Writes all buffered lines to the file.
+	 * 
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	public void flush() throws IOException {
+		submitBuffer();
+		awaitPendingWrite();
+		if (gzipStream != null) {
+			gzipStream.flush();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+		closed = true;
+		try {
+			submitBuffer();
+			awaitPendingWrite();
+		} finally {
+			ioExecutor.shutdown();
+			channel.close();
+		}
+	}
+
+	private void ensureCapacity() throws IOException {
+		if (buffer.remaining() < 2 * MAX_CELL_LENGTH + 2) {
+			submitBuffer();
+		}
+	}
+
+	/**
+	 * Hands the current buffer to the background thread and continues with
+	 * the spare buffer once its previous write is complete.
+	 */
+	private void submitBuffer() throws IOException {
+		if (buffer.position() == 0) {
+			return;
+		}
+		awaitPendingWrite();
+		final ByteBuffer full = buffer;
+		full.flip();
+		buffer = spareBuffer;
+		spareBuffer = full;
+		pendingWrite = ioExecutor.submit(new Callable<Void>() {
+			@Override
+			public Void call() throws IOException {
+				while (full.hasRemaining()) {
+					channel.write(full);
+				}
+				full.clear();
+				return null;
+			}
+		});
+	}
+
+	private void awaitPendingWrite() throws IOException {
+		if (pendingWrite == null) {
+			return;
+		}
+		try {
+			pendingWrite.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while writing CSV file!");
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new IOException(e.getCause());
+		} finally {
+			pendingWrite = null;
+		}
+	}
+
+	private void writeText(String text) throws IOException {
+		boolean quote = text.indexOf(SEPARATOR) >= 0 || text.indexOf('"') >= 0 || text.indexOf('\n') >= 0;
+		String escaped = quote ? "\"" + text.replace("\"", "\"\"") + "\"" : text;
+		byte[] bytes = escaped.getBytes(UTF_8);
+		int offset = 0;
+		while (offset < bytes.length) {
+			if (!buffer.hasRemaining()) {
+				submitBuffer();
+			}
+			int length = Math.min(buffer.remaining(), bytes.length - offset);
+			buffer.put(bytes, offset, length);
+			offset += length;
+		}
+	}
+
+	private void putNumber(Number number) throws IOException {
+		if (number instanceof Double) {
+			putDouble(number.doubleValue(), false);
+		} else if (number instanceof Float) {
+			putDouble(number.doubleValue(), true);
+		} else if (number instanceof Long || number instanceof Integer || number instanceof Short
+				|| number instanceof Byte) {
+			putLong(number.longValue());
+		} else {
+			// arbitrary length, e.g. BigDecimal
+			writeText(number.toString());
+			ensureCapacity();
+		}
+	}
+
+	private void putDouble(double value, boolean isFloat) {
+		if (fractionDigits >= 0) {
+			if (!LpeFormatUtils.appendFixed(buffer, value, fractionDigits)) {
+				putAscii(Double.toString(value));
+			}
+		} else if (isFloat) {
+			if (!LpeFormatUtils.appendShortest(buffer, (float) value)) {
+				putAscii(Float.toString((float) value));
+			}
+		} else if (!LpeFormatUtils.appendShortest(buffer, value)) {
+			putAscii(Double.toString(value));
+		}
+	}
+
+	private void putLong(long value) {
+		if (value == Long.MIN_VALUE) {
+			putAscii(Long.toString(value));
+			return;
+		}
+		long v = value;
+		if (v < 0) {
+			buffer.put((byte) '-');
+			v = -v;
+		}
+		int digits = 1;
+		while (digits < POWERS_OF_TEN.length && v >= POWERS_OF_TEN[digits]) {
+			digits++;
+		}
+		for (int d = digits - 1; d >= 0; d--) {
+			buffer.put((byte) ('0' + (v / POWERS_OF_TEN[d]) % 10));
+		}
+	}
+
+	/**
+	 * Puts a short ASCII string, e.g. a formatted double, which fits into the
+	 * capacity reserved by {@link #ensureCapacity()}.
+	 */
+	private void putAscii(String text) {
+		for (int i = 0; i < text.length(); i++) {
+			buffer.put((byte) text.charAt(i));
+		}
+	}
+}
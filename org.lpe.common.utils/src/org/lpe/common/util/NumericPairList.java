@@ -16,6 +16,7 @@
 package org.lpe.common.util;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.Iterator;
@@ -33,6 +34,7 @@ import java.util.List;
  */
 public class NumericPairList<T extends Number, S extends Number> implements Iterable<NumericPair<T, S>> {
 	private final List<NumericPair<T, S>> pairs;
+	private int sortedPrefix = 0;
 
 	/**
 	 * Construcotr.
@@ -41,6 +43,17 @@ public class NumericPairList<T extends Number, S extends Number> implements Iter
 		pairs = new ArrayList<>();
 	}
 
+	/**
+	 * Constructor for subclasses providing their own storage.
+	 * 
+	 * @param pairs
+	 *            backing list of pairs, may be <code>null</code> if the
+	 *            subclass overrides {@link #getPairs()}
+	 */
+	protected NumericPairList(List<NumericPair<T, S>> pairs) {
+		this.pairs = pairs;
+	}
+
 	/**
 	 * Adds a pair.
 	 * 
@@ -188,6 +201,34 @@ public class NumericPairList<T extends Number, S extends Number> implements Iter
 		return values;
 	}
 
+	/**
+	 * 
+	 * @return array of keys as long
+	 */
+	public long[] getKeyArrayAsLong() {
+		long[] keys = new long[getPairs().size()];
+		int i = 0;
+		for (NumericPair<T, S> np : getPairs()) {
+			keys[i] = np.getKey().longValue();
+			i++;
+		}
+		return keys;
+	}
+
+	/**
+	 * 
+	 * @return array of values as long
+	 */
+	public long[] getValueArrayAsLong() {
+		long[] values = new long[getPairs().size()];
+		int i = 0;
+		for (NumericPair<T, S> np : getPairs()) {
+			values[i] = np.getValue().longValue();
+			i++;
+		}
+		return values;
+	}
+
 	/**
 	 * @param scaleFactor
 	 *            scale factor
@@ -339,6 +380,91 @@ public class NumericPairList<T extends Number, S extends Number> implements Iter
 		return getPairs().get(index);
 	}
 
+	/**
+	 * 
+	 * @param index
+	 *            index to get
+	 * @return key at that index as double
+	 */
+	public double getKeyAsDouble(int index) {
+		return getPairs().get(index).getKey().doubleValue();
+	}
+
+	/**
+	 * 
+	 * @param index
+	 *            index to get
+	 * @return value at that index as double
+	 */
+	public double getValueAsDouble(int index) {
+		return getPairs().get(index).getValue().doubleValue();
+	}
+
+	/**
+	 * Returns the pairs at the indices that are set in the given mask, e.g.
+	 * the outliers marked by
+	 * {@link org.lpe.common.util.stats.AbstractOutlierDetector#markOutliers(double[])}.
+	 * 
+	 * @param mask
+	 *            positional mask aligned with the indices of this list
+	 * @return a new list holding the selected pairs in their order
+	 */
+	public NumericPairList<T, S> select(BitSet mask) {
+		return filter(mask, true);
+	}
+
+	/**
+	 * Returns the pairs at the indices that are not set in the given mask,
+	 * e.g. all pairs except the outliers marked by
+	 * {@link org.lpe.common.util.stats.AbstractOutlierDetector#markOutliers(double[])}.
+	 * 
+	 * @param mask
+	 *            positional mask aligned with the indices of this list
+	 * @return a new list holding the remaining pairs in their order
+	 */
+	public NumericPairList<T, S> exclude(BitSet mask) {
+		return filter(mask, false);
+	}
+
+	/**
+	 * Reduces the list to the given number of pairs with the
+	 * Largest-Triangle-Three-Buckets algorithm, which preserves the visual
+	 * shape of the series. The list has to be sorted by key.
+	 * 
+	 * @param maxPoints
+	 *            number of pairs to keep, at least 3
+	 * @return a new list holding the selected pairs in their order
+	 */
+	public NumericPairList<T, S> downsampleLTTB(int maxPoints) {
+		return Downsampling.lttb(this, maxPoints);
+	}
+
+	/**
+	 * Reduces the list to the first and the last pair and the pairs with the
+	 * minimum and the maximum value of each bucket. The list has to be sorted
+	 * by key.
+	 * 
+	 * @param buckets
+	 *            number of buckets
+	 * @return a new list holding at most <code>2 * buckets + 2</code> pairs in
+	 *         their order
+	 */
+	public NumericPairList<T, S> downsampleMinMax(int buckets) {
+		return Downsampling.minMax(this, buckets);
+	}
+
+	private NumericPairList<T, S> filter(BitSet mask, boolean keepSet) {
+		NumericPairList<T, S> result = new NumericPairList<>();
+		List<NumericPair<T, S>> source = getPairs();
+		for (int i = 0; i < source.size(); i++) {
+			if (mask.get(i) == keepSet) {
+				NumericPair<T, S> pair = source.get(i);
+				result.add(new NumericPair<T, S>(pair.getKey(), pair.getValue()));
+			}
+		}
+		return result;
+	}
+
 	/**
 	 * sorts the list.
 	 * 
@@ -346,6 +472,7 @@ public class NumericPairList<T extends Number, S extends Number> implements Iter
 	 */
 	public List<NumericPair<T, S>> sort() {
 		Collections.sort(getPairs());
+		setSortedByKey(true);
 		return getPairs();
 	}
 
@@ -365,9 +492,158 @@ public class NumericPairList<T extends Number, S extends Number> implements Iter
 				return ((Comparable) o1.getValue()).compareTo(o2.getValue());
 			}
 		});
+		setSortedByKey(false);
 		return getPairs();
 	}
 
+	/**
+	 * Checks whether the keys are in ascending order. Pairs appended since
+	 * the last check are examined incrementally, so that repeated checks on a
+	 * growing list cost amortized <code>O(1)</code> per pair. Modifications
+	 * other than appending pairs or the sort methods of this class (e.g.
+	 * replacing pairs through {@link #getPairs()}) are not tracked.
+	 * 
+	 * @return true if the list is sorted by key
+	 */
+	public boolean isSortedByKey() {
+		int n = size();
+		if (n < sortedPrefix) {
+			sortedPrefix = 0;
+		}
+		for (int i = Math.max(sortedPrefix, 1); i < n; i++) {
+			if (compareKeys(i - 1, i) > 0) {
+				sortedPrefix = i;
+				return false;
+			}
+		}
+		sortedPrefix = n;
+		return true;
+	}
+
+	/**
+	 * Finds the first pair whose key is not less than the given key by
+	 * binary search. The list has to be sorted by key.
+	 * 
+	 * @param key
+	 *            key to search for
+	 * @return index of the first pair with a key greater than or equal to the
+	 *         given key, or the size of the list if there is none
+	 */
+	public int indexOfKey(double key) {
+		checkSortedByKey();
+		int low = 0;
+		int high = size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (getKeyAsDouble(mid) < key) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Returns a read-only view on the pairs with keys in the range
+	 * <code>[fromKey, toKey)</code>, found by binary search without copying
+	 * the pairs. The list has to be sorted by key. The view is only valid
+	 * until the next structural modification of this list (e.g. adding a
+	 * pair); afterwards it may fail or show other pairs. Copy the view to keep
+	 * it.
+	 * 
+	 * @param fromKey
+	 *            lower bound of the keys (inclusive)
+	 * @param toKey
+	 *            upper bound of the keys (exclusive)
+	 * @return a read-only view on the pairs in the key range
+	 */
+	public NumericPairList<T, S> subList(double fromKey, double toKey) {
+		int from = indexOfKey(fromKey);
+		int to = Math.max(from, indexOfKey(toKey));
+		NumericPairList<T, S> view = slice(from, to);
+		view.setSortedByKey(true);
+		return view;
+	}
+
+	/**
+	 * Merges this list and another list, both sorted by key, in linear time.
+	 * Pairs with equal keys are taken from this list first.
+	 * 
+	 * @param other
+	 *            list to merge with
+	 * @return a new list sorted by key holding the pairs of both lists
+	 */
+	public NumericPairList<T, S> merge(NumericPairList<T, S> other) {
+		checkSortedByKey();
+		other.checkSortedByKey();
+		int n = size();
+		int m = other.size();
+		NumericPairList<T, S> result = new NumericPairList<>(new ArrayList<NumericPair<T, S>>(n + m));
+		int i = 0;
+		int j = 0;
+		while (i < n || j < m) {
+			NumericPair<T, S> pair;
+			if (j >= m || (i < n && getKeyAsDouble(i) <= other.getKeyAsDouble(j))) {
+				pair = get(i++);
+			} else {
+				pair = other.get(j++);
+			}
+			result.add(new NumericPair<T, S>(pair.getKey(), pair.getValue()));
+		}
+		result.setSortedByKey(true);
+		return result;
+	}
+
+	/**
+	 * Returns a read-only view on the pairs <code>[from, to)</code>.
+	 * 
+	 * @param from
+	 *            first index of the view (inclusive)
+	 * @param to
+	 *            last index of the view (exclusive)
+	 * @return read-only view on the range
+	 */
+	protected NumericPairList<T, S> slice(int from, int to) {
+		return new NumericPairList<>(Collections.unmodifiableList(getPairs().subList(from, to)));
+	}
+
+	/**
+	 * Compares the keys at two indices.
+	 * 
+	 * @param i
+	 *            first index
+	 * @param j
+	 *            second index
+	 * @return a negative value, zero or a positive value if the first key is
+	 *         less than, equal to or greater than the second key
+	 */
+	protected int compareKeys(int i, int j) {
+		double a = getKeyAsDouble(i);
+		double b = getKeyAsDouble(j);
+		return a < b ? -1 : (a > b ? 1 : 0);
+	}
+
+	/**
+	 * Records whether the list is known to be sorted by key. Lists that are
+	 * not known to be sorted are checked again by {@link #isSortedByKey()}.
+	 * 
+	 * @param sorted
+	 *            true if the list is sorted by key
+	 */
+	protected void setSortedByKey(boolean sorted) {
+		sortedPrefix = sorted ? size() : 0;
+	}
+
+	/**
+	 * Throws an exception if the list is not sorted by key.
+	 */
+	protected void checkSortedByKey() {
+		if (!isSortedByKey()) {
+			throw new IllegalStateException("List is not sorted by key!");
+		}
+	}
+
 	/**
 	 * @return the pairs
 	 */
@@ -0,0 +1,335 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Utility class for storing numeric pair lists in a compact binary column
+ * format and for memory-mapping such files as read-only lists.
+ * 
+ * The file consists of a header of {@value #HEADER_SIZE} bytes followed by
+ * the key block and the value block; all numbers are little-endian:
+ * 
+ * <pre>
+ * int  magic ("LPES")   byte version     byte key type
+ * byte value type       byte flags       long number of pairs
+ * int  block shift      (12 reserved bytes)
+ * </pre>
+ * 
+ * Floating point columns are stored as doubles, integral columns as longs.
+ * With delta encoding, integral keys are stored as one long base per block
+ * of 2^{@value #BLOCK_SHIFT} keys followed by one int offset to the base of
+ * its block per key. This halves the size of the key block for timestamps
+ * while keeping constant time random access. All blocks start at multiples
+ * of eight bytes.
+ */
+public final class NumericSeriesFile {
+
+	public static final int MAGIC = 0x5345504C;
+	public static final byte VERSION = 1;
+	public static final int HEADER_SIZE = 32;
+	public static final int BLOCK_SHIFT = 10;
+
+	private static final byte FLAG_DELTA_KEYS = 1;
+	private static final int BUFFER_SIZE = 64 * 1024;
+	private static final int ELEMENT_SIZE = 8;
+	private static final int OFFSET_SIZE = 4;
+
+	/**
+	 * private constructor due to utility class.
+	 */
+	private NumericSeriesFile() {
+	}
+
+	/**
+	 * Writes a list into a binary column file.
+	 * 
+	 * @param list
+	 *            list to write
+	 * @param keyType
+	 *            key type
+	 * @param valueType
+	 *            value type
+	 * @param file
+	 *            target file
+	 * @param deltaKeys
+	 *            whether to delta encode integral keys; ignored for
+	 *            floating point keys and if the keys of a block spread over
+	 *            more than the int range
+	 * @param <T>
+	 *            key type
+	 * @param <S>
+	 *            value type
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public static <T extends Number, S extends Number> void write(NumericPairList<T, S> list, Class<T> keyType,
+			Class<S> valueType, String file, boolean deltaKeys) throws IOException {
+		LpeSupportedTypes kType = checkType(keyType);
+		LpeSupportedTypes vType = checkType(valueType);
+		boolean integralKeys = isIntegral(kType);
+		boolean integralValues = isIntegral(vType);
+		int n = list.size();
+		boolean delta = deltaKeys && integralKeys && fitsOffsets(list, n);
+
+		FileOutputStream out = new FileOutputStream(new File(file));
+		try {
+			FileChannel channel = out.getChannel();
+			ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(MAGIC);
+			buffer.put(VERSION);
+			buffer.put(typeCode(kType));
+			buffer.put(typeCode(vType));
+			buffer.put(delta ? FLAG_DELTA_KEYS : 0);
+			buffer.putLong(n);
+			buffer.putInt(BLOCK_SHIFT);
+			while (buffer.position() < HEADER_SIZE) {
+				buffer.put((byte) 0);
+			}
+
+			if (delta) {
+				for (int i = 0; i < n; i += 1 << BLOCK_SHIFT) {
+					buffer = ensureRemaining(channel, buffer);
+					buffer.putLong(getLong(list, i, true));
+				}
+				long base = 0;
+				for (int i = 0; i < n; i++) {
+					if ((i & ((1 << BLOCK_SHIFT) - 1)) == 0) {
+						base = getLong(list, i, true);
+					}
+					buffer = ensureRemaining(channel, buffer);
+					buffer.putInt((int) (getLong(list, i, true) - base));
+				}
+				if ((n & 1) == 1) {
+					buffer = ensureRemaining(channel, buffer);
+					buffer.putInt(0);
+				}
+			} else {
+				writeColumn(channel, buffer, list, n, true, integralKeys);
+			}
+			writeColumn(channel, buffer, list, n, false, integralValues);
+
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Maps a binary column file as read-only list. Opening the file does not
+	 * read the data; the pages are loaded by the operating system on access.
+	 * The mapping remains valid after this method returns.
+	 * 
+	 * @param file
+	 *            file to map
+	 * @param keyType
+	 *            expected key type
+	 * @param valueType
+	 *            expected value type
+	 * @param <T>
+	 *            key type
+	 * @param <S>
+	 *            value type
+	 * @return read-only list on top of the mapped file; adding or sorting
+	 *         throws an {@link UnsupportedOperationException}
+	 * @throws IOException
+	 *             if the file cannot be read or is not a valid column file
+	 */
+	public static <T extends Number, S extends Number> ColumnarNumericPairList<T, S> map(String file,
+			Class<T> keyType, Class<S> valueType) throws IOException {
+		LpeSupportedTypes kType = checkType(keyType);
+		LpeSupportedTypes vType = checkType(valueType);
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+			while (header.hasRemaining()) {
+				if (channel.read(header) < 0) {
+					throw new IOException(file + " is not a numeric series file!");
+				}
+			}
+			header.flip();
+			if (header.getInt() != MAGIC) {
+				throw new IOException(file + " is not a numeric series file!");
+			}
+			byte version = header.get();
+			if (version != VERSION) {
+				throw new IOException("Unsupported version " + version + " of " + file + "!");
+			}
+			LpeSupportedTypes fileKeyType = typeOf(header.get());
+			LpeSupportedTypes fileValueType = typeOf(header.get());
+			if (fileKeyType != kType || fileValueType != vType) {
+				throw new IllegalArgumentException(file + " holds " + fileKeyType + "/" + fileValueType
+						+ " pairs, not " + kType + "/" + vType + "!");
+			}
+			boolean delta = (header.get() & FLAG_DELTA_KEYS) != 0;
+			long count = header.getLong();
+			int blockShift = header.getInt();
+			if (count < 0 || count > Integer.MAX_VALUE) {
+				throw new IOException("Invalid number of pairs in " + file + ": " + count);
+			}
+			int n = (int) count;
+
+			long position = HEADER_SIZE;
+			NumericColumn<T> keys;
+			if (delta) {
+				long blocks = ((long) n + (1 << blockShift) - 1) >> blockShift;
+				long offsetsPosition = position + blocks * ELEMENT_SIZE;
+				keys = MappedNumericColumn.mapOffsetLongs(kType, channel, position, offsetsPosition, n, blockShift);
+				position = align(offsetsPosition + (long) n * OFFSET_SIZE);
+			} else {
+				keys = mapColumn(kType, channel, position, n);
+				position += (long) n * ELEMENT_SIZE;
+			}
+			NumericColumn<S> values = mapColumn(vType, channel, position, n);
+			position += (long) n * ELEMENT_SIZE;
+			if (channel.size() < position) {
+				throw new IOException(file + " is truncated!");
+			}
+			return new ColumnarNumericPairList<>(keys, values);
+		} finally {
+			raf.close();
+		}
+	}
+
+	private static <N extends Number> NumericColumn<N> mapColumn(LpeSupportedTypes type, FileChannel channel,
+			long position, int n) throws IOException {
+		if (channel.size() < position + (long) n * ELEMENT_SIZE) {
+			throw new IOException("Numeric series file is truncated!");
+		}
+		if (isIntegral(type)) {
+			return MappedNumericColumn.mapLongs(type, channel, position, n);
+		}
+		return MappedNumericColumn.mapDoubles(type, channel, position, n);
+	}
+
+	private static void writeColumn(FileChannel channel, ByteBuffer buffer, NumericPairList<?, ?> list, int n,
+			boolean key, boolean integral) throws IOException {
+		for (int i = 0; i < n; i++) {
+			ensureRemaining(channel, buffer);
+			if (integral) {
+				buffer.putLong(getLong(list, i, key));
+			} else {
+				buffer.putDouble(key ? list.getKeyAsDouble(i) : list.getValueAsDouble(i));
+			}
+		}
+	}
+
+	/**
+	 * Checks whether all keys of each block differ from the first key of
+	 * the block by a value in the int range.
+	 */
+	private static boolean fitsOffsets(NumericPairList<?, ?> list, int n) {
+		long base = 0;
+		for (int i = 0; i < n; i++) {
+			long key = getLong(list, i, true);
+			if ((i & ((1 << BLOCK_SHIFT) - 1)) == 0) {
+				base = key;
+			}
+			long offset = key - base;
+			boolean overflow = ((key ^ base) & (key ^ offset)) < 0;
+			if (overflow || offset < Integer.MIN_VALUE || offset > Integer.MAX_VALUE) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static long getLong(NumericPairList<?, ?> list, int index, boolean key) {
+		if (list instanceof ColumnarNumericPairList) {
+			ColumnarNumericPairList<?, ?> columnar = (ColumnarNumericPairList<?, ?>) list;
+			return key ? columnar.getKeyColumn().getLong(index) : columnar.getValueColumn().getLong(index);
+		}
+		NumericPair<?, ?> pair = list.get(index);
+		return key ? pair.getKey().longValue() : pair.getValue().longValue();
+	}
+
+	private static ByteBuffer ensureRemaining(FileChannel channel, ByteBuffer buffer) throws IOException {
+		if (buffer.remaining() < ELEMENT_SIZE) {
+			buffer.flip();
+			while (buffer.hasRemaining()) {
+				channel.write(buffer);
+			}
+			buffer.clear();
+		}
+		return buffer;
+	}
+
+	private static long align(long position) {
+		return (position + ELEMENT_SIZE - 1) / ELEMENT_SIZE * ELEMENT_SIZE;
+	}
+
+	private static LpeSupportedTypes checkType(Class<?> numberType) {
+		LpeSupportedTypes type = LpeSupportedTypes.get(numberType);
+		if (type == null || typeCode(type) == 0) {
+			throw new IllegalArgumentException(numberType + " is not supported as column type!");
+		}
+		return type;
+	}
+
+	private static boolean isIntegral(LpeSupportedTypes type) {
+		return type != LpeSupportedTypes.Double && type != LpeSupportedTypes.Float;
+	}
+
+	private static byte typeCode(LpeSupportedTypes type) {
+		switch (type) {
+		case Double:
+			return 1;
+		case Float:
+			return 2;
+		case Long:
+			return 3;
+		case Integer:
+			return 4;
+		case Short:
+			return 5;
+		case Byte:
+			return 6;
+		default:
+			return 0;
+		}
+	}
+
+	private static LpeSupportedTypes typeOf(byte code) throws IOException {
+		switch (code) {
+		case 1:
+			return LpeSupportedTypes.Double;
+		case 2:
+			return LpeSupportedTypes.Float;
+		case 3:
+			return LpeSupportedTypes.Long;
+		case 4:
+			return LpeSupportedTypes.Integer;
+		case 5:
+			return LpeSupportedTypes.Short;
+		case 6:
+			return LpeSupportedTypes.Byte;
+		default:
+			throw new IOException("Unknown column type " + code + "!");
+		}
+	}
+}
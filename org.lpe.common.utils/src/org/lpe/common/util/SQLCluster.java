@@ -0,0 +1,129 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A class of structurally equal SQL statements found by the
+ * {@link SQLStatementClusterer}. Statements that could be parsed are grouped
+ * by their structural fingerprint (see
+ * {@link LpeStringUtils#getSqlFingerprint(String)}), all others by their
+ * lexically normalized text.
+ */
+public class SQLCluster {
+
+	/**
+	 * Maximum number of example statements kept per cluster.
+	 */
+	public static final int MAX_EXEMPLARS = 3;
+
+	private final long fingerprint;
+	private final String normalizedStatement;
+	private final AtomicLong count = new AtomicLong();
+	private final List<String> exemplars = new ArrayList<>(MAX_EXEMPLARS);
+	private volatile boolean exemplarsComplete = false;
+
+	/**
+	 * Creates a cluster of parsed statements.
+	 * 
+	 * @param fingerprint
+	 *            structural fingerprint of the statements
+	 */
+	SQLCluster(long fingerprint) {
+		this.fingerprint = fingerprint;
+		this.normalizedStatement = null;
+	}
+
+	/**
+	 * Creates a cluster of statements that could not be parsed.
+	 * 
+	 * @param normalizedStatement
+	 *            lexically normalized text of the statements
+	 */
+	SQLCluster(String normalizedStatement) {
+		this.fingerprint = 0;
+		this.normalizedStatement = normalizedStatement;
+	}
+
+	/**
+	 * Counts a statement and keeps it as example if there are less than
+	 * {@value #MAX_EXEMPLARS} different examples.
+	 * 
+	 * @param sql
+	 *            statement belonging to the cluster
+	 */
+	void add(String sql) {
+		count.incrementAndGet();
+		if (!exemplarsComplete) {
+			synchronized (exemplars) {
+				if (exemplars.size() < MAX_EXEMPLARS && !exemplars.contains(sql)) {
+					exemplars.add(sql);
+					exemplarsComplete = exemplars.size() == MAX_EXEMPLARS;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return whether the statements of this cluster could be parsed
+	 */
+	public boolean isParsed() {
+		return normalizedStatement == null;
+	}
+
+	/**
+	 * @return structural fingerprint of the statements; only defined for
+	 *         parsed statements
+	 */
+	public long getFingerprint() {
+		return fingerprint;
+	}
+
+	/**
+	 * @return lexically normalized text of the statements, or
+	 *         <code>null</code> if the statements could be parsed
+	 */
+	public String getNormalizedStatement() {
+		return normalizedStatement;
+	}
+
+	/**
+	 * @return number of statements in this cluster
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * @return up to {@value #MAX_EXEMPLARS} different statements of this
+	 *         cluster in the order they have been seen
+	 */
+	public List<String> getExemplars() {
+		synchronized (exemplars) {
+			return new ArrayList<>(exemplars);
+		}
+	}
+
+	@Override
+	public String toString() {
+		synchronized (exemplars) {
+			return getCount() + " x " + (exemplars.isEmpty() ? normalizedStatement : exemplars.get(0));
+		}
+	}
+}
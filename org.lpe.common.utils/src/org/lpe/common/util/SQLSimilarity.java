@@ -15,6 +15,12 @@
  */
 package org.lpe.common.util;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.foundationdb.sql.StandardException;
 import com.foundationdb.sql.parser.ConstantNode;
 import com.foundationdb.sql.parser.QueryTreeNode;
@@ -28,11 +34,45 @@ import com.foundationdb.sql.parser.Visitor;
 /**
  * Utility class to decide if two given SQL statements are equal.
  * 
+ * Two statements are equal if their structural fingerprints are equal. The
+ * fingerprint is a hash over the parse tree that covers node types, result
+ * column and table names, but no constants. Thus, statements differing only
+ * in literals are equal. Fingerprints are cached per statement string in a
+ * bounded LRU cache and each thread reuses its own parser.
+ * 
  * @author Henning Schulz
  * 
  */
 public final class SQLSimilarity {
-	
+
+	/**
+	 * Maximum number of cached fingerprints.
+	 */
+	public static final int CACHE_SIZE = 16384;
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SQLSimilarity.class);
+
+	private static final int CACHE_SEGMENTS = 16;
+
+	private static final ThreadLocal<SQLParser> PARSER = new ThreadLocal<SQLParser>() {
+		@Override
+		protected SQLParser initialValue() {
+			return new SQLParser();
+		}
+	};
+
+	/**
+	 * The cache is split into segments by the hash of the statement to
+	 * reduce lock contention between threads.
+	 */
+	private static final FingerprintCache[] CACHE = new FingerprintCache[CACHE_SEGMENTS];
+
+	static {
+		for (int i = 0; i < CACHE_SEGMENTS; i++) {
+			CACHE[i] = new FingerprintCache(CACHE_SIZE / CACHE_SEGMENTS);
+		}
+	}
+
 	private SQLSimilarity() {
 	}
 
@@ -43,27 +83,102 @@ public final class SQLSimilarity {
 	 *            first SQL statement
 	 * @param sql2
 	 *            second SQL statement
-	 * @return if {@code sql1} and {@code sql2} are equal
+	 * @return if {@code sql1} and {@code sql2} are equal; statements that
+	 *         cannot be parsed are not equal to any statement
 	 */
 	protected static boolean areEqual(String sql1, String sql2) {
-		SQLParser parser = new SQLParser();
-		StatementNode stmt1 = null;
-		StatementNode stmt2 = null;
 		try {
-			stmt1 = parser.parseStatement(sql1);
-			stmt2 = parser.parseStatement(sql2);
-
-			SQLCompareVisitor vis1 = new SQLCompareVisitor();
-			SQLCompareVisitor vis2 = new SQLCompareVisitor();
-			stmt1.accept(vis1);
-			stmt2.accept(vis2);
-			return vis1.getHash() == vis2.getHash();
-		} catch (StandardException e) {
-			e.printStackTrace();
+			return fingerprint(sql1) == fingerprint(sql2);
+		} catch (IllegalArgumentException e) {
+			LOGGER.debug("Cannot compare SQL statements.", e);
 			return false;
 		}
 	}
 
+	/**
+	 * Returns the structural fingerprint of the given statement. Statements
+	 * are equal if and only if their fingerprints are equal.
+	 * 
+	 * @param sql
+	 *            SQL statement
+	 * @return the fingerprint of the statement
+	 * @throws IllegalArgumentException
+	 *             if the statement cannot be parsed
+	 */
+	public static long fingerprint(String sql) {
+		FingerprintCache segment = CACHE[(sql.hashCode() & Integer.MAX_VALUE) % CACHE_SEGMENTS];
+		Fingerprint fingerprint;
+		synchronized (segment) {
+			fingerprint = segment.get(sql);
+		}
+		if (fingerprint == null) {
+			fingerprint = computeFingerprint(sql);
+			synchronized (segment) {
+				segment.put(sql, fingerprint);
+			}
+		}
+		if (fingerprint.error != null) {
+			throw new IllegalArgumentException("Cannot parse SQL statement: " + fingerprint.error);
+		}
+		return fingerprint.value;
+	}
+
+	/**
+	 * Removes all cached fingerprints.
+	 */
+	public static void clearCache() {
+		for (FingerprintCache segment : CACHE) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	private static Fingerprint computeFingerprint(String sql) {
+		try {
+			StatementNode stmt = PARSER.get().parseStatement(sql);
+			SQLCompareVisitor visitor = new SQLCompareVisitor();
+			stmt.accept(visitor);
+			return new Fingerprint(visitor.getHash(), null);
+		} catch (StandardException e) {
+			LOGGER.debug("Cannot parse SQL statement {}", sql, e);
+			return new Fingerprint(0, e.getMessage());
+		}
+	}
+
+	/**
+	 * Fingerprint of a statement or the reason why it could not be parsed.
+	 */
+	private static final class Fingerprint {
+		private final long value;
+		private final String error;
+
+		private Fingerprint(long value, String error) {
+			this.value = value;
+			this.error = error;
+		}
+	}
+
+	/**
+	 * LRU cache segment; access has to be synchronized on the segment.
+	 */
+	private static final class FingerprintCache extends LinkedHashMap<String, Fingerprint> {
+		private static final long serialVersionUID = 1L;
+		private static final float LOAD_FACTOR = 0.75f;
+
+		private final int capacity;
+
+		private FingerprintCache(int capacity) {
+			super(capacity, LOAD_FACTOR, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, Fingerprint> eldest) {
+			return size() > capacity;
+		}
+	}
+
 	private static class SQLCompareVisitor implements Visitor {
 
 		private int depth = -1;
@@ -0,0 +1,322 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Groups a stream of SQL statements into clusters of structurally equal
+ * statements. Statements are parsed by a fixed number of worker threads and
+ * bucketed by their structural fingerprint (see
+ * {@link SQLSimilarity#fingerprint(String)}). Statements the parser cannot
+ * handle are not dropped but bucketed by a lexical normalization which
+ * replaces literals by <code>?</code>, collapses whitespace and ignores the
+ * case outside of quotes.
+ * 
+ * Submitted statements are buffered in a bounded queue; if the workers fall
+ * behind, the submitting thread processes the statement itself. Thus, memory
+ * does not grow with the length of the stream. The clusters can be inspected
+ * at any time, {@link #finish()} waits for all submitted statements.
+ */
+public class SQLStatementClusterer {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(SQLStatementClusterer.class);
+
+	private static final int QUEUE_CAPACITY_PER_THREAD = 256;
+
+	private static final AtomicInteger POOL_COUNT = new AtomicInteger();
+
+	private final ConcurrentMap<Long, SQLCluster> parsedClusters = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, SQLCluster> lexicalClusters = new ConcurrentHashMap<>();
+	private final ThreadPoolExecutor executor;
+	// held shared while a statement is submitted or run by the submitting
+	// thread, held exclusively to shut down the executor
+	private final ReadWriteLock submitLock = new ReentrantReadWriteLock();
+
+	/**
+	 * Creates a clusterer with one worker thread per available processor.
+	 */
+	public SQLStatementClusterer() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a clusterer.
+	 * 
+	 * @param numThreads
+	 *            number of worker threads parsing the statements
+	 */
+	public SQLStatementClusterer(int numThreads) {
+		if (numThreads < 1) {
+			throw new IllegalArgumentException("Number of threads must be positive!");
+		}
+		final String namePrefix = "SQLStatementClusterer-" + POOL_COUNT.incrementAndGet() + "-";
+		executor = new ThreadPoolExecutor(numThreads, numThreads, 0L, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(QUEUE_CAPACITY_PER_THREAD * numThreads), new ThreadFactory() {
+					private final AtomicInteger threadCount = new AtomicInteger();
+
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread thread = new Thread(r, namePrefix + threadCount.incrementAndGet());
+						thread.setDaemon(true);
+						return thread;
+					}
+				}, new ThreadPoolExecutor.CallerRunsPolicy());
+	}
+
+	/**
+	 * Submits a statement for clustering.
+	 * 
+	 * @param sql
+	 *            SQL statement
+	 * @throws IllegalStateException
+	 *             if {@link #finish()} has already been called
+	 */
+	public void add(final String sql) {
+		if (sql == null) {
+			throw new IllegalArgumentException("SQL statement must not be null!");
+		}
+		submitLock.readLock().lock();
+		try {
+			if (executor.isShutdown()) {
+				throw new IllegalStateException("Clusterer has already been finished!");
+			}
+			executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					cluster(sql);
+				}
+			});
+		} finally {
+			submitLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Submits all given statements for clustering.
+	 * 
+	 * @param statements
+	 *            SQL statements
+	 */
+	public void addAll(Iterable<String> statements) {
+		for (String sql : statements) {
+			add(sql);
+		}
+	}
+
+	/**
+	 * Waits until all submitted statements have been clustered and stops the
+	 * worker threads. No statements can be added afterwards.
+	 * 
+	 * @return all clusters ordered by descending number of statements
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public List<SQLCluster> finish() throws InterruptedException {
+		// waits for statements clustered by submitting threads, the executor
+		// only waits for its workers
+		submitLock.writeLock().lock();
+		try {
+			executor.shutdown();
+		} finally {
+			submitLock.writeLock().unlock();
+		}
+		while (!executor.awaitTermination(1, TimeUnit.SECONDS)) {
+			LOGGER.debug("Waiting for {} queued SQL statements.", executor.getQueue().size());
+		}
+		return getClusters();
+	}
+
+	/**
+	 * Returns the current clusters. While statements are processed, the
+	 * result reflects the statements clustered so far.
+	 * 
+	 * @return clusters ordered by descending number of statements
+	 */
+	public List<SQLCluster> getClusters() {
+		List<SQLCluster> clusters = new ArrayList<>(parsedClusters.size() + lexicalClusters.size());
+		clusters.addAll(parsedClusters.values());
+		clusters.addAll(lexicalClusters.values());
+		Collections.sort(clusters, new Comparator<SQLCluster>() {
+			@Override
+			public int compare(SQLCluster c1, SQLCluster c2) {
+				long n1 = c1.getCount();
+				long n2 = c2.getCount();
+				return n1 > n2 ? -1 : (n1 < n2 ? 1 : 0);
+			}
+		});
+		return clusters;
+	}
+
+	/**
+	 * Clusters a statement. Unexpected failures are logged, as a worker thread
+	 * would only pass them to the uncaught exception handler.
+	 */
+	private void cluster(String sql) {
+		try {
+			clusterStatement(sql);
+		} catch (RuntimeException e) {
+			LOGGER.error("Failed to cluster SQL statement {}", sql, e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Assigns a statement to its cluster; statements the parser rejects are
+	 * assigned by their lexical normalization.
+	 */
+	private void clusterStatement(String sql) {
+		SQLCluster cluster;
+		try {
+			Long fingerprint = SQLSimilarity.fingerprint(sql);
+			cluster = parsedClusters.get(fingerprint);
+			if (cluster == null) {
+				cluster = putIfAbsent(parsedClusters, fingerprint, new SQLCluster(fingerprint));
+			}
+		} catch (IllegalArgumentException e) {
+			String normalized = normalize(sql);
+			cluster = lexicalClusters.get(normalized);
+			if (cluster == null) {
+				cluster = putIfAbsent(lexicalClusters, normalized, new SQLCluster(normalized));
+			}
+		}
+		cluster.add(sql);
+	}
+
+	private static <K> SQLCluster putIfAbsent(ConcurrentMap<K, SQLCluster> map, K key, SQLCluster cluster) {
+		SQLCluster existing = map.putIfAbsent(key, cluster);
+		return existing != null ? existing : cluster;
+	}
+
+	/**
+	 * Normalizes a SQL statement lexically: string and numeric literals are
+	 * replaced by <code>?</code>, whitespace sequences are collapsed to a
+	 * single blank and all characters outside of quoted identifiers are
+	 * converted to upper case.
+	 * 
+	 * @param sql
+	 *            SQL statement
+	 * @return normalized statement
+	 */
+	public static String normalize(String sql) {
+		int length = sql.length();
+		StringBuilder builder = new StringBuilder(length);
+		boolean pendingBlank = false;
+		int i = 0;
+		while (i < length) {
+			char c = sql.charAt(i);
+			if (Character.isWhitespace(c)) {
+				pendingBlank = builder.length() > 0;
+				i++;
+				continue;
+			}
+			if (pendingBlank) {
+				builder.append(' ');
+				pendingBlank = false;
+			}
+			if (c == '\'') {
+				i = skipQuoted(sql, i, '\'');
+				builder.append('?');
+			} else if (c == '"' || c == '`') {
+				int end = skipQuoted(sql, i, c);
+				builder.append(sql, i, end);
+				i = end;
+			} else if (isNumberStart(sql, i) && !isIdentifierPart(builder)) {
+				i = skipNumber(sql, i);
+				builder.append('?');
+			} else {
+				builder.append(Character.toUpperCase(c));
+				i++;
+			}
+		}
+		return builder.toString();
+	}
+
+	/**
+	 * @return index after the quoted section starting at <code>start</code>;
+	 *         doubled quotes are part of the section
+	 */
+	private static int skipQuoted(String sql, int start, char quote) {
+		int i = start + 1;
+		while (i < sql.length()) {
+			if (sql.charAt(i) == quote) {
+				if (i + 1 < sql.length() && sql.charAt(i + 1) == quote) {
+					i += 2;
+					continue;
+				}
+				return i + 1;
+			}
+			i++;
+		}
+		return i;
+	}
+
+	private static boolean isNumberStart(String sql, int i) {
+		char c = sql.charAt(i);
+		return Character.isDigit(c) || (c == '.' && i + 1 < sql.length() && Character.isDigit(sql.charAt(i + 1)));
+	}
+
+	/**
+	 * @return whether the last normalized character continues an identifier,
+	 *         e.g. the digit in <code>T1</code>
+	 */
+	private static boolean isIdentifierPart(StringBuilder normalized) {
+		if (normalized.length() == 0) {
+			return false;
+		}
+		char last = normalized.charAt(normalized.length() - 1);
+		return Character.isLetterOrDigit(last) || last == '_' || last == '$';
+	}
+
+	/**
+	 * @return index after the numeric literal starting at <code>start</code>
+	 */
+	private static int skipNumber(String sql, int start) {
+		int length = sql.length();
+		int i = start;
+		while (i < length && (Character.isDigit(sql.charAt(i)) || sql.charAt(i) == '.')) {
+			i++;
+		}
+		if (i < length && (sql.charAt(i) == 'e' || sql.charAt(i) == 'E')) {
+			int j = i + 1;
+			if (j < length && (sql.charAt(j) == '+' || sql.charAt(j) == '-')) {
+				j++;
+			}
+			if (j < length && Character.isDigit(sql.charAt(j))) {
+				i = j;
+				while (i < length && Character.isDigit(sql.charAt(i))) {
+					i++;
+				}
+			}
+		}
+		return i;
+	}
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.util.BitSet;
+
+/**
+ * Read-only view on a contiguous range of another column.
+ * 
+ * @param <N>
+ *            number type of the column
+ */
+class SlicedNumericColumn<N extends Number> extends NumericColumn<N> {
+	private final NumericColumn<N> parent;
+	private final int offset;
+	private final int size;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param parent
+	 *            column to view
+	 * @param from
+	 *            first index of the view (inclusive)
+	 * @param to
+	 *            last index of the view (exclusive)
+	 */
+	SlicedNumericColumn(NumericColumn<N> parent, int from, int to) {
+		super(parent.getType());
+		this.parent = parent;
+		this.offset = from;
+		this.size = to - from;
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean isIntegral() {
+		return parent.isIntegral();
+	}
+
+	@Override
+	public double getDouble(int index) {
+		checkIndex(index);
+		return parent.getDouble(offset + index);
+	}
+
+	@Override
+	public long getLong(int index) {
+		checkIndex(index);
+		return parent.getLong(offset + index);
+	}
+
+	@Override
+	public void add(double value) {
+		throw new UnsupportedOperationException("Column slices are read-only!");
+	}
+
+	@Override
+	public void add(long value) {
+		throw new UnsupportedOperationException("Column slices are read-only!");
+	}
+
+	@Override
+	public void permute(int[] order) {
+		throw new UnsupportedOperationException("Column slices are read-only!");
+	}
+
+	@Override
+	public NumericColumn<N> slice(int from, int to) {
+		if (from < 0 || to > size || from > to) {
+			throw new IndexOutOfBoundsException("Range: [" + from + ", " + to + "), Size: " + size);
+		}
+		return new SlicedNumericColumn<>(parent, offset + from, offset + to);
+	}
+
+	/**
+	 * Copies the selected elements into a new heap column.
+	 */
+	@Override
+	public NumericColumn<N> filter(BitSet mask, boolean keepSet) {
+		return copySelected(mask, keepSet);
+	}
+
+	@Override
+	public DoubleBuffer asDoubleBuffer() {
+		DoubleBuffer buffer = parent.asDoubleBuffer();
+		buffer.position(offset);
+		buffer.limit(offset + size);
+		return buffer.slice();
+	}
+
+	@Override
+	public LongBuffer asLongBuffer() {
+		LongBuffer buffer = parent.asLongBuffer();
+		buffer.position(offset);
+		buffer.limit(offset + size);
+		return buffer.slice();
+	}
+}
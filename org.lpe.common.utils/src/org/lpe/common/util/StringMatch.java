@@ -0,0 +1,68 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+/**
+ * A candidate string matched against a query by its Jaro-Winkler distance.
+ */
+public class StringMatch {
+
+	private final int index;
+	private final String candidate;
+	private final double distance;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param index
+	 *            index of the candidate in the list of candidates
+	 * @param candidate
+	 *            the candidate string
+	 * @param distance
+	 *            Jaro-Winkler distance between query and candidate
+	 */
+	public StringMatch(int index, String candidate, double distance) {
+		this.index = index;
+		this.candidate = candidate;
+		this.distance = distance;
+	}
+
+	/**
+	 * @return index of the candidate in the list of candidates
+	 */
+	public int getIndex() {
+		return index;
+	}
+
+	/**
+	 * @return the candidate string
+	 */
+	public String getCandidate() {
+		return candidate;
+	}
+
+	/**
+	 * @return Jaro-Winkler distance between query and candidate
+	 */
+	public double getDistance() {
+		return distance;
+	}
+
+	@Override
+	public String toString() {
+		return candidate + " (" + distance + ")";
+	}
+}
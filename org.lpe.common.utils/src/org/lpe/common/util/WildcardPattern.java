@@ -0,0 +1,207 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+/**
+ * A pattern which may contain <code>*</code> wildcards matching arbitrary
+ * (possibly empty) character sequences. The positions of the first and
+ * last wildcard are determined once, matching a subject is allocation-free:
+ * the literal prefix and suffix are compared in place and the inner segments
+ * are searched from left to right.
+ * 
+ * Instances are immutable and can be shared between threads. To test a
+ * subject against many patterns at once, use {@link WildcardPatternSet}.
+ */
+public final class WildcardPattern {
+
+	/**
+	 * Wildcard character.
+	 */
+	public static final char WILDCARD = '*';
+
+	private final String pattern;
+	private final boolean hasWildcard;
+	private final int firstWildcard;
+	private final int lastWildcard;
+
+	/**
+	 * Compiles a pattern.
+	 * 
+	 * @param pattern
+	 *            pattern possibly containing wildcards
+	 */
+	public WildcardPattern(String pattern) {
+		if (pattern == null) {
+			throw new IllegalArgumentException("Pattern must not be null!");
+		}
+		this.pattern = pattern;
+		firstWildcard = pattern.indexOf(WILDCARD);
+		lastWildcard = pattern.lastIndexOf(WILDCARD);
+		hasWildcard = firstWildcard >= 0;
+	}
+
+	/**
+	 * @return the pattern string
+	 */
+	public String getPattern() {
+		return pattern;
+	}
+
+	/**
+	 * @return whether the pattern contains a wildcard
+	 */
+	public boolean hasWildcard() {
+		return hasWildcard;
+	}
+
+	/**
+	 * @return the literal part of the pattern before the first wildcard
+	 */
+	public String getPrefix() {
+		return hasWildcard ? pattern.substring(0, firstWildcard) : pattern;
+	}
+
+	/**
+	 * @return the literal part of the pattern after the last wildcard; empty
+	 *         if the pattern does not contain a wildcard
+	 */
+	public String getSuffix() {
+		return hasWildcard ? pattern.substring(lastWildcard + 1) : "";
+	}
+
+	/**
+	 * Checks whether the subject matches this pattern.
+	 * 
+	 * @param subject
+	 *            string to test
+	 * @return true, if the subject matches the whole pattern
+	 */
+	public boolean matches(String subject) {
+		return matches(subject, pattern, firstWildcard, lastWildcard);
+	}
+
+	/**
+	 * Checks whether the subject matches any prefix of this pattern, i.e.
+	 * whether the subject is a prefix of the pattern or starts with the
+	 * literal part of the pattern before the first wildcard. See
+	 * {@link LpeStringUtils#patternPrefixMatches(String, String)}.
+	 * 
+	 * @param subject
+	 *            string to test
+	 * @return true, if the subject matches a prefix of the pattern
+	 */
+	public boolean prefixMatches(String subject) {
+		return prefixMatches(subject, pattern);
+	}
+
+	/**
+	 * Checks whether the subject matches the given pattern without compiling
+	 * it.
+	 * 
+	 * @param subject
+	 *            string to test
+	 * @param pattern
+	 *            pattern possibly containing wildcards
+	 * @return true, if the subject matches the whole pattern
+	 */
+	public static boolean matches(String subject, String pattern) {
+		return matches(subject, pattern, pattern.indexOf(WILDCARD), pattern.lastIndexOf(WILDCARD));
+	}
+
+	/**
+	 * Matches the subject against a pattern whose first and last wildcard
+	 * are at the given positions (both -1 if there is none).
+	 */
+	private static boolean matches(String subject, String pattern, int firstWildcard, int lastWildcard) {
+		if (subject == null) {
+			return false;
+		}
+		if (firstWildcard < 0) {
+			return pattern.equals(subject);
+		}
+		int suffixLength = pattern.length() - lastWildcard - 1;
+		int end = subject.length() - suffixLength;
+		if (end < firstWildcard || !subject.regionMatches(0, pattern, 0, firstWildcard)
+				|| !subject.regionMatches(end, pattern, lastWildcard + 1, suffixLength)) {
+			return false;
+		}
+		int position = firstWildcard;
+		int start = firstWildcard + 1;
+		while (start <= lastWildcard) {
+			int segmentEnd = pattern.indexOf(WILDCARD, start);
+			if (segmentEnd > start) {
+				position = indexOf(subject, position, end, pattern, start, segmentEnd);
+				if (position < 0) {
+					return false;
+				}
+			}
+			start = segmentEnd + 1;
+		}
+		return true;
+	}
+
+	/**
+	 * Checks whether the subject matches any prefix of the given pattern
+	 * without compiling it.
+	 * 
+	 * @param subject
+	 *            string to test
+	 * @param pattern
+	 *            pattern possibly containing wildcards
+	 * @return true, if the subject matches a prefix of the pattern
+	 */
+	public static boolean prefixMatches(String subject, String pattern) {
+		if (pattern.startsWith(subject)) {
+			return true;
+		}
+		int firstWildcard = pattern.indexOf(WILDCARD);
+		return firstWildcard >= 0 && subject.regionMatches(0, pattern, 0, firstWildcard);
+	}
+
+	/**
+	 * Searches the segment <code>[segmentStart, segmentEnd)</code> of the
+	 * pattern within <code>[from, to)</code> of the subject.
+	 * 
+	 * @return index after the leftmost occurrence, or -1 if there is none
+	 */
+	private static int indexOf(String subject, int from, int to, String pattern, int segmentStart,
+			int segmentEnd) {
+		int length = segmentEnd - segmentStart;
+		char first = pattern.charAt(segmentStart);
+		int last = to - length;
+		for (int i = subject.indexOf(first, from); i >= 0 && i <= last; i = subject.indexOf(first, i + 1)) {
+			if (subject.regionMatches(i + 1, pattern, segmentStart + 1, length - 1)) {
+				return i + length;
+			}
+		}
+		return -1;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof WildcardPattern && pattern.equals(((WildcardPattern) obj).pattern);
+	}
+
+	@Override
+	public int hashCode() {
+		return pattern.hashCode();
+	}
+
+	@Override
+	public String toString() {
+		return pattern;
+	}
+}
@@ -0,0 +1,287 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A set of wildcard patterns (see {@link WildcardPattern}) which tests a
+ * subject against all patterns at once, e.g. to evaluate instrumentation
+ * include and exclude lists.
+ * 
+ * Patterns without wildcards are kept in a hash map. Patterns with a literal
+ * prefix are stored in a trie over their prefixes, patterns starting with a
+ * wildcard in a trie over their reversed suffixes. A lookup walks the subject
+ * once from the front and once from the back through the tries; only the
+ * patterns whose prefix or suffix lies on these paths are checked further.
+ * Only the remaining patterns starting and ending with a wildcard (e.g.
+ * <code>*.impl.*</code>) are tested one by one.
+ * 
+ * Adding patterns is not thread-safe. Once all patterns have been added, the
+ * set can be queried concurrently.
+ */
+public class WildcardPatternSet {
+
+	private final Map<String, WildcardPattern> patterns = new HashMap<>();
+	private final TrieNode prefixTrie = new TrieNode();
+	private final TrieNode suffixTrie = new TrieNode();
+	private final List<WildcardPattern> unanchored = new ArrayList<>();
+
+	/**
+	 * Creates an empty pattern set.
+	 */
+	public WildcardPatternSet() {
+	}
+
+	/**
+	 * Creates a pattern set.
+	 * 
+	 * @param patterns
+	 *            patterns possibly containing wildcards
+	 */
+	public WildcardPatternSet(Collection<String> patterns) {
+		for (String pattern : patterns) {
+			add(pattern);
+		}
+	}
+
+	/**
+	 * Adds a pattern.
+	 * 
+	 * @param pattern
+	 *            pattern possibly containing wildcards
+	 * @return false, if the pattern was already contained
+	 */
+	public boolean add(String pattern) {
+		if (patterns.containsKey(pattern)) {
+			return false;
+		}
+		WildcardPattern compiled = new WildcardPattern(pattern);
+		patterns.put(pattern, compiled);
+
+		String prefix = compiled.getPrefix();
+		TrieNode node = prefixTrie;
+		for (int i = 0; i < prefix.length(); i++) {
+			node = node.getOrCreateChild(prefix.charAt(i));
+		}
+		if (!compiled.hasWildcard()) {
+			return true;
+		}
+		if (!prefix.isEmpty()) {
+			node.addPattern(compiled);
+			return true;
+		}
+
+		String suffix = compiled.getSuffix();
+		if (suffix.isEmpty()) {
+			unanchored.add(compiled);
+			return true;
+		}
+		node = suffixTrie;
+		for (int i = suffix.length() - 1; i >= 0; i--) {
+			node = node.getOrCreateChild(suffix.charAt(i));
+		}
+		node.addPattern(compiled);
+		return true;
+	}
+
+	/**
+	 * @return number of distinct patterns
+	 */
+	public int size() {
+		return patterns.size();
+	}
+
+	/**
+	 * @param pattern
+	 *            pattern to look for
+	 * @return whether the given pattern is part of this set
+	 */
+	public boolean contains(String pattern) {
+		return patterns.containsKey(pattern);
+	}
+
+	/**
+	 * Checks whether the subject matches any pattern of this set.
+	 * 
+	 * @param subject
+	 *            string to test
+	 * @return true, if the subject matches at least one pattern
+	 */
+	public boolean matchesAny(String subject) {
+		return subject != null && findMatches(subject, null);
+	}
+
+	/**
+	 * Returns all patterns of this set the subject matches.
+	 * 
+	 * @param subject
+	 *            string to test
+	 * @return matching patterns in no particular order
+	 */
+	public List<String> getMatchingPatterns(String subject) {
+		List<String> result = new ArrayList<>();
+		if (subject != null) {
+			findMatches(subject, result);
+		}
+		return result;
+	}
+
+	/**
+	 * Checks whether the subject matches a prefix of any pattern of this set.
+	 * See {@link WildcardPattern#prefixMatches(String)}.
+	 * 
+	 * @param subject
+	 *            string to test
+	 * @return true, if the subject matches a prefix of at least one pattern
+	 */
+	public boolean prefixMatchesAny(String subject) {
+		if (subject.indexOf(WildcardPattern.WILDCARD) >= 0) {
+			// the subject may span wildcards of the patterns
+			for (WildcardPattern pattern : patterns.values()) {
+				if (pattern.prefixMatches(subject)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		if (!suffixTrie.isEmpty() || !unanchored.isEmpty()) {
+			// patterns starting with a wildcard have an empty prefix
+			return true;
+		}
+		TrieNode node = prefixTrie;
+		for (int i = 0; i < subject.length(); i++) {
+			if (node.patterns != null) {
+				return true;
+			}
+			node = node.getChild(subject.charAt(i));
+			if (node == null) {
+				return false;
+			}
+		}
+		// the subject is a prefix of a pattern or starts with a pattern prefix
+		return node != prefixTrie || !patterns.isEmpty();
+	}
+
+	/**
+	 * Collects the patterns matching the subject, or stops at the first match
+	 * if <code>result</code> is <code>null</code>.
+	 * 
+	 * @return whether a match has been found
+	 */
+	private boolean findMatches(String subject, List<String> result) {
+		boolean found = false;
+		WildcardPattern exact = patterns.get(subject);
+		if (exact != null && !exact.hasWildcard()) {
+			if (result == null) {
+				return true;
+			}
+			result.add(subject);
+			found = true;
+		}
+
+		TrieNode node = prefixTrie;
+		for (int i = 0; node != null; i++) {
+			if (node.patterns != null && matchAll(node.patterns, subject, result)) {
+				if (result == null) {
+					return true;
+				}
+				found = true;
+			}
+			node = i < subject.length() ? node.getChild(subject.charAt(i)) : null;
+		}
+
+		node = suffixTrie;
+		for (int i = subject.length() - 1; node != null; i--) {
+			if (node.patterns != null && matchAll(node.patterns, subject, result)) {
+				if (result == null) {
+					return true;
+				}
+				found = true;
+			}
+			node = i >= 0 ? node.getChild(subject.charAt(i)) : null;
+		}
+
+		return matchAll(unanchored, subject, result) || found;
+	}
+
+	private static boolean matchAll(List<WildcardPattern> candidates, String subject, List<String> result) {
+		boolean found = false;
+		for (WildcardPattern pattern : candidates) {
+			if (pattern.matches(subject)) {
+				if (result == null) {
+					return true;
+				}
+				result.add(pattern.getPattern());
+				found = true;
+			}
+		}
+		return found;
+	}
+
+	/**
+	 * Trie node with children sorted by character.
+	 */
+	private static final class TrieNode {
+		private static final TrieNode[] NO_CHILDREN = new TrieNode[0];
+
+		private char[] keys = new char[0];
+		private TrieNode[] children = NO_CHILDREN;
+		// patterns whose literal prefix (or reversed suffix) ends here
+		private List<WildcardPattern> patterns;
+
+		private TrieNode getChild(char c) {
+			int index = Arrays.binarySearch(keys, c);
+			return index >= 0 ? children[index] : null;
+		}
+
+		private TrieNode getOrCreateChild(char c) {
+			int index = Arrays.binarySearch(keys, c);
+			if (index >= 0) {
+				return children[index];
+			}
+			index = -index - 1;
+			char[] newKeys = new char[keys.length + 1];
+			TrieNode[] newChildren = new TrieNode[keys.length + 1];
+			System.arraycopy(keys, 0, newKeys, 0, index);
+			System.arraycopy(children, 0, newChildren, 0, index);
+			System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+			System.arraycopy(children, index, newChildren, index + 1, keys.length - index);
+			TrieNode child = new TrieNode();
+			newKeys[index] = c;
+			newChildren[index] = child;
+			keys = newKeys;
+			children = newChildren;
+			return child;
+		}
+
+		private void addPattern(WildcardPattern pattern) {
+			if (patterns == null) {
+				patterns = new ArrayList<>(1);
+			}
+			patterns.add(pattern);
+		}
+
+		private boolean isEmpty() {
+			return keys.length == 0 && patterns == null;
+		}
+	}
+}
@@ -0,0 +1,39 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.concurrency;
+
+/**
+ * Processes one chunk of a range that has been split for parallel
+ * processing.
+ * 
+ * @see LpeConcurrencyUtils#forEachChunk(java.util.concurrent.ForkJoinPool,
+ *      int, int, ChunkProcessor)
+ */
+public interface ChunkProcessor {
+
+	/**
+	 * Processes the chunk. Chunks are processed concurrently, so
+	 * implementations must only write to state owned by the given chunk.
+	 * 
+	 * @param chunk
+	 *            index of the chunk
+	 * @param from
+	 *            first index of the chunk (inclusive)
+	 * @param to
+	 *            last index of the chunk (exclusive)
+	 */
+	void process(int chunk, int from, int to);
+}
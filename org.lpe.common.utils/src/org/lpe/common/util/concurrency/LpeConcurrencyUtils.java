@@ -0,0 +1,139 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.concurrency;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Utility class for parallel computations.
+ */
+public final class LpeConcurrencyUtils {
+
+	/**
+	 * private constructor due to utility class.
+	 */
+	private LpeConcurrencyUtils() {
+	}
+
+	/**
+	 * Lazily initialized holder of the shared pool.
+	 */
+	private static final class PoolHolder {
+		private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Returns the fork/join pool shared by the parallel computations of this
+	 * library. The pool uses one worker thread per available processor.
+	 * 
+	 * @return the shared fork/join pool
+	 */
+	public static ForkJoinPool getDefaultForkJoinPool() {
+		return PoolHolder.POOL;
+	}
+
+	/**
+	 * Computes the size of the chunks a range of the given length should be
+	 * split into for parallel processing in the given pool.
+	 * 
+	 * @param length
+	 *            length of the range
+	 * @param minChunkSize
+	 *            chunks are never smaller than this
+	 * @param pool
+	 *            pool executing the chunks
+	 * @return chunk size
+	 */
+	public static int getChunkSize(int length, int minChunkSize, ForkJoinPool pool) {
+		final int chunksPerWorker = 4;
+		int chunks = pool.getParallelism() * chunksPerWorker;
+		return Math.max(minChunkSize, (length + chunks - 1) / chunks);
+	}
+
+	/**
+	 * Computes the number of chunks a range is split into.
+	 * 
+	 * @param length
+	 *            length of the range
+	 * @param chunkSize
+	 *            size of the chunks
+	 * @return number of chunks
+	 */
+	public static int getChunkCount(int length, int chunkSize) {
+		return (int) (((long) length + chunkSize - 1) / chunkSize);
+	}
+
+	/**
+	 * Splits the range <code>[0, length)</code> into chunks of the given size
+	 * and processes them in the given pool. Chunk <code>c</code> covers the
+	 * indices <code>[c * chunkSize, min(length, (c + 1) * chunkSize))</code>.
+	 * The method returns when all chunks have been processed.
+	 * 
+	 * @param pool
+	 *            pool to process the chunks in
+	 * @param length
+	 *            length of the range
+	 * @param chunkSize
+	 *            size of the chunks
+	 * @param processor
+	 *            processor called once per chunk
+	 */
+	public static void forEachChunk(ForkJoinPool pool, int length, int chunkSize, ChunkProcessor processor) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("Chunk size must be positive!");
+		}
+		int chunks = getChunkCount(length, chunkSize);
+		if (chunks == 1) {
+			processor.process(0, 0, length);
+		} else if (chunks > 1) {
+			pool.invoke(new ChunkAction(processor, length, chunkSize, 0, chunks));
+		}
+	}
+
+	/**
+	 * Fork/join task processing a range of chunks.
+	 */
+	private static final class ChunkAction extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final ChunkProcessor processor;
+		private final int length;
+		private final int chunkSize;
+		private final int fromChunk;
+		private final int toChunk;
+
+		private ChunkAction(ChunkProcessor processor, int length, int chunkSize, int fromChunk, int toChunk) {
+			this.processor = processor;
+			this.length = length;
+			this.chunkSize = chunkSize;
+			this.fromChunk = fromChunk;
+			this.toChunk = toChunk;
+		}
+
+		@Override
+		protected void compute() {
+			if (toChunk - fromChunk == 1) {
+				int from = fromChunk * chunkSize;
+				processor.process(fromChunk, from, (int) Math.min(length, (long) from + chunkSize));
+				return;
+			}
+			int mid = (fromChunk + toChunk) >>> 1;
+			invokeAll(new ChunkAction(processor, length, chunkSize, fromChunk, mid), new ChunkAction(processor,
+					length, chunkSize, mid, toChunk));
+		}
+	}
+}
@@ -18,9 +18,13 @@
  */
 package org.lpe.common.util.stats;
 
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+
+import org.lpe.common.util.concurrency.LpeConcurrencyUtils;
 
 /**
  * The abstract class of outlier detectors.
@@ -53,6 +57,106 @@ public abstract class AbstractOutlierDetector {
 		return filterOutliers(convertListToArray(values));
 	}
 
+	/**
+	 * Filters outliers from the given set of values, using all cores of the
+	 * default fork/join pool.
+	 * 
+	 * @param values
+	 *            an array of numeric values
+	 * @return a filtered array of the input values without the outliers
+	 * 
+	 * @see #filterOutliersParallel(double[], ForkJoinPool)
+	 */
+	public double[] filterOutliersParallel(double[] values) {
+		return filterOutliersParallel(values, LpeConcurrencyUtils.getDefaultForkJoinPool());
+	}
+
+	/**
+	 * Filters outliers from the given set of values in the given fork/join
+	 * pool. Detectors that do not support parallel execution filter
+	 * sequentially.
+	 * 
+	 * @param values
+	 *            an array of numeric values
+	 * @param pool
+	 *            pool to execute the filtering in
+	 * @return a filtered array of the input values without the outliers
+	 */
+	public double[] filterOutliersParallel(double[] values, ForkJoinPool pool) {
+		return convertListToArray(filterOutliers(values));
+	}
+
+	/**
+	 * Marks the outliers in the given values by position: bit <code>i</code>
+	 * of the result is set if <code>values[i]</code> is an outlier. Unlike
+	 * {@link #markOutliersUsingIQR(double[])}, duplicate values are kept
+	 * apart and no value is boxed. The mask can be applied to a pair list
+	 * with {@link org.lpe.common.util.NumericPairList#exclude(BitSet)}.
+	 * 
+	 * The default implementation matches the values against the result of
+	 * {@link #filterOutliers(double[])} and therefore expects the filtered
+	 * values to retain their order.
+	 * 
+	 * @param values
+	 *            an array of numeric values
+	 * @return positional mask of the outliers
+	 */
+	public BitSet markOutliers(double[] values) {
+		List<Double> filtered = filterOutliers(values);
+		BitSet outliers = new BitSet(values.length);
+		int j = 0;
+		for (int i = 0; i < values.length; i++) {
+			if (j < filtered.size() && Double.compare(values[i], filtered.get(j)) == 0) {
+				j++;
+			} else {
+				outliers.set(i);
+			}
+		}
+		return outliers;
+	}
+
+	/**
+	 * Marks the outliers in the given values by position.
+	 * 
+	 * @param values
+	 *            a list of numeric values
+	 * @return positional mask of the outliers
+	 * 
+	 * @see #markOutliers(double[])
+	 */
+	public BitSet markOutliers(List<Double> values) {
+		return markOutliers(convertListToArray(values));
+	}
+
+	/**
+	 * Marks the outliers in the given values by position, using all cores of
+	 * the default fork/join pool.
+	 * 
+	 * @param values
+	 *            an array of numeric values
+	 * @return positional mask of the outliers
+	 * 
+	 * @see #markOutliersParallel(double[], ForkJoinPool)
+	 */
+	public BitSet markOutliersParallel(double[] values) {
+		return markOutliersParallel(values, LpeConcurrencyUtils.getDefaultForkJoinPool());
+	}
+
+	/**
+	 * Marks the outliers in the given values by position in the given
+	 * fork/join pool. Detectors that do not support parallel execution mark
+	 * sequentially.
+	 * 
+	 * @param values
+	 *            an array of numeric values
+	 * @param pool
+	 *            pool to execute the marking in
+	 * @return positional mask of the outliers
+	 */
+	public BitSet markOutliersParallel(double[] values, ForkJoinPool pool) {
+		return markOutliers(values);
+	}
+
 	/**
 	 * Marks the outliers in the given list of values.
 	 * 
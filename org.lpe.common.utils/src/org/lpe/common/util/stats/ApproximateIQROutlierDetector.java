@@ -0,0 +1,170 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.stats;
+
+import java.util.concurrent.ForkJoinPool;
+
+import org.lpe.common.util.concurrency.ChunkProcessor;
+import org.lpe.common.util.concurrency.LpeConcurrencyUtils;
+
+/**
+ * Inner Quartile Range outlier detector that estimates the quartiles with a
+ * {@link TDigest} sketch instead of sorting the data. Batch filtering via
+ * {@link #filterOutliers(double[])} needs no copy of the input, and the
+ * detector can also be fed with an unbounded stream of values using
+ * {@link #offer(double)} and then classify values with
+ * {@link #isOutlier(double)} in constant memory.
+ * 
+ * The accuracy of the quartiles is controlled by the compression of the
+ * sketch (see {@link TDigest}). NaN values are not added to the sketch and,
+ * as with the exact detector, never lie within the accepted range.
+ */
+public class ApproximateIQROutlierDetector extends IQROutlierDetector {
+
+	private static final double FIRST_QUARTILE = 0.25;
+	private static final double THIRD_QUARTILE = 0.75;
+
+	private static final int MIN_PARALLEL_CHUNK_SIZE = 65536;
+
+	private final double compression;
+
+	private final TDigest streamDigest;
+
+	// accepted range of the stream, invalidated by offer() and resetStream()
+	private double[] streamRange;
+
+	/**
+	 * Creates a detector with the default IQR factor and the default sketch
+	 * compression.
+	 */
+	public ApproximateIQROutlierDetector() {
+		this(DEFAULT_IQR_FACTOR, TDigest.DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * Creates a detector.
+	 * 
+	 * @param iqrFactor
+	 *            the IQR factor
+	 * @param compression
+	 *            compression of the quantile sketch; higher values increase
+	 *            accuracy and memory consumption
+	 */
+	public ApproximateIQROutlierDetector(double iqrFactor, double compression) {
+		super(iqrFactor);
+		this.compression = compression;
+		this.streamDigest = new TDigest(compression);
+	}
+
+	@Override
+	protected double[] computeQuartiles(double[] values) {
+		TDigest digest = new TDigest(compression);
+		for (double value : values) {
+			if (!Double.isNaN(value)) {
+				digest.add(value);
+			}
+		}
+		return new double[] { digest.quantile(FIRST_QUARTILE), digest.quantile(THIRD_QUARTILE) };
+	}
+
+	/**
+	 * Fills one sketch per chunk in parallel and merges them.
+	 */
+	@Override
+	protected double[] computeQuartilesParallel(final double[] values, ForkJoinPool pool) {
+		int chunkSize = LpeConcurrencyUtils.getChunkSize(values.length, MIN_PARALLEL_CHUNK_SIZE, pool);
+		final TDigest[] digests = new TDigest[LpeConcurrencyUtils.getChunkCount(values.length, chunkSize)];
+		LpeConcurrencyUtils.forEachChunk(pool, values.length, chunkSize, new ChunkProcessor() {
+			@Override
+			public void process(int chunk, int from, int to) {
+				TDigest digest = new TDigest(compression);
+				for (int i = from; i < to; i++) {
+					if (!Double.isNaN(values[i])) {
+						digest.add(values[i]);
+					}
+				}
+				digests[chunk] = digest;
+			}
+		});
+		TDigest digest = new TDigest(compression);
+		for (TDigest chunkDigest : digests) {
+			digest.add(chunkDigest);
+		}
+		return new double[] { digest.quantile(FIRST_QUARTILE), digest.quantile(THIRD_QUARTILE) };
+	}
+
+	/**
+	 * Adds a value of the stream to the sketch. NaN values are ignored.
+	 * 
+	 * @param value
+	 *            value of the stream
+	 */
+	public void offer(double value) {
+		if (!Double.isNaN(value)) {
+			streamDigest.add(value);
+			streamRange = null;
+		}
+	}
+
+	/**
+	 * Checks the given value against the quartiles of all values offered so
+	 * far. Like {@link #markOutliers(double[])}, NaN is an outlier.
+	 * 
+	 * @param value
+	 *            value to check
+	 * @return <code>true</code> if the value is an outlier,
+	 *         <code>false</code> if it is not or if no value has been offered
+	 *         yet
+	 */
+	public boolean isOutlier(double value) {
+		if (streamDigest.getCount() == 0) {
+			return false;
+		}
+		double[] range = getCachedStreamRange();
+		return !(value <= range[1] && value >= range[0]);
+	}
+
+	/**
+	 * @return the lower and the upper bound of the non-outlier range of the
+	 *         values offered so far
+	 */
+	public double[] getStreamAcceptedRange() {
+		return getCachedStreamRange().clone();
+	}
+
+	private double[] getCachedStreamRange() {
+		if (streamRange == null) {
+			streamRange = getAcceptedRange(new double[] { streamDigest.quantile(FIRST_QUARTILE),
+					streamDigest.quantile(THIRD_QUARTILE) });
+		}
+		return streamRange;
+	}
+
+	/**
+	 * @return number of values offered so far
+	 */
+	public long getStreamCount() {
+		return streamDigest.getCount();
+	}
+
+	/**
+	 * Forgets all values offered so far.
+	 */
+	public void resetStream() {
+		streamDigest.clear();
+		streamRange = null;
+	}
+}
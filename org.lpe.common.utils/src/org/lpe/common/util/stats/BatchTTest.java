@@ -0,0 +1,187 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.stats;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.commons.math3.distribution.TDistribution;
+import org.lpe.common.util.NumericPairList;
+import org.lpe.common.util.concurrency.ChunkProcessor;
+import org.lpe.common.util.concurrency.LpeConcurrencyUtils;
+
+/**
+ * Runs many two-sample t-tests at once, e.g. to compare all operations of a
+ * baseline run with the same operations of a candidate run. The tests are
+ * distributed over a fork/join pool. Each sample is read in a single pass
+ * into an {@link OnlineStatistics} accumulator, so no sample is copied.
+ * 
+ * The tests do not assume equal variances (Welch's t-test) and yield the
+ * same p-values as {@link org.apache.commons.math3.stat.inference.TestUtils#tTest(double[], double[])}.
+ */
+public final class BatchTTest {
+
+	/**
+	 * private constructor due to utility class.
+	 */
+	private BatchTTest() {
+	}
+
+	/**
+	 * Tests each baseline sample against the candidate sample of the same
+	 * index, using the default fork/join pool.
+	 * 
+	 * @param baselineSamples
+	 *            baseline samples
+	 * @param candidateSamples
+	 *            candidate samples
+	 * @return the result per sample pair
+	 */
+	public static TTestResult[] tTest(double[][] baselineSamples, double[][] candidateSamples) {
+		return tTest(baselineSamples, candidateSamples, LpeConcurrencyUtils.getDefaultForkJoinPool());
+	}
+
+	/**
+	 * Tests each baseline sample against the candidate sample of the same
+	 * index.
+	 * 
+	 * @param baselineSamples
+	 *            baseline samples
+	 * @param candidateSamples
+	 *            candidate samples
+	 * @param pool
+	 *            pool to execute the tests in
+	 * @return the result per sample pair
+	 */
+	public static TTestResult[] tTest(final double[][] baselineSamples, final double[][] candidateSamples,
+			ForkJoinPool pool) {
+		checkSameLength(baselineSamples.length, candidateSamples.length);
+		final TTestResult[] results = new TTestResult[baselineSamples.length];
+		int chunkSize = LpeConcurrencyUtils.getChunkSize(results.length, 1, pool);
+		LpeConcurrencyUtils.forEachChunk(pool, results.length, chunkSize, new ChunkProcessor() {
+			@Override
+			public void process(int chunk, int from, int to) {
+				OnlineStatistics baseline = new OnlineStatistics();
+				OnlineStatistics candidate = new OnlineStatistics();
+				for (int i = from; i < to; i++) {
+					baseline.clear();
+					candidate.clear();
+					baseline.addAll(baselineSamples[i]);
+					candidate.addAll(candidateSamples[i]);
+					results[i] = tTest(baseline, candidate);
+				}
+			}
+		});
+		return results;
+	}
+
+	/**
+	 * Tests the values of each baseline list against the values of the
+	 * candidate list of the same index, using the default fork/join pool.
+	 * 
+	 * @param baselineLists
+	 *            baseline lists
+	 * @param candidateLists
+	 *            candidate lists
+	 * @return the result per list pair
+	 */
+	public static TTestResult[] tTestValues(List<? extends NumericPairList<?, ?>> baselineLists,
+			List<? extends NumericPairList<?, ?>> candidateLists) {
+		return tTestValues(baselineLists, candidateLists, LpeConcurrencyUtils.getDefaultForkJoinPool());
+	}
+
+	/**
+	 * Tests the values of each baseline list against the values of the
+	 * candidate list of the same index. The values are read with
+	 * {@link NumericPairList#getValueAsDouble(int)}, which does not box for
+	 * columnar lists.
+	 * 
+	 * @param baselineLists
+	 *            baseline lists
+	 * @param candidateLists
+	 *            candidate lists
+	 * @param pool
+	 *            pool to execute the tests in
+	 * @return the result per list pair
+	 */
+	public static TTestResult[] tTestValues(final List<? extends NumericPairList<?, ?>> baselineLists,
+			final List<? extends NumericPairList<?, ?>> candidateLists, ForkJoinPool pool) {
+		checkSameLength(baselineLists.size(), candidateLists.size());
+		final TTestResult[] results = new TTestResult[baselineLists.size()];
+		int chunkSize = LpeConcurrencyUtils.getChunkSize(results.length, 1, pool);
+		LpeConcurrencyUtils.forEachChunk(pool, results.length, chunkSize, new ChunkProcessor() {
+			@Override
+			public void process(int chunk, int from, int to) {
+				OnlineStatistics baseline = new OnlineStatistics();
+				OnlineStatistics candidate = new OnlineStatistics();
+				for (int i = from; i < to; i++) {
+					baseline.clear();
+					candidate.clear();
+					addValues(baseline, baselineLists.get(i));
+					addValues(candidate, candidateLists.get(i));
+					results[i] = tTest(baseline, candidate);
+				}
+			}
+		});
+		return results;
+	}
+
+	/**
+	 * Tests a baseline sample against a candidate sample given by their
+	 * summary statistics.
+	 * 
+	 * @param baseline
+	 *            statistics of the baseline sample
+	 * @param candidate
+	 *            statistics of the candidate sample
+	 * @return the test result; the p-value is -1 if a sample has less than
+	 *         two values
+	 */
+	public static TTestResult tTest(OnlineStatistics baseline, OnlineStatistics candidate) {
+		long n1 = baseline.getN();
+		long n2 = candidate.getN();
+		double meanDifference = candidate.getMean() - baseline.getMean();
+		// Apache commons requires at least 2 values to do a t-test
+		if (n1 < 2 || n2 < 2) {
+			return new TTestResult(-1, Double.NaN, Double.NaN, meanDifference, Double.NaN);
+		}
+
+		double v1 = baseline.getVariance();
+		double v2 = candidate.getVariance();
+		double se1 = v1 / n1;
+		double se2 = v2 / n2;
+		double t = meanDifference / Math.sqrt(se1 + se2);
+		double df = (se1 + se2) * (se1 + se2) / (se1 * se1 / (n1 - 1) + se2 * se2 / (n2 - 1));
+		double p = df > 0 ? 2.0 * new TDistribution(df).cumulativeProbability(-Math.abs(t)) : Double.NaN;
+
+		double pooledVariance = ((n1 - 1) * v1 + (n2 - 1) * v2) / (n1 + n2 - 2);
+		double effectSize = meanDifference / Math.sqrt(pooledVariance);
+		return new TTestResult(p, t, df, meanDifference, effectSize);
+	}
+
+	private static void addValues(OnlineStatistics statistics, NumericPairList<?, ?> list) {
+		for (int i = 0; i < list.size(); i++) {
+			statistics.add(list.getValueAsDouble(i));
+		}
+	}
+
+	private static void checkSameLength(int baselineCount, int candidateCount) {
+		if (baselineCount != candidateCount) {
+			throw new IllegalArgumentException("Number of baseline samples (" + baselineCount
+					+ ") differs from number of candidate samples (" + candidateCount + ")!");
+		}
+	}
+}
@@ -0,0 +1,175 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.stats;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+import org.lpe.common.util.NumericPairList;
+
+/**
+ * Offline detection of level shifts by binary segmentation: a segment is
+ * split at the point that reduces the sum of squared deviations from the
+ * segment means most, as long as the reduction exceeds a penalty, and both
+ * halves are processed recursively.
+ * 
+ * Prefix sums of the values and their squares give the cost of any segment
+ * in <code>O(1)</code>, so each level of the recursion costs
+ * <code>O(n)</code> in total.
+ */
+public final class BinarySegmentation {
+
+	/**
+	 * Consistency constant relating the median absolute difference of
+	 * consecutive values to the standard deviation of normal noise
+	 * (<code>sqrt(2) * 0.6745</code>).
+	 */
+	private static final double MAD_DIFF_TO_SIGMA = 0.9539;
+
+	/**
+	 * private constructor due to utility class.
+	 */
+	private BinarySegmentation() {
+	}
+
+	/**
+	 * Detects level shifts with a penalty derived from the noise level:
+	 * <code>2 * sigma^2 * ln(n)</code>, where sigma is estimated robustly from
+	 * the differences of consecutive values and thus is hardly affected by
+	 * the shifts themselves.
+	 * 
+	 * @param values
+	 *            series to analyze
+	 * @param minSegmentLength
+	 *            minimum number of values per segment
+	 * @return ascending start indices of the detected segments, excluding the
+	 *         first segment
+	 */
+	public static int[] detect(double[] values, int minSegmentLength) {
+		return detect(values, minSegmentLength, defaultPenalty(values));
+	}
+
+	/**
+	 * Detects level shifts.
+	 * 
+	 * @param values
+	 *            series to analyze
+	 * @param minSegmentLength
+	 *            minimum number of values per segment
+	 * @param penalty
+	 *            minimum reduction of the sum of squared deviations for a
+	 *            split
+	 * @return ascending start indices of the detected segments, excluding the
+	 *         first segment
+	 */
+	public static int[] detect(double[] values, int minSegmentLength, double penalty) {
+		if (minSegmentLength < 1) {
+			throw new IllegalArgumentException("Segments must hold at least one value!");
+		}
+		int n = values.length;
+		double shift = n > 0 ? values[0] : 0;
+		double[] sum = new double[n + 1];
+		double[] sumSquares = new double[n + 1];
+		for (int i = 0; i < n; i++) {
+			double v = values[i] - shift;
+			sum[i + 1] = sum[i] + v;
+			sumSquares[i + 1] = sumSquares[i] + v * v;
+		}
+
+		int[] splits = new int[Math.max(0, n / minSegmentLength)];
+		int count = 0;
+		Deque<int[]> pending = new ArrayDeque<>();
+		pending.push(new int[] { 0, n });
+		while (!pending.isEmpty()) {
+			int[] segment = pending.pop();
+			int from = segment[0];
+			int to = segment[1];
+			if (to - from < 2 * minSegmentLength) {
+				continue;
+			}
+			double total = cost(sum, sumSquares, from, to);
+			double bestGain = penalty;
+			int best = -1;
+			for (int k = from + minSegmentLength; k <= to - minSegmentLength; k++) {
+				double gain = total - cost(sum, sumSquares, from, k) - cost(sum, sumSquares, k, to);
+				if (gain > bestGain) {
+					bestGain = gain;
+					best = k;
+				}
+			}
+			if (best >= 0) {
+				splits[count++] = best;
+				pending.push(new int[] { best, to });
+				pending.push(new int[] { from, best });
+			}
+		}
+		int[] result = Arrays.copyOf(splits, count);
+		Arrays.sort(result);
+		return result;
+	}
+
+	/**
+	 * Detects level shifts of the values of a list sorted by key with the
+	 * default penalty.
+	 * 
+	 * @param series
+	 *            series to analyze
+	 * @param minSegmentLength
+	 *            minimum number of values per segment
+	 * @param <T>
+	 *            key type
+	 * @param <S>
+	 *            value type
+	 * @return the keys at which the detected segments start
+	 */
+	public static <T extends Number, S extends Number> List<T> detect(NumericPairList<T, S> series,
+			int minSegmentLength) {
+		int[] splits = detect(series.getValueArrayAsDouble(), minSegmentLength);
+		List<T> keys = new ArrayList<>(splits.length);
+		for (int split : splits) {
+			keys.add(series.get(split).getKey());
+		}
+		return keys;
+	}
+
+	/**
+	 * Computes the default penalty <code>2 * sigma^2 * ln(n)</code>.
+	 * 
+	 * @param values
+	 *            series to analyze
+	 * @return the penalty
+	 */
+	public static double defaultPenalty(double[] values) {
+		int n = values.length;
+		if (n < 3) {
+			return Double.POSITIVE_INFINITY;
+		}
+		double[] differences = new double[n - 1];
+		for (int i = 1; i < n; i++) {
+			differences[i - 1] = Math.abs(values[i] - values[i - 1]);
+		}
+		double sigma = OrderStatistics.select(differences, (n - 1) / 2) / MAD_DIFF_TO_SIGMA;
+		return 2 * sigma * sigma * Math.log(n);
+	}
+
+	private static double cost(double[] sum, double[] sumSquares, int from, int to) {
+		double s = sum[to] - sum[from];
+		return Math.max(0, sumSquares[to] - sumSquares[from] - s * s / (to - from));
+	}
+}
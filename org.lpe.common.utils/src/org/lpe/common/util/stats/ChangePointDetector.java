@@ -0,0 +1,276 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.stats;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.lpe.common.util.NumericPairList;
+
+/**
+ * Incremental detector for shifts of the level (mean) of a series, e.g. the
+ * end of the warm-up phase or the onset of saturation in response times.
+ * Each value passed to {@link #offer(double)} is processed in
+ * <code>O(1)</code> time and memory; the history is never rescanned.
+ * 
+ * Two methods are supported:
+ * <ul>
+ * <li>{@link Method#PAGE_HINKLEY}: compares the cumulative deviation from
+ * the running mean against its extreme so far. <code>delta</code> is the
+ * magnitude of changes to tolerate and <code>threshold</code> the
+ * cumulative deviation raising an alarm, both in the unit of the
+ * values.</li>
+ * <li>{@link Method#CUSUM}: estimates mean and standard deviation from the
+ * first <code>warmUpCount</code> values of a segment and accumulates the
+ * standardized deviations. <code>delta</code> (the slack) and
+ * <code>threshold</code> are given in standard deviations.</li>
+ * </ul>
+ * 
+ * Both methods detect increases and decreases. Upon detection the onset of
+ * the change is estimated as the index after the last point at which the
+ * cumulative statistic was at its extreme, and the detector restarts with
+ * the next value. Instances are not thread-safe.
+ */
+public class ChangePointDetector {
+
+	/**
+	 * Change detection method.
+	 */
+	public enum Method {
+		PAGE_HINKLEY, CUSUM
+	}
+
+	public static final int DEFAULT_WARM_UP_COUNT = 30;
+
+	private final Method method;
+	private final double delta;
+	private final double threshold;
+	private final int warmUpCount;
+
+	private final List<Long> changePoints = new ArrayList<>();
+	private long index = 0;
+
+	private final OnlineStatistics segment = new OnlineStatistics();
+	private long segmentStart = 0;
+	private double upSum;
+	private double upExtreme;
+	private long upExtremeIndex;
+	private double downSum;
+	private double downExtreme;
+	private long downExtremeIndex;
+	private double referenceMean;
+	private double referenceDeviation;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param method
+	 *            detection method
+	 * @param delta
+	 *            magnitude of changes to tolerate
+	 * @param threshold
+	 *            detection threshold
+	 * @param warmUpCount
+	 *            minimum number of values of a segment before a change can
+	 *            be detected
+	 */
+	public ChangePointDetector(Method method, double delta, double threshold, int warmUpCount) {
+		if (delta < 0 || threshold <= 0) {
+			throw new IllegalArgumentException("Delta must not be negative and threshold must be positive!");
+		}
+		if (warmUpCount < 2) {
+			throw new IllegalArgumentException("At least two values are required to warm up!");
+		}
+		this.method = method;
+		this.delta = delta;
+		this.threshold = threshold;
+		this.warmUpCount = warmUpCount;
+		restart();
+	}
+
+	/**
+	 * Creates a Page-Hinkley detector with the default warm-up count of
+	 * {@value #DEFAULT_WARM_UP_COUNT}.
+	 * 
+	 * @param delta
+	 *            magnitude of changes to tolerate in the unit of the values
+	 * @param threshold
+	 *            detection threshold in the unit of the values
+	 * @return the detector
+	 */
+	public static ChangePointDetector pageHinkley(double delta, double threshold) {
+		return new ChangePointDetector(Method.PAGE_HINKLEY, delta, threshold, DEFAULT_WARM_UP_COUNT);
+	}
+
+	/**
+	 * Creates a CUSUM detector with the default warm-up count of
+	 * {@value #DEFAULT_WARM_UP_COUNT}.
+	 * 
+	 * @param slack
+	 *            magnitude of changes to tolerate in standard deviations
+	 * @param threshold
+	 *            detection threshold in standard deviations
+	 * @return the detector
+	 */
+	public static ChangePointDetector cusum(double slack, double threshold) {
+		return new ChangePointDetector(Method.CUSUM, slack, threshold, DEFAULT_WARM_UP_COUNT);
+	}
+
+	/**
+	 * Processes the next value of the series.
+	 * 
+	 * @param value
+	 *            value to process
+	 * @return true if a change has been detected with this value
+	 */
+	public boolean offer(double value) {
+		long current = index++;
+		if (Double.isNaN(value)) {
+			return false;
+		}
+		segment.add(value);
+
+		double deviation;
+		if (method == Method.PAGE_HINKLEY) {
+			deviation = value - segment.getMean();
+		} else {
+			if (segment.getN() <= warmUpCount) {
+				if (segment.getN() == warmUpCount) {
+					referenceMean = segment.getMean();
+					referenceDeviation = Math.max(segment.getStandardDeviation(), Double.MIN_NORMAL);
+				}
+				return false;
+			}
+			deviation = (value - referenceMean) / referenceDeviation;
+		}
+
+		boolean detected;
+		if (method == Method.PAGE_HINKLEY) {
+			upSum += deviation - delta;
+			if (upSum < upExtreme) {
+				upExtreme = upSum;
+				upExtremeIndex = current;
+			}
+			downSum += deviation + delta;
+			if (downSum > downExtreme) {
+				downExtreme = downSum;
+				downExtremeIndex = current;
+			}
+			detected = segment.getN() >= warmUpCount
+					&& (upSum - upExtreme > threshold || downExtreme - downSum > threshold);
+		} else {
+			upSum = Math.max(0, upSum + deviation - delta);
+			if (upSum == 0) {
+				upExtremeIndex = current;
+			}
+			downSum = Math.max(0, downSum - deviation - delta);
+			if (downSum == 0) {
+				downExtremeIndex = current;
+			}
+			detected = upSum > threshold || downSum > threshold;
+		}
+		if (!detected) {
+			return false;
+		}
+
+		boolean increase = method == Method.PAGE_HINKLEY ? upSum - upExtreme > threshold : upSum > threshold;
+		long onset = (increase ? upExtremeIndex : downExtremeIndex) + 1;
+		changePoints.add(Math.max(segmentStart, Math.min(onset, current)));
+		segmentStart = current + 1;
+		restart();
+		return true;
+	}
+
+	/**
+	 * Processes all values of the series.
+	 * 
+	 * @param values
+	 *            values to process
+	 */
+	public void offerAll(double[] values) {
+		for (double value : values) {
+			offer(value);
+		}
+	}
+
+	/**
+	 * Detects the changes of the values of a list sorted by key with a fresh
+	 * detector of this configuration.
+	 * 
+	 * @param series
+	 *            series to analyze
+	 * @param <T>
+	 *            key type
+	 * @param <S>
+	 *            value type
+	 * @return the keys at which the detected changes start
+	 */
+	public <T extends Number, S extends Number> List<T> detect(NumericPairList<T, S> series) {
+		ChangePointDetector detector = new ChangePointDetector(method, delta, threshold, warmUpCount);
+		int n = series.size();
+		for (int i = 0; i < n; i++) {
+			detector.offer(series.getValueAsDouble(i));
+		}
+		List<T> keys = new ArrayList<>(detector.changePoints.size());
+		for (long changePoint : detector.changePoints) {
+			keys.add(series.get((int) changePoint).getKey());
+		}
+		return keys;
+	}
+
+	/**
+	 * @return estimated start indices of the detected changes in ascending
+	 *         order
+	 */
+	public List<Long> getChangePoints() {
+		return Collections.unmodifiableList(changePoints);
+	}
+
+	/**
+	 * @return number of values processed so far
+	 */
+	public long getCount() {
+		return index;
+	}
+
+	/**
+	 * @return mean of the values since the last change
+	 */
+	public double getSegmentMean() {
+		return segment.getMean();
+	}
+
+	/**
+	 * Resets the detector, discarding all detected changes.
+	 */
+	public void reset() {
+		changePoints.clear();
+		index = 0;
+		segmentStart = 0;
+		restart();
+	}
+
+	private void restart() {
+		segment.clear();
+		upSum = 0;
+		upExtreme = 0;
+		upExtremeIndex = index - 1;
+		downSum = 0;
+		downExtreme = 0;
+		downExtremeIndex = index - 1;
+	}
+}
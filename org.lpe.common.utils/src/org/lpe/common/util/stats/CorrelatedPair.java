@@ -0,0 +1,68 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.stats;
+
+/**
+ * Correlation coefficient of two series of a {@link CorrelationMatrix}.
+ */
+public class CorrelatedPair {
+
+	private final int first;
+	private final int second;
+	private final double correlation;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param first
+	 *            index of the first series
+	 * @param second
+	 *            index of the second series
+	 * @param correlation
+	 *            correlation coefficient of both series
+	 */
+	public CorrelatedPair(int first, int second, double correlation) {
+		this.first = first;
+		this.second = second;
+		this.correlation = correlation;
+	}
+
+	/**
+	 * @return index of the first series
+	 */
+	public int getFirst() {
+		return first;
+	}
+
+	/**
+	 * @return index of the second series
+	 */
+	public int getSecond() {
+		return second;
+	}
+
+	/**
+	 * @return correlation coefficient in the range [-1, 1]
+	 */
+	public double getCorrelation() {
+		return correlation;
+	}
+
+	@Override
+	public String toString() {
+		return "(" + first + ", " + second + "): " + correlation;
+	}
+}
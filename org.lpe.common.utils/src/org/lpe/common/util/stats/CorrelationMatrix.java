@@ -0,0 +1,453 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.stats;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+
+import org.lpe.common.util.NumericPairList;
+import org.lpe.common.util.concurrency.ChunkProcessor;
+import org.lpe.common.util.concurrency.LpeConcurrencyUtils;
+
+/**
+ * Matrix of the pairwise correlation coefficients of many series, e.g.
+ * resource utilization and response times measured during an experiment.
+ * 
+ * The series are aligned by key: the key range of all series is split into
+ * buckets of equal width and each series is reduced to the mean of its
+ * values per bucket. Coefficients are computed over the buckets in which
+ * both series have values. The matrix is computed in square blocks of series
+ * that are processed in parallel in a fork/join pool; each series is held in
+ * a primitive array, centered and, if it has no gaps, normalized up front,
+ * so that a coefficient of two gapless series is a plain dot product.
+ */
+public final class CorrelationMatrix {
+
+	/**
+	 * Correlation coefficient.
+	 */
+	public enum Method {
+		/**
+		 * Linear (Pearson) correlation of the bucket means.
+		 */
+		PEARSON,
+		/**
+		 * Rank (Spearman) correlation: Pearson correlation of the ranks of the
+		 * bucket means. Ties get their average rank. Gapless series are
+		 * ranked once; if one of two series has gaps, both are ranked over
+		 * their common buckets only.
+		 */
+		SPEARMAN
+	}
+
+	/**
+	 * Number of series per side of a block.
+	 */
+	private static final int BLOCK_SIZE = 32;
+
+	/**
+	 * Minimum number of common buckets for a coefficient.
+	 */
+	private static final int MIN_OBSERVATIONS = 3;
+
+	private final int size;
+	private final double[] coefficients;
+
+	private CorrelationMatrix(int size) {
+		this.size = size;
+		this.coefficients = new double[size * size];
+	}
+
+	/**
+	 * Computes the matrix in the default fork/join pool.
+	 * 
+	 * @param series
+	 *            series to correlate
+	 * @param bucketWidth
+	 *            width of the buckets the series are aligned by, in key units
+	 * @param method
+	 *            correlation coefficient to compute
+	 * @return the correlation matrix, indexed like the series
+	 */
+	public static CorrelationMatrix compute(List<? extends NumericPairList<?, ?>> series, double bucketWidth,
+			Method method) {
+		return compute(series, bucketWidth, method, LpeConcurrencyUtils.getDefaultForkJoinPool());
+	}
+
+	/**
+	 * Computes the matrix.
+	 * 
+	 * @param series
+	 *            series to correlate
+	 * @param bucketWidth
+	 *            width of the buckets the series are aligned by, in key units
+	 * @param method
+	 *            correlation coefficient to compute
+	 * @param pool
+	 *            pool to execute the computation in
+	 * @return the correlation matrix, indexed like the series
+	 */
+	public static CorrelationMatrix compute(List<? extends NumericPairList<?, ?>> series, double bucketWidth,
+			Method method, ForkJoinPool pool) {
+		if (!(bucketWidth > 0)) {
+			throw new IllegalArgumentException("Bucket width must be positive!");
+		}
+		final int n = series.size();
+		final CorrelationMatrix matrix = new CorrelationMatrix(n);
+		final double[][] rows = align(series, bucketWidth);
+		final boolean[] complete = new boolean[n];
+		final boolean[] gapped = new boolean[n];
+		// bucket means for ranking pairs with gaps over their common buckets
+		final double[][] means = method == Method.SPEARMAN ? new double[n][] : null;
+		for (int i = 0; i < n; i++) {
+			gapped[i] = hasGaps(rows[i]);
+			if (means != null) {
+				means[i] = rows[i].clone();
+				if (!gapped[i]) {
+					rank(rows[i], rows[i].length, new double[rows[i].length]);
+				}
+			}
+			complete[i] = prepare(rows[i]);
+		}
+		final int bucketCount = n > 0 ? rows[0].length : 0;
+
+		final int blocks = (n + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		final int tiles = blocks * (blocks + 1) / 2;
+		LpeConcurrencyUtils.forEachChunk(pool, tiles, 1, new ChunkProcessor() {
+			@Override
+			public void process(int chunk, int from, int to) {
+				double[][] scratch = means != null ? new double[3][bucketCount] : null;
+				for (int tile = from; tile < to; tile++) {
+					int blockRow = 0;
+					int offset = tile;
+					while (offset >= blocks - blockRow) {
+						offset -= blocks - blockRow;
+						blockRow++;
+					}
+					matrix.computeBlock(rows, complete, gapped, means, scratch, blockRow * BLOCK_SIZE,
+							(blockRow + offset) * BLOCK_SIZE);
+				}
+			}
+		});
+		return matrix;
+	}
+
+	/**
+	 * @return number of series
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Returns the correlation coefficient of two series.
+	 * 
+	 * @param i
+	 *            index of the first series
+	 * @param j
+	 *            index of the second series
+	 * @return the coefficient in the range [-1, 1], or NaN if the series have
+	 *         less than three buckets in common or one of them is constant
+	 */
+	public double get(int i, int j) {
+		if (i < 0 || i >= size || j < 0 || j >= size) {
+			throw new IndexOutOfBoundsException("Index: (" + i + ", " + j + "), Size: " + size);
+		}
+		return coefficients[i * size + j];
+	}
+
+	/**
+	 * @return a copy of the matrix
+	 */
+	public double[][] toArray() {
+		double[][] result = new double[size][];
+		for (int i = 0; i < size; i++) {
+			result[i] = Arrays.copyOfRange(coefficients, i * size, (i + 1) * size);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the pairs of distinct series with the strongest correlation,
+	 * i.e. the highest absolute coefficients.
+	 * 
+	 * @param k
+	 *            maximum number of pairs to return
+	 * @return the pairs ordered by descending absolute coefficient, each with
+	 *         the lower index first
+	 */
+	public List<CorrelatedPair> getTopCorrelatedPairs(int k) {
+		if (k < 1) {
+			return new ArrayList<>();
+		}
+		Comparator<CorrelatedPair> byStrength = new Comparator<CorrelatedPair>() {
+			@Override
+			public int compare(CorrelatedPair a, CorrelatedPair b) {
+				return Double.compare(Math.abs(a.getCorrelation()), Math.abs(b.getCorrelation()));
+			}
+		};
+		PriorityQueue<CorrelatedPair> top = new PriorityQueue<>(k, byStrength);
+		for (int i = 0; i < size; i++) {
+			for (int j = i + 1; j < size; j++) {
+				double r = coefficients[i * size + j];
+				if (Double.isNaN(r)) {
+					continue;
+				}
+				if (top.size() < k) {
+					top.add(new CorrelatedPair(i, j, r));
+				} else if (Math.abs(r) > Math.abs(top.peek().getCorrelation())) {
+					top.poll();
+					top.add(new CorrelatedPair(i, j, r));
+				}
+			}
+		}
+		List<CorrelatedPair> result = new ArrayList<>(top);
+		Collections.sort(result, Collections.reverseOrder(byStrength));
+		return result;
+	}
+
+	/**
+	 * Computes the coefficients of the series <code>[rowFrom, rowFrom +
+	 * BLOCK_SIZE)</code> with the series <code>[columnFrom, columnFrom +
+	 * BLOCK_SIZE)</code> and mirrors them. Rank correlations of pairs with
+	 * gaps are computed from the bucket means (<code>means</code> is
+	 * <code>null</code> for linear correlation).
+	 */
+	private void computeBlock(double[][] rows, boolean[] complete, boolean[] gapped, double[][] means,
+			double[][] scratch, int rowFrom, int columnFrom) {
+		int rowTo = Math.min(size, rowFrom + BLOCK_SIZE);
+		int columnTo = Math.min(size, columnFrom + BLOCK_SIZE);
+		for (int i = rowFrom; i < rowTo; i++) {
+			for (int j = Math.max(columnFrom, i); j < columnTo; j++) {
+				double r;
+				if (i != j && complete[i] && complete[j]) {
+					r = dot(rows[i], rows[j]);
+				} else if (means != null && (gapped[i] || gapped[j])) {
+					r = correlateRanks(means[i], means[j], scratch);
+				} else {
+					r = correlate(rows[i], rows[j], rows[i].length);
+				}
+				coefficients[i * size + j] = r;
+				coefficients[j * size + i] = r;
+			}
+		}
+	}
+
+	/**
+	 * Correlates two normalized gapless rows by their dot product.
+	 */
+	private static double dot(double[] x, double[] y) {
+		if (x.length < MIN_OBSERVATIONS) {
+			return Double.NaN;
+		}
+		double dot = 0;
+		for (int b = 0; b < x.length; b++) {
+			dot += x[b] * y[b];
+		}
+		return Math.max(-1, Math.min(1, dot));
+	}
+
+	/**
+	 * Ranks the bucket means of two series over their common buckets and
+	 * correlates the ranks.
+	 * 
+	 * @param scratch
+	 *            three arrays of at least the row length
+	 */
+	private static double correlateRanks(double[] x, double[] y, double[][] scratch) {
+		double[] commonX = scratch[0];
+		double[] commonY = scratch[1];
+		int count = 0;
+		for (int b = 0; b < x.length; b++) {
+			if (x[b] == x[b] && y[b] == y[b]) {
+				commonX[count] = x[b];
+				commonY[count] = y[b];
+				count++;
+			}
+		}
+		if (count < MIN_OBSERVATIONS) {
+			return Double.NaN;
+		}
+		rank(commonX, count, scratch[2]);
+		rank(commonY, count, scratch[2]);
+		return correlate(commonX, commonY, count);
+	}
+
+	/**
+	 * Correlates the first <code>length</code> entries of two rows by
+	 * accumulating the sums over the buckets in which both rows have values.
+	 */
+	private static double correlate(double[] x, double[] y, int length) {
+		int count = 0;
+		double sumX = 0;
+		double sumY = 0;
+		double sumXX = 0;
+		double sumYY = 0;
+		double sumXY = 0;
+		for (int b = 0; b < length; b++) {
+			double u = x[b];
+			double v = y[b];
+			if (u == u && v == v) {
+				count++;
+				sumX += u;
+				sumY += v;
+				sumXX += u * u;
+				sumYY += v * v;
+				sumXY += u * v;
+			}
+		}
+		if (count < MIN_OBSERVATIONS) {
+			return Double.NaN;
+		}
+		double covariance = sumXY - sumX * sumY / count;
+		double varianceX = sumXX - sumX * sumX / count;
+		double varianceY = sumYY - sumY * sumY / count;
+		if (varianceX <= 0 || varianceY <= 0) {
+			return Double.NaN;
+		}
+		return Math.max(-1, Math.min(1, covariance / Math.sqrt(varianceX * varianceY)));
+	}
+
+	/**
+	 * Reduces each series to the means of its values per bucket; buckets
+	 * without values are NaN.
+	 */
+	private static double[][] align(List<? extends NumericPairList<?, ?>> series, double bucketWidth) {
+		double minKey = Double.POSITIVE_INFINITY;
+		double maxKey = Double.NEGATIVE_INFINITY;
+		for (NumericPairList<?, ?> list : series) {
+			for (int i = 0; i < list.size(); i++) {
+				double key = list.getKeyAsDouble(i);
+				minKey = Math.min(minKey, key);
+				maxKey = Math.max(maxKey, key);
+			}
+		}
+		double[][] rows = new double[series.size()][];
+		if (minKey > maxKey) {
+			for (int s = 0; s < rows.length; s++) {
+				rows[s] = new double[0];
+			}
+			return rows;
+		}
+		long buckets = (long) Math.floor((maxKey - minKey) / bucketWidth) + 1;
+		if (buckets > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Bucket width is too small for the key range of the series!");
+		}
+
+		int[] counts = new int[(int) buckets];
+		for (int s = 0; s < rows.length; s++) {
+			NumericPairList<?, ?> list = series.get(s);
+			double[] sums = new double[(int) buckets];
+			Arrays.fill(counts, 0);
+			for (int i = 0; i < list.size(); i++) {
+				int b = (int) Math.min(buckets - 1, (long) ((list.getKeyAsDouble(i) - minKey) / bucketWidth));
+				sums[b] += list.getValueAsDouble(i);
+				counts[b]++;
+			}
+			for (int b = 0; b < sums.length; b++) {
+				sums[b] = counts[b] > 0 ? sums[b] / counts[b] : Double.NaN;
+			}
+			rows[s] = sums;
+		}
+		return rows;
+	}
+
+	/**
+	 * @return whether the row has buckets without values
+	 */
+	private static boolean hasGaps(double[] row) {
+		for (double v : row) {
+			if (v != v) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Replaces the first <code>length</code> entries of a row, which must not
+	 * be NaN, by their average ranks (1-based).
+	 * 
+	 * @param sorted
+	 *            scratch array of at least <code>length</code> entries
+	 */
+	private static void rank(double[] row, int length, double[] sorted) {
+		System.arraycopy(row, 0, sorted, 0, length);
+		Arrays.sort(sorted, 0, length);
+		for (int b = 0; b < length; b++) {
+			int first = bound(sorted, length, row[b], false);
+			int last = bound(sorted, length, row[b], true);
+			row[b] = (first + last + 1) / 2.0;
+		}
+	}
+
+	/**
+	 * @return index of the first entry greater than (upper) or greater than
+	 *         or equal to (lower) the value
+	 */
+	private static int bound(double[] sorted, int length, double value, boolean upper) {
+		int low = 0;
+		int high = length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (sorted[mid] < value || (upper && sorted[mid] == value)) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Centers a row by its mean and, if it has no gaps, scales it to unit
+	 * norm.
+	 * 
+	 * @return true if the row has no gaps and has been normalized
+	 */
+	private static boolean prepare(double[] row) {
+		int count = 0;
+		double sum = 0;
+		for (double v : row) {
+			if (v == v) {
+				count++;
+				sum += v;
+			}
+		}
+		if (count == 0) {
+			return false;
+		}
+		double mean = sum / count;
+		double squares = 0;
+		for (int b = 0; b < row.length; b++) {
+			row[b] -= mean;
+			squares += row[b] == row[b] ? row[b] * row[b] : 0;
+		}
+		if (count < row.length || squares == 0) {
+			return false;
+		}
+		double norm = Math.sqrt(squares);
+		for (int b = 0; b < row.length; b++) {
+			row[b] /= norm;
+		}
+		return true;
+	}
+}
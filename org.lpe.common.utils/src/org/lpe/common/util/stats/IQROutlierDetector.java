@@ -19,11 +19,14 @@
 package org.lpe.common.util.stats;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
-import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
 import org.lpe.common.util.NumericPair;
 import org.lpe.common.util.NumericPairList;
+import org.lpe.common.util.concurrency.ChunkProcessor;
+import org.lpe.common.util.concurrency.LpeConcurrencyUtils;
 
 /**
  * The implementation of Inner Quartile Range outlier detector.
@@ -37,6 +40,8 @@ public class IQROutlierDetector extends AbstractOutlierDetector {
 
 	private static final int LOWER_QUARTILE = 25;
 
+	private static final int MIN_PARALLEL_CHUNK_SIZE = 65536;
+
 	public static final double DEFAULT_IQR_FACTOR = 1.5;
 
 	protected double iqrFactor = DEFAULT_IQR_FACTOR;
@@ -63,17 +68,13 @@ public class IQROutlierDetector extends AbstractOutlierDetector {
 
 	@Override
 	public List<Double> filterOutliers(double[] values) {
-		DescriptiveStatistics ds = new DescriptiveStatistics(values);
-
-		double firstQuartile = ds.getPercentile(LOWER_QUARTILE);
-		double thirdQuartile = ds.getPercentile(UPPER_QUARTILE);
-		double iqr = thirdQuartile - firstQuartile;
-		double lowerRange = firstQuartile - iqrFactor * iqr;
-		double higherRange = thirdQuartile + iqrFactor * iqr;
+		double[] range = getAcceptedRange(computeQuartiles(values));
+		double lowerRange = range[0];
+		double higherRange = range[1];
 
 		List<Double> results = new ArrayList<Double>();
 
-		for (Double value : values) {
+		for (double value : values) {
 			if (value <= higherRange && value >= lowerRange) {
 				results.add(value);
 			}
@@ -82,6 +83,73 @@ public class IQROutlierDetector extends AbstractOutlierDetector {
 		return results;
 	}
 
+	/**
+	 * Filters outliers in parallel. The quartiles are selected from the
+	 * values without sorting them (see
+	 * {@link OrderStatistics#percentilesParallel(double[], double[], ForkJoinPool)}),
+	 * afterwards the values within the accepted range are copied in chunks.
+	 * The values must not contain NaN. The result is equal to the result of
+	 * {@link #filterOutliers(double[])}.
+	 * 
+	 * @param values
+	 *            an array of numeric values
+	 * @param pool
+	 *            pool to execute the filtering in
+	 * @return a filtered array of the input values without the outliers
+	 */
+	@Override
+	public double[] filterOutliersParallel(double[] values, ForkJoinPool pool) {
+		double[] range = getAcceptedRange(computeQuartilesParallel(values, pool));
+		return filterRange(values, range[0], range[1], pool);
+	}
+
+	@Override
+	public BitSet markOutliers(double[] values) {
+		double[] range = getAcceptedRange(computeQuartiles(values));
+		double lowerRange = range[0];
+		double higherRange = range[1];
+
+		BitSet outliers = new BitSet(values.length);
+		for (int i = 0; i < values.length; i++) {
+			if (!(values[i] <= higherRange && values[i] >= lowerRange)) {
+				outliers.set(i);
+			}
+		}
+		return outliers;
+	}
+
+	/**
+	 * Marks outliers in parallel. The chunks are aligned to the 64 bit words
+	 * of the mask, so that each chunk writes its own words.
+	 * 
+	 * @param values
+	 *            an array of numeric values
+	 * @param pool
+	 *            pool to execute the marking in
+	 * @return positional mask of the outliers
+	 */
+	@Override
+	public BitSet markOutliersParallel(final double[] values, ForkJoinPool pool) {
+		double[] range = getAcceptedRange(computeQuartilesParallel(values, pool));
+		final double lowerRange = range[0];
+		final double higherRange = range[1];
+
+		int chunkSize = LpeConcurrencyUtils.getChunkSize(values.length, MIN_PARALLEL_CHUNK_SIZE, pool);
+		chunkSize = (chunkSize + Long.SIZE - 1) / Long.SIZE * Long.SIZE;
+		final long[] words = new long[(values.length + Long.SIZE - 1) / Long.SIZE];
+		LpeConcurrencyUtils.forEachChunk(pool, values.length, chunkSize, new ChunkProcessor() {
+			@Override
+			public void process(int chunk, int from, int to) {
+				for (int i = from; i < to; i++) {
+					if (!(values[i] <= higherRange && values[i] >= lowerRange)) {
+						words[i >>> 6] |= 1L << i;
+					}
+				}
+			}
+		});
+		return BitSet.valueOf(words);
+	}
+
 	/**
 	 * Filters a list of numeric pairs by the key of the pair.
 	 * 
@@ -92,13 +160,9 @@ public class IQROutlierDetector extends AbstractOutlierDetector {
 	 * @return a list of numeric pairs without outliers in the keys
 	 */
 	public <T extends Number> NumericPairList<Double, T> filterOutliersInKeys(NumericPairList<Double, T> list) {
-		DescriptiveStatistics ds = new DescriptiveStatistics(list.getValueArrayAsDouble());
-
-		double firstQuartile = ds.getPercentile(LOWER_QUARTILE);
-		double thirdQuartile = ds.getPercentile(UPPER_QUARTILE);
-		double iqr = thirdQuartile - firstQuartile;
-		double lowerRange = firstQuartile - iqrFactor * iqr;
-		double higherRange = thirdQuartile + iqrFactor * iqr;
+		double[] range = getAcceptedRange(computeQuartiles(list.getValueArrayAsDouble()));
+		double lowerRange = range[0];
+		double higherRange = range[1];
 
 		NumericPairList<Double, T> result = new NumericPairList<>();
 
@@ -121,13 +185,9 @@ public class IQROutlierDetector extends AbstractOutlierDetector {
 	 * @return a list of numeric pairs without outliers in the values
 	 */
 	public <T extends Number> NumericPairList<T, Double> filterOutliersInValues(NumericPairList<T, Double> list) {
-		DescriptiveStatistics ds = new DescriptiveStatistics(list.getValueArrayAsDouble());
-
-		double firstQuartile = ds.getPercentile(LOWER_QUARTILE);
-		double thirdQuartile = ds.getPercentile(UPPER_QUARTILE);
-		double iqr = thirdQuartile - firstQuartile;
-		double lowerRange = firstQuartile - iqrFactor * iqr;
-		double higherRange = thirdQuartile + iqrFactor * iqr;
+		double[] range = getAcceptedRange(computeQuartiles(list.getValueArrayAsDouble()));
+		double lowerRange = range[0];
+		double higherRange = range[1];
 
 		NumericPairList<T, Double> result = new NumericPairList<>();
 
@@ -140,4 +200,85 @@ public class IQROutlierDetector extends AbstractOutlierDetector {
 		return result;
 	}
 
+	/**
+	 * Computes the first and the third quartile of the given values.
+	 * 
+	 * @param values
+	 *            values
+	 * @return an array holding the first and the third quartile
+	 */
+	protected double[] computeQuartiles(double[] values) {
+		return OrderStatistics.percentiles(values, LOWER_QUARTILE, UPPER_QUARTILE);
+	}
+
+	/**
+	 * Computes the first and the third quartile of the given values in the
+	 * given pool.
+	 * 
+	 * @param values
+	 *            values
+	 * @param pool
+	 *            pool to execute the computation in
+	 * @return an array holding the first and the third quartile
+	 */
+	protected double[] computeQuartilesParallel(double[] values, ForkJoinPool pool) {
+		return OrderStatistics.percentilesParallel(values, new double[] { LOWER_QUARTILE, UPPER_QUARTILE }, pool);
+	}
+
+	/**
+	 * Computes the range of values that are not considered as outliers.
+	 * 
+	 * @param quartiles
+	 *            first and third quartile
+	 * @return an array holding the lower and the upper bound of the range
+	 */
+	protected double[] getAcceptedRange(double[] quartiles) {
+		double iqr = quartiles[1] - quartiles[0];
+		return new double[] { quartiles[0] - iqrFactor * iqr, quartiles[1] + iqrFactor * iqr };
+	}
+
+	/**
+	 * Copies the values within the given range in chunks: each chunk first
+	 * counts its values in range, then writes them at the offset given by
+	 * the counts of the preceding chunks.
+	 */
+	private static double[] filterRange(final double[] values, final double lower, final double upper,
+			ForkJoinPool pool) {
+		final int chunkSize = LpeConcurrencyUtils.getChunkSize(values.length, MIN_PARALLEL_CHUNK_SIZE, pool);
+		final int[] counts = new int[LpeConcurrencyUtils.getChunkCount(values.length, chunkSize)];
+		LpeConcurrencyUtils.forEachChunk(pool, values.length, chunkSize, new ChunkProcessor() {
+			@Override
+			public void process(int chunk, int from, int to) {
+				int count = 0;
+				for (int i = from; i < to; i++) {
+					if (values[i] <= upper && values[i] >= lower) {
+						count++;
+					}
+				}
+				counts[chunk] = count;
+			}
+		});
+
+		final int[] offsets = new int[counts.length];
+		int size = 0;
+		for (int c = 0; c < counts.length; c++) {
+			offsets[c] = size;
+			size += counts[c];
+		}
+
+		final double[] result = new double[size];
+		LpeConcurrencyUtils.forEachChunk(pool, values.length, chunkSize, new ChunkProcessor() {
+			@Override
+			public void process(int chunk, int from, int to) {
+				int offset = offsets[chunk];
+				for (int i = from; i < to; i++) {
+					if (values[i] <= upper && values[i] >= lower) {
+						result[offset++] = values[i];
+					}
+				}
+			}
+		});
+		return result;
+	}
+
 }
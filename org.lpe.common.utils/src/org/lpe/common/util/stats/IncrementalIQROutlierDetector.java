@@ -0,0 +1,233 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.stats;
+
+/**
+ * Inner Quartile Range outlier detector for live streams. The quartiles are
+ * maintained over a sliding window holding either the last <i>n</i> values
+ * or the values of the last <i>t</i> milliseconds. Each value passed to
+ * {@link #offer(double, long)} is classified against the values currently in
+ * the window and then added to it, which costs expected
+ * <code>O(log n)</code> for a window of <i>n</i> values; the history is
+ * never rescanned.
+ * 
+ * The quartiles are estimated like in the batch mode (see
+ * {@link IQROutlierDetector#filterOutliers(double[])}), so a value is
+ * classified exactly as a batch run over the current window would classify
+ * it. Values are evicted in arrival order, thus timestamps are expected to
+ * be non-decreasing. Instances are not thread-safe.
+ */
+public class IncrementalIQROutlierDetector extends IQROutlierDetector {
+
+	/**
+	 * Values are not classified as outliers before the window holds this
+	 * number of values.
+	 */
+	public static final int MIN_WINDOW_COUNT = 4;
+
+	private static final double FIRST_QUARTILE = 25;
+	private static final double THIRD_QUARTILE = 75;
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final int maxCount;
+	private final long windowMillis;
+
+	private final OrderStatisticTree window = new OrderStatisticTree();
+	private double[] values;
+	private long[] timestamps;
+	private int head = 0;
+	private int windowCount = 0;
+	private long newestTimestamp = Long.MIN_VALUE;
+
+	private IncrementalIQROutlierDetector(double iqrFactor, int maxCount, long windowMillis) {
+		super(iqrFactor);
+		this.maxCount = maxCount;
+		this.windowMillis = windowMillis;
+		int capacity = maxCount > 0 ? maxCount : INITIAL_CAPACITY;
+		values = new double[capacity];
+		timestamps = new long[capacity];
+	}
+
+	/**
+	 * Creates a detector with the default IQR factor whose window holds the
+	 * last values.
+	 * 
+	 * @param windowCount
+	 *            number of values in the window
+	 * @return the detector
+	 */
+	public static IncrementalIQROutlierDetector forCountWindow(int windowCount) {
+		return forCountWindow(windowCount, DEFAULT_IQR_FACTOR);
+	}
+
+	/**
+	 * Creates a detector whose window holds the last values.
+	 * 
+	 * @param windowCount
+	 *            number of values in the window
+	 * @param iqrFactor
+	 *            the IQR factor
+	 * @return the detector
+	 */
+	public static IncrementalIQROutlierDetector forCountWindow(int windowCount, double iqrFactor) {
+		if (windowCount < 1) {
+			throw new IllegalArgumentException("Window must hold at least one value!");
+		}
+		return new IncrementalIQROutlierDetector(iqrFactor, windowCount, 0);
+	}
+
+	/**
+	 * Creates a detector with the default IQR factor whose window holds the
+	 * values of the last milliseconds.
+	 * 
+	 * @param windowMillis
+	 *            length of the window in milliseconds
+	 * @return the detector
+	 */
+	public static IncrementalIQROutlierDetector forTimeWindow(long windowMillis) {
+		return forTimeWindow(windowMillis, DEFAULT_IQR_FACTOR);
+	}
+
+	/**
+	 * Creates a detector whose window holds the values of the last
+	 * milliseconds.
+	 * 
+	 * @param windowMillis
+	 *            length of the window in milliseconds
+	 * @param iqrFactor
+	 *            the IQR factor
+	 * @return the detector
+	 */
+	public static IncrementalIQROutlierDetector forTimeWindow(long windowMillis, double iqrFactor) {
+		if (windowMillis < 1) {
+			throw new IllegalArgumentException("Window must be at least one millisecond long!");
+		}
+		return new IncrementalIQROutlierDetector(iqrFactor, 0, windowMillis);
+	}
+
+	/**
+	 * Classifies a value of the stream and adds it to the window, using the
+	 * current system time as timestamp.
+	 * 
+	 * @param value
+	 *            value of the stream
+	 * @return <code>true</code> if the value is an outlier with respect to
+	 *         the values in the window
+	 */
+	public boolean offer(double value) {
+		return offer(value, System.currentTimeMillis());
+	}
+
+	/**
+	 * Classifies a value of the stream and adds it to the window. For time
+	 * windows, values older than the window length relative to the given
+	 * timestamp are evicted before the classification.
+	 * 
+	 * @param value
+	 *            value of the stream
+	 * @param timestamp
+	 *            time of the value in milliseconds
+	 * @return <code>true</code> if the value is an outlier with respect to
+	 *         the values in the window
+	 */
+	public boolean offer(double value, long timestamp) {
+		if (Double.isNaN(value)) {
+			throw new IllegalArgumentException("Cannot classify NaN!");
+		}
+		newestTimestamp = Math.max(newestTimestamp, timestamp);
+		if (windowMillis > 0) {
+			while (windowCount > 0 && timestamps[head] <= newestTimestamp - windowMillis) {
+				evict();
+			}
+		}
+		boolean outlier = isOutlier(value);
+
+		if (maxCount > 0 && windowCount == maxCount) {
+			evict();
+		}
+		if (windowCount == values.length) {
+			grow();
+		}
+		int tail = (head + windowCount) % values.length;
+		values[tail] = value;
+		timestamps[tail] = timestamp;
+		windowCount++;
+		window.add(value);
+		return outlier;
+	}
+
+	/**
+	 * Classifies a value against the values currently in the window without
+	 * adding it.
+	 * 
+	 * @param value
+	 *            value to check
+	 * @return <code>true</code> if the value is an outlier, <code>false</code>
+	 *         if it is not or if the window holds less than
+	 *         {@value #MIN_WINDOW_COUNT} values
+	 */
+	public boolean isOutlier(double value) {
+		if (windowCount < MIN_WINDOW_COUNT) {
+			return false;
+		}
+		double[] range = getStreamAcceptedRange();
+		return !(value <= range[1] && value >= range[0]);
+	}
+
+	/**
+	 * @return the lower and the upper bound of the non-outlier range of the
+	 *         values in the window, or NaN bounds if the window is empty
+	 */
+	public double[] getStreamAcceptedRange() {
+		return getAcceptedRange(new double[] { window.percentile(FIRST_QUARTILE),
+				window.percentile(THIRD_QUARTILE) });
+	}
+
+	/**
+	 * @return number of values in the window
+	 */
+	public int getStreamCount() {
+		return windowCount;
+	}
+
+	/**
+	 * Removes all values from the window.
+	 */
+	public void resetStream() {
+		window.clear();
+		head = 0;
+		windowCount = 0;
+		newestTimestamp = Long.MIN_VALUE;
+	}
+
+	private void evict() {
+		window.remove(values[head]);
+		head = (head + 1) % values.length;
+		windowCount--;
+	}
+
+	private void grow() {
+		double[] newValues = new double[values.length * 2];
+		long[] newTimestamps = new long[values.length * 2];
+		for (int i = 0; i < windowCount; i++) {
+			newValues[i] = values[(head + i) % values.length];
+			newTimestamps[i] = timestamps[(head + i) % values.length];
+		}
+		values = newValues;
+		timestamps = newTimestamps;
+		head = 0;
+	}
+}
@@ -0,0 +1,428 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.stats;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-memory histogram for non-negative integer values (e.g. latencies in
+ * [ms] or [us]) with a configurable number of significant decimal digits,
+ * following the log-linear bucket layout of HdrHistogram. Values are
+ * recorded into buckets whose width grows with the magnitude of the value,
+ * so that the relative error of percentile queries stays below
+ * <code>10^-significantDigits</code> over the whole trackable range. The
+ * memory footprint only depends on the trackable range and the precision,
+ * not on the number of recorded values.
+ * 
+ * Count, minimum, maximum and mean are tracked exactly.
+ * 
+ * Instances are not thread-safe. Let each producer record into its own
+ * histogram and combine them with {@link #add(LatencyHistogram)}.
+ */
+public class LatencyHistogram {
+
+	private static final int ENCODING_MAGIC = 0x4c504548;
+
+	private static final int MAX_SIGNIFICANT_DIGITS = 5;
+
+	private static final double HUNDRED = 100.0;
+
+	private final long highestTrackableValue;
+	private final int significantDigits;
+
+	private final int subBucketHalfCountMagnitude;
+	private final int subBucketHalfCount;
+	private final long subBucketMask;
+	private final int leadingZeroCountBase;
+
+	private final long[] counts;
+
+	private long totalCount = 0;
+	private long minValue = Long.MAX_VALUE;
+	private long maxValue = 0;
+	private double sum = 0;
+
+	/**
+	 * Creates a histogram.
+	 * 
+	 * @param highestTrackableValue
+	 *            highest value that can be recorded (at least 2)
+	 * @param significantDigits
+	 *            number of significant decimal digits to preserve (0 to 5)
+	 */
+	public LatencyHistogram(long highestTrackableValue, int significantDigits) {
+		if (significantDigits < 0 || significantDigits > MAX_SIGNIFICANT_DIGITS) {
+			throw new IllegalArgumentException("Number of significant digits must be between 0 and "
+					+ MAX_SIGNIFICANT_DIGITS + "!");
+		}
+		if (highestTrackableValue < 2) {
+			throw new IllegalArgumentException("Highest trackable value must be at least 2!");
+		}
+		this.highestTrackableValue = highestTrackableValue;
+		this.significantDigits = significantDigits;
+
+		long largestValueWithSingleUnitResolution = 2 * (long) Math.pow(10, significantDigits);
+		int subBucketCountMagnitude = (int) Math.ceil(Math.log(largestValueWithSingleUnitResolution) / Math.log(2));
+		subBucketHalfCountMagnitude = Math.max(subBucketCountMagnitude, 1) - 1;
+		int subBucketCount = 1 << (subBucketHalfCountMagnitude + 1);
+		subBucketHalfCount = subBucketCount / 2;
+		subBucketMask = subBucketCount - 1;
+		leadingZeroCountBase = Long.SIZE - subBucketHalfCountMagnitude - 1;
+
+		long smallestUntrackableValue = subBucketCount;
+		int bucketCount = 1;
+		while (smallestUntrackableValue <= highestTrackableValue) {
+			if (smallestUntrackableValue > Long.MAX_VALUE / 2) {
+				bucketCount++;
+				break;
+			}
+			smallestUntrackableValue <<= 1;
+			bucketCount++;
+		}
+		counts = new long[(bucketCount + 1) * subBucketHalfCount];
+	}
+
+	/**
+	 * Records a value.
+	 * 
+	 * @param value
+	 *            value to record
+	 */
+	public void recordValue(long value) {
+		recordValue(value, 1);
+	}
+
+	/**
+	 * Records a value multiple times.
+	 * 
+	 * @param value
+	 *            value to record
+	 * @param count
+	 *            number of occurrences of the value
+	 */
+	public void recordValue(long value, long count) {
+		if (value < 0 || value > highestTrackableValue) {
+			throw new IllegalArgumentException("Value " + value + " is outside of the trackable range [0, "
+					+ highestTrackableValue + "]!");
+		}
+		if (count <= 0) {
+			return;
+		}
+		counts[countsIndexFor(value)] += count;
+		totalCount += count;
+		sum += (double) value * count;
+		if (value < minValue) {
+			minValue = value;
+		}
+		if (value > maxValue) {
+			maxValue = value;
+		}
+	}
+
+	/**
+	 * Adds all values recorded by another histogram to this one. If both
+	 * histograms share the same configuration, the counts are added
+	 * directly, otherwise each bucket of the other histogram is re-recorded
+	 * with its median value.
+	 * 
+	 * @param other
+	 *            histogram to add, remains unchanged
+	 */
+	public void add(LatencyHistogram other) {
+		if (other.totalCount == 0) {
+			return;
+		}
+		if (other.maxValue > highestTrackableValue) {
+			throw new IllegalArgumentException("The other histogram contains values above the trackable range!");
+		}
+
+		if (other.counts.length == counts.length && other.significantDigits == significantDigits) {
+			for (int i = 0; i < counts.length; i++) {
+				counts[i] += other.counts[i];
+			}
+		} else {
+			for (int i = 0; i < other.counts.length; i++) {
+				if (other.counts[i] > 0) {
+					long value = Math.min(other.medianEquivalentValue(other.valueFromIndex(i)), other.maxValue);
+					counts[countsIndexFor(value)] += other.counts[i];
+				}
+			}
+		}
+		totalCount += other.totalCount;
+		sum += other.sum;
+		minValue = Math.min(minValue, other.minValue);
+		maxValue = Math.max(maxValue, other.maxValue);
+	}
+
+	/**
+	 * Resets the histogram.
+	 */
+	public void reset() {
+		for (int i = 0; i < counts.length; i++) {
+			counts[i] = 0;
+		}
+		totalCount = 0;
+		minValue = Long.MAX_VALUE;
+		maxValue = 0;
+		sum = 0;
+	}
+
+	/**
+	 * Returns the value at the given percentile. The result is the highest
+	 * value equivalent to the bucket holding the percentile, capped by the
+	 * exact maximum.
+	 * 
+	 * @param percentile
+	 *            percentile in the range [0, 100]
+	 * @return value at the percentile, or 0 if the histogram is empty
+	 */
+	public long getValueAtPercentile(double percentile) {
+		if (totalCount == 0) {
+			return 0;
+		}
+		if (percentile <= 0) {
+			return minValue;
+		}
+		double p = Math.min(percentile, HUNDRED);
+		long countAtPercentile = Math.max(1, (long) (((p / HUNDRED) * totalCount) + 0.5));
+
+		long runningCount = 0;
+		for (int i = 0; i < counts.length; i++) {
+			runningCount += counts[i];
+			if (runningCount >= countAtPercentile) {
+				long value = highestEquivalentValue(valueFromIndex(i));
+				return Math.max(minValue, Math.min(value, maxValue));
+			}
+		}
+		return maxValue;
+	}
+
+	/**
+	 * Returns the percentage of recorded values that are less than or equal
+	 * to the given value (at bucket resolution).
+	 * 
+	 * @param value
+	 *            value to look up
+	 * @return percentile rank in the range [0, 100]
+	 */
+	public double getPercentileAtOrBelowValue(long value) {
+		if (totalCount == 0) {
+			return HUNDRED;
+		}
+		if (value >= maxValue) {
+			return HUNDRED;
+		}
+		int targetIndex = countsIndexFor(Math.max(0, value));
+		long countBelow = 0;
+		for (int i = 0; i <= targetIndex; i++) {
+			countBelow += counts[i];
+		}
+		return HUNDRED * countBelow / totalCount;
+	}
+
+	/**
+	 * @return number of recorded values
+	 */
+	public long getTotalCount() {
+		return totalCount;
+	}
+
+	/**
+	 * @return exact mean of the recorded values, or 0 if the histogram is
+	 *         empty
+	 */
+	public double getMean() {
+		return totalCount == 0 ? 0 : sum / totalCount;
+	}
+
+	/**
+	 * @return exact minimum of the recorded values, or 0 if the histogram is
+	 *         empty
+	 */
+	public long getMin() {
+		return totalCount == 0 ? 0 : minValue;
+	}
+
+	/**
+	 * @return exact maximum of the recorded values, or 0 if the histogram is
+	 *         empty
+	 */
+	public long getMax() {
+		return maxValue;
+	}
+
+	/**
+	 * @return the highest trackable value
+	 */
+	public long getHighestTrackableValue() {
+		return highestTrackableValue;
+	}
+
+	/**
+	 * @return the number of significant decimal digits
+	 */
+	public int getSignificantDigits() {
+		return significantDigits;
+	}
+
+	/**
+	 * Serializes the histogram into a compact byte array. Runs of empty
+	 * buckets are run-length encoded and counts are written as variable
+	 * length integers, thus a typical histogram takes a few hundred bytes.
+	 * 
+	 * @return serialized histogram
+	 * 
+	 * @see #fromByteArray(byte[])
+	 */
+	public byte[] toByteArray() {
+		int lastNonZero = counts.length - 1;
+		while (lastNonZero >= 0 && counts[lastNonZero] == 0) {
+			lastNonZero--;
+		}
+
+		final int headerSize = 44;
+		final int maxVarIntSize = 10;
+		ByteBuffer buffer = ByteBuffer.allocate(headerSize + (lastNonZero + 1) * maxVarIntSize);
+		buffer.putInt(ENCODING_MAGIC);
+		buffer.putInt(significantDigits);
+		buffer.putLong(highestTrackableValue);
+		buffer.putLong(minValue);
+		buffer.putLong(maxValue);
+		buffer.putDouble(sum);
+		buffer.putInt(lastNonZero + 1);
+
+		int i = 0;
+		while (i <= lastNonZero) {
+			if (counts[i] == 0) {
+				int zeros = 0;
+				while (i <= lastNonZero && counts[i] == 0) {
+					zeros++;
+					i++;
+				}
+				putVarLong(buffer, -zeros);
+			} else {
+				putVarLong(buffer, counts[i]);
+				i++;
+			}
+		}
+
+		byte[] result = new byte[buffer.position()];
+		buffer.flip();
+		buffer.get(result);
+		return result;
+	}
+
+	/**
+	 * Deserializes a histogram created by {@link #toByteArray()}.
+	 * 
+	 * @param bytes
+	 *            serialized histogram
+	 * @return the histogram
+	 */
+	public static LatencyHistogram fromByteArray(byte[] bytes) {
+		try {
+			ByteBuffer buffer = ByteBuffer.wrap(bytes);
+			if (buffer.getInt() != ENCODING_MAGIC) {
+				throw new IllegalArgumentException("Not a serialized latency histogram!");
+			}
+			int digits = buffer.getInt();
+			long highest = buffer.getLong();
+			LatencyHistogram histogram = new LatencyHistogram(highest, digits);
+			histogram.minValue = buffer.getLong();
+			histogram.maxValue = buffer.getLong();
+			histogram.sum = buffer.getDouble();
+			int length = buffer.getInt();
+			if (length > histogram.counts.length) {
+				throw new IllegalArgumentException("Serialized histogram has an invalid length!");
+			}
+
+			int i = 0;
+			while (i < length) {
+				long value = getVarLong(buffer);
+				if (value < 0) {
+					i += (int) -value;
+				} else {
+					histogram.counts[i] = value;
+					histogram.totalCount += value;
+					i++;
+				}
+			}
+			return histogram;
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Serialized histogram is truncated!", e);
+		}
+	}
+
+	private int countsIndexFor(long value) {
+		int bucketIndex = leadingZeroCountBase - Long.numberOfLeadingZeros(value | subBucketMask);
+		int subBucketIndex = (int) (value >>> bucketIndex);
+		int bucketBaseIndex = (bucketIndex + 1) << subBucketHalfCountMagnitude;
+		return bucketBaseIndex + subBucketIndex - subBucketHalfCount;
+	}
+
+	private long valueFromIndex(int index) {
+		int bucketIndex = (index >> subBucketHalfCountMagnitude) - 1;
+		int subBucketIndex = (index & (subBucketHalfCount - 1)) + subBucketHalfCount;
+		if (bucketIndex < 0) {
+			subBucketIndex -= subBucketHalfCount;
+			bucketIndex = 0;
+		}
+		return ((long) subBucketIndex) << bucketIndex;
+	}
+
+	private long sizeOfEquivalentValueRange(long value) {
+		int bucketIndex = leadingZeroCountBase - Long.numberOfLeadingZeros(value | subBucketMask);
+		int subBucketIndex = (int) (value >>> bucketIndex);
+		int adjustedBucket = (subBucketIndex >= 2 * subBucketHalfCount) ? (bucketIndex + 1) : bucketIndex;
+		return 1L << adjustedBucket;
+	}
+
+	private long lowestEquivalentValue(long value) {
+		int bucketIndex = leadingZeroCountBase - Long.numberOfLeadingZeros(value | subBucketMask);
+		int subBucketIndex = (int) (value >>> bucketIndex);
+		return ((long) subBucketIndex) << bucketIndex;
+	}
+
+	private long highestEquivalentValue(long value) {
+		return lowestEquivalentValue(value) + sizeOfEquivalentValueRange(value) - 1;
+	}
+
+	private long medianEquivalentValue(long value) {
+		return lowestEquivalentValue(value) + (sizeOfEquivalentValueRange(value) >> 1);
+	}
+
+	private static void putVarLong(ByteBuffer buffer, long value) {
+		long zigZag = (value << 1) ^ (value >> (Long.SIZE - 1));
+		while ((zigZag & ~0x7FL) != 0) {
+			buffer.put((byte) ((zigZag & 0x7F) | 0x80));
+			zigZag >>>= 7;
+		}
+		buffer.put((byte) zigZag);
+	}
+
+	private static long getVarLong(ByteBuffer buffer) {
+		long zigZag = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = buffer.get();
+			zigZag |= ((long) (b & 0x7F)) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return (zigZag >>> 1) ^ -(zigZag & 1);
+	}
+}
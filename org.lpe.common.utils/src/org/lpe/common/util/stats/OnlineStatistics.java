@@ -0,0 +1,199 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.stats;
+
+/**
+ * Single-pass accumulator for count, mean, variance, minimum and maximum
+ * using Welford's algorithm. Adding a value does not allocate.
+ * 
+ * Instances are not thread-safe. For parallel processing, let each worker
+ * fill its own instance and combine them afterwards with
+ * {@link #merge(OnlineStatistics)}.
+ */
+public class OnlineStatistics {
+
+	private long n = 0;
+	private double mean = 0;
+	private double m2 = 0;
+	private double min = Double.NaN;
+	private double max = Double.NaN;
+
+	/**
+	 * Adds a value.
+	 * 
+	 * @param value
+	 *            value to add
+	 */
+	public void add(double value) {
+		n++;
+		double delta = value - mean;
+		mean += delta / n;
+		m2 += delta * (value - mean);
+		if (n == 1) {
+			min = value;
+			max = value;
+		} else {
+			if (value < min) {
+				min = value;
+			}
+			if (value > max) {
+				max = value;
+			}
+		}
+	}
+
+	/**
+	 * Adds all given values.
+	 * 
+	 * @param values
+	 *            values to add
+	 */
+	public void addAll(double[] values) {
+		for (double value : values) {
+			add(value);
+		}
+	}
+
+	/**
+	 * Adds all given values.
+	 * 
+	 * @param values
+	 *            values to add
+	 */
+	public void addAll(Iterable<? extends Number> values) {
+		for (Number value : values) {
+			add(value.doubleValue());
+		}
+	}
+
+	/**
+	 * Merges the values accumulated by another instance into this one
+	 * (parallel variance algorithm of Chan et al.).
+	 * 
+	 * @param other
+	 *            statistics to merge, remains unchanged
+	 */
+	public void merge(OnlineStatistics other) {
+		if (other.n == 0) {
+			return;
+		}
+		if (n == 0) {
+			n = other.n;
+			mean = other.mean;
+			m2 = other.m2;
+			min = other.min;
+			max = other.max;
+			return;
+		}
+
+		long total = n + other.n;
+		double delta = other.mean - mean;
+		mean += delta * other.n / total;
+		m2 += other.m2 + delta * delta * ((double) n * other.n / total);
+		n = total;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	/**
+	 * Resets the accumulator.
+	 */
+	public void clear() {
+		n = 0;
+		mean = 0;
+		m2 = 0;
+		min = Double.NaN;
+		max = Double.NaN;
+	}
+
+	/**
+	 * @return number of values
+	 */
+	public long getN() {
+		return n;
+	}
+
+	/**
+	 * @return the mean, or 0 if no values have been added
+	 */
+	public double getMean() {
+		return mean;
+	}
+
+	/**
+	 * @return the sum of all values
+	 */
+	public double getSum() {
+		return mean * n;
+	}
+
+	/**
+	 * @return the minimum, or NaN if no values have been added
+	 */
+	public double getMin() {
+		return min;
+	}
+
+	/**
+	 * @return the maximum, or NaN if no values have been added
+	 */
+	public double getMax() {
+		return max;
+	}
+
+	/**
+	 * @return the sample variance (bias corrected), or NaN if less than two
+	 *         values have been added
+	 */
+	public double getVariance() {
+		if (n < 2) {
+			return Double.NaN;
+		}
+		return m2 / (n - 1);
+	}
+
+	/**
+	 * @return the sample standard deviation, or NaN if less than two values
+	 *         have been added
+	 */
+	public double getStandardDeviation() {
+		return Math.sqrt(getVariance());
+	}
+
+	/**
+	 * @return the population variance, or NaN if no values have been added
+	 */
+	public double getPopulationVariance() {
+		if (n < 1) {
+			return Double.NaN;
+		}
+		return m2 / n;
+	}
+
+	/**
+	 * @return the population standard deviation, or NaN if no values have
+	 *         been added
+	 */
+	public double getPopulationStandardDeviation() {
+		return Math.sqrt(getPopulationVariance());
+	}
+
+	@Override
+	public String toString() {
+		return "n: " + n + ", mean: " + mean + ", std. dev.: " + getStandardDeviation() + ", min: " + min
+				+ ", max: " + max;
+	}
+}
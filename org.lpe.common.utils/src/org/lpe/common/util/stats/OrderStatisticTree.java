@@ -0,0 +1,257 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.stats;
+
+import java.util.Arrays;
+
+/**
+ * Multiset of double values supporting insertion, removal and selection by
+ * rank in expected <code>O(log n)</code>. The values are kept in a treap
+ * with subtree sizes, stored in primitive arrays; equal values share one
+ * node.
+ */
+final class OrderStatisticTree {
+
+	private static final int NIL = 0;
+	private static final int INITIAL_CAPACITY = 64;
+
+	private double[] key;
+	private int[] priority;
+	private int[] left;
+	private int[] right;
+	private int[] count;
+	private int[] size;
+
+	private int root = NIL;
+	private int nextFree = 1;
+	private int freeList = NIL;
+	private int seed = 0x2545F491;
+
+	/**
+	 * Creates an empty tree.
+	 */
+	OrderStatisticTree() {
+		key = new double[INITIAL_CAPACITY];
+		priority = new int[INITIAL_CAPACITY];
+		left = new int[INITIAL_CAPACITY];
+		right = new int[INITIAL_CAPACITY];
+		count = new int[INITIAL_CAPACITY];
+		size = new int[INITIAL_CAPACITY];
+	}
+
+	/**
+	 * @return number of values in the tree
+	 */
+	int size() {
+		return size[root];
+	}
+
+	/**
+	 * Adds a value.
+	 * 
+	 * @param value
+	 *            value to add, must not be NaN
+	 */
+	void add(double value) {
+		root = insert(root, value);
+	}
+
+	/**
+	 * Removes one occurrence of a value.
+	 * 
+	 * @param value
+	 *            value to remove
+	 */
+	void remove(double value) {
+		root = delete(root, value);
+	}
+
+	/**
+	 * Returns the value of the given rank.
+	 * 
+	 * @param k
+	 *            rank (0-based) in the range <code>[0, size())</code>
+	 * @return the <code>k</code>-th smallest value
+	 */
+	double select(int k) {
+		if (k < 0 || k >= size()) {
+			throw new IndexOutOfBoundsException("Rank: " + k + ", Size: " + size());
+		}
+		int t = root;
+		int rank = k;
+		while (true) {
+			int leftSize = size[left[t]];
+			if (rank < leftSize) {
+				t = left[t];
+			} else if (rank < leftSize + count[t]) {
+				return key[t];
+			} else {
+				rank -= leftSize + count[t];
+				t = right[t];
+			}
+		}
+	}
+
+	/**
+	 * Returns the given percentile using the same estimation as
+	 * {@link org.apache.commons.math3.stat.descriptive.rank.Percentile}.
+	 * 
+	 * @param p
+	 *            percentile in the range (0, 100]
+	 * @return the percentile, or NaN if the tree is empty
+	 */
+	double percentile(double p) {
+		int n = size();
+		if (n == 0) {
+			return Double.NaN;
+		}
+		double pos = p * (n + 1) / 100;
+		if (pos < 1) {
+			return select(0);
+		}
+		if (pos >= n) {
+			return select(n - 1);
+		}
+		double fpos = Math.floor(pos);
+		double lower = select((int) fpos - 1);
+		double upper = select((int) fpos);
+		return lower + (pos - fpos) * (upper - lower);
+	}
+
+	/**
+	 * Removes all values.
+	 */
+	void clear() {
+		root = NIL;
+		nextFree = 1;
+		freeList = NIL;
+	}
+
+	private int insert(int t, double value) {
+		if (t == NIL) {
+			return newNode(value);
+		}
+		if (value == key[t]) {
+			count[t]++;
+			size[t]++;
+			return t;
+		}
+		// the child is inserted before storing it, since inserting may grow
+		// (i.e. replace) the arrays
+		int result = t;
+		if (value < key[t]) {
+			int child = insert(left[t], value);
+			left[t] = child;
+			if (priority[child] > priority[t]) {
+				result = rotateRight(t);
+			}
+		} else {
+			int child = insert(right[t], value);
+			right[t] = child;
+			if (priority[child] > priority[t]) {
+				result = rotateLeft(t);
+			}
+		}
+		update(result);
+		return result;
+	}
+
+	private int delete(int t, double value) {
+		if (t == NIL) {
+			return NIL;
+		}
+		int result = t;
+		if (value < key[t]) {
+			left[t] = delete(left[t], value);
+		} else if (value > key[t]) {
+			right[t] = delete(right[t], value);
+		} else if (count[t] > 1) {
+			count[t]--;
+		} else if (left[t] == NIL || right[t] == NIL) {
+			result = left[t] == NIL ? right[t] : left[t];
+			freeNode(t);
+			return result;
+		} else if (priority[left[t]] > priority[right[t]]) {
+			result = rotateRight(t);
+			right[result] = delete(t, value);
+		} else {
+			result = rotateLeft(t);
+			left[result] = delete(t, value);
+		}
+		update(result);
+		return result;
+	}
+
+	private int rotateRight(int t) {
+		int l = left[t];
+		left[t] = right[l];
+		right[l] = t;
+		update(t);
+		update(l);
+		return l;
+	}
+
+	private int rotateLeft(int t) {
+		int r = right[t];
+		right[t] = left[r];
+		left[r] = t;
+		update(t);
+		update(r);
+		return r;
+	}
+
+	private void update(int t) {
+		size[t] = size[left[t]] + size[right[t]] + count[t];
+	}
+
+	private int newNode(double value) {
+		int node;
+		if (freeList != NIL) {
+			node = freeList;
+			freeList = left[node];
+		} else {
+			if (nextFree == key.length) {
+				grow();
+			}
+			node = nextFree++;
+		}
+		seed ^= seed << 13;
+		seed ^= seed >>> 17;
+		seed ^= seed << 5;
+		key[node] = value;
+		priority[node] = seed;
+		left[node] = NIL;
+		right[node] = NIL;
+		count[node] = 1;
+		size[node] = 1;
+		return node;
+	}
+
+	private void freeNode(int node) {
+		left[node] = freeList;
+		freeList = node;
+	}
+
+	private void grow() {
+		int capacity = key.length * 2;
+		key = Arrays.copyOf(key, capacity);
+		priority = Arrays.copyOf(priority, capacity);
+		left = Arrays.copyOf(left, capacity);
+		right = Arrays.copyOf(right, capacity);
+		count = Arrays.copyOf(count, capacity);
+		size = Arrays.copyOf(size, capacity);
+	}
+}
@@ -0,0 +1,549 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.stats;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+
+import org.lpe.common.util.concurrency.ChunkProcessor;
+import org.lpe.common.util.concurrency.LpeConcurrencyUtils;
+
+/**
+ * Utility class for selecting order statistics from primitive arrays
+ * without sorting them.
+ */
+public final class OrderStatistics {
+
+	private static final int INSERTION_SORT_THRESHOLD = 16;
+
+	private static final int MIN_PARALLEL_CHUNK_SIZE = 65536;
+
+	/**
+	 * Number of buckets of the histogram passes of the parallel selection.
+	 */
+	private static final int BUCKETS = 4096;
+
+	/**
+	 * Buckets holding more values are refined by a further histogram pass.
+	 */
+	private static final int MAX_CANDIDATES = 1 << 20;
+
+	private static final int MAX_LEVELS = 3;
+
+	/**
+	 * private constructor due to utility class.
+	 */
+	private OrderStatistics() {
+	}
+
+	/**
+	 * Returns the <code>k</code>-th smallest value (0-based) of the given
+	 * array, ordering NaN values after all other values like
+	 * {@link Double#compareTo(Double)}. The array is partially reordered in
+	 * place (quickselect, expected linear time).
+	 * 
+	 * @param values
+	 *            values, reordered by this method
+	 * @param k
+	 *            rank of the value to select
+	 * @return the <code>k</code>-th smallest value
+	 */
+	public static double select(double[] values, int k) {
+		if (k < 0 || k >= values.length) {
+			throw new IndexOutOfBoundsException("Rank: " + k + ", Size: " + values.length);
+		}
+		int n = moveNaNsToEnd(values);
+		if (k >= n) {
+			return Double.NaN;
+		}
+		return select(values, 0, n - 1, k);
+	}
+
+	/**
+	 * Returns the given percentiles of the values using the same estimation
+	 * as {@link org.apache.commons.math3.stat.descriptive.rank.Percentile}
+	 * (NaN values are ordered after all other values). All percentiles are
+	 * selected from a copy of the values in one multi-select pass (see
+	 * {@link #select(double[], int[])}) instead of sorting them.
+	 * 
+	 * @param values
+	 *            values, remain unchanged
+	 * @param percentiles
+	 *            percentiles in the range (0, 100]
+	 * @return the value per percentile, or NaN for each percentile if there
+	 *         are no values
+	 */
+	public static double[] percentiles(double[] values, double... percentiles) {
+		return percentilesInPlace(values.clone(), percentiles);
+	}
+
+	/**
+	 * Returns the given percentiles of the values like
+	 * {@link #percentiles(double[], double...)}, but reorders the values in
+	 * place instead of copying them.
+	 * 
+	 * @param values
+	 *            values, reordered by this method
+	 * @param percentiles
+	 *            percentiles in the range (0, 100]
+	 * @return the value per percentile, or NaN for each percentile if there
+	 *         are no values
+	 */
+	public static double[] percentilesInPlace(double[] values, double... percentiles) {
+		PercentileRanks ranks = new PercentileRanks(values.length, percentiles);
+		if (values.length == 0) {
+			return ranks.empty();
+		}
+		return ranks.interpolate(select(values, ranks.ranks));
+	}
+
+	/**
+	 * Returns the given percentiles of the values using the same estimation
+	 * as {@link org.apache.commons.math3.stat.descriptive.rank.Percentile}.
+	 * The values are neither sorted nor copied; the selection is executed in
+	 * the given pool (see {@link #selectParallel(double[], int[], ForkJoinPool)}).
+	 * The values must not contain NaN.
+	 * 
+	 * @param values
+	 *            values, remain unchanged
+	 * @param percentiles
+	 *            percentiles in the range (0, 100]
+	 * @param pool
+	 *            pool to execute the selection in
+	 * @return the value per percentile, or NaN for each percentile if there
+	 *         are no values
+	 */
+	public static double[] percentilesParallel(double[] values, double[] percentiles, ForkJoinPool pool) {
+		PercentileRanks ranks = new PercentileRanks(values.length, percentiles);
+		if (values.length == 0) {
+			return ranks.empty();
+		}
+		return ranks.interpolate(selectParallel(values, ranks.ranks, pool));
+	}
+
+	/**
+	 * Returns the values of the given ranks (0-based), ordering NaN values
+	 * after all other values like {@link Double#compareTo(Double)}. All ranks
+	 * are selected in one pass that partitions the array recursively around
+	 * the requested ranks only (multi-select), which costs
+	 * <code>O(n log m)</code> for <code>m</code> distinct ranks instead of
+	 * <code>O(n log n)</code> for sorting. The array is partially reordered
+	 * in place.
+	 * 
+	 * @param values
+	 *            values, reordered by this method
+	 * @param ranks
+	 *            ranks of the values to select, in any order
+	 * @return the value per rank
+	 */
+	public static double[] select(double[] values, int[] ranks) {
+		for (int k : ranks) {
+			if (k < 0 || k >= values.length) {
+				throw new IndexOutOfBoundsException("Rank: " + k + ", Size: " + values.length);
+			}
+		}
+		int n = moveNaNsToEnd(values);
+		int[] sorted = ranks.clone();
+		Arrays.sort(sorted);
+		int distinct = 0;
+		for (int i = 0; i < sorted.length; i++) {
+			if (sorted[i] < n && (distinct == 0 || sorted[i] != sorted[distinct - 1])) {
+				sorted[distinct++] = sorted[i];
+			}
+		}
+		multiSelect(values, 0, n - 1, sorted, 0, distinct - 1);
+
+		double[] result = new double[ranks.length];
+		for (int i = 0; i < ranks.length; i++) {
+			result[i] = ranks[i] < n ? values[ranks[i]] : Double.NaN;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the values of the given ranks (0-based), ordering NaN values
+	 * after all other values. The values are neither sorted nor copied: the
+	 * value range is split into buckets, a parallel pass counts the values
+	 * per bucket, and only the values of the buckets holding the requested
+	 * ranks are collected and selected from (the bucket is refined again if
+	 * it is too large). Each pass over the values is executed in chunks in
+	 * the given pool.
+	 * 
+	 * @param values
+	 *            values, remain unchanged
+	 * @param ranks
+	 *            ranks of the values to select
+	 * @param pool
+	 *            pool to execute the passes in
+	 * @return the value per rank
+	 */
+	public static double[] selectParallel(final double[] values, int[] ranks, ForkJoinPool pool) {
+		for (int k : ranks) {
+			if (k < 0 || k >= values.length) {
+				throw new IndexOutOfBoundsException("Rank: " + k + ", Size: " + values.length);
+			}
+		}
+		double[] result = new double[ranks.length];
+		if (ranks.length == 0) {
+			return result;
+		}
+
+		final int chunkSize = LpeConcurrencyUtils.getChunkSize(values.length, MIN_PARALLEL_CHUNK_SIZE, pool);
+		int chunks = LpeConcurrencyUtils.getChunkCount(values.length, chunkSize);
+		final double[] chunkMin = new double[chunks];
+		final double[] chunkMax = new double[chunks];
+		final int[] chunkCount = new int[chunks];
+		LpeConcurrencyUtils.forEachChunk(pool, values.length, chunkSize, new ChunkProcessor() {
+			@Override
+			public void process(int chunk, int from, int to) {
+				double min = Double.POSITIVE_INFINITY;
+				double max = Double.NEGATIVE_INFINITY;
+				int count = 0;
+				for (int i = from; i < to; i++) {
+					double v = values[i];
+					if (v == v) {
+						count++;
+						if (v < min) {
+							min = v;
+						}
+						if (v > max) {
+							max = v;
+						}
+					}
+				}
+				chunkMin[chunk] = min;
+				chunkMax[chunk] = max;
+				chunkCount[chunk] = count;
+			}
+		});
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		int n = 0;
+		for (int c = 0; c < chunks; c++) {
+			min = Math.min(min, chunkMin[c]);
+			max = Math.max(max, chunkMax[c]);
+			n += chunkCount[c];
+		}
+
+		BucketFilter root = new BucketFilter(null, 0, min, max);
+		int[][] rootCounts = null;
+		for (int r = 0; r < ranks.length; r++) {
+			int rank = ranks[r];
+			if (rank >= n) {
+				result[r] = Double.NaN;
+				continue;
+			}
+			if (min == max) {
+				result[r] = min;
+				continue;
+			}
+			if (rootCounts == null) {
+				rootCounts = root.histogram(values, chunkSize, pool);
+			}
+
+			BucketFilter filter = root;
+			int[][] counts = rootCounts;
+			for (int level = 1;; level++) {
+				int[] total = new int[BUCKETS];
+				for (int[] chunkCounts : counts) {
+					for (int b = 0; b < BUCKETS; b++) {
+						total[b] += chunkCounts[b];
+					}
+				}
+				int bucket = 0;
+				while (rank >= total[bucket]) {
+					rank -= total[bucket];
+					bucket++;
+				}
+
+				BucketFilter child = filter.refine(bucket);
+				if (total[bucket] <= MAX_CANDIDATES || level == MAX_LEVELS || child == null) {
+					double[] candidates = filter.collect(values, bucket, counts, total[bucket], chunkSize, pool);
+					result[r] = select(candidates, 0, candidates.length - 1, rank);
+					break;
+				}
+				filter = child;
+				counts = filter.histogram(values, chunkSize, pool);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Selects the <code>k</code>-th smallest value within the inclusive range
+	 * <code>[from, to]</code> of an array that does not contain NaN values.
+	 * After the call, the element at index <code>k</code> is in its sorted
+	 * position, all elements before are smaller or equal and all elements
+	 * after are greater or equal.
+	 * 
+	 * @param values
+	 *            values, reordered by this method
+	 * @param from
+	 *            first index of the range
+	 * @param to
+	 *            last index of the range
+	 * @param k
+	 *            absolute index of the value to select
+	 * @return the selected value
+	 */
+	static double select(double[] values, int from, int to, int k) {
+		int lo = from;
+		int hi = to;
+		int budget = 2 * (32 - Integer.numberOfLeadingZeros(to - from + 1));
+		while (hi - lo > INSERTION_SORT_THRESHOLD) {
+			if (budget-- == 0) {
+				// introselect: bound the worst case of bad pivots by sorting
+				Arrays.sort(values, lo, hi + 1);
+				return values[k];
+			}
+			int mid = (lo + hi) >>> 1;
+			double pivot = median(values[lo], values[mid], values[hi]);
+			int i = lo;
+			int j = hi;
+			while (i <= j) {
+				while (values[i] < pivot) {
+					i++;
+				}
+				while (values[j] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					double tmp = values[i];
+					values[i] = values[j];
+					values[j] = tmp;
+					i++;
+					j--;
+				}
+			}
+			if (k <= j) {
+				hi = j;
+			} else if (k >= i) {
+				lo = i;
+			} else {
+				return values[k];
+			}
+		}
+		insertionSort(values, lo, hi);
+		return values[k];
+	}
+
+	/**
+	 * Places the values of the sorted ranks <code>ranks[first..last]</code>
+	 * at their sorted positions within <code>[from, to]</code> by selecting
+	 * the middle rank and recursing into both partitions.
+	 */
+	private static void multiSelect(double[] values, int from, int to, int[] ranks, int first, int last) {
+		while (first <= last) {
+			int middle = (first + last) >>> 1;
+			int k = ranks[middle];
+			select(values, from, to, k);
+			if (middle - first < last - middle) {
+				multiSelect(values, from, k - 1, ranks, first, middle - 1);
+				from = k + 1;
+				first = middle + 1;
+			} else {
+				multiSelect(values, k + 1, to, ranks, middle + 1, last);
+				to = k - 1;
+				last = middle - 1;
+			}
+		}
+	}
+
+	/**
+	 * Moves all NaN values to the end of the array.
+	 * 
+	 * @param values
+	 *            values, reordered by this method
+	 * @return number of non-NaN values
+	 */
+	static int moveNaNsToEnd(double[] values) {
+		int end = values.length;
+		int i = 0;
+		while (i < end) {
+			if (Double.isNaN(values[i])) {
+				end--;
+				values[i] = values[end];
+				values[end] = Double.NaN;
+			} else {
+				i++;
+			}
+		}
+		return end;
+	}
+
+	private static void insertionSort(double[] values, int lo, int hi) {
+		for (int i = lo + 1; i <= hi; i++) {
+			double v = values[i];
+			int j = i - 1;
+			while (j >= lo && values[j] > v) {
+				values[j + 1] = values[j];
+				j--;
+			}
+			values[j + 1] = v;
+		}
+	}
+
+	private static double median(double a, double b, double c) {
+		if (a < b) {
+			return b < c ? b : (a < c ? c : a);
+		}
+		return a < c ? a : (b < c ? c : b);
+	}
+
+	/**
+	 * Ranks and interpolation weights of percentiles, estimated like
+	 * {@link org.apache.commons.math3.stat.descriptive.rank.Percentile}.
+	 * Positions outside of the values are clamped without interpolation.
+	 */
+	private static final class PercentileRanks {
+		private final int[] ranks;
+		private final double[] fractions;
+		private final boolean[] interpolate;
+
+		private PercentileRanks(int n, double[] percentiles) {
+			ranks = new int[2 * percentiles.length];
+			fractions = new double[percentiles.length];
+			interpolate = new boolean[percentiles.length];
+			for (int i = 0; i < percentiles.length; i++) {
+				double p = percentiles[i];
+				if (p <= 0 || p > 100) {
+					throw new IllegalArgumentException("Percentile must be in the range (0, 100]!");
+				}
+				double pos = p * (n + 1) / 100;
+				double fpos = Math.floor(pos);
+				if (pos < 1) {
+					ranks[2 * i] = 0;
+					ranks[2 * i + 1] = 0;
+				} else if (pos >= n) {
+					ranks[2 * i] = n - 1;
+					ranks[2 * i + 1] = n - 1;
+				} else {
+					ranks[2 * i] = (int) fpos - 1;
+					ranks[2 * i + 1] = (int) fpos;
+					fractions[i] = pos - fpos;
+					interpolate[i] = true;
+				}
+			}
+		}
+
+		private double[] empty() {
+			double[] result = new double[fractions.length];
+			Arrays.fill(result, Double.NaN);
+			return result;
+		}
+
+		private double[] interpolate(double[] selected) {
+			double[] result = new double[fractions.length];
+			for (int i = 0; i < result.length; i++) {
+				double lower = selected[2 * i];
+				double upper = selected[2 * i + 1];
+				result[i] = interpolate[i] ? lower + fractions[i] * (upper - lower) : lower;
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * Splits a value range into {@link #BUCKETS} buckets of equal width. A
+	 * refined filter only accepts the values that fall into a certain bucket
+	 * of its parent.
+	 */
+	private static final class BucketFilter {
+		private final BucketFilter parent;
+		private final int parentBucket;
+		private final double min;
+		private final double scale;
+
+		private BucketFilter(BucketFilter parent, int parentBucket, double min, double max) {
+			this.parent = parent;
+			this.parentBucket = parentBucket;
+			this.min = min;
+			this.scale = BUCKETS / (max - min);
+		}
+
+		private boolean accepts(double v) {
+			if (parent == null) {
+				return v == v;
+			}
+			return parent.accepts(v) && parent.bucketOf(v) == parentBucket;
+		}
+
+		private int bucketOf(double v) {
+			int b = (int) ((v - min) * scale);
+			return b < 0 ? 0 : (b >= BUCKETS ? BUCKETS - 1 : b);
+		}
+
+		/**
+		 * @return a filter splitting the given bucket, or <code>null</code> if
+		 *         the bucket cannot be split any further
+		 */
+		private BucketFilter refine(int bucket) {
+			double lower = min + bucket / scale;
+			double upper = min + (bucket + 1) / scale;
+			double childScale = BUCKETS / (upper - lower);
+			if (Double.isInfinite(childScale) || Double.isNaN(childScale) || childScale <= 0) {
+				return null;
+			}
+			return new BucketFilter(this, bucket, lower, upper);
+		}
+
+		/**
+		 * Counts the accepted values per bucket and chunk.
+		 */
+		private int[][] histogram(final double[] values, int chunkSize, ForkJoinPool pool) {
+			final int[][] counts = new int[LpeConcurrencyUtils.getChunkCount(values.length, chunkSize)][];
+			LpeConcurrencyUtils.forEachChunk(pool, values.length, chunkSize, new ChunkProcessor() {
+				@Override
+				public void process(int chunk, int from, int to) {
+					int[] chunkCounts = new int[BUCKETS];
+					for (int i = from; i < to; i++) {
+						double v = values[i];
+						if (accepts(v)) {
+							chunkCounts[bucketOf(v)]++;
+						}
+					}
+					counts[chunk] = chunkCounts;
+				}
+			});
+			return counts;
+		}
+
+		/**
+		 * Collects the accepted values of the given bucket into a new array.
+		 */
+		private double[] collect(final double[] values, final int bucket, int[][] counts, int size, int chunkSize,
+				ForkJoinPool pool) {
+			final double[] result = new double[size];
+			final int[] offsets = new int[counts.length];
+			for (int c = 1; c < counts.length; c++) {
+				offsets[c] = offsets[c - 1] + counts[c - 1][bucket];
+			}
+			LpeConcurrencyUtils.forEachChunk(pool, values.length, chunkSize, new ChunkProcessor() {
+				@Override
+				public void process(int chunk, int from, int to) {
+					int offset = offsets[chunk];
+					for (int i = from; i < to; i++) {
+						double v = values[i];
+						if (accepts(v) && bucketOf(v) == bucket) {
+							result[offset++] = v;
+						}
+					}
+				}
+			});
+			return result;
+		}
+	}
+}
@@ -0,0 +1,299 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.stats;
+
+import java.util.Arrays;
+
+import org.lpe.common.util.ColumnarNumericPairList;
+import org.lpe.common.util.NumericPairList;
+
+/**
+ * Aggregates of the values of a series sorted by key (e.g. timestamps in
+ * [ms]) over windows of fixed key distance. The windows
+ * <code>[start, start + windowLength)</code> start at multiples of the step,
+ * so that steps equal to the window length yield tumbling windows and
+ * smaller steps sliding windows.
+ * 
+ * All windows are computed in a single pass with two pointers into the
+ * series: count and sum are updated incrementally, minimum and maximum are
+ * kept in monotonic deques, and percentiles in an order statistic tree over
+ * the current window. Thus, each value is added and removed once, and the
+ * cost is <code>O(n log w)</code> for windows of <code>w</code> values if
+ * percentiles are requested, otherwise <code>O(n)</code>, plus
+ * <code>O(1)</code> per window.
+ */
+public final class RollingAggregation {
+
+	private final double windowLength;
+	private final double[] starts;
+	private final long[] counts;
+	private final double[] sums;
+	private final double[] mins;
+	private final double[] maxs;
+	private final double[] percentiles;
+	private final double[][] percentileValues;
+
+	private RollingAggregation(double windowLength, int windows, double[] percentiles) {
+		this.windowLength = windowLength;
+		this.starts = new double[windows];
+		this.counts = new long[windows];
+		this.sums = new double[windows];
+		this.mins = new double[windows];
+		this.maxs = new double[windows];
+		this.percentiles = percentiles.clone();
+		this.percentileValues = new double[percentiles.length][windows];
+	}
+
+	/**
+	 * Aggregates the series over non-overlapping windows.
+	 * 
+	 * @param series
+	 *            series sorted by key; values must not be NaN
+	 * @param windowLength
+	 *            length of the windows in key units
+	 * @param percentiles
+	 *            percentiles in the range (0, 100] to compute per window
+	 * @return the aggregation
+	 */
+	public static RollingAggregation tumbling(NumericPairList<?, ?> series, double windowLength,
+			double... percentiles) {
+		return sliding(series, windowLength, windowLength, percentiles);
+	}
+
+	/**
+	 * Aggregates the series over overlapping windows.
+	 * 
+	 * @param series
+	 *            series sorted by key; values must not be NaN
+	 * @param windowLength
+	 *            length of the windows in key units
+	 * @param step
+	 *            key distance between the starts of consecutive windows
+	 * @param percentiles
+	 *            percentiles in the range (0, 100] to compute per window
+	 * @return the aggregation
+	 */
+	public static RollingAggregation sliding(NumericPairList<?, ?> series, double windowLength, double step,
+			double... percentiles) {
+		if (!(windowLength > 0) || !(step > 0)) {
+			throw new IllegalArgumentException("Window length and step must be positive!");
+		}
+		for (double p : percentiles) {
+			if (p <= 0 || p > 100) {
+				throw new IllegalArgumentException("Percentile must be in the range (0, 100]!");
+			}
+		}
+		if (!series.isSortedByKey()) {
+			throw new IllegalArgumentException("Series must be sorted by key!");
+		}
+		int n = series.size();
+		if (n == 0) {
+			return new RollingAggregation(windowLength, 0, percentiles);
+		}
+
+		double firstStart = Math.floor((series.getKeyAsDouble(0) - windowLength) / step + 1) * step;
+		long windows = (long) Math.floor((series.getKeyAsDouble(n - 1) - firstStart) / step) + 1;
+		if (windows > Integer.MAX_VALUE) {
+			throw new IllegalArgumentException("Step is too small for the key range of the series!");
+		}
+		RollingAggregation result = new RollingAggregation(windowLength, (int) windows, percentiles);
+		result.aggregate(series, firstStart, step);
+		return result;
+	}
+
+	private void aggregate(NumericPairList<?, ?> series, double firstStart, double step) {
+		int n = series.size();
+		OrderStatisticTree tree = percentiles.length > 0 ? new OrderStatisticTree() : null;
+		int[] minDeque = new int[n];
+		int minHead = 0;
+		int minTail = 0;
+		int[] maxDeque = new int[n];
+		int maxHead = 0;
+		int maxTail = 0;
+
+		int lo = 0;
+		int hi = 0;
+		long count = 0;
+		double sum = 0;
+		for (int w = 0; w < starts.length; w++) {
+			double start = firstStart + w * step;
+			double end = start + windowLength;
+			starts[w] = start;
+
+			while (lo < hi && series.getKeyAsDouble(lo) < start) {
+				double v = series.getValueAsDouble(lo);
+				count--;
+				sum -= v;
+				if (tree != null) {
+					tree.remove(v);
+				}
+				lo++;
+			}
+			if (lo == hi) {
+				while (lo < n && series.getKeyAsDouble(lo) < start) {
+					lo++;
+				}
+				hi = lo;
+				count = 0;
+				sum = 0;
+				minHead = 0;
+				minTail = 0;
+				maxHead = 0;
+				maxTail = 0;
+			}
+			while (minHead < minTail && minDeque[minHead] < lo) {
+				minHead++;
+			}
+			while (maxHead < maxTail && maxDeque[maxHead] < lo) {
+				maxHead++;
+			}
+
+			while (hi < n && series.getKeyAsDouble(hi) < end) {
+				double v = series.getValueAsDouble(hi);
+				count++;
+				sum += v;
+				if (tree != null) {
+					tree.add(v);
+				}
+				while (minTail > minHead && series.getValueAsDouble(minDeque[minTail - 1]) >= v) {
+					minTail--;
+				}
+				minDeque[minTail++] = hi;
+				while (maxTail > maxHead && series.getValueAsDouble(maxDeque[maxTail - 1]) <= v) {
+					maxTail--;
+				}
+				maxDeque[maxTail++] = hi;
+				hi++;
+			}
+
+			counts[w] = count;
+			sums[w] = sum;
+			mins[w] = count > 0 ? series.getValueAsDouble(minDeque[minHead]) : Double.NaN;
+			maxs[w] = count > 0 ? series.getValueAsDouble(maxDeque[maxHead]) : Double.NaN;
+			for (int p = 0; p < percentiles.length; p++) {
+				percentileValues[p][w] = tree.percentile(percentiles[p]);
+			}
+		}
+	}
+
+	/**
+	 * @return number of windows
+	 */
+	public int getWindowCount() {
+		return starts.length;
+	}
+
+	/**
+	 * @return the window length in key units
+	 */
+	public double getWindowLength() {
+		return windowLength;
+	}
+
+	/**
+	 * @return number of values per window, keyed by window start
+	 */
+	public NumericPairList<Double, Double> getCountSeries() {
+		ColumnarNumericPairList<Double, Double> result = createSeries();
+		for (int w = 0; w < starts.length; w++) {
+			result.add(starts[w], (double) counts[w]);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of values per time unit in each window, e.g. the
+	 * throughput in requests per second for keys in [ms] and a time unit of
+	 * 1000.
+	 * 
+	 * @param timeUnit
+	 *            time unit in key units
+	 * @return number of values per time unit, keyed by window start
+	 */
+	public NumericPairList<Double, Double> getThroughputSeries(double timeUnit) {
+		ColumnarNumericPairList<Double, Double> result = createSeries();
+		for (int w = 0; w < starts.length; w++) {
+			result.add(starts[w], counts[w] * timeUnit / windowLength);
+		}
+		return result;
+	}
+
+	/**
+	 * @return sum of the values per window, keyed by window start
+	 */
+	public NumericPairList<Double, Double> getSumSeries() {
+		return toSeries(sums);
+	}
+
+	/**
+	 * @return mean of the values per window (NaN for empty windows), keyed by
+	 *         window start
+	 */
+	public NumericPairList<Double, Double> getMeanSeries() {
+		ColumnarNumericPairList<Double, Double> result = createSeries();
+		for (int w = 0; w < starts.length; w++) {
+			result.add(starts[w], counts[w] > 0 ? sums[w] / counts[w] : Double.NaN);
+		}
+		return result;
+	}
+
+	/**
+	 * @return minimum per window (NaN for empty windows), keyed by window
+	 *         start
+	 */
+	public NumericPairList<Double, Double> getMinSeries() {
+		return toSeries(mins);
+	}
+
+	/**
+	 * @return maximum per window (NaN for empty windows), keyed by window
+	 *         start
+	 */
+	public NumericPairList<Double, Double> getMaxSeries() {
+		return toSeries(maxs);
+	}
+
+	/**
+	 * Returns a percentile per window, estimated like
+	 * {@link org.apache.commons.math3.stat.descriptive.rank.Percentile}.
+	 * 
+	 * @param percentile
+	 *            one of the percentiles passed on creation
+	 * @return the percentile per window (NaN for empty windows), keyed by
+	 *         window start
+	 */
+	public NumericPairList<Double, Double> getPercentileSeries(double percentile) {
+		for (int p = 0; p < percentiles.length; p++) {
+			if (percentiles[p] == percentile) {
+				return toSeries(percentileValues[p]);
+			}
+		}
+		throw new IllegalArgumentException("Percentile " + percentile + " has not been computed! Computed are: "
+				+ Arrays.toString(percentiles));
+	}
+
+	private NumericPairList<Double, Double> toSeries(double[] aggregates) {
+		ColumnarNumericPairList<Double, Double> result = createSeries();
+		for (int w = 0; w < starts.length; w++) {
+			result.add(starts[w], aggregates[w]);
+		}
+		return result;
+	}
+
+	private ColumnarNumericPairList<Double, Double> createSeries() {
+		return new ColumnarNumericPairList<>(Double.class, Double.class, starts.length);
+	}
+}
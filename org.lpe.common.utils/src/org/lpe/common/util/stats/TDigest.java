@@ -0,0 +1,393 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.stats;
+
+/**
+ * Streaming quantile sketch (merging t-digest by T. Dunning). The sketch
+ * summarizes an arbitrary number of values in a bounded number of weighted
+ * centroids. Centroids are small near the tails and larger around the
+ * median, so that the absolute error of a quantile estimate for quantile
+ * <i>q</i> is roughly proportional to <code>q(1-q)/compression</code>.
+ * 
+ * Memory is bounded by <code>O(compression)</code>, adding a value costs
+ * amortized <code>O(log compression)</code>. Instances are not thread-safe
+ * but can be combined with {@link #add(TDigest)}.
+ */
+public class TDigest {
+
+	public static final double DEFAULT_COMPRESSION = 100;
+
+	private static final int BUFFER_FACTOR = 5;
+
+	private final double compression;
+
+	private final double[] mean;
+	private final double[] weight;
+	private int centroidCount = 0;
+
+	private final double[] bufferMean;
+	private final double[] bufferWeight;
+	private int bufferCount = 0;
+
+	private final double[] mergeMean;
+	private final double[] mergeWeight;
+
+	private double totalWeight = 0;
+	private double unmergedWeight = 0;
+	private double min = Double.NaN;
+	private double max = Double.NaN;
+
+	/**
+	 * Creates a sketch with the default compression of
+	 * {@value #DEFAULT_COMPRESSION}.
+	 */
+	public TDigest() {
+		this(DEFAULT_COMPRESSION);
+	}
+
+	/**
+	 * Creates a sketch.
+	 * 
+	 * @param compression
+	 *            compression factor; higher values increase accuracy and
+	 *            memory consumption
+	 */
+	public TDigest(double compression) {
+		if (compression < 1) {
+			throw new IllegalArgumentException("Compression must be at least 1!");
+		}
+		this.compression = compression;
+		int maxCentroids = 2 * (int) Math.ceil(compression) + 10;
+		mean = new double[maxCentroids];
+		weight = new double[maxCentroids];
+		int bufferSize = BUFFER_FACTOR * maxCentroids;
+		bufferMean = new double[bufferSize];
+		bufferWeight = new double[bufferSize];
+		mergeMean = new double[maxCentroids + bufferSize];
+		mergeWeight = new double[maxCentroids + bufferSize];
+	}
+
+	/**
+	 * Adds a value.
+	 * 
+	 * @param value
+	 *            value to add
+	 */
+	public void add(double value) {
+		add(value, 1);
+	}
+
+	/**
+	 * Adds a value with the given weight.
+	 * 
+	 * @param value
+	 *            value to add
+	 * @param w
+	 *            positive weight of the value
+	 */
+	public void add(double value, double w) {
+		if (Double.isNaN(value)) {
+			throw new IllegalArgumentException("Cannot add NaN to a t-digest!");
+		}
+		if (!(w > 0)) {
+			throw new IllegalArgumentException("Weight must be positive!");
+		}
+		if (bufferCount == bufferMean.length) {
+			mergeBuffer();
+		}
+		if (totalWeight + unmergedWeight == 0) {
+			min = value;
+			max = value;
+		} else {
+			min = Math.min(min, value);
+			max = Math.max(max, value);
+		}
+		bufferMean[bufferCount] = value;
+		bufferWeight[bufferCount] = w;
+		bufferCount++;
+		unmergedWeight += w;
+	}
+
+	/**
+	 * Adds all given values.
+	 * 
+	 * @param values
+	 *            values to add
+	 */
+	public void addAll(double[] values) {
+		for (double value : values) {
+			add(value, 1);
+		}
+	}
+
+	/**
+	 * Adds all values summarized by another sketch.
+	 * 
+	 * @param other
+	 *            sketch to add, remains unchanged
+	 */
+	public void add(TDigest other) {
+		for (int i = 0; i < other.centroidCount; i++) {
+			add(other.mean[i], other.weight[i]);
+		}
+		for (int i = 0; i < other.bufferCount; i++) {
+			add(other.bufferMean[i], other.bufferWeight[i]);
+		}
+		if (other.getCount() > 0) {
+			min = Math.min(min, other.min);
+			max = Math.max(max, other.max);
+		}
+	}
+
+	/**
+	 * Estimates the value at the given quantile.
+	 * 
+	 * @param q
+	 *            quantile in the range [0, 1]
+	 * @return estimated value, or NaN if the sketch is empty
+	 */
+	public double quantile(double q) {
+		if (q < 0 || q > 1) {
+			throw new IllegalArgumentException("Quantile must be in the range [0, 1]!");
+		}
+		mergeBuffer();
+		int n = centroidCount;
+		if (n == 0) {
+			return Double.NaN;
+		}
+		if (n == 1) {
+			return mean[0];
+		}
+
+		double index = q * totalWeight;
+		if (index < 1) {
+			return min;
+		}
+		if (weight[0] > 1 && index < weight[0] / 2) {
+			return min + (index - 1) / (weight[0] / 2 - 1) * (mean[0] - min);
+		}
+		if (index > totalWeight - 1) {
+			return max;
+		}
+		if (weight[n - 1] > 1 && totalWeight - index <= weight[n - 1] / 2) {
+			return max - (totalWeight - index - 1) / (weight[n - 1] / 2 - 1) * (max - mean[n - 1]);
+		}
+
+		double weightSoFar = weight[0] / 2;
+		for (int i = 0; i < n - 1; i++) {
+			double dw = (weight[i] + weight[i + 1]) / 2;
+			if (weightSoFar + dw > index) {
+				double leftUnit = 0;
+				if (weight[i] == 1) {
+					if (index - weightSoFar < 0.5) {
+						return mean[i];
+					}
+					leftUnit = 0.5;
+				}
+				double rightUnit = 0;
+				if (weight[i + 1] == 1) {
+					if (weightSoFar + dw - index <= 0.5) {
+						return mean[i + 1];
+					}
+					rightUnit = 0.5;
+				}
+				double z1 = index - weightSoFar - leftUnit;
+				double z2 = weightSoFar + dw - index - rightUnit;
+				return weightedAverage(mean[i], z2, mean[i + 1], z1);
+			}
+			weightSoFar += dw;
+		}
+
+		double z1 = index - totalWeight - weight[n - 1] / 2;
+		double z2 = weight[n - 1] / 2 - z1;
+		return weightedAverage(mean[n - 1], z1, max, z2);
+	}
+
+	/**
+	 * Estimates the value at the given percentile.
+	 * 
+	 * @param percentile
+	 *            percentile in the range [0, 100]
+	 * @return estimated value, or NaN if the sketch is empty
+	 */
+	public double percentile(double percentile) {
+		return quantile(percentile / 100.0);
+	}
+
+	/**
+	 * @return total weight (number of values for unweighted input)
+	 */
+	public long getCount() {
+		return Math.round(totalWeight + unmergedWeight);
+	}
+
+	/**
+	 * @return exact minimum, or NaN if the sketch is empty
+	 */
+	public double getMin() {
+		return min;
+	}
+
+	/**
+	 * @return exact maximum, or NaN if the sketch is empty
+	 */
+	public double getMax() {
+		return max;
+	}
+
+	/**
+	 * @return the compression factor
+	 */
+	public double getCompression() {
+		return compression;
+	}
+
+	/**
+	 * @return current number of centroids
+	 */
+	public int getCentroidCount() {
+		mergeBuffer();
+		return centroidCount;
+	}
+
+	/**
+	 * Resets the sketch.
+	 */
+	public void clear() {
+		centroidCount = 0;
+		bufferCount = 0;
+		totalWeight = 0;
+		unmergedWeight = 0;
+		min = Double.NaN;
+		max = Double.NaN;
+	}
+
+	/**
+	 * Merges the buffered values into the centroids.
+	 */
+	private void mergeBuffer() {
+		if (bufferCount == 0) {
+			return;
+		}
+		int n = centroidCount + bufferCount;
+		System.arraycopy(mean, 0, mergeMean, 0, centroidCount);
+		System.arraycopy(weight, 0, mergeWeight, 0, centroidCount);
+		System.arraycopy(bufferMean, 0, mergeMean, centroidCount, bufferCount);
+		System.arraycopy(bufferWeight, 0, mergeWeight, centroidCount, bufferCount);
+		sort(mergeMean, mergeWeight, 0, n - 1);
+
+		totalWeight += unmergedWeight;
+		unmergedWeight = 0;
+		bufferCount = 0;
+
+		int last = 0;
+		mean[0] = mergeMean[0];
+		weight[0] = mergeWeight[0];
+		double weightSoFar = 0;
+		double weightLimit = totalWeight * integratedQuantile(1);
+		for (int i = 1; i < n; i++) {
+			if (weightSoFar + weight[last] + mergeWeight[i] <= weightLimit) {
+				weight[last] += mergeWeight[i];
+				mean[last] += (mergeMean[i] - mean[last]) * mergeWeight[i] / weight[last];
+			} else {
+				weightSoFar += weight[last];
+				double k = integratedLocation(weightSoFar / totalWeight);
+				weightLimit = totalWeight * integratedQuantile(k + 1);
+				last++;
+				mean[last] = mergeMean[i];
+				weight[last] = mergeWeight[i];
+			}
+		}
+		centroidCount = last + 1;
+	}
+
+	private double integratedLocation(double q) {
+		return compression * (Math.asin(2 * q - 1) / Math.PI + 0.5);
+	}
+
+	private double integratedQuantile(double k) {
+		return (Math.sin(Math.min(k, compression) * Math.PI / compression - Math.PI / 2) + 1) / 2;
+	}
+
+	private static double weightedAverage(double x1, double w1, double x2, double w2) {
+		double lo = Math.min(x1, x2);
+		double hi = Math.max(x1, x2);
+		double avg = (x1 * w1 + x2 * w2) / (w1 + w2);
+		return Math.max(lo, Math.min(avg, hi));
+	}
+
+	/**
+	 * Sorts the keys and moves the values along (quicksort with insertion
+	 * sort for short ranges).
+	 */
+	private static void sort(double[] keys, double[] values, int lo, int hi) {
+		final int insertionThreshold = 16;
+		while (hi - lo > insertionThreshold) {
+			int mid = (lo + hi) >>> 1;
+			double pivot = median(keys[lo], keys[mid], keys[hi]);
+			int i = lo;
+			int j = hi;
+			while (i <= j) {
+				while (keys[i] < pivot) {
+					i++;
+				}
+				while (keys[j] > pivot) {
+					j--;
+				}
+				if (i <= j) {
+					swap(keys, values, i, j);
+					i++;
+					j--;
+				}
+			}
+			if (j - lo < hi - i) {
+				sort(keys, values, lo, j);
+				lo = i;
+			} else {
+				sort(keys, values, i, hi);
+				hi = j;
+			}
+		}
+		for (int i = lo + 1; i <= hi; i++) {
+			double k = keys[i];
+			double v = values[i];
+			int j = i - 1;
+			while (j >= lo && keys[j] > k) {
+				keys[j + 1] = keys[j];
+				values[j + 1] = values[j];
+				j--;
+			}
+			keys[j + 1] = k;
+			values[j + 1] = v;
+		}
+	}
+
+	private static double median(double a, double b, double c) {
+		if (a < b) {
+			return b < c ? b : (a < c ? c : a);
+		}
+		return a < c ? a : (b < c ? c : b);
+	}
+
+	private static void swap(double[] keys, double[] values, int i, int j) {
+		double k = keys[i];
+		keys[i] = keys[j];
+		keys[j] = k;
+		double v = values[i];
+		values[i] = values[j];
+		values[j] = v;
+	}
+}
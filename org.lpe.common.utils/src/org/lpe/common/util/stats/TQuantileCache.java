@@ -0,0 +1,121 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.stats;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.math3.distribution.TDistribution;
+
+/**
+ * Thread-safe cache of Student's t-distribution quantiles keyed by degrees
+ * of freedom and cumulative probability. Computing a quantile requires an
+ * iterative inversion of the distribution function; repeated confidence
+ * interval computations with the same sample sizes and significance levels
+ * thus only pay for it once. The cache is cleared when it exceeds
+ * {@value #MAX_ENTRIES} entries.
+ */
+public final class TQuantileCache {
+
+	public static final int MAX_ENTRIES = 65536;
+
+	private static final ConcurrentMap<Key, Double> CACHE = new ConcurrentHashMap<>();
+
+	/**
+	 * private constructor due to utility class.
+	 */
+	private TQuantileCache() {
+	}
+
+	/**
+	 * Returns the quantile of the t-distribution, i.e. the value
+	 * <code>x</code> with <code>P(X &lt;= x) = probability</code>.
+	 * 
+	 * @param degreesOfFreedom
+	 *            degrees of freedom of the distribution
+	 * @param probability
+	 *            cumulative probability in the range [0, 1]
+	 * @return the quantile
+	 */
+	public static double inverseCumulativeProbability(long degreesOfFreedom, double probability) {
+		Key key = new Key(degreesOfFreedom, probability);
+		Double quantile = CACHE.get(key);
+		if (quantile == null) {
+			quantile = new TDistribution(degreesOfFreedom).inverseCumulativeProbability(probability);
+			if (CACHE.size() >= MAX_ENTRIES) {
+				CACHE.clear();
+			}
+			CACHE.put(key, quantile);
+		}
+		return quantile;
+	}
+
+	/**
+	 * Returns the critical value of a two-sided test or confidence interval,
+	 * i.e. the quantile for the probability <code>1 - significance / 2</code>.
+	 * 
+	 * @param degreesOfFreedom
+	 *            degrees of freedom of the distribution
+	 * @param significance
+	 *            significance level
+	 * @return the critical value
+	 */
+	public static double getTwoSidedCriticalValue(long degreesOfFreedom, double significance) {
+		return inverseCumulativeProbability(degreesOfFreedom, 1.0 - significance / 2);
+	}
+
+	/**
+	 * @return number of cached quantiles
+	 */
+	public static int size() {
+		return CACHE.size();
+	}
+
+	/**
+	 * Removes all cached quantiles.
+	 */
+	public static void clear() {
+		CACHE.clear();
+	}
+
+	/**
+	 * Cache key.
+	 */
+	private static final class Key {
+		private final long degreesOfFreedom;
+		private final long probabilityBits;
+
+		private Key(long degreesOfFreedom, double probability) {
+			this.degreesOfFreedom = degreesOfFreedom;
+			this.probabilityBits = Double.doubleToLongBits(probability);
+		}
+
+		@Override
+		public int hashCode() {
+			long h = degreesOfFreedom * 31 + probabilityBits;
+			return (int) (h ^ (h >>> 32));
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key) obj;
+			return degreesOfFreedom == other.degreesOfFreedom && probabilityBits == other.probabilityBits;
+		}
+	}
+}
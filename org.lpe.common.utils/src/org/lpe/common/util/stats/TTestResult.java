@@ -0,0 +1,107 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.stats;
+
+/**
+ * Result of a two-sample t-test comparing a baseline sample with a candidate
+ * sample. The t statistic, the mean difference and the effect size are all
+ * oriented as candidate minus baseline, i.e. they are positive if the
+ * candidate mean is higher.
+ */
+public class TTestResult {
+
+	private final double pValue;
+	private final double t;
+	private final double degreesOfFreedom;
+	private final double meanDifference;
+	private final double effectSize;
+
+	/**
+	 * Constructor.
+	 * 
+	 * @param pValue
+	 *            two-sided p-value, or -1 if a sample has less than two
+	 *            values
+	 * @param t
+	 *            t statistic of the candidate against the baseline
+	 * @param degreesOfFreedom
+	 *            degrees of freedom of the test
+	 * @param meanDifference
+	 *            candidate mean minus baseline mean
+	 * @param effectSize
+	 *            Cohen's d of the candidate against the baseline
+	 */
+	public TTestResult(double pValue, double t, double degreesOfFreedom, double meanDifference, double effectSize) {
+		this.pValue = pValue;
+		this.t = t;
+		this.degreesOfFreedom = degreesOfFreedom;
+		this.meanDifference = meanDifference;
+		this.effectSize = effectSize;
+	}
+
+	/**
+	 * @return the two-sided p-value, or -1 if a sample has less than two
+	 *         values
+	 */
+	public double getPValue() {
+		return pValue;
+	}
+
+	/**
+	 * @return the t statistic; positive if the candidate mean is higher
+	 */
+	public double getT() {
+		return t;
+	}
+
+	/**
+	 * @return the (Welch-Satterthwaite) degrees of freedom
+	 */
+	public double getDegreesOfFreedom() {
+		return degreesOfFreedom;
+	}
+
+	/**
+	 * @return the candidate mean minus the baseline mean
+	 */
+	public double getMeanDifference() {
+		return meanDifference;
+	}
+
+	/**
+	 * @return Cohen's d, i.e. the mean difference divided by the pooled
+	 *         standard deviation; positive if the candidate mean is higher
+	 */
+	public double getEffectSize() {
+		return effectSize;
+	}
+
+	/**
+	 * @param significance
+	 *            significance level
+	 * @return <code>true</code> if the p-value is valid and below the
+	 *         significance level
+	 */
+	public boolean isSignificant(double significance) {
+		return pValue >= 0 && pValue < significance;
+	}
+
+	@Override
+	public String toString() {
+		return "p: " + pValue + ", t: " + t + ", df: " + degreesOfFreedom + ", mean diff.: " + meanDifference
+				+ ", d: " + effectSize;
+	}
+}
@@ -0,0 +1,198 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.stats;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.lpe.common.util.concurrency.LpeConcurrencyUtils;
+
+/**
+ * Computes, for each point of a series, the mean absolute distance to its
+ * neighbors within a centered window of <code>windowSize / 2</code> points
+ * on each side. Points without neighbors get a metric of NaN.
+ *
+ * The window is slid over the series while two Fenwick trees over the value
+ * ranks keep the count and the sum of the values in the window. Thus, the sum
+ * of absolute distances of a point to all points in its window is obtained
+ * in <code>O(log n)</code>, independent of the window size, and the whole
+ * series in <code>O(n log n)</code> instead of <code>O(n * windowSize)</code>.
+ * As the sums are accumulated in a different order, the metric equals the
+ * direct summation only up to floating-point rounding.
+ */
+public final class WindowedNoiseMetric {
+
+	private static final int MIN_PARALLEL_CHUNK_SIZE = 16384;
+
+	/**
+	 * private constructor due to utility class.
+	 */
+	private WindowedNoiseMetric() {
+	}
+
+	/**
+	 * Computes the noise metric for each point of the series.
+	 *
+	 * @param series
+	 *            data points
+	 * @param windowSize
+	 *            window size to include neighbors for consideration
+	 * @return noise metric per point
+	 */
+	public static double[] compute(double[] series, int windowSize) {
+		double[] result = new double[series.length];
+		compute(series, windowSize / 2, 0, series.length, result);
+		return result;
+	}
+
+	/**
+	 * Computes the noise metric for each point of the series by splitting the
+	 * series into chunks processed in the given fork/join pool.
+	 *
+	 * @param series
+	 *            data points
+	 * @param windowSize
+	 *            window size to include neighbors for consideration
+	 * @param pool
+	 *            pool to execute the computation in
+	 * @return noise metric per point
+	 */
+	public static double[] computeParallel(double[] series, int windowSize, ForkJoinPool pool) {
+		double[] result = new double[series.length];
+		int halfWindow = windowSize / 2;
+		int chunkSize = LpeConcurrencyUtils.getChunkSize(series.length,
+				Math.max(MIN_PARALLEL_CHUNK_SIZE, 4 * halfWindow), pool);
+		pool.invoke(new NoiseTask(series, halfWindow, 0, series.length, chunkSize, result));
+		return result;
+	}
+
+	/**
+	 * Computes the noise metric for the points <code>[from, to)</code>.
+	 */
+	private static void compute(double[] series, int halfWindow, int from, int to, double[] result) {
+		if (from >= to) {
+			return;
+		}
+		int regionFrom = Math.max(0, from - halfWindow);
+		int regionTo = (int) Math.min(series.length, (long) to + halfWindow);
+
+		// values are shifted to reduce cancellation for large magnitudes
+		// (e.g. timestamps); absolute distances are shift invariant
+		double shift = series[from];
+		double[] distinct = new double[regionTo - regionFrom];
+		for (int j = regionFrom; j < regionTo; j++) {
+			distinct[j - regionFrom] = series[j] - shift;
+		}
+		Arrays.sort(distinct);
+		int m = 0;
+		for (int j = 0; j < distinct.length; j++) {
+			if (m == 0 || Double.compare(distinct[j], distinct[m - 1]) != 0) {
+				distinct[m++] = distinct[j];
+			}
+		}
+
+		int[] ranks = new int[regionTo - regionFrom];
+		for (int j = regionFrom; j < regionTo; j++) {
+			ranks[j - regionFrom] = Arrays.binarySearch(distinct, 0, m, series[j] - shift) + 1;
+		}
+
+		long[] countTree = new long[m + 1];
+		double[] sumTree = new double[m + 1];
+		long windowCount = 0;
+		double windowSum = 0;
+
+		int windowEnd = (int) Math.min(series.length - 1, (long) from + halfWindow);
+		for (int j = regionFrom; j <= windowEnd; j++) {
+			double v = series[j] - shift;
+			update(countTree, sumTree, ranks[j - regionFrom], 1, v);
+			windowCount++;
+			windowSum += v;
+		}
+
+		for (int i = from; i < to; i++) {
+			double x = series[i] - shift;
+			int rank = ranks[i - regionFrom];
+
+			long countBelow = 0;
+			double sumBelow = 0;
+			for (int r = rank; r > 0; r -= r & -r) {
+				countBelow += countTree[r];
+				sumBelow += sumTree[r];
+			}
+			double distanceSum = (x * countBelow - sumBelow) + (windowSum - sumBelow - x * (windowCount - countBelow));
+			long neighbors = windowCount - 1;
+			result[i] = neighbors > 0 ? Math.max(0, distanceSum) / neighbors : Double.NaN;
+
+			int leaving = i - halfWindow;
+			if (leaving >= 0) {
+				double v = series[leaving] - shift;
+				update(countTree, sumTree, ranks[leaving - regionFrom], -1, -v);
+				windowCount--;
+				windowSum -= v;
+			}
+			long entering = (long) i + halfWindow + 1;
+			if (entering < series.length && i + 1 < to) {
+				int e = (int) entering;
+				double v = series[e] - shift;
+				update(countTree, sumTree, ranks[e - regionFrom], 1, v);
+				windowCount++;
+				windowSum += v;
+			}
+		}
+	}
+
+	private static void update(long[] countTree, double[] sumTree, int rank, long count, double sum) {
+		for (int r = rank; r < countTree.length; r += r & -r) {
+			countTree[r] += count;
+			sumTree[r] += sum;
+		}
+	}
+
+	/**
+	 * Fork/join task computing the metric for a range of points.
+	 */
+	private static final class NoiseTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final double[] series;
+		private final int halfWindow;
+		private final int from;
+		private final int to;
+		private final int chunkSize;
+		private final double[] result;
+
+		private NoiseTask(double[] series, int halfWindow, int from, int to, int chunkSize, double[] result) {
+			this.series = series;
+			this.halfWindow = halfWindow;
+			this.from = from;
+			this.to = to;
+			this.chunkSize = chunkSize;
+			this.result = result;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= chunkSize) {
+				WindowedNoiseMetric.compute(series, halfWindow, from, to, result);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new NoiseTask(series, halfWindow, from, mid, chunkSize, result), new NoiseTask(series,
+					halfWindow, mid, to, chunkSize, result));
+		}
+	}
+}
@@ -0,0 +1,242 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.nio.DoubleBuffer;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link ColumnarNumericPairList}.
+ */
+public class ColumnarNumericPairListTest {
+
+	private static final double DELTA = 0.0000001;
+
+	/**
+	 * Tests that the columnar list behaves like the boxed list.
+	 */
+	@Test
+	public void testSameBehaviorAsBoxedList() {
+		NumericPairList<Long, Double> boxed = new NumericPairList<>();
+		ColumnarNumericPairList<Long, Double> columnar = new ColumnarNumericPairList<>(Long.class, Double.class);
+
+		long[] keys = { 5, 3, 9, 3, 1 };
+		double[] values = { 0.5, 2.5, -1.0, 1.5, 7.0 };
+		for (int i = 0; i < keys.length; i++) {
+			boxed.add(keys[i], values[i]);
+			columnar.add(keys[i], values[i]);
+		}
+
+		assertEquals(boxed.size(), columnar.size());
+		assertEquals(boxed.getKeyList(), columnar.getKeyList());
+		assertEquals(boxed.getValueList(), columnar.getValueList());
+		assertArrayEquals(boxed.getKeyArrayAsDouble(2.0), columnar.getKeyArrayAsDouble(2.0), DELTA);
+		assertArrayEquals(boxed.getValueArrayAsDouble(), columnar.getValueArrayAsDouble(), DELTA);
+		assertEquals(boxed.getKeyMin(), columnar.getKeyMin());
+		assertEquals(boxed.getKeyMax(), columnar.getKeyMax());
+		assertEquals(boxed.getValueMin(), columnar.getValueMin());
+		assertEquals(boxed.getValueMax(), columnar.getValueMax());
+		assertEquals(boxed.get(2), columnar.get(2));
+
+		assertEquals(boxed.sort(), columnar.sort());
+		assertEquals(boxed.sortByValue(), columnar.sortByValue());
+	}
+
+	/**
+	 * Tests the zero-copy column views.
+	 */
+	@Test
+	public void testColumnViews() {
+		ColumnarNumericPairList<Integer, Float> list = new ColumnarNumericPairList<>(Integer.class, Float.class, 2);
+		for (int i = 0; i < 100; i++) {
+			list.add(i, i * 0.5);
+		}
+
+		LongBuffer keyView = list.getKeyColumn().asLongBuffer();
+		DoubleBuffer valueView = list.getValueColumn().asDoubleBuffer();
+		assertEquals(100, keyView.remaining());
+		assertEquals(42L, keyView.get(42));
+		assertEquals(21.0, valueView.get(42), DELTA);
+		assertEquals(Integer.valueOf(42), list.getKeyList().get(42));
+		assertEquals(Float.valueOf(21.0f), list.getValueList().get(42));
+	}
+
+	/**
+	 * Tests selecting pairs by a positional mask.
+	 */
+	@Test
+	public void testMaskSelection() {
+		NumericPairList<Long, Double> boxed = new NumericPairList<>();
+		ColumnarNumericPairList<Long, Double> columnar = new ColumnarNumericPairList<>(Long.class, Double.class);
+		for (long i = 0; i < 200; i++) {
+			boxed.add(i, i * 0.5);
+			columnar.add(i, i * 0.5);
+		}
+		BitSet mask = new BitSet();
+		mask.set(3);
+		mask.set(64, 70);
+		mask.set(199);
+		mask.set(250);
+
+		assertEquals(8, boxed.select(mask).size());
+		assertEquals(192, boxed.exclude(mask).size());
+		assertEquals(boxed.select(mask).getPairs(), columnar.select(mask).getPairs());
+		assertEquals(boxed.exclude(mask).getPairs(), columnar.exclude(mask).getPairs());
+		assertEquals(Long.valueOf(199), columnar.select(mask).getKeyMax());
+		assertEquals(200, columnar.exclude(new BitSet()).size());
+	}
+
+	/**
+	 * Tests that downsampling keeps the end points and the extreme values.
+	 */
+	@Test
+	public void testDownsampling() {
+		ColumnarNumericPairList<Long, Double> columnar = new ColumnarNumericPairList<>(Long.class, Double.class);
+		for (long i = 0; i < 10000; i++) {
+			columnar.add(i, i == 4321 ? 100.0 : (i == 7777 ? -100.0 : Math.sin(i / 100.0)));
+		}
+
+		NumericPairList<Long, Double> lttb = columnar.downsampleLTTB(200);
+		assertEquals(200, lttb.size());
+		assertEquals(Long.valueOf(0), lttb.getKeyMin());
+		assertEquals(Long.valueOf(9999), lttb.getKeyMax());
+		assertEquals(100.0, lttb.getValueMax(), DELTA);
+		assertEquals(-100.0, lttb.getValueMin(), DELTA);
+
+		NumericPairList<Long, Double> minMax = columnar.downsampleMinMax(100);
+		assertEquals(true, minMax.size() <= 202);
+		assertEquals(Long.valueOf(9999), minMax.getKeyMax());
+		assertEquals(100.0, minMax.getValueMax(), DELTA);
+		assertEquals(-100.0, minMax.getValueMin(), DELTA);
+		for (int i = 1; i < minMax.size(); i++) {
+			assertEquals(true, minMax.getKeyAsDouble(i - 1) < minMax.getKeyAsDouble(i));
+		}
+
+		assertEquals(10, columnar.select(Downsampling.toMask(new int[] { 0, 1, 2, 3, 4, 5, 6, 7, 8, 9 }))
+				.downsampleLTTB(20).size());
+	}
+
+	/**
+	 * Tests slicing by key range and merging of sorted lists.
+	 */
+	@Test
+	public void testKeyRangeSlicing() {
+		NumericPairList<Long, Double> boxed = new NumericPairList<>();
+		ColumnarNumericPairList<Long, Double> columnar = new ColumnarNumericPairList<>(Long.class, Double.class);
+		for (long i = 0; i < 1000; i++) {
+			boxed.add(10 * i, (double) i);
+			columnar.add(10 * i, (double) i);
+		}
+		assertTrue(boxed.isSortedByKey());
+		assertTrue(columnar.isSortedByKey());
+
+		NumericPairList<Long, Double> boxedWindow = boxed.subList(995, 2000);
+		NumericPairList<Long, Double> columnarWindow = columnar.subList(995, 2000);
+		assertEquals(100, boxedWindow.size());
+		assertEquals(Long.valueOf(1000), columnarWindow.getKeyMin());
+		assertEquals(Long.valueOf(1990), columnarWindow.getKeyMax());
+		assertEquals(boxedWindow.getPairs(), columnarWindow.getPairs());
+		assertEquals(10, columnarWindow.subList(1500, 1600).size());
+		assertEquals(0, columnar.subList(20000, 30000).size());
+		assertEquals(0, columnar.subList(500, 100).size());
+		for (NumericPairList<Long, Double> window : Arrays.asList(boxedWindow, columnarWindow)) {
+			try {
+				window.add(1995L, 0.0);
+				fail();
+			} catch (UnsupportedOperationException e) {
+				assertEquals(100, window.size());
+			}
+		}
+
+		ColumnarNumericPairList<Long, Double> odd = new ColumnarNumericPairList<>(Long.class, Double.class);
+		for (long i = 0; i < 500; i++) {
+			odd.add(20 * i + 5, -1.0);
+		}
+		NumericPairList<Long, Double> merged = columnar.merge(odd);
+		assertTrue(merged instanceof ColumnarNumericPairList);
+		assertEquals(1500, merged.size());
+		assertTrue(merged.isSortedByKey());
+		assertEquals(merged.getPairs(), boxed.merge(odd).getPairs());
+		assertEquals(Long.valueOf(5), merged.get(1).getKey());
+
+		columnar.add(0L, 5000.0);
+		assertFalse(columnar.isSortedByKey());
+		columnar.sort();
+		assertTrue(columnar.isSortedByKey());
+		columnar.sortByValue();
+		assertFalse(columnar.isSortedByKey());
+		try {
+			columnar.subList(0, 10);
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals("List is not sorted by key!", e.getMessage());
+		}
+	}
+
+	/**
+	 * Tests the conversions between primitive arrays and columns.
+	 */
+	@Test
+	public void testPrimitiveArrayConversions() {
+		long[] timestamps = { 1000L, 2000L, 3000L, Long.MAX_VALUE };
+		int[] counts = { 1, -2, 3, Integer.MAX_VALUE };
+		ColumnarNumericPairList<Long, Integer> list = ColumnarNumericPairList.of(
+				NumericColumn.of(Long.class, timestamps), NumericColumn.of(Integer.class, counts));
+		assertEquals(4, list.size());
+		assertArrayEquals(timestamps, list.getKeyArrayAsLong());
+		assertArrayEquals(counts, list.getValueColumn().toIntArray());
+		assertEquals(Integer.valueOf(-2), list.get(1).getValue());
+
+		NumericPairList<Long, Integer> boxed = new NumericPairList<>();
+		for (int i = 0; i < timestamps.length; i++) {
+			boxed.add(timestamps[i], counts[i]);
+		}
+		assertArrayEquals(boxed.getKeyArrayAsLong(), list.getKeyArrayAsLong());
+		assertArrayEquals(boxed.getValueArrayAsLong(), list.getValueArrayAsLong());
+		assertArrayEquals(boxed.getValueArrayAsDouble(), list.getValueArrayAsDouble(), 0.0);
+
+		NumericColumn<Double> doubles = NumericColumn.of(Double.class, new double[] { 1.5, -2.5 });
+		doubles.addAll(new double[] { 3.5 });
+		doubles.addAll(new long[] { 4L });
+		doubles.addAll(new int[] { 5 });
+		assertArrayEquals(new double[] { 1.5, -2.5, 3.5, 4.0, 5.0 }, doubles.toDoubleArray(1.0), 0.0);
+		assertArrayEquals(new long[] { 1L, -2L, 3L, 4L, 5L }, doubles.toLongArray());
+		assertArrayEquals(LpeNumericUtils.toIntArray(doubles.toDoubleArray(1.0)), doubles.toIntArray());
+
+		long[] longs = new long[100];
+		for (int i = 0; i < longs.length; i++) {
+			longs[i] = 3L * i;
+		}
+		NumericColumn<Long> column = NumericColumn.create(Long.class, 0);
+		column.addAll(longs);
+		column.addAll(longs);
+		assertEquals(200, column.size());
+		assertEquals(297L, column.getLong(199));
+		assertArrayEquals(longs, LpeNumericUtils.toLongArray(LpeNumericUtils.toDoubleArray(longs)));
+		assertArrayEquals(longs, LpeNumericUtils.toLongArray(LpeNumericUtils.toIntArray(longs)));
+		assertArrayEquals(longs, column.slice(100, 200).toLongArray());
+	}
+}
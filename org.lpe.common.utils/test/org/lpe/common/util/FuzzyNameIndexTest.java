@@ -0,0 +1,118 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link FuzzyNameIndex}.
+ */
+public class FuzzyNameIndexTest {
+
+	private static final String[] PACKAGES = { "org", "lpe", "common", "shop", "order", "service", "impl", "web" };
+	private static final String[] CLASSES = { "Order", "Customer", "Cart", "Item", "Payment", "Invoice", "Product" };
+	private static final String[] VERBS = { "get", "set", "find", "create", "delete", "update", "load", "store" };
+
+	private static List<String> createNames(int count) {
+		Random random = new Random(11);
+		List<String> names = new ArrayList<>();
+		while (names.size() < count) {
+			StringBuilder name = new StringBuilder();
+			for (int i = random.nextInt(3) + 1; i > 0; i--) {
+				name.append(PACKAGES[random.nextInt(PACKAGES.length)]).append('.');
+			}
+			name.append(CLASSES[random.nextInt(CLASSES.length)]).append(random.nextInt(20)).append('.');
+			name.append(VERBS[random.nextInt(VERBS.length)]).append(CLASSES[random.nextInt(CLASSES.length)]);
+			name.append(random.nextBoolean() ? "()" : "(long)");
+			names.add(name.toString());
+		}
+		return names;
+	}
+
+	/**
+	 * Tests lookups of known and slightly modified names.
+	 */
+	@Test
+	public void testFindBestMatch() {
+		List<String> names = createNames(5000);
+		FuzzyNameIndex index = new FuzzyNameIndex(names, false);
+		assertEquals(names.size(), index.size());
+
+		String name = names.get(1234);
+		StringMatch match = index.findBestMatch(name, 0.9);
+		assertEquals(name, match.getCandidate());
+		assertEquals(1.0, match.getDistance(), 0.0);
+		assertEquals(names.indexOf(name), match.getIndex());
+
+		String modified = name.replace("(", "(x");
+		match = index.findBestMatch(modified, 0.9);
+		assertEquals(LpeStringUtils.getDistance(modified, match.getCandidate()), match.getDistance(), 0.0);
+		assertTrue(match.getDistance() >= LpeStringUtils.getDistance(modified, name));
+
+		assertNull(index.findBestMatch("net.other.Unknown.run()", 0.95));
+		assertNull(index.findBestMatch("", 0.5));
+
+		FuzzyNameIndex caseInsensitive = new FuzzyNameIndex(names, true);
+		match = caseInsensitive.findBestMatch(name.toUpperCase(), 0.9);
+		assertEquals(1.0, match.getDistance(), 0.0);
+		assertEquals(name, match.getCandidate());
+		assertEquals(names.indexOf(name), match.getIndex());
+	}
+
+	/**
+	 * Tests that the best matches of an index verifying all candidates equal
+	 * the best matches of a linear scan.
+	 */
+	@Test
+	public void testFindMatchesAgainstScan() {
+		List<String> names = createNames(300);
+		FuzzyNameIndex index = new FuzzyNameIndex(false, names.size());
+		for (String name : names) {
+			index.add(name);
+		}
+		Random random = new Random(5);
+		for (int q = 0; q < 50; q++) {
+			StringBuilder query = new StringBuilder(names.get(random.nextInt(names.size())));
+			query.setCharAt(random.nextInt(query.length()), 'x');
+
+			List<StringMatch> matches = index.findMatches(query.toString(), 0.85, 5);
+			List<Double> expected = new ArrayList<>();
+			for (String name : names) {
+				double distance = LpeStringUtils.getDistance(query.toString(), name);
+				if (distance >= 0.85) {
+					expected.add(distance);
+				}
+			}
+			Collections.sort(expected);
+			assertEquals(Math.min(5, expected.size()), matches.size());
+			for (int i = 0; i < matches.size(); i++) {
+				assertEquals(expected.get(expected.size() - 1 - i), matches.get(i).getDistance(), 0.0);
+				if (i > 0) {
+					assertTrue(matches.get(i - 1).getDistance() >= matches.get(i).getDistance());
+				}
+			}
+		}
+	}
+}
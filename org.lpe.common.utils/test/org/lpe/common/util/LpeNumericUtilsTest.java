@@ -16,6 +16,7 @@
 package org.lpe.common.util;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.lpe.common.util.LpeNumericUtils.average;
 import static org.lpe.common.util.LpeNumericUtils.dFormat;
@@ -25,15 +26,25 @@ import static org.lpe.common.util.LpeNumericUtils.getConfidenceIntervalWidth;
 import static org.lpe.common.util.LpeNumericUtils.markOutliersUsingIQR;
 import static org.lpe.common.util.LpeNumericUtils.stdDev;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
 
 import junit.framework.Assert;
 
+import org.apache.commons.math3.distribution.TDistribution;
 import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
 import org.junit.Test;
+import org.lpe.common.util.stats.TQuantileCache;
+import org.lpe.common.util.stats.WindowedNoiseMetric;
 
 /**
  * Tests {@link LpeNumericUtils}.
@@ -57,6 +68,91 @@ public class LpeNumericUtilsTest {
 		assertEquals("0", dFormat(0.0, 0));
 	}
 
+	/**
+	 * Compares {@link LpeNumericUtils#dFormat(double, int)} against
+	 * {@link DecimalFormat}, including rounding ties and values that are
+	 * left to {@link DecimalFormat}.
+	 */
+	@Test
+	public void testDFormatMatchesDecimalFormat() {
+		Random random = new Random(17);
+		double[] special = new double[] { -0.0, -0.001, 0.125, 2.5, 3.5, 2.675, 1.005, 1e17, Double.NaN,
+				Double.NEGATIVE_INFINITY, Double.MIN_VALUE };
+		for (int d = 0; d < 20; d++) {
+			StringBuilder pattern = new StringBuilder(d > 0 ? "0." : "0");
+			for (int i = 0; i < d; i++) {
+				pattern.append('0');
+			}
+			DecimalFormat format = new DecimalFormat(pattern.toString(), new DecimalFormatSymbols(Locale.ENGLISH));
+			for (double v : special) {
+				assertEquals(format.format(v), dFormat(v, d));
+			}
+			for (int i = 0; i < 2000; i++) {
+				double v = (random.nextInt(2000000) - 1000000 + 0.5) / Math.pow(10, random.nextInt(8));
+				assertEquals(format.format(v), dFormat(v, d));
+				v = random.nextGaussian() * Math.pow(10, random.nextInt(20) - 5);
+				assertEquals(format.format(v), dFormat(v, d));
+			}
+		}
+		DecimalFormat integral = new DecimalFormat("0", new DecimalFormatSymbols(Locale.ENGLISH));
+		for (double v : special) {
+			assertEquals(integral.format(v), dFormat(v, -1));
+		}
+		StringBuilder builder = new StringBuilder("x=");
+		assertEquals("x=-12.50", LpeFormatUtils.appendFixed(builder, -12.5, 2).toString());
+	}
+
+	/**
+	 * Tests that {@link LpeFormatUtils#appendShortest(ByteBuffer, double)}
+	 * uses the notation of {@link Double#toString(double)} and the fewest
+	 * digits which parse back to the value.
+	 */
+	@Test
+	public void testAppendShortest() {
+		double[] doubles = { 0.0, -0.0, 0.5, -3.25E-7, 0.1, 100.0, 1234567.0, 1.0E7, 0.001, 9.999E-4, 123.456,
+				1 / 3.0, Math.PI, 1.0E20, 1.0E21, 4.35E-19 };
+		for (double v : doubles) {
+			assertEquals(Double.toString(v), shortest(v));
+		}
+		float[] floats = { 0.1f, 1 / 3f, 16777216f, -2.5E-5f, (float) Math.E };
+		for (float v : floats) {
+			assertEquals(Float.toString(v), shortest(v));
+		}
+
+		Random random = new Random(42);
+		for (int i = 0; i < 100000; i++) {
+			// all values from 10^-6 to 10^16 are formatted
+			double v = (1 + 9 * random.nextDouble()) * Math.pow(10, random.nextInt(22) - 6)
+					* (random.nextBoolean() ? 1 : -1);
+			String formatted = shortest(v);
+			assertEquals(v, Double.parseDouble(formatted), 0.0);
+			assertTrue(formatted.length() <= Double.toString(v).length());
+
+			float f = (float) v;
+			formatted = shortest(f);
+			assertEquals(f, Float.parseFloat(formatted), 0.0f);
+			assertTrue(formatted.length() <= Float.toString(f).length());
+		}
+
+		ByteBuffer buffer = ByteBuffer.allocate(LpeFormatUtils.MAX_SHORTEST_LENGTH);
+		assertFalse(LpeFormatUtils.appendShortest(buffer, Double.NaN));
+		assertFalse(LpeFormatUtils.appendShortest(buffer, Float.NEGATIVE_INFINITY));
+		assertFalse(LpeFormatUtils.appendShortest(buffer, 1.0E300));
+		assertEquals(0, buffer.position());
+	}
+
+	private static String shortest(double value) {
+		ByteBuffer buffer = ByteBuffer.allocate(LpeFormatUtils.MAX_SHORTEST_LENGTH);
+		assertTrue(LpeFormatUtils.appendShortest(buffer, value));
+		return new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII);
+	}
+
+	private static String shortest(float value) {
+		ByteBuffer buffer = ByteBuffer.allocate(LpeFormatUtils.MAX_SHORTEST_LENGTH);
+		assertTrue(LpeFormatUtils.appendShortest(buffer, value));
+		return new String(buffer.array(), 0, buffer.position(), StandardCharsets.US_ASCII);
+	}
+
 	/**
 	 * Tests the {@link LpeNumericUtils#formatTimeMillis(long)
 	 * formatTimeMillis(long)}.
@@ -166,6 +262,42 @@ public class LpeNumericUtilsTest {
 		assertEquals(357.6787 * 2, getConfidenceIntervalWidth(10, 500, 0.05), 0.01);
 	}
 
+	/**
+	 * Tests that t-distribution quantiles are cached and that the batch
+	 * computation of confidence interval widths equals single computations.
+	 */
+	@Test
+	public void testConfidenceIntervalWidthCache() {
+		TQuantileCache.clear();
+		double width = getConfidenceIntervalWidth(10, 500, 0.05);
+		assertEquals(1, TQuantileCache.size());
+		assertEquals(width, getConfidenceIntervalWidth(10, 500, 0.05), 0.0);
+		assertEquals(width / 2, getConfidenceIntervalWidth(10, 250, 0.05), 1.0E-9);
+		assertEquals(1, TQuantileCache.size());
+		getConfidenceIntervalWidth(10, 500, 0.01);
+		assertEquals(2, TQuantileCache.size());
+
+		TQuantileCache.clear();
+		List<SummaryStatistics> statistics = new ArrayList<>();
+		for (int n = 2; n < 50; n++) {
+			SummaryStatistics summary = new SummaryStatistics();
+			for (int i = 0; i < n; i++) {
+				summary.addValue(i * i % 7);
+			}
+			statistics.add(summary);
+			statistics.add(summary);
+		}
+		double[] widths = LpeNumericUtils.getConfidenceIntervalWidths(statistics, 0.05);
+		assertEquals(48, TQuantileCache.size());
+		for (int i = 0; i < widths.length; i++) {
+			assertEquals(getConfidenceIntervalWidth(statistics.get(i), 0.05), widths[i], 0.0);
+			assertEquals(new TDistribution(statistics.get(i).getN() - 1).inverseCumulativeProbability(0.975),
+					widths[i] / 2 * Math.sqrt(statistics.get(i).getN()) / statistics.get(i).getStandardDeviation(),
+					1.0E-9);
+		}
+		assertEquals(48, TQuantileCache.size());
+	}
+
 	/**
 	 * Tests the {@link LpeNumericUtils#filterOutliersUsingIQR(List)
 	 * filterOutliersUsingIQR(List)} and
@@ -283,4 +415,58 @@ public class LpeNumericUtilsTest {
 
 	}
 
+	/**
+	 * Tests the noise removal against the definition of the noise metric.
+	 */
+	@Test
+	public void testRemoveNoise() {
+		Random random = new Random(42);
+		NumericPairList<Double, Double> list = new NumericPairList<>();
+		for (int i = 0; i < 2000; i++) {
+			double value = random.nextDouble() * 10.0;
+			if (i % 97 == 0) {
+				value += 1000.0;
+			}
+			list.add(1.0E12 + i * 3.0 + random.nextInt(3), value);
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			for (int windowSize : new int[] { 1, 2, 5, 64, 5000 }) {
+				double[] values = list.getValueArrayAsDouble();
+				double[] metrics = WindowedNoiseMetric.compute(values, windowSize);
+				double[] parallelMetrics = WindowedNoiseMetric.computeParallel(values, windowSize, pool);
+				for (int i = 0; i < values.length; i++) {
+					double sum = 0;
+					double count = 0;
+					for (int j = i - windowSize / 2; j <= i + windowSize / 2; j++) {
+						if (j < 0 || j >= values.length || i == j) {
+							continue;
+						}
+						sum += Math.abs(values[i] - values[j]);
+						count += 1.0;
+					}
+					assertEquals(sum / count, metrics[i], 1.0E-6);
+					assertEquals(metrics[i], parallelMetrics[i], 1.0E-6);
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+
+		NumericPairList<Double, Double> filtered = LpeNumericUtils.removeNoiseInValues(list, 0.5, 0, 10);
+		assertEquals(list.size() - 21, filtered.size());
+		assertEquals(filtered.size(), LpeNumericUtils.removeNoiseInValuesParallel(list, 0.5, 0, 10).size());
+		for (NumericPair<Double, Double> pair : filtered) {
+			assertTrue(pair.getValue() < 1000.0);
+		}
+
+		filtered = LpeNumericUtils.removeNoiseInValues(list, 0, 0.9, 10);
+		assertEquals(1800, filtered.size());
+		assertEquals(filtered.getPairs(), LpeNumericUtils.removeNoiseInValuesParallel(list, 0, 0.9, 10).getPairs());
+
+		assertEquals(list.size(), LpeNumericUtils.removeNoiseInKeys(list, 1.01, 10).size());
+		assertEquals(list.size(), LpeNumericUtils.removeNoiseInKeysParallel(list, 1.01, 10).size());
+	}
+
 }
@@ -30,6 +30,7 @@ import static org.lpe.common.util.LpeStringUtils.getDistance;
 import static org.lpe.common.util.LpeStringUtils.getDistanceCaseInsensitive;
 import static org.lpe.common.util.LpeStringUtils.getPropertyOrFail;
 import static org.lpe.common.util.LpeStringUtils.getSimpleMethodName;
+import static org.lpe.common.util.LpeStringUtils.getSqlFingerprint;
 import static org.lpe.common.util.LpeStringUtils.getTimeStamp;
 import static org.lpe.common.util.LpeStringUtils.getUniqueTimeStamp;
 import static org.lpe.common.util.LpeStringUtils.isClassName;
@@ -41,9 +42,18 @@ import static org.lpe.common.util.LpeStringUtils.strEqualName;
 import static org.lpe.common.util.LpeStringUtils.tokenize;
 
 import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.List;
 import java.util.Properties;
 import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import org.junit.Assert;
 import org.junit.Test;
@@ -339,6 +349,57 @@ public class LpeStringUtilsTest {
 		}
 	}
 
+	/**
+	 * Tests the {@link LpeStringUtils#getDistanceMatrix(List, List, boolean)
+	 * getDistanceMatrix(...)} and
+	 * {@link LpeStringUtils#getTopMatches(List, List, int, boolean)
+	 * getTopMatches(...)} against the pairwise distances.
+	 */
+	@Test
+	public void testBulkStringDistances() {
+		List<String> rows = Arrays.asList("MARTHA", "Martha", "DIXON", "", "getOrder()", "org.x.Order.get()");
+		List<String> columns = new ArrayList<>();
+		Random rand = new Random(42);
+		for (int i = 0; i < 200; i++) {
+			StringBuilder builder = new StringBuilder();
+			for (int j = rand.nextInt(12); j > 0; j--) {
+				builder.append((char) ('A' + rand.nextInt(6) + (rand.nextBoolean() ? 'a' - 'A' : 0)));
+			}
+			columns.add(builder.toString());
+		}
+		columns.add("MARHTA");
+		columns.add("DICKSONX");
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			double[][] matrix = LpeStringUtils.getDistanceMatrix(rows, columns, false, pool);
+			double[][] ciMatrix = LpeStringUtils.getDistanceMatrix(rows, columns, true, pool);
+			for (int i = 0; i < rows.size(); i++) {
+				for (int j = 0; j < columns.size(); j++) {
+					assertEquals(getDistance(rows.get(i), columns.get(j)), matrix[i][j], 0.0);
+					assertEquals(getDistanceCaseInsensitive(rows.get(i), columns.get(j)), ciMatrix[i][j], 0.0);
+				}
+			}
+
+			List<List<StringMatch>> top = LpeStringUtils.getTopMatches(rows, columns, 3, true, pool);
+			assertEquals(rows.size(), top.size());
+			for (int i = 0; i < rows.size(); i++) {
+				double[] sorted = ciMatrix[i].clone();
+				Arrays.sort(sorted);
+				assertEquals(3, top.get(i).size());
+				for (int r = 0; r < 3; r++) {
+					StringMatch match = top.get(i).get(r);
+					assertEquals(sorted[sorted.length - 1 - r], match.getDistance(), 0.0);
+					assertEquals(columns.get(match.getIndex()), match.getCandidate());
+				}
+			}
+			assertEquals("MARHTA", top.get(1).get(0).getCandidate());
+			assertEquals(0.96, top.get(1).get(0).getDistance(), DELTA);
+			assertEquals(columns.size(), LpeStringUtils.getTopMatches(rows, columns, 1000, false, pool).get(0).size());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
 	/**
 	 * Tests the {@link LpeStringUtils#areEqualSql(String, String)
 	 * areEqualSql(...)}.
@@ -366,6 +427,65 @@ public class LpeStringUtilsTest {
 		}
 	}
 
+	/**
+	 * Tests the {@link LpeStringUtils#getSqlFingerprint(String)
+	 * getSqlFingerprint(...)} including concurrent use.
+	 * 
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the results
+	 * @throws ExecutionException
+	 *             if a concurrent computation failed
+	 */
+	@Test
+	public void testSqlFingerprint() throws InterruptedException, ExecutionException {
+		final String[] statements = new String[] { "SELECT a FROM b WHERE a=1", "SELECT a FROM b WHERE a=5",
+				"SELECT a, c FROM b WHERE a=1", "UPDATE t SET a = 'foo' WHERE id = 42",
+				"UPDATE t SET a = 'bar' WHERE id = 0", "INSERT INTO t (col) VALUES ('foo')" };
+		SQLSimilarity.clearCache();
+		long[] fingerprints = new long[statements.length];
+		for (int i = 0; i < statements.length; i++) {
+			fingerprints[i] = getSqlFingerprint(statements[i]);
+			assertEquals(fingerprints[i], getSqlFingerprint(statements[i]));
+		}
+		assertEquals(fingerprints[0], fingerprints[1]);
+		assertFalse(fingerprints[0] == fingerprints[2]);
+		assertEquals(fingerprints[3], fingerprints[4]);
+		assertFalse(fingerprints[3] == fingerprints[5]);
+
+		for (int i = 0; i < 2; i++) {
+			try {
+				getSqlFingerprint("SELEKT a FROM");
+				Assert.fail();
+			} catch (IllegalArgumentException e) {
+				assertTrue(e.getMessage().startsWith("Cannot parse SQL statement"));
+			}
+		}
+		assertFalse(areEqualSql("SELEKT a FROM", "SELEKT a FROM"));
+
+		SQLSimilarity.clearCache();
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<long[]>> results = new ArrayList<>();
+			for (int t = 0; t < 8; t++) {
+				results.add(executor.submit(new Callable<long[]>() {
+					@Override
+					public long[] call() {
+						long[] result = new long[statements.length];
+						for (int i = 0; i < statements.length; i++) {
+							result[i] = getSqlFingerprint(statements[i]);
+						}
+						return result;
+					}
+				}));
+			}
+			for (Future<long[]> result : results) {
+				Assert.assertArrayEquals(fingerprints, result.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
 	@Test
 	public void testWildcardsMatching() {
 		String subject = "my.test.string";
@@ -419,6 +539,11 @@ public class LpeStringUtilsTest {
 		Assert.assertFalse(LpeStringUtils.patternMatches(subject, patternL));
 		Assert.assertFalse(LpeStringUtils.patternMatches(subject, patternM));
 
+		Assert.assertTrue(LpeStringUtils.patternMatches("abab", "*ab"));
+		Assert.assertTrue(LpeStringUtils.patternMatches("abb", "a*b"));
+		Assert.assertFalse(LpeStringUtils.patternMatches("ab", "ab*ab"));
+		Assert.assertFalse(LpeStringUtils.patternMatches(null, "*"));
+
 	}
 	
 	@Test
@@ -50,6 +50,9 @@ public class LpeSupportedTypesTest {
 		assertEquals(LpeSupportedTypes.String, get(String.class));
 		assertEquals(LpeSupportedTypes.Boolean, get(Boolean.class));
 		assertEquals(LpeSupportedTypes.Long, get(Long.class));
+		assertEquals(LpeSupportedTypes.Long, get(long.class));
+		assertEquals(LpeSupportedTypes.Float, get(float.class));
+		assertEquals(null, get(Object.class));
 
 		assertEquals(LpeSupportedTypes.Double, get("Double"));
 		assertEquals(LpeSupportedTypes.Integer, get("Integer"));
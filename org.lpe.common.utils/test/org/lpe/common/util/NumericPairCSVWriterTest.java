@@ -0,0 +1,117 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link NumericPairCSVWriter}.
+ */
+public class NumericPairCSVWriterTest {
+
+	/**
+	 * Tests the formatting of boxed and columnar lists.
+	 * 
+	 * @throws IOException
+	 *             if the temporary file cannot be written
+	 */
+	@Test
+	public void testFormatting() throws IOException {
+		File file = File.createTempFile("pairs", ".csv");
+		file.deleteOnExit();
+
+		NumericPairList<Long, Double> boxed = new NumericPairList<>();
+		boxed.add(1L, 0.5);
+		boxed.add(-12L, -3.25E-7);
+		boxed.add(Long.MIN_VALUE, Double.NaN);
+		ColumnarNumericPairList<Integer, Float> columnar = new ColumnarNumericPairList<>(Integer.class, Float.class);
+		columnar.add(7, 0.1f);
+
+		NumericPairCSVWriter writer = new NumericPairCSVWriter(file.getPath(), "time", "response;time");
+		writer.writeAll(boxed);
+		writer.writeAll(columnar);
+		writer.write(3L, 4L);
+		BigDecimal big = new BigDecimal(BigInteger.TEN.pow(100).add(BigInteger.ONE), 2);
+		writer.write(new NumericPair<BigDecimal, Double>(big, 1.5));
+		writer.close();
+
+		List<String> lines = readLines(file, false);
+		assertEquals("time;\"response;time\"", lines.get(0));
+		assertEquals("1;0.5", lines.get(1));
+		assertEquals("-12;-3.25E-7", lines.get(2));
+		assertEquals("-9223372036854775808;NaN", lines.get(3));
+		assertEquals("7;0.1", lines.get(4));
+		assertEquals("3;4", lines.get(5));
+		assertEquals(big.toString() + ";1.5", lines.get(6));
+		assertEquals(7, lines.size());
+	}
+
+	/**
+	 * Tests fixed precision and compression with many lines.
+	 * 
+	 * @throws IOException
+	 *             if the temporary file cannot be written
+	 */
+	@Test
+	public void testGzipFixedPrecision() throws IOException {
+		File file = File.createTempFile("pairs", ".csv.gz");
+		file.deleteOnExit();
+
+		NumericPairCSVWriter writer = new NumericPairCSVWriter(file.getPath(), "key", "value", true, 3);
+		for (int i = 0; i < 100000; i++) {
+			writer.write(i * 0.5, -i / 8.0);
+		}
+		writer.write(0.0, 1.0E20);
+		writer.close();
+
+		List<String> lines = readLines(file, true);
+		assertEquals(100002, lines.size());
+		assertEquals("key;value", lines.get(0));
+		assertEquals("0.000;0.000", lines.get(1));
+		assertEquals("0.500;-0.125", lines.get(2));
+		assertEquals("49999.500;-12499.875", lines.get(100000));
+		assertEquals("0.000;1.0E20", lines.get(100001));
+	}
+
+	private static List<String> readLines(File file, boolean gzip) throws IOException {
+		InputStream in = new FileInputStream(file);
+		if (gzip) {
+			in = new GZIPInputStream(in);
+		}
+		List<String> lines = new ArrayList<>();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, "UTF-8"))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+		}
+		return lines;
+	}
+}
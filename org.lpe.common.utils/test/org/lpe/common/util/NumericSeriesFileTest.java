@@ -0,0 +1,99 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link NumericSeriesFile}.
+ */
+public class NumericSeriesFileTest {
+
+	/**
+	 * Writes and maps lists with and without delta encoded keys.
+	 * 
+	 * @throws IOException
+	 *             if the temporary files cannot be written
+	 */
+	@Test
+	public void testRoundTrip() throws IOException {
+		NumericPairList<Long, Double> boxed = new NumericPairList<>();
+		ColumnarNumericPairList<Long, Double> columnar = new ColumnarNumericPairList<>(Long.class, Double.class);
+		long time = 1400000000000L;
+		for (int i = 0; i < 5001; i++) {
+			time += i % 13;
+			boxed.add(time, i * 0.25 - 100);
+			columnar.add(time, i * 0.25 - 100);
+		}
+
+		File plain = File.createTempFile("series", ".bin");
+		File delta = File.createTempFile("series", ".bin");
+		plain.deleteOnExit();
+		delta.deleteOnExit();
+		NumericSeriesFile.write(boxed, Long.class, Double.class, plain.getPath(), false);
+		NumericSeriesFile.write(columnar, Long.class, Double.class, delta.getPath(), true);
+		assertTrue(delta.length() < plain.length() * 4 / 5);
+
+		for (File file : new File[] { plain, delta }) {
+			ColumnarNumericPairList<Long, Double> mapped = NumericSeriesFile.map(file.getPath(), Long.class,
+					Double.class);
+			assertEquals(boxed.size(), mapped.size());
+			assertEquals(boxed.getPairs(), mapped.getPairs());
+			assertEquals(boxed.getKeyMax(), mapped.getKeyMax());
+		}
+	}
+
+	/**
+	 * Tests floating point keys, integral values and read-only access.
+	 * 
+	 * @throws IOException
+	 *             if the temporary file cannot be written
+	 */
+	@Test
+	public void testTypes() throws IOException {
+		NumericPairList<Float, Integer> list = new NumericPairList<>();
+		list.add(0.5f, Integer.MIN_VALUE);
+		list.add(-1.5f, 42);
+		File file = File.createTempFile("series", ".bin");
+		file.deleteOnExit();
+		NumericSeriesFile.write(list, Float.class, Integer.class, file.getPath(), true);
+
+		ColumnarNumericPairList<Float, Integer> mapped = NumericSeriesFile.map(file.getPath(), Float.class,
+				Integer.class);
+		assertEquals(list.getPairs(), mapped.getPairs());
+		assertEquals(2, mapped.getValueColumn().asLongBuffer().remaining());
+
+		try {
+			mapped.add(1.0f, 1);
+			fail();
+		} catch (UnsupportedOperationException e) {
+			// mapped lists are read-only
+		}
+		try {
+			NumericSeriesFile.map(file.getPath(), Double.class, Integer.class);
+			fail();
+		} catch (IllegalArgumentException e) {
+			// key type does not match the file
+		}
+	}
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link SQLStatementClusterer}.
+ */
+public class SQLStatementClustererTest {
+
+	/**
+	 * Tests {@link SQLStatementClusterer#normalize(String)}.
+	 */
+	@Test
+	public void testNormalize() {
+		assertEquals("SELECT A FROM T1 WHERE A = ? AND B=? AND C IN (?, ?)",
+				SQLStatementClusterer.normalize("  select a\n from t1 where a = 42 and b='x' and c in ('it''s', 1.5e3) "));
+		assertEquals("SELECT \"Mixed Case\" FROM T WHERE X<?", SQLStatementClusterer.normalize(
+				"SELECT \"Mixed Case\" FROM t WHERE x<.5"));
+	}
+
+	/**
+	 * Tests clustering parsable and unparsable statements.
+	 */
+	@Test
+	public void testClustering() throws InterruptedException {
+		SQLStatementClusterer clusterer = new SQLStatementClusterer(3);
+		for (int i = 0; i < 1000; i++) {
+			clusterer.add("SELECT a FROM b WHERE a=" + i);
+			if (i % 2 == 0) {
+				clusterer.add("UPDATE t SET a = 'v" + i + "' WHERE id = " + i);
+			}
+			if (i % 10 == 0) {
+				clusterer.add("SELEKT a FROM b WHERE a = " + i);
+			}
+		}
+		List<SQLCluster> clusters = clusterer.finish();
+		assertEquals(3, clusters.size());
+
+		assertEquals(1000, clusters.get(0).getCount());
+		assertTrue(clusters.get(0).isParsed());
+		assertEquals(SQLCluster.MAX_EXEMPLARS, clusters.get(0).getExemplars().size());
+		assertTrue(clusters.get(0).getExemplars().get(0).startsWith("SELECT a FROM b WHERE a="));
+		assertEquals(SQLSimilarity.fingerprint("SELECT a FROM b WHERE a=7"), clusters.get(0).getFingerprint());
+
+		assertEquals(500, clusters.get(1).getCount());
+		assertTrue(clusters.get(1).isParsed());
+
+		assertEquals(100, clusters.get(2).getCount());
+		assertFalse(clusters.get(2).isParsed());
+		assertEquals("SELEKT A FROM B WHERE A = ?", clusters.get(2).getNormalizedStatement());
+
+		try {
+			clusterer.add("SELECT a FROM b");
+			fail();
+		} catch (IllegalStateException e) {
+			assertEquals(3, clusterer.getClusters().size());
+		}
+	}
+
+	/**
+	 * Statements submitted concurrently with {@link SQLStatementClusterer#finish()}
+	 * are either clustered or rejected, but never lost.
+	 */
+	@Test
+	public void testFinishWhileAdding() throws InterruptedException {
+		final SQLStatementClusterer clusterer = new SQLStatementClusterer(1);
+		final AtomicLong accepted = new AtomicLong();
+		Thread producer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					for (int i = 0; i < 1000000; i++) {
+						clusterer.add("SELECT a FROM b WHERE a=" + i);
+						accepted.incrementAndGet();
+					}
+				} catch (IllegalStateException e) {
+					// finished while adding
+				}
+			}
+		});
+		producer.start();
+		Thread.sleep(200);
+		List<SQLCluster> clusters = clusterer.finish();
+		producer.join();
+		long clustered = 0;
+		for (SQLCluster cluster : clusters) {
+			clustered += cluster.getCount();
+		}
+		assertEquals(accepted.get(), clustered);
+		assertTrue(clusters.size() <= 1);
+	}
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link WildcardPattern} and {@link WildcardPatternSet}.
+ */
+public class WildcardPatternSetTest {
+
+	private static final char[] ALPHABET = { 'a', 'b', '.', '*' };
+
+	private static String randomString(Random random, int maxLength, int alphabetSize) {
+		int length = random.nextInt(maxLength + 1);
+		StringBuilder builder = new StringBuilder(length);
+		for (int i = 0; i < length; i++) {
+			builder.append(ALPHABET[random.nextInt(alphabetSize)]);
+		}
+		return builder.toString();
+	}
+
+	private static boolean regexMatches(String subject, String pattern) {
+		StringBuilder regex = new StringBuilder();
+		for (String literal : pattern.split("\\*", -1)) {
+			if (regex.length() > 0) {
+				regex.append(".*");
+			}
+			regex.append(Pattern.quote(literal));
+		}
+		return Pattern.compile(regex.toString(), Pattern.DOTALL).matcher(subject).matches();
+	}
+
+	/**
+	 * Tests {@link WildcardPattern} against an equivalent regular expression.
+	 */
+	@Test
+	public void testPatternAgainstRegex() {
+		Random random = new Random(3);
+		for (int i = 0; i < 20000; i++) {
+			String pattern = randomString(random, 6, 4);
+			String subject = randomString(random, 8, 3);
+			boolean expected = regexMatches(subject, pattern);
+			assertEquals(pattern + " / " + subject, expected, new WildcardPattern(pattern).matches(subject));
+			assertEquals(pattern + " / " + subject, expected, WildcardPattern.matches(subject, pattern));
+		}
+	}
+
+	/**
+	 * Tests {@link WildcardPatternSet} against matching each pattern on its
+	 * own.
+	 */
+	@Test
+	public void testSetAgainstSinglePatterns() {
+		Random random = new Random(5);
+		List<String> patterns = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			patterns.add(randomString(random, 6, 4));
+		}
+		WildcardPatternSet set = new WildcardPatternSet(patterns);
+		assertEquals(new HashSet<>(patterns).size(), set.size());
+
+		for (int i = 0; i < 5000; i++) {
+			String subject = randomString(random, 8, i % 2 == 0 ? 3 : 4);
+			List<String> expected = new ArrayList<>();
+			boolean prefixExpected = false;
+			for (String pattern : patterns) {
+				if (!expected.contains(pattern) && LpeStringUtils.patternMatches(subject, pattern)) {
+					expected.add(pattern);
+				}
+				prefixExpected |= LpeStringUtils.patternPrefixMatches(subject, pattern);
+			}
+			List<String> actual = set.getMatchingPatterns(subject);
+			Collections.sort(expected);
+			Collections.sort(actual);
+			assertEquals(subject, expected, actual);
+			assertEquals(subject, !expected.isEmpty(), set.matchesAny(subject));
+			assertEquals(subject, prefixExpected, set.prefixMatchesAny(subject));
+		}
+	}
+
+	/**
+	 * Tests a set of typical instrumentation exclude patterns.
+	 */
+	@Test
+	public void testInstrumentationFilter() {
+		WildcardPatternSet excludes = new WildcardPatternSet(Arrays.asList("java.*", "sun.*", "org.lpe.*",
+				"*Test", "*$$EnhancerByCGLIB$$*", "com.shop.Cart.getItems"));
+		assertTrue(excludes.matchesAny("java.lang.String"));
+		assertTrue(excludes.matchesAny("com.shop.CartTest"));
+		assertTrue(excludes.matchesAny("com.shop.Cart$$EnhancerByCGLIB$$12ab"));
+		assertTrue(excludes.matchesAny("com.shop.Cart.getItems"));
+		assertFalse(excludes.matchesAny("com.shop.Cart.getItemsCount"));
+		assertFalse(excludes.matchesAny("javax.servlet.Servlet"));
+		assertFalse(excludes.matchesAny(null));
+		assertEquals(new HashSet<>(Arrays.asList("org.lpe.*", "*Test")),
+				new HashSet<>(excludes.getMatchingPatterns("org.lpe.SomeTest")));
+		assertFalse(excludes.add("sun.*"));
+		assertEquals(6, excludes.size());
+	}
+}
@@ -0,0 +1,101 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.commons.math3.stat.inference.TestUtils;
+import org.junit.Test;
+import org.lpe.common.util.ColumnarNumericPairList;
+import org.lpe.common.util.NumericPairList;
+
+/**
+ * Tests {@link BatchTTest}.
+ */
+public class BatchTTestTest {
+
+	/**
+	 * Compares the batch results against commons-math.
+	 */
+	@Test
+	public void testAgainstCommonsMath() {
+		Random random = new Random(17);
+		int operations = 200;
+		double[][] baseline = new double[operations][];
+		double[][] candidate = new double[operations][];
+		List<NumericPairList<Long, Double>> baselineLists = new ArrayList<>();
+		List<NumericPairList<Long, Double>> candidateLists = new ArrayList<>();
+		for (int op = 0; op < operations; op++) {
+			baseline[op] = new double[2 + random.nextInt(100)];
+			candidate[op] = new double[2 + random.nextInt(100)];
+			NumericPairList<Long, Double> baselineList = new NumericPairList<>();
+			ColumnarNumericPairList<Long, Double> candidateList = new ColumnarNumericPairList<>(Long.class,
+					Double.class);
+			for (int i = 0; i < baseline[op].length; i++) {
+				baseline[op][i] = 100 + random.nextGaussian() * 10;
+				baselineList.add((long) i, baseline[op][i]);
+			}
+			double shift = op % 2 == 0 ? 0 : 20;
+			for (int i = 0; i < candidate[op].length; i++) {
+				candidate[op][i] = 100 + shift + random.nextGaussian() * 10;
+				candidateList.add((long) i, candidate[op][i]);
+			}
+			baselineLists.add(baselineList);
+			candidateLists.add(candidateList);
+		}
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+		TTestResult[] results;
+		TTestResult[] listResults;
+		try {
+			results = BatchTTest.tTest(baseline, candidate, pool);
+			listResults = BatchTTest.tTestValues(baselineLists, candidateLists, pool);
+		} finally {
+			pool.shutdown();
+		}
+		for (int op = 0; op < operations; op++) {
+			double expected = TestUtils.tTest(baseline[op], candidate[op]);
+			assertEquals(expected, results[op].getPValue(), 1.0E-9);
+			assertEquals(expected, listResults[op].getPValue(), 1.0E-9);
+			assertEquals(TestUtils.t(candidate[op], baseline[op]), results[op].getT(), 1.0E-9);
+		}
+
+		TTestResult shifted = results[operations - 1];
+		if (candidate[operations - 1].length > 20 && baseline[operations - 1].length > 20) {
+			assertTrue(shifted.isSignificant(0.05));
+		}
+		assertEquals(2.0, shifted.getEffectSize(), 1.0);
+		assertTrue(shifted.getMeanDifference() > 0);
+		assertTrue(shifted.getT() > 0);
+	}
+
+	/**
+	 * Tests samples that are too small.
+	 */
+	@Test
+	public void testTooFewValues() {
+		TTestResult[] results = BatchTTest.tTest(new double[][] { { 1.0 } }, new double[][] { { 1.0, 2.0 } });
+		assertEquals(-1, results[0].getPValue(), 0.0);
+		assertFalse(results[0].isSignificant(0.05));
+	}
+}
@@ -0,0 +1,106 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.stats;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+import org.lpe.common.util.ColumnarNumericPairList;
+
+/**
+ * Tests {@link ChangePointDetector} and {@link BinarySegmentation}.
+ */
+public class ChangePointDetectorTest {
+
+	/**
+	 * Creates noisy levels 10 in [0, 500), 20 in [500, 1000) and 15 in [1000,
+	 * 1500).
+	 */
+	private static double[] createSteps() {
+		Random random = new Random(7);
+		double[] values = new double[1500];
+		for (int i = 0; i < values.length; i++) {
+			double level = i < 500 ? 10 : (i < 1000 ? 20 : 15);
+			values[i] = level + random.nextGaussian();
+		}
+		return values;
+	}
+
+	/**
+	 * Tests the Page-Hinkley detector.
+	 */
+	@Test
+	public void testPageHinkley() {
+		ChangePointDetector detector = ChangePointDetector.pageHinkley(0.5, 50);
+		double[] values = createSteps();
+		detector.offerAll(values);
+		List<Long> changes = detector.getChangePoints();
+		assertEquals(2, changes.size());
+		assertEquals(500, changes.get(0), 10);
+		assertEquals(1000, changes.get(1), 10);
+		assertEquals(15, detector.getSegmentMean(), 1);
+		assertEquals(1500, detector.getCount());
+	}
+
+	/**
+	 * Tests the CUSUM detector and the detection on pair lists.
+	 */
+	@Test
+	public void testCusum() {
+		ChangePointDetector detector = ChangePointDetector.cusum(1, 10);
+		double[] values = createSteps();
+		ColumnarNumericPairList<Long, Double> series = new ColumnarNumericPairList<>(Long.class, Double.class);
+		for (int i = 0; i < values.length; i++) {
+			series.add(1000L * i, values[i]);
+		}
+		List<Long> keys = detector.detect(series);
+		assertEquals(2, keys.size());
+		assertEquals(500000, keys.get(0), 10000);
+		assertEquals(1000000, keys.get(1), 10000);
+		assertEquals(0, detector.getCount());
+
+		double[] stable = new double[1000];
+		Random random = new Random(3);
+		for (int i = 0; i < stable.length; i++) {
+			stable[i] = 10 + random.nextGaussian();
+		}
+		detector.offerAll(stable);
+		assertTrue(detector.getChangePoints().isEmpty());
+	}
+
+	/**
+	 * Tests the offline binary segmentation.
+	 */
+	@Test
+	public void testBinarySegmentation() {
+		int[] splits = BinarySegmentation.detect(createSteps(), 20);
+		assertEquals(2, splits.length);
+		assertEquals(500, splits[0], 5);
+		assertEquals(1000, splits[1], 5);
+
+		double[] exact = new double[100];
+		for (int i = 50; i < exact.length; i++) {
+			exact[i] = 1;
+		}
+		assertArrayEquals(new int[] { 50 }, BinarySegmentation.detect(exact, 5, 0.5));
+		assertArrayEquals(new int[0], BinarySegmentation.detect(new double[3], 5));
+	}
+}
@@ -0,0 +1,156 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.stats;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.commons.math3.stat.correlation.PearsonsCorrelation;
+import org.apache.commons.math3.stat.correlation.SpearmansCorrelation;
+import org.junit.Test;
+import org.lpe.common.util.ColumnarNumericPairList;
+import org.lpe.common.util.NumericPairList;
+import org.lpe.common.util.stats.CorrelationMatrix.Method;
+
+/**
+ * Tests {@link CorrelationMatrix}.
+ */
+public class CorrelationMatrixTest {
+
+	private static final double DELTA = 1e-9;
+
+	/**
+	 * Compares the matrices of gapless series against commons-math.
+	 */
+	@Test
+	public void testAgainstCommonsMath() {
+		Random random = new Random(9);
+		int seriesCount = 70;
+		int buckets = 200;
+		double[][] data = new double[buckets][seriesCount];
+		List<NumericPairList<Long, Double>> series = new ArrayList<>();
+		for (int s = 0; s < seriesCount; s++) {
+			ColumnarNumericPairList<Long, Double> list = new ColumnarNumericPairList<>(Long.class, Double.class);
+			for (int b = 0; b < buckets; b++) {
+				double v = s % 2 == 0 ? b + 10 * random.nextGaussian() : Math.exp(random.nextGaussian());
+				data[b][s] = v;
+				// two samples per bucket of 1000 key units with the same mean
+				list.add(1000L * b + 100, v - 1);
+				list.add(1000L * b + 900, v + 1);
+			}
+			series.add(list);
+		}
+
+		double[][] pearson = new PearsonsCorrelation(data).getCorrelationMatrix().getData();
+		double[][] spearman = new SpearmansCorrelation().computeCorrelationMatrix(data).getData();
+		CorrelationMatrix pearsonMatrix = CorrelationMatrix.compute(series, 1000, Method.PEARSON);
+		CorrelationMatrix spearmanMatrix = CorrelationMatrix.compute(series, 1000, Method.SPEARMAN);
+		assertEquals(seriesCount, pearsonMatrix.size());
+		for (int i = 0; i < seriesCount; i++) {
+			for (int j = 0; j < seriesCount; j++) {
+				assertEquals(pearson[i][j], pearsonMatrix.get(i, j), DELTA);
+				assertEquals(spearman[i][j], spearmanMatrix.get(i, j), DELTA);
+			}
+		}
+
+		List<CorrelatedPair> top = pearsonMatrix.getTopCorrelatedPairs(5);
+		assertEquals(5, top.size());
+		assertEquals(0, top.get(0).getFirst() % 2);
+		assertEquals(0, top.get(0).getSecond() % 2);
+		for (int i = 1; i < top.size(); i++) {
+			assertEquals(true, Math.abs(top.get(i - 1).getCorrelation()) >= Math.abs(top.get(i).getCorrelation()));
+		}
+	}
+
+	/**
+	 * Tests series with gaps and constant series.
+	 */
+	@Test
+	public void testGaps() {
+		ColumnarNumericPairList<Long, Double> full = new ColumnarNumericPairList<>(Long.class, Double.class);
+		ColumnarNumericPairList<Long, Double> gaps = new ColumnarNumericPairList<>(Long.class, Double.class);
+		ColumnarNumericPairList<Long, Double> constant = new ColumnarNumericPairList<>(Long.class, Double.class);
+		for (long t = 0; t < 100; t++) {
+			full.add(t, (double) t);
+			if (t % 3 != 0) {
+				gaps.add(t, -2.0 * t);
+			}
+			constant.add(t, 1.0);
+		}
+		List<NumericPairList<Long, Double>> series = new ArrayList<>();
+		series.add(full);
+		series.add(gaps);
+		series.add(constant);
+		CorrelationMatrix matrix = CorrelationMatrix.compute(series, 1, Method.PEARSON);
+		assertEquals(-1.0, matrix.get(0, 1), DELTA);
+		assertEquals(-1.0, matrix.get(1, 0), DELTA);
+		assertEquals(1.0, matrix.get(1, 1), DELTA);
+		assertEquals(Double.NaN, matrix.get(0, 2), 0.0);
+		assertEquals(1, matrix.getTopCorrelatedPairs(10).size());
+	}
+
+	/**
+	 * Compares rank correlations of series with gaps against commons-math
+	 * applied to the common buckets of each pair.
+	 */
+	@Test
+	public void testSpearmanWithGaps() {
+		Random random = new Random(21);
+		int seriesCount = 6;
+		int buckets = 300;
+		double[][] data = new double[seriesCount][buckets];
+		List<NumericPairList<Long, Double>> series = new ArrayList<>();
+		for (int s = 0; s < seriesCount; s++) {
+			ColumnarNumericPairList<Long, Double> list = new ColumnarNumericPairList<>(Long.class, Double.class);
+			for (int b = 0; b < buckets; b++) {
+				data[s][b] = Double.NaN;
+				// series 0 is gapless, the others skip different buckets
+				if (s == 0 || random.nextInt(s + 2) != 0) {
+					data[s][b] = Math.exp(b / 100.0 + random.nextGaussian()) * (s % 2 == 0 ? 1 : -1);
+					list.add((long) b, data[s][b]);
+				}
+			}
+			series.add(list);
+		}
+
+		CorrelationMatrix matrix = CorrelationMatrix.compute(series, 1, Method.SPEARMAN);
+		for (int i = 0; i < seriesCount; i++) {
+			for (int j = 0; j < seriesCount; j++) {
+				List<Double> x = new ArrayList<>();
+				List<Double> y = new ArrayList<>();
+				for (int b = 0; b < buckets; b++) {
+					if (!Double.isNaN(data[i][b]) && !Double.isNaN(data[j][b])) {
+						x.add(data[i][b]);
+						y.add(data[j][b]);
+					}
+				}
+				double expected = new SpearmansCorrelation().correlation(toArray(x), toArray(y));
+				assertEquals(expected, matrix.get(i, j), DELTA);
+			}
+		}
+	}
+
+	private static double[] toArray(List<Double> values) {
+		double[] result = new double[values.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = values.get(i);
+		}
+		return result;
+	}
+}
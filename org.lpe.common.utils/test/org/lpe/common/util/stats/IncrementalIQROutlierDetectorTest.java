@@ -0,0 +1,138 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.stats;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link IncrementalIQROutlierDetector}.
+ */
+public class IncrementalIQROutlierDetectorTest {
+
+	/**
+	 * Compares the classification against a batch run over the window.
+	 */
+	@Test
+	public void testCountWindow() {
+		Random random = new Random(13);
+		IncrementalIQROutlierDetector detector = IncrementalIQROutlierDetector.forCountWindow(50);
+		IQROutlierDetector batch = new IQROutlierDetector();
+		Deque<Double> window = new ArrayDeque<>();
+		int outliers = 0;
+		for (int i = 0; i < 5000; i++) {
+			double value = random.nextInt(20);
+			if (random.nextInt(100) == 0) {
+				value = 1000;
+			}
+			boolean expected = false;
+			if (window.size() >= IncrementalIQROutlierDetector.MIN_WINDOW_COUNT) {
+				double[] quartiles = batch.computeQuartiles(toArray(window));
+				double[] range = batch.getAcceptedRange(quartiles);
+				expected = value < range[0] || value > range[1];
+			}
+			boolean outlier = detector.offer(value, i);
+			assertEquals(expected, outlier);
+			if (outlier) {
+				outliers++;
+			}
+
+			window.addLast(value);
+			if (window.size() > 50) {
+				window.removeFirst();
+			}
+			assertEquals(window.size(), detector.getStreamCount());
+		}
+		assertTrue(outliers > 20);
+	}
+
+	/**
+	 * Tests eviction by time.
+	 */
+	@Test
+	public void testTimeWindow() {
+		IncrementalIQROutlierDetector detector = IncrementalIQROutlierDetector.forTimeWindow(1000);
+		for (int i = 0; i < 100; i++) {
+			assertFalse(detector.offer(10 + i % 3, i * 10));
+		}
+		assertEquals(100, detector.getStreamCount());
+		assertTrue(detector.isOutlier(100));
+		assertFalse(detector.isOutlier(11));
+
+		// only values of the last second remain
+		assertTrue(detector.offer(100, 1500));
+		assertEquals(50, detector.getStreamCount());
+		assertFalse(detector.offer(100, 5000));
+		assertEquals(1, detector.getStreamCount());
+
+		detector.resetStream();
+		assertEquals(0, detector.getStreamCount());
+		assertFalse(detector.offer(1000, 5000));
+	}
+
+	/**
+	 * Uses windows with many more distinct values than the initial tree
+	 * capacity, so that the tree has to grow.
+	 */
+	@Test(timeout = 60000)
+	public void testLargeWindows() {
+		Random random = new Random(17);
+		IncrementalIQROutlierDetector countDetector = IncrementalIQROutlierDetector.forCountWindow(3000);
+		IncrementalIQROutlierDetector timeDetector = IncrementalIQROutlierDetector.forTimeWindow(2000);
+		IQROutlierDetector batch = new IQROutlierDetector();
+		Deque<Double> countWindow = new ArrayDeque<>();
+		Deque<Double> timeWindow = new ArrayDeque<>();
+		for (int i = 0; i < 8000; i++) {
+			double value = random.nextDouble() * 1000;
+			countDetector.offer(value, i);
+			timeDetector.offer(value, i);
+
+			countWindow.addLast(value);
+			if (countWindow.size() > 3000) {
+				countWindow.removeFirst();
+			}
+			timeWindow.addLast(value);
+			if (timeWindow.size() > 2000) {
+				timeWindow.removeFirst();
+			}
+			if (i % 500 == 499) {
+				assertEquals(countWindow.size(), countDetector.getStreamCount());
+				assertArrayEquals(batch.getAcceptedRange(batch.computeQuartiles(toArray(countWindow))),
+						countDetector.getStreamAcceptedRange(), 0);
+				assertEquals(timeWindow.size(), timeDetector.getStreamCount());
+				assertArrayEquals(batch.getAcceptedRange(batch.computeQuartiles(toArray(timeWindow))),
+						timeDetector.getStreamAcceptedRange(), 0);
+			}
+		}
+	}
+
+	private static double[] toArray(Deque<Double> values) {
+		double[] result = new double[values.size()];
+		int i = 0;
+		for (Double value : values) {
+			result[i++] = value;
+		}
+		return result;
+	}
+}
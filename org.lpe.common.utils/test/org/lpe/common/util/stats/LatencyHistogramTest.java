@@ -0,0 +1,80 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link LatencyHistogram}.
+ */
+public class LatencyHistogramTest {
+
+	/**
+	 * Compares percentiles against the exact values of the sorted data.
+	 */
+	@Test
+	public void testPercentiles() {
+		Random random = new Random(7);
+		long[] values = new long[100000];
+		LatencyHistogram histogram = new LatencyHistogram(3600L * 1000 * 1000, 3);
+		for (int i = 0; i < values.length; i++) {
+			values[i] = (long) Math.abs(1000 + random.nextGaussian() * 5000 + random.nextInt(100));
+			histogram.recordValue(values[i]);
+		}
+		Arrays.sort(values);
+
+		for (double p : new double[] { 50, 90, 99, 99.9 }) {
+			long exact = values[(int) Math.ceil(p / 100 * values.length) - 1];
+			long approx = histogram.getValueAtPercentile(p);
+			assertTrue("percentile " + p, Math.abs(approx - exact) <= exact / 1000 + 1);
+		}
+		assertEquals(values[0], histogram.getMin());
+		assertEquals(values[values.length - 1], histogram.getMax());
+		assertEquals(values[values.length - 1], histogram.getValueAtPercentile(100));
+	}
+
+	/**
+	 * Tests merging and serialization.
+	 */
+	@Test
+	public void testMergeAndSerialization() {
+		LatencyHistogram h1 = new LatencyHistogram(100000, 2);
+		LatencyHistogram h2 = new LatencyHistogram(100000, 2);
+		for (int i = 1; i <= 1000; i++) {
+			h1.recordValue(i);
+			h2.recordValue(i * 10);
+		}
+		h1.add(h2);
+		assertEquals(2000, h1.getTotalCount());
+		assertEquals(10000, h1.getMax());
+		assertEquals((500.5 + 5005) / 2, h1.getMean(), 0.0001);
+
+		byte[] bytes = h1.toByteArray();
+		assertTrue(bytes.length < 4096);
+		LatencyHistogram copy = LatencyHistogram.fromByteArray(bytes);
+		assertEquals(h1.getTotalCount(), copy.getTotalCount());
+		assertEquals(h1.getMean(), copy.getMean(), 0.0);
+		for (double p : new double[] { 1, 25, 50, 75, 99 }) {
+			assertEquals(h1.getValueAtPercentile(p), copy.getValueAtPercentile(p));
+		}
+	}
+}
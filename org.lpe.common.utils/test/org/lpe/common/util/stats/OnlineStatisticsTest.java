@@ -0,0 +1,79 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.stats;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.apache.commons.math3.stat.descriptive.SummaryStatistics;
+import org.junit.Test;
+
+/**
+ * Tests {@link OnlineStatistics}.
+ */
+public class OnlineStatisticsTest {
+
+	private static final double DELTA = 0.0000001;
+
+	/**
+	 * Compares the accumulator and merged partial accumulators against
+	 * {@link SummaryStatistics}.
+	 */
+	@Test
+	public void testAgainstSummaryStatistics() {
+		Random random = new Random(42);
+		SummaryStatistics reference = new SummaryStatistics();
+		OnlineStatistics all = new OnlineStatistics();
+		OnlineStatistics part1 = new OnlineStatistics();
+		OnlineStatistics part2 = new OnlineStatistics();
+
+		for (int i = 0; i < 10000; i++) {
+			double v = 1000 + random.nextGaussian() * 50;
+			reference.addValue(v);
+			all.add(v);
+			if (i % 3 == 0) {
+				part1.add(v);
+			} else {
+				part2.add(v);
+			}
+		}
+		part1.merge(part2);
+
+		for (OnlineStatistics stats : new OnlineStatistics[] { all, part1 }) {
+			assertEquals(reference.getN(), stats.getN());
+			assertEquals(reference.getMean(), stats.getMean(), DELTA);
+			assertEquals(reference.getVariance(), stats.getVariance(), DELTA);
+			assertEquals(reference.getStandardDeviation(), stats.getStandardDeviation(), DELTA);
+			assertEquals(reference.getMin(), stats.getMin(), 0.0);
+			assertEquals(reference.getMax(), stats.getMax(), 0.0);
+		}
+	}
+
+	/**
+	 * Tests the empty accumulator.
+	 */
+	@Test
+	public void testEmpty() {
+		OnlineStatistics stats = new OnlineStatistics();
+		assertEquals(0, stats.getN());
+		assertEquals(Double.NaN, stats.getVariance(), 0.0);
+		stats.merge(new OnlineStatistics());
+		assertEquals(0, stats.getN());
+		stats.add(42);
+		assertEquals(0.0, stats.getPopulationStandardDeviation(), 0.0);
+	}
+}
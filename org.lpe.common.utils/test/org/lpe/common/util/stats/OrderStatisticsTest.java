@@ -0,0 +1,190 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.stats;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests {@link OrderStatistics} and the parallel mode of
+ * {@link IQROutlierDetector}.
+ */
+public class OrderStatisticsTest {
+
+	private final ForkJoinPool pool = new ForkJoinPool(4);
+
+	@After
+	public void shutdownPool() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Compares the selection against a sorted copy.
+	 */
+	@Test
+	public void testSelect() {
+		Random random = new Random(5);
+		double[] values = new double[1000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = random.nextInt(100);
+		}
+		values[17] = Double.NaN;
+		double[] sorted = values.clone();
+		Arrays.sort(sorted);
+
+		int[] ranks = new int[] { 0, 1, 250, 500, 998, 999 };
+		double[] selected = OrderStatistics.selectParallel(values, ranks, pool);
+		for (int i = 0; i < ranks.length; i++) {
+			assertEquals(sorted[ranks[i]], OrderStatistics.select(values.clone(), ranks[i]), 0.0);
+			assertEquals(sorted[ranks[i]], selected[i], 0.0);
+		}
+	}
+
+	/**
+	 * Compares the multi-select percentiles against commons-math.
+	 */
+	@Test
+	public void testPercentiles() {
+		Random random = new Random(11);
+		double[] percentiles = new double[] { 99.9, 50, 90, 95, 99, 0.01, 100, 50 };
+		for (int n : new int[] { 1, 2, 3, 17, 1000, 100001 }) {
+			double[] values = new double[n];
+			for (int i = 0; i < n; i++) {
+				values[i] = i % 5 == 0 ? 42 : random.nextGaussian();
+			}
+			double[] copy = values.clone();
+			double[] result = OrderStatistics.percentiles(values, percentiles);
+			assertArrayEquals(copy, values, 0.0);
+			assertArrayEquals(result, OrderStatistics.percentilesInPlace(copy, percentiles), 0.0);
+			DescriptiveStatistics ds = new DescriptiveStatistics(values);
+			for (int i = 0; i < percentiles.length; i++) {
+				assertEquals(ds.getPercentile(percentiles[i]), result[i], 0.0);
+			}
+		}
+		assertEquals(Double.NaN, OrderStatistics.percentiles(new double[0], 50)[0], 0.0);
+
+		double[] sorted = new double[10000];
+		for (int i = 0; i < sorted.length; i++) {
+			sorted[i] = i;
+		}
+		int[] ranks = new int[] { 9999, 0, 5000, 5000, 1 };
+		assertArrayEquals(new double[] { 9999, 0, 5000, 5000, 1 }, OrderStatistics.select(sorted, ranks), 0.0);
+	}
+
+	/**
+	 * Compares the parallel percentiles against commons-math on skewed data
+	 * that requires refining the histogram buckets.
+	 */
+	@Test
+	public void testPercentilesParallel() {
+		Random random = new Random(7);
+		double[] values = new double[3000000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = Math.exp(random.nextGaussian());
+			if (i % 1000 == 0) {
+				values[i] = 1.0E9;
+			}
+			if (i % 3 == 0) {
+				values[i] = 1.0;
+			}
+		}
+		double[] percentiles = new double[] { 0.00001, 25, 50, 75, 99.9, 100 };
+		double[] result = OrderStatistics.percentilesParallel(values, percentiles, pool);
+		DescriptiveStatistics ds = new DescriptiveStatistics(values);
+		for (int i = 0; i < percentiles.length; i++) {
+			assertEquals(ds.getPercentile(percentiles[i]), result[i], 0.0);
+		}
+
+		double[] infinite = new double[] { Double.NEGATIVE_INFINITY, 1, 2, 3, Double.POSITIVE_INFINITY };
+		result = OrderStatistics.percentilesParallel(infinite, percentiles, pool);
+		ds = new DescriptiveStatistics(infinite);
+		for (int i = 0; i < percentiles.length; i++) {
+			assertEquals(ds.getPercentile(percentiles[i]), result[i], 0.0);
+		}
+
+		assertEquals(Double.NaN, OrderStatistics.percentilesParallel(new double[0], new double[] { 50 }, pool)[0],
+				0.0);
+		assertEquals(3.0, OrderStatistics.percentilesParallel(new double[] { 3.0 }, new double[] { 50 }, pool)[0],
+				0.0);
+	}
+
+	/**
+	 * Tests that parallel filtering yields the sequential result.
+	 */
+	@Test
+	public void testFilterOutliersParallel() {
+		Random random = new Random(11);
+		double[] values = new double[500000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = random.nextGaussian() * 10 + 100;
+		}
+
+		IQROutlierDetector detector = new IQROutlierDetector();
+		List<Double> expected = detector.filterOutliers(values);
+		double[] filtered = detector.filterOutliersParallel(values, pool);
+		assertEquals(expected.size(), filtered.length);
+		for (int i = 0; i < filtered.length; i++) {
+			assertEquals(expected.get(i), filtered[i], 0.0);
+		}
+
+		ApproximateIQROutlierDetector approximate = new ApproximateIQROutlierDetector();
+		assertEquals(expected.size(), approximate.filterOutliersParallel(values, pool).length, 50);
+		assertArrayEquals(new double[] { 1, 2, 3 }, detector.filterOutliersParallel(new double[] { 1, 2, 3 }),
+				0.0);
+	}
+
+	/**
+	 * Tests positional outlier marking.
+	 */
+	@Test
+	public void testMarkOutliers() {
+		double[] values = new double[300000];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = i % 10;
+		}
+		values[7] = 1000;
+		values[65] = 1000;
+		values[200000] = -1000;
+
+		BitSet expected = new BitSet();
+		expected.set(7);
+		expected.set(65);
+		expected.set(200000);
+
+		IQROutlierDetector detector = new IQROutlierDetector();
+		assertEquals(expected, detector.markOutliers(values));
+		assertEquals(expected, detector.markOutliersParallel(values, pool));
+
+		AbstractOutlierDetector generic = new AbstractOutlierDetector() {
+			@Override
+			public List<Double> filterOutliers(double[] values) {
+				return new IQROutlierDetector().filterOutliers(values);
+			}
+		};
+		assertEquals(expected, generic.markOutliers(values));
+	}
+
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.stats;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.apache.commons.math3.stat.descriptive.DescriptiveStatistics;
+import org.junit.Test;
+import org.lpe.common.util.ColumnarNumericPairList;
+import org.lpe.common.util.NumericPairList;
+
+/**
+ * Tests {@link RollingAggregation}.
+ */
+public class RollingAggregationTest {
+
+	/**
+	 * Tests tumbling windows on a regular series with a gap.
+	 */
+	@Test
+	public void testTumbling() {
+		ColumnarNumericPairList<Long, Double> series = new ColumnarNumericPairList<>(Long.class, Double.class);
+		for (long t = 1000; t < 4000; t += 10) {
+			series.add(t, (double) (t % 1000));
+		}
+		for (long t = 6000; t < 6500; t += 100) {
+			series.add(t, 1.0);
+		}
+		RollingAggregation aggregation = RollingAggregation.tumbling(series, 1000, 50);
+		assertEquals(6, aggregation.getWindowCount());
+
+		NumericPairList<Double, Double> counts = aggregation.getCountSeries();
+		assertEquals(1000.0, counts.getKeyAsDouble(0), 0.0);
+		assertEquals(100.0, counts.getValueAsDouble(0), 0.0);
+		assertEquals(0.0, counts.getValueAsDouble(3), 0.0);
+		assertEquals(5.0, counts.getValueAsDouble(5), 0.0);
+		assertEquals(100.0, aggregation.getThroughputSeries(1000).getValueAsDouble(1), 0.0);
+		assertEquals(495.0, aggregation.getMeanSeries().getValueAsDouble(2), 1e-9);
+		assertEquals(Double.NaN, aggregation.getMeanSeries().getValueAsDouble(4), 0.0);
+		assertEquals(0.0, aggregation.getMinSeries().getValueAsDouble(1), 0.0);
+		assertEquals(990.0, aggregation.getMaxSeries().getValueAsDouble(1), 0.0);
+		assertEquals(495.0, aggregation.getPercentileSeries(50).getValueAsDouble(0), 0.0);
+		assertEquals(1.0, aggregation.getPercentileSeries(50).getValueAsDouble(5), 0.0);
+	}
+
+	/**
+	 * Compares sliding windows against a recomputation per window.
+	 */
+	@Test
+	public void testSliding() {
+		Random random = new Random(21);
+		ColumnarNumericPairList<Long, Double> series = new ColumnarNumericPairList<>(Long.class, Double.class);
+		long t = 0;
+		for (int i = 0; i < 5000; i++) {
+			t += random.nextInt(20);
+			series.add(t, random.nextGaussian());
+		}
+		double windowLength = 500;
+		double step = 70;
+		RollingAggregation aggregation = RollingAggregation.sliding(series, windowLength, step, 90, 99);
+		NumericPairList<Double, Double> p90 = aggregation.getPercentileSeries(90);
+		NumericPairList<Double, Double> min = aggregation.getMinSeries();
+		NumericPairList<Double, Double> max = aggregation.getMaxSeries();
+		NumericPairList<Double, Double> sum = aggregation.getSumSeries();
+		for (int w = 0; w < aggregation.getWindowCount(); w++) {
+			double start = p90.getKeyAsDouble(w);
+			DescriptiveStatistics ds = new DescriptiveStatistics();
+			for (int i = 0; i < series.size(); i++) {
+				double key = series.getKeyAsDouble(i);
+				if (key >= start && key < start + windowLength) {
+					ds.addValue(series.getValueAsDouble(i));
+				}
+			}
+			assertEquals(ds.getPercentile(90), p90.getValueAsDouble(w), 0.0);
+			assertEquals(ds.getMin(), min.getValueAsDouble(w), 0.0);
+			assertEquals(ds.getMax(), max.getValueAsDouble(w), 0.0);
+			assertEquals(ds.getSum(), sum.getValueAsDouble(w), 1e-9);
+		}
+		assertEquals(true, p90.getKeyAsDouble(0) <= series.getKeyAsDouble(0));
+		assertEquals(true, p90.getKeyAsDouble(0) + windowLength > series.getKeyAsDouble(0));
+	}
+}
@@ -0,0 +1,135 @@
+/**
+ * Copyright 2014 SAP AG
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.lpe.common.util.stats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link TDigest} and {@link ApproximateIQROutlierDetector}.
+ */
+public class TDigestTest {
+
+	/**
+	 * Compares quantile estimates against the exact quantiles.
+	 */
+	@Test
+	public void testQuantiles() {
+		Random random = new Random(3);
+		double[] values = new double[200000];
+		TDigest digest = new TDigest(100);
+		TDigest part1 = new TDigest(100);
+		TDigest part2 = new TDigest(100);
+		for (int i = 0; i < values.length; i++) {
+			values[i] = random.nextGaussian();
+			digest.add(values[i]);
+			if (i % 2 == 0) {
+				part1.add(values[i]);
+			} else {
+				part2.add(values[i]);
+			}
+		}
+		part1.add(part2);
+		Arrays.sort(values);
+
+		for (double q : new double[] { 0.01, 0.25, 0.5, 0.75, 0.99 }) {
+			double exact = values[(int) (q * values.length)];
+			assertEquals(exact, digest.quantile(q), 0.01);
+			assertEquals(exact, part1.quantile(q), 0.01);
+		}
+		assertEquals(values[0], digest.quantile(0), 0.0);
+		assertEquals(values[values.length - 1], digest.quantile(1), 0.0);
+		assertEquals(values.length, digest.getCount());
+		assertTrue(digest.getCentroidCount() <= 2 * 100 + 10);
+	}
+
+	/**
+	 * Tests that values with a weight which is not positive are rejected.
+	 */
+	@Test
+	public void testInvalidWeight() {
+		TDigest digest = new TDigest(100);
+		digest.add(1.0, 2.0);
+		for (double w : new double[] { 0.0, -1.0, Double.NaN }) {
+			try {
+				digest.add(2.0, w);
+				fail();
+			} catch (IllegalArgumentException e) {
+				assertEquals(2, digest.getCount());
+			}
+		}
+	}
+
+	/**
+	 * Tests batch and stream mode of the approximate detector.
+	 */
+	@Test
+	public void testApproximateDetector() {
+		double[] values = new double[1001];
+		for (int i = 0; i < 1000; i++) {
+			values[i] = i % 10;
+		}
+		values[1000] = 1000;
+
+		ApproximateIQROutlierDetector detector = new ApproximateIQROutlierDetector();
+		assertEquals(1000, detector.filterOutliers(values).size());
+
+		for (double v : values) {
+			detector.offer(v);
+		}
+		assertTrue(detector.isOutlier(1000));
+		assertFalse(detector.isOutlier(5));
+		assertEquals(1001, detector.getStreamCount());
+	}
+
+	/**
+	 * NaN values are skipped like the exact detector drops them.
+	 */
+	@Test
+	public void testApproximateDetectorWithNaN() {
+		double[] values = new double[1002];
+		for (int i = 0; i < 1000; i++) {
+			values[i] = i % 10;
+		}
+		values[1000] = 1000;
+		values[1001] = Double.NaN;
+
+		ApproximateIQROutlierDetector detector = new ApproximateIQROutlierDetector();
+		assertEquals(new IQROutlierDetector().filterOutliers(values), detector.filterOutliers(values));
+		assertTrue(detector.markOutliers(values).get(1001));
+
+		for (double v : values) {
+			detector.offer(v);
+		}
+		assertEquals(1001, detector.getStreamCount());
+		assertFalse(detector.isOutlier(5));
+		assertTrue(detector.isOutlier(Double.NaN));
+
+		// the cached range follows the offered values
+		assertTrue(detector.isOutlier(30));
+		for (int i = 0; i < 2000; i++) {
+			detector.offer(30);
+		}
+		assertFalse(detector.isOutlier(30));
+	}
+}